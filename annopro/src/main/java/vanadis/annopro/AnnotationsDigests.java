@@ -19,6 +19,9 @@ package vanadis.annopro;
 import vanadis.core.lang.Not;
 
 import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class AnnotationsDigests {
 
@@ -61,4 +64,27 @@ public class AnnotationsDigests {
                                           mapper,
                                           Not.nil(targetAnnotation, "target annotation"));
     }
+
+    /**
+     * Scan a set of class resources, such as the classes of a bundle or jar,
+     * for classes carrying a given annotation.
+     *
+     * @param classResources Class resources, by class name
+     * @param targetAnnotation Name of annotation type
+     * @param executor Executor to scan on, or null to scan in the calling thread
+     * @return Digests of the annotated classes, by class name
+     */
+    public static Map<String, AnnotationsDigest> createFromResources(Map<String, URL> classResources,
+                                                                     String targetAnnotation,
+                                                                     ExecutorService executor) {
+        return createFromResources(classResources, null, targetAnnotation, executor);
+    }
+
+    public static Map<String, AnnotationsDigest> createFromResources(Map<String, URL> classResources,
+                                                                     AnnotationMapper mapper,
+                                                                     String targetAnnotation,
+                                                                     ExecutorService executor) {
+        return new BytecodeScan(targetAnnotation, mapper).scan
+                (Not.nil(classResources, "class resources"), executor);
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.annopro;
+
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Scans a set of class resources for a target class annotation, in batches on an
+ * executor.  A class can only carry the annotation if its constant pool holds the
+ * annotation's type descriptor, so classes whose bytes do not contain the descriptor
+ * are skipped without being parsed.
+ */
+final class BytecodeScan {
+
+    private static final int BATCH_SIZE = 32;
+
+    private final String targetAnnotation;
+
+    private final AnnotationMapper mapper;
+
+    private final byte[] descriptor;
+
+    BytecodeScan(String targetAnnotation, AnnotationMapper mapper) {
+        this.targetAnnotation = Not.nil(targetAnnotation, "target annotation");
+        this.mapper = mapper;
+        this.descriptor = utf8("L" + targetAnnotation.replace('.', '/') + ";");
+    }
+
+    /**
+     * @param classResources Class resources, by class name
+     * @param executor Executor to scan on, or null to scan in the calling thread
+     * @return Digests of the classes carrying the target annotation, by class name
+     */
+    Map<String, AnnotationsDigest> scan(Map<String, URL> classResources, ExecutorService executor) {
+        List<Map.Entry<String, URL>> entries = Generic.list(classResources.entrySet());
+        Map<String, AnnotationsDigest> digests = Generic.map();
+        if (executor == null || entries.size() <= BATCH_SIZE) {
+            digests.putAll(scan(entries));
+            return digests;
+        }
+        List<Future<Map<String, AnnotationsDigest>>> futures = Generic.list();
+        for (int start = 0; start < entries.size(); start += BATCH_SIZE) {
+            final List<Map.Entry<String, URL>> batch =
+                    entries.subList(start, Math.min(start + BATCH_SIZE, entries.size()));
+            futures.add(executor.submit(new Callable<Map<String, AnnotationsDigest>>() {
+                @Override
+                public Map<String, AnnotationsDigest> call() {
+                    return scan(batch);
+                }
+            }));
+        }
+        for (Future<Map<String, AnnotationsDigest>> future : futures) {
+            digests.putAll(result(future));
+        }
+        return digests;
+    }
+
+    private Map<String, AnnotationsDigest> scan(List<Map.Entry<String, URL>> entries) {
+        Map<String, AnnotationsDigest> digests = Generic.map();
+        for (Map.Entry<String, URL> entry : entries) {
+            byte[] bytecode = read(entry.getKey(), entry.getValue());
+            if (mentionsTarget(bytecode)) {
+                AnnotationsDigest digest = new AnnotationsDigestsImpl
+                        (new ByteArrayInputStream(bytecode), mapper, targetAnnotation);
+                if (digest.getClassDatum(targetAnnotation) != null) {
+                    digests.put(entry.getKey(), digest);
+                }
+            }
+        }
+        return digests;
+    }
+
+    boolean mentionsTarget(byte[] bytecode) {
+        int last = bytecode.length - descriptor.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < descriptor.length; j++) {
+                if (bytecode[i + j] != descriptor[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private Map<String, AnnotationsDigest> result(Future<Map<String, AnnotationsDigest>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(this + " was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(this + " failed", cause);
+        }
+    }
+
+    private byte[] read(String className, URL url) {
+        try {
+            InputStream inputStream = url.openStream();
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+                byte[] buffer = new byte[4096];
+                for (int count = inputStream.read(buffer); count >= 0; count = inputStream.read(buffer)) {
+                    bytes.write(buffer, 0, count);
+                }
+                return bytes.toByteArray();
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(this + " failed to read " + className + " from " + url, e);
+        }
+    }
+
+    private static byte[] utf8(String string) {
+        try {
+            return string.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, targetAnnotation);
+    }
+}
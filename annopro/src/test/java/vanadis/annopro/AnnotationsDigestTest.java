@@ -16,6 +16,7 @@
 
 package vanadis.annopro;
 
+import vanadis.core.collections.Generic;
 import vanadis.core.lang.Proxies;
 import vanadis.core.properties.PropertySet;
 import org.junit.Assert;
@@ -27,9 +28,13 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.net.URL;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AnnotationsDigestTest {
 
@@ -46,6 +51,54 @@ public class AnnotationsDigestTest {
                 " on extending " + ModestAnnotatedType.class, annotation);
     }
 
+    @Test
+    public void scanResources() {
+        Map<String, URL> resources = Generic.map();
+        for (Class<?> type : Arrays.asList(AnnotatedType.class, AnotherAnnotatedTypeImpl.class,
+                                           ModestAnnotatedType.class, TheNestingType.class, Bar.class)) {
+            resources.put(type.getName(), resource(type));
+        }
+        Map<String, AnnotationsDigest> serial =
+                AnnotationsDigests.createFromResources(resources, Foo.class.getName(), null);
+        assertEquals(Generic.set(AnnotatedType.class.getName(), AnotherAnnotatedTypeImpl.class.getName()),
+                     serial.keySet());
+        assertNotNull(serial.get(AnnotatedType.class.getName()).getClassDatum(Foo.class));
+
+        for (int i = 0; i < 100; i++) {
+            resources.put("copy" + i, resource(i % 2 == 0 ? AnnotatedType.class : ModestAnnotatedType.class));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Map<String, AnnotationsDigest> parallel =
+                    AnnotationsDigests.createFromResources(resources, Foo.class.getName(), executor);
+            assertEquals(52, parallel.size());
+            assertTrue(parallel.containsKey("copy0"));
+            assertFalse(parallel.containsKey("copy1"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void preCheckSkipsUnmentioned() {
+        BytecodeScan scan = new BytecodeScan(Foo.class.getName(), null);
+        assertTrue(scan.mentionsTarget(bytes("xLvanadis/annopro/Foo;x")));
+        assertFalse(scan.mentionsTarget(bytes("Lvanadis/annopro/Foo")));
+        assertFalse(scan.mentionsTarget(new byte[0]));
+    }
+
+    private static URL resource(Class<?> type) {
+        return CLASS_LOADER.getResource(type.getName().replace('.', '/') + ".class");
+    }
+
+    private static byte[] bytes(String string) {
+        try {
+            return string.getBytes("UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Test
     public void readInheritedMethodAnnotation() {
         AnnotationsDigest digest = AnnotationsDigests.createFullFromType(ModestAnnotatedType.class);
@@ -37,7 +37,7 @@ class ConcurrentInvocationHandler<T> implements InvocationHandler {
 
     private final OperationQueuer operationQueuer;
 
-    private final Thread thread;
+    private final boolean reentrant;
 
     private final AtomicBoolean closed = new AtomicBoolean();
 
@@ -45,12 +45,12 @@ class ConcurrentInvocationHandler<T> implements InvocationHandler {
 
     ConcurrentInvocationHandler(OperationQueuer operationQueuer, TimeSpan timeout,
                                 Class<T> type, T instance,
-                                Thread thread, boolean asynch) {
+                                boolean reentrant, boolean asynch) {
         this.operationQueuer = Not.nil(operationQueuer, "operation queuer");
         this.timeout = Not.nil(timeout, "timeout");
         this.type = Not.nil(type, "type");
         this.instance = Not.nil(instance, "instance");
-        this.thread = thread;
+        this.reentrant = reentrant;
         this.asynch = asynch;
     }
 
@@ -90,7 +90,7 @@ class ConcurrentInvocationHandler<T> implements InvocationHandler {
     }
 
     final boolean stayInThread() {
-        return thread != null && Thread.currentThread() == thread;
+        return reentrant && operationQueuer.inDispatchThread(instance);
     }
 
     final void runAndForget(Invocation invocation) {
@@ -130,6 +130,6 @@ class ConcurrentInvocationHandler<T> implements InvocationHandler {
 
     @Override
     public String toString() {
-        return ToString.of(this, "thread", thread, "dispatch", operationQueuer);
+        return ToString.of(this, "reentrant", reentrant, "dispatch", operationQueuer);
     }
 }
@@ -20,13 +20,15 @@ import vanadis.core.collections.Generic;
 import vanadis.common.time.Time;
 import vanadis.common.time.TimeSpan;
 
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<K, V> {
 
@@ -44,11 +46,11 @@ public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<
     private final ConcurrentMap<K, V> sessions;
 
     /**
-     * These are the known sessions, sorted on edit time.  This means we
-     * can always find the oldest session with {@link java.util.SortedSet#first()}.
-     * Entries live here until they are {@link #scavenge() scavenged}.
+     * These are the known sessions, in order of edit time.  This means we
+     * can always find the oldest sessions cheaply.  Entries live here until
+     * they are {@link #scavenge() scavenged}, or acquired and released again.
      */
-    private final ConcurrentSkipListSet<V> sortedSessions;
+    private final EditIndex<K, V> editIndex;
 
     private final ThreadLocal<V> threadSession = new ThreadLocal<V>();
 
@@ -58,9 +60,13 @@ public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<
 
     private final AtomicInteger activeSessions = new AtomicInteger();
 
-    private final Map<K, Time> lastEdited = Generic.concurrentHashMap();
+    /**
+     * Threads waiting for a session that is held by another thread, per key.
+     * A released session is handed to the first waiter, if any.
+     */
+    private final ConcurrentMap<K, Waiters> waiters = Generic.concurrentHashMap();
 
-    private static final TimeSpan RETRY_INTERVAL = TimeSpan.HUNDRED_MS;
+    private final SessionContention contention = new SessionContention();
 
     private final V placeholder;
 
@@ -74,7 +80,7 @@ public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<
                               int concurrency) {
         this.factory = factory;
         this.placeholder = factory.createNullInstance();
-        this.sortedSessions = Generic.concurrentSkipListSet();
+        this.editIndex = new EditIndex<K, V>(concurrency);
         this.sessions = Generic.concurrentHashMap(capacity, loadFactor, concurrency);
     }
 
@@ -96,11 +102,31 @@ public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<
         failNoCurrentSession();
         V session = clearCurrent();
         K key = factory.key(session);
-        lastEdited.put(key, Time.mark());
-        sortedSessions.remove(session);
-        sortedSessions.add(session);
+        if (handOff(key, session)) {
+            return;
+        }
         boolean wasReplaced = sessions.replace(key, placeholder, session);
         assert wasReplaced : "Found unexpected session in place of " + session;
+        editIndex.touch(key, session);
+        wakeFirst(key);
+    }
+
+    public SessionContention getContention() {
+        return contention;
+    }
+
+    /**
+     * @return Number of threads waiting, for each key that has waiters
+     */
+    public Map<K, Integer> getQueueDepths() {
+        Map<K, Integer> depths = Generic.map();
+        for (Map.Entry<K, Waiters> entry : waiters.entrySet()) {
+            int depth = entry.getValue().size();
+            if (depth > 0) {
+                depths.put(entry.getKey(), depth);
+            }
+        }
+        return depths;
     }
 
     @Override
@@ -117,15 +143,55 @@ public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<
     @Override
     public ScavengeResult<V> scavenge() {
         failCurrentSession();
-        V session = pickVictim();
-        if (session != null) {
-            clearSession(session);
-            K key = factory.key(session);
-            return new ScavengeResult<V>(sessions.size(), session, lastEdited.get(key));
+        while (!sessions.isEmpty()) {
+            EditIndex.Entry<K, V> eldest = editIndex.pollEldest();
+            if (eldest != null) {
+                if (extractedVictim(eldest.getSession())) {
+                    return cleared(eldest.getSession(), eldest.getEdited());
+                }
+            } else if (closed.get()) {
+                V session;
+                try {
+                    session = sessions.values().iterator().next();
+                } catch (NoSuchElementException ignore) {
+                    continue;
+                }
+                if (extractedVictim(session)) {
+                    return cleared(session, null);
+                }
+            } else {
+                return null;
+            }
         }
         return null;
     }
 
+    @Override
+    public List<ScavengeResult<V>> scavenge(TimeSpan idleTime, int max) {
+        failCurrentSession();
+        List<ScavengeResult<V>> results = Generic.list();
+        while (results.size() < max) {
+            List<EditIndex.Entry<K, V>> idle = editIndex.pollIdle(idleTime, max - results.size());
+            if (idle.isEmpty()) {
+                return results;
+            }
+            for (EditIndex.Entry<K, V> entry : idle) {
+                if (extractedVictim(entry.getSession())) {
+                    results.add(cleared(entry.getSession(), entry.getEdited()));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return Number of sessions in the edit index, i.e. sessions that are
+     *         released and eligible for scavenging
+     */
+    public int getIndexedCount() {
+        return editIndex.size();
+    }
+
     private void failClosed() {
         if (closed.get()) {
             throw new IllegalStateException(this + " was closed");
@@ -165,38 +231,24 @@ public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<
     }
 
     private void clearSession(V session) {
-        boolean removed = sessions.remove(factory.key(session), placeholder);
+        K key = factory.key(session);
+        boolean removed = sessions.remove(key, placeholder);
         assert removed : this + " tried to remove placeholder for " + session + ", but found other session";
         factory.destroy(session);
+        wakeFirst(key);
     }
 
-    private V pickVictim() {
-        while (!sessions.isEmpty()) {
-            V session = sortedSessions.pollFirst();
-            if (session != null) {
-                if (extractedVictim(session)) {
-                    return session;
-                }
-            } else if (closed.get() && !sessions.isEmpty()) {
-                try {
-                    session = sessions.values().iterator().next();
-                } catch (NoSuchElementException ignore) {
-                    continue;
-                }
-                if (extractedVictim(session)) {
-                    return session;
-                }
-            }
-        }
-        return null;
+    private ScavengeResult<V> cleared(V session, Time lastEdited) {
+        clearSession(session);
+        return new ScavengeResult<V>(sessions.size(), session, lastEdited);
     }
 
+    /**
+     * A session taken out of the edit index may since have been acquired, or
+     * scavenged already.  It is a victim only if it is still in the map, and not held.
+     */
     private boolean extractedVictim(V session) {
-        if (sessions.replace(factory.key(session), session, placeholder)) {
-            sortedSessions.remove(session);
-            return true;
-        }
-        return false;
+        return sessions.replace(factory.key(session), session, placeholder);
     }
 
     private V retrieve(K key, TimeSpan timeout) {
@@ -211,13 +263,179 @@ public class ConcurrentSessions<K, V extends Comparable<V>> implements Sessions<
         return session; // Session was retrieved
     }
 
-    private V retrieveRetry(final K key, TimeSpan timeout) {
-        return timeout.newDeadline().tryEvery(RETRY_INTERVAL, new Callable<V>() {
-            @Override
-            public V call() {
-                return retrieve(key, null);
+    /**
+     * Wait in line for the session.  The first waiter in line either gets the
+     * session handed over on release, or is woken up to retrieve it, e.g. when
+     * it was scavenged.
+     *
+     * @param key Key
+     * @param timeout Max time to wait
+     * @return Session, or null if timed out
+     */
+    private V retrieveRetry(K key, TimeSpan timeout) {
+        long start = System.nanoTime();
+        long deadline = timeout.isForever() ? Long.MAX_VALUE : start + timeout.nanoTime();
+        Waiter<V> waiter = new Waiter<V>();
+        Waiters keyWaiters = enqueue(key, waiter);
+        V session = null;
+        try {
+            session = await(key, waiter, keyWaiters, deadline);
+            return session;
+        } finally {
+            dequeue(key, waiter, keyWaiters);
+            contention.waited(System.nanoTime() - start, session != null);
+        }
+    }
+
+    private V await(K key, Waiter<V> waiter, Waiters keyWaiters, long deadline) {
+        while (true) {
+            if (waiter.isHandedOff()) {
+                return waiter.getSession();
+            }
+            if (keyWaiters.isFirst(waiter)) {
+                V session = retrieve(key, null);
+                if (session != null) {
+                    if (waiter.leave()) {
+                        return session;
+                    }
+                    throw new IllegalStateException(this + " handed " + key + " to a waiter that already had it");
+                }
+            }
+            long timeLeft = deadline - System.nanoTime();
+            if (timeLeft <= 0) {
+                return waiter.leave() ? null : waiter.getSession();
+            }
+            LockSupport.parkNanos(this, timeLeft);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return waiter.leave() ? null : waiter.getSession();
+            }
+        }
+    }
+
+    private Waiters enqueue(K key, Waiter<V> waiter) {
+        while (true) {
+            Waiters keyWaiters = waiters.get(key);
+            if (keyWaiters == null) {
+                Waiters newWaiters = new Waiters();
+                Waiters existing = waiters.putIfAbsent(key, newWaiters);
+                keyWaiters = existing == null ? newWaiters : existing;
+            }
+            if (keyWaiters.add(waiter)) {
+                return keyWaiters;
+            }
+        }
+    }
+
+    private void dequeue(K key, Waiter<V> waiter, Waiters keyWaiters) {
+        if (keyWaiters.remove(waiter)) {
+            waiters.remove(key, keyWaiters);
+        } else {
+            keyWaiters.wakeFirst();
+        }
+    }
+
+    private boolean handOff(K key, V session) {
+        Waiters keyWaiters = waiters.get(key);
+        return keyWaiters != null && keyWaiters.handOff(session);
+    }
+
+    private void wakeFirst(K key) {
+        Waiters keyWaiters = waiters.get(key);
+        if (keyWaiters != null) {
+            keyWaiters.wakeFirst();
+        }
+    }
+
+    /**
+     * A waiting thread.  It either leaves the line by itself, or is handed
+     * a session, whichever happens first.
+     */
+    private static final class Waiter<V> {
+
+        private static final Object LEFT = new Object();
+
+        private final Thread thread = Thread.currentThread();
+
+        private final AtomicReference<Object> outcome = new AtomicReference<Object>();
+
+        boolean handOff(V session) {
+            if (outcome.compareAndSet(null, session)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+
+        boolean leave() {
+            return outcome.compareAndSet(null, LEFT);
+        }
+
+        boolean isHandedOff() {
+            Object value = outcome.get();
+            return value != null && value != LEFT;
+        }
+
+        @SuppressWarnings({"unchecked"})
+        V getSession() {
+            return (V) outcome.get();
+        }
+
+        void wake() {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * The line for one key.  An emptied line is retired and removed, and
+     * accepts no more waiters.
+     */
+    private final class Waiters {
+
+        private final LinkedList<Waiter<V>> line = new LinkedList<Waiter<V>>();
+
+        private boolean retired;
+
+        synchronized boolean add(Waiter<V> waiter) {
+            if (retired) {
+                return false;
             }
-        });
+            line.add(waiter);
+            return true;
+        }
+
+        /**
+         * @param waiter Waiter
+         * @return True iff the line was emptied, and retired
+         */
+        synchronized boolean remove(Waiter<V> waiter) {
+            line.remove(waiter);
+            retired = line.isEmpty();
+            return retired;
+        }
+
+        synchronized boolean isFirst(Waiter<V> waiter) {
+            return !line.isEmpty() && line.getFirst() == waiter;
+        }
+
+        synchronized boolean handOff(V session) {
+            for (Waiter<V> waiter : line) {
+                if (waiter.handOff(session)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized void wakeFirst() {
+            if (!line.isEmpty()) {
+                line.getFirst().wake();
+            }
+        }
+
+        synchronized int size() {
+            return line.size();
+        }
     }
 
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.concurrent;
+
+import vanadis.common.time.Time;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.ToString;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Sessions in order of last edit, for scavenging.  The index is split in
+ * segments on key hash, each in edit order, so a touch is O(1) and only
+ * locks its own segment.  The oldest session overall is the oldest of the
+ * segments' oldest.
+ */
+final class EditIndex<K, V> {
+
+    private final Segment<K, V>[] segments;
+
+    private final int mask;
+
+    EditIndex(int concurrency) {
+        int size = 1;
+        while (size < concurrency * 4 && size < 256) {
+            size <<= 1;
+        }
+        this.segments = segments(size);
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment<K, V>();
+        }
+        this.mask = size - 1;
+    }
+
+    void touch(K key, V session) {
+        segment(key).touch(new Entry<K, V>(key, session, Time.mark()));
+    }
+
+    Time lastEdited(K key) {
+        Entry<K, V> entry = segment(key).get(key);
+        return entry == null ? null : entry.getEdited();
+    }
+
+    /**
+     * @return The least recently edited entry, removed from the index, or null if empty
+     */
+    Entry<K, V> pollEldest() {
+        while (true) {
+            Entry<K, V> eldest = null;
+            for (Segment<K, V> segment : segments) {
+                Entry<K, V> candidate = segment.eldest();
+                if (candidate != null && (eldest == null || candidate.getEdited().isBefore(eldest.getEdited()))) {
+                    eldest = candidate;
+                }
+            }
+            if (eldest == null) {
+                return null;
+            }
+            if (segment(eldest.getKey()).remove(eldest)) {
+                return eldest;
+            }
+        }
+    }
+
+    /**
+     * @param idleTime Minimum idle time
+     * @param max Max entries to return
+     * @return Entries idle for at least the given time, removed from the index
+     */
+    List<Entry<K, V>> pollIdle(TimeSpan idleTime, int max) {
+        Time now = Time.mark();
+        List<Entry<K, V>> idle = Generic.list();
+        for (Segment<K, V> segment : segments) {
+            if (idle.size() >= max) {
+                break;
+            }
+            segment.pollIdle(now, idleTime, max - idle.size(), idle);
+        }
+        return idle;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment<K, V> segment(K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & mask];
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static <K, V> Segment<K, V>[] segments(int size) {
+        return (Segment<K, V>[]) new Segment<?, ?>[size];
+    }
+
+    static final class Entry<K, V> {
+
+        private final K key;
+
+        private final V session;
+
+        private final Time edited;
+
+        private Entry(K key, V session, Time edited) {
+            this.key = key;
+            this.session = session;
+            this.edited = edited;
+        }
+
+        K getKey() {
+            return key;
+        }
+
+        V getSession() {
+            return session;
+        }
+
+        Time getEdited() {
+            return edited;
+        }
+    }
+
+    /**
+     * Entries in edit order, oldest first.  Re-inserting a key moves it to the end.
+     */
+    private static final class Segment<K, V> {
+
+        private final LinkedHashMap<K, Entry<K, V>> entries = new LinkedHashMap<K, Entry<K, V>>();
+
+        synchronized void touch(Entry<K, V> entry) {
+            entries.remove(entry.getKey());
+            entries.put(entry.getKey(), entry);
+        }
+
+        synchronized Entry<K, V> get(K key) {
+            return entries.get(key);
+        }
+
+        synchronized Entry<K, V> eldest() {
+            return entries.isEmpty() ? null : entries.values().iterator().next();
+        }
+
+        synchronized boolean remove(Entry<K, V> entry) {
+            if (entries.get(entry.getKey()) == entry) {
+                entries.remove(entry.getKey());
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void pollIdle(Time now, TimeSpan idleTime, int max, List<Entry<K, V>> idle) {
+            Iterator<Entry<K, V>> iterator = entries.values().iterator();
+            for (int i = 0; i < max && iterator.hasNext(); i++) {
+                Entry<K, V> entry = iterator.next();
+                if (entry.getEdited().after(idleTime).isAfter(now)) {
+                    return;
+                }
+                iterator.remove();
+                idle.add(entry);
+            }
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "segments", segments.length);
+    }
+}
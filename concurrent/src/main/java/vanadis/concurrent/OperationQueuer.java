@@ -29,6 +29,13 @@ public interface OperationQueuer extends Closeable {
 
     boolean inDispatchThread();
 
+    /**
+     * @param target Target of a call
+     * @return True iff the current thread is running invocations on the target,
+     *         so a reentrant call to it must run in the current thread
+     */
+    boolean inDispatchThread(Object target);
+
     <T> T createAsynch(T instance, Class<T> type, Class<?>... moreClasses);
 
     <T> T createAsynch(T instance, Class<T> type, boolean reentrant, Class<?>... moreClasses);
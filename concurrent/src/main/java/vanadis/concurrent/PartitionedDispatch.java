@@ -0,0 +1,395 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.common.time.Deadline;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.Proxies;
+import vanadis.core.lang.ToString;
+
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link OperationQueuer} running invocations on a number of threads.
+ * Invocations on the same target instance are run one at a time, in the
+ * order they were submitted, on a strand for that target.  Strands with
+ * work are picked up by whichever worker is free, and a busy strand yields
+ * its worker after a few invocations, so one chatty target can't hold up
+ * the rest.
+ *
+ * A reentrant call to a target whose invocation is running in the calling
+ * thread is run in that thread, like calls from the dispatch thread of a
+ * {@link ThreadedDispatch}.  Calls a worker makes to other targets go on
+ * their strands, except that a synchronous call to a target with an idle
+ * strand holds that strand and runs in the calling worker, so workers
+ * waiting on each other's targets can't use up the pool.
+ */
+public class PartitionedDispatch implements OperationQueuer {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedDispatch.class);
+
+    private static final int STRAND_TURN = 16;
+
+    private final String name;
+
+    private final TimeSpan timeout;
+
+    private final ExecutorService service;
+
+    private final Set<Thread> workers = Generic.copyOnWriteArraySet();
+
+    private final ConcurrentMap<Key, Strand> strands = Generic.concurrentHashMap();
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final Object idle = new Object();
+
+    /**
+     * Targets whose invocations are running in the current thread, innermost last.
+     */
+    private final ThreadLocal<LinkedList<Key>> serving = new ThreadLocal<LinkedList<Key>>() {
+        @Override
+        protected LinkedList<Key> initialValue() {
+            return new LinkedList<Key>();
+        }
+    };
+
+    public PartitionedDispatch(String name, int threads) {
+        this(name, threads, null);
+    }
+
+    public PartitionedDispatch(String name, int threads, TimeSpan timeout) {
+        this.name = Not.nil(name, "name");
+        this.timeout = timeout == null ? TimeSpan.MINUTE : timeout;
+        this.service = Executors.newFixedThreadPool(threads < 1 ? 1 : threads, new WorkerFactory());
+    }
+
+    /**
+     * @return Null, there is no single dispatch thread
+     */
+    @Override
+    public Thread getThread() {
+        return null;
+    }
+
+    @Override
+    public TimeSpan getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public boolean inDispatchThread() {
+        return workers.contains(Thread.currentThread());
+    }
+
+    @Override
+    public boolean inDispatchThread(Object target) {
+        return inDispatchThread() && serving.get().contains(new Key(target));
+    }
+
+    @Override
+    public void close() {
+        if (inDispatchThread()) {
+            throw new IllegalStateException(this + " cannot close itself!");
+        }
+        ExecutorUtils.terminate(this, service, timeout);
+    }
+
+    @Override
+    public <T> T createAsynch(T instance, Class<T> type, Class<?>... moreClasses) {
+        return createAsynch(instance, type, true, moreClasses);
+    }
+
+    @Override
+    public <T> T createAsynch(T instance, Class<T> type, boolean reentrant, Class<?>... moreClasses) {
+        ConcurrentInvocationHandler<T> handler = new ConcurrentInvocationHandler<T>
+                (this, timeout,
+                 Not.nil(type, "main type"),
+                 Not.nil(instance, "instance"),
+                 reentrant, true);
+        return Proxies.genericProxy(type.getClassLoader(), type, handler, moreClasses);
+    }
+
+    @Override
+    public <T> T createSynch(T instance, Class<T> type, Class<?>... moreClasses) {
+        return Proxies.genericProxy
+                (type.getClassLoader(), type,
+                 new ConcurrentInvocationHandler<T>(this, timeout,
+                                                    Not.nil(type, "main type"),
+                                                    Not.nil(instance, "instance"),
+                                                    true, false),
+                 moreClasses);
+    }
+
+    @Override
+    public Future<?> submit(Invocation invocation) {
+        FutureTask<Object> task = new FutureTask<Object>(invocation);
+        if (!inDispatchThread() || !runHeld(invocation.getTarget(), task)) {
+            enqueue(invocation.getTarget(), task);
+        }
+        return task;
+    }
+
+    @Override
+    public void submitAndForget(Invocation invocation) {
+        enqueue(invocation.getTarget(), new FutureTask<Object>(invocation, null));
+    }
+
+    /**
+     * Wait for all submitted invocations to complete.
+     *
+     * @return True iff there was nothing left to run
+     */
+    @Override
+    public boolean synchUp() {
+        Deadline deadline = timeout.newDeadline();
+        synchronized (idle) {
+            while (depth.get() > 0) {
+                TimeSpan timeLeft = deadline.timeLeft();
+                if (timeLeft.msTime() <= 0) {
+                    break;
+                }
+                timeLeft.waitOn(idle);
+            }
+            return depth.get() == 0;
+        }
+    }
+
+    @Override
+    public void awaitShutdown(TimeSpan timeout) {
+        timeout.awaitTermination(service, true);
+    }
+
+    private void enqueue(Object target, Runnable task) {
+        depth.incrementAndGet();
+        Key key = new Key(target);
+        while (true) {
+            if (strand(key).add(task)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Run a task in the calling worker, if the target's strand is idle.
+     *
+     * @return True iff the task was run
+     */
+    private boolean runHeld(Object target, Runnable task) {
+        Key key = new Key(target);
+        Strand strand;
+        do {
+            strand = strand(key);
+        } while (strand.isRetired());
+        if (!strand.hold()) {
+            return false;
+        }
+        depth.incrementAndGet();
+        try {
+            serve(key, task);
+        } finally {
+            strand.release();
+        }
+        return true;
+    }
+
+    private Strand strand(Key key) {
+        Strand strand = strands.get(key);
+        if (strand != null) {
+            return strand;
+        }
+        Strand newStrand = new Strand(key);
+        Strand existing = strands.putIfAbsent(key, newStrand);
+        return existing == null ? newStrand : existing;
+    }
+
+    private void serve(Key key, Runnable task) {
+        LinkedList<Key> keys = serving.get();
+        keys.addLast(key);
+        try {
+            task.run();
+        } finally {
+            keys.removeLast();
+            done();
+        }
+    }
+
+    private void done() {
+        if (depth.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private void schedule(Strand strand) {
+        try {
+            service.execute(strand);
+        } catch (RejectedExecutionException e) {
+            log.warn(this + " is closed, dropping " + strand.drain() + " invocations on " + strand);
+        }
+    }
+
+    /**
+     * Invocations on one target.  A strand is removed when it runs out of
+     * work, and a retired strand accepts no more invocations, so there is
+     * never more than one live strand per target.
+     */
+    private final class Strand implements Runnable {
+
+        private final Key key;
+
+        private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+        private boolean scheduled;
+
+        private boolean retired;
+
+        private Strand(Key key) {
+            this.key = key;
+        }
+
+        private boolean add(Runnable task) {
+            synchronized (tasks) {
+                if (retired) {
+                    return false;
+                }
+                tasks.add(task);
+                if (scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+            schedule(this);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < STRAND_TURN; i++) {
+                Runnable task;
+                synchronized (tasks) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        scheduled = false;
+                        retired = true;
+                        strands.remove(key, this);
+                        return;
+                    }
+                }
+                serve(key, task);
+            }
+            schedule(this);
+        }
+
+        private boolean isRetired() {
+            synchronized (tasks) {
+                return retired;
+            }
+        }
+
+        /**
+         * Take the strand for running a task outside it.  Only an idle strand
+         * can be held; tasks added meanwhile wait for {@link #release()}.
+         *
+         * @return True iff the strand was idle, and is now held
+         */
+        private boolean hold() {
+            synchronized (tasks) {
+                if (retired || scheduled || !tasks.isEmpty()) {
+                    return false;
+                }
+                scheduled = true;
+                return true;
+            }
+        }
+
+        private void release() {
+            synchronized (tasks) {
+                if (tasks.isEmpty()) {
+                    scheduled = false;
+                    retired = true;
+                    strands.remove(key, this);
+                    return;
+                }
+            }
+            schedule(this);
+        }
+
+        private int drain() {
+            synchronized (tasks) {
+                int count = tasks.size();
+                for (int i = 0; i < count; i++) {
+                    done();
+                }
+                tasks.clear();
+                scheduled = false;
+                retired = true;
+                strands.remove(key, this);
+                return count;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return ToString.of(this, key.target);
+        }
+    }
+
+    private static final class Key {
+
+        private final Object target;
+
+        private Key(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(target);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Key && ((Key) object).target == target;
+        }
+    }
+
+    private final class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            workers.add(thread);
+            return thread;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, name, "timeout", timeout, "workers", workers.size(),
+                           "strands", strands.size(), "depth", depth);
+    }
+}
@@ -22,10 +22,14 @@ import vanadis.core.lang.ToString;
 import vanadis.common.time.Time;
 import vanadis.common.time.TimeSpan;
 
+import java.util.List;
+
 class ScavengeRunnable<V> implements Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(ScavengeRunnable.class);
 
+    private static final int BATCH = 256;
+
     private final Sessions<?, V> sessions;
 
     private final TimeSpan scavengeAge;
@@ -55,22 +59,23 @@ class ScavengeRunnable<V> implements Runnable {
     private void runScavenge() {
         Time checkpoint = Time.mark();
         int startCount = scavengesTotal;
+        ScavengeResult<V> scavengeResult = null;
         while (true) {
-            ScavengeResult<V> scavengeResult;
+            List<ScavengeResult<V>> scavengeResults;
             try {
-                scavengeResult = scavenge();
-                if (scavengeResult != null) {
-                    scavengesTotal++;
-                }
+                scavengeResults = scavenge();
+                scavengesTotal += scavengeResults.size();
             } catch (Exception e) {
                 scavengeFailureListener.failed(e);
                 return;
             }
-            if (complete(scavengeResult)) {
+            if (scavengeResults.isEmpty()) {
                 logCompletedScavenge
                     (new ScavengeProgress<V>(scavengeResult, startCount, scavengesTotal));
                 return;
-            } else if (aMinutePassedSince(checkpoint)) {
+            }
+            scavengeResult = scavengeResults.get(scavengeResults.size() - 1);
+            if (aMinutePassedSince(checkpoint)) {
                 logStillScavenging
                     (new ScavengeProgress<V>(scavengeResult, startCount, scavengesTotal));
                 checkpoint = Time.mark();
@@ -78,15 +83,6 @@ class ScavengeRunnable<V> implements Runnable {
         }
     }
 
-    private boolean complete(ScavengeResult<V> result) {
-        if (result == null) {
-            return true;
-        }
-        V victim = result.getVictim();
-        TimeSpan idleTime = TimeSpan.since(result.getLastEditTime());
-        return victim == null || idleTime.isShorterThan(scavengeAge);
-    }
-
     private static boolean aMinutePassedSince(Time checkpoint) {
         return TimeSpan.since(checkpoint).isLongerThan(TimeSpan.MINUTE);
     }
@@ -104,9 +100,9 @@ class ScavengeRunnable<V> implements Runnable {
         return "next scavenge: " + Time.mark().after(scavengeInterval);
     }
 
-    private ScavengeResult<V> scavenge() {
+    private List<ScavengeResult<V>> scavenge() {
         try {
-            return sessions.scavenge();
+            return sessions.scavenge(scavengeAge, BATCH);
         } catch (Throwable e) {
             throw new ScavengeException(this + " encountered exception when scavenging", e);
         }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.concurrent;
+
+import vanadis.core.lang.ToString;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts acquires that had to wait for a session held by another thread.
+ * Wait times are kept in a histogram of power-of-two millisecond buckets:
+ * bucket 0 counts waits under 1 ms, bucket <em>n</em> waits from
+ * 2<sup>n-1</sup> up to 2<sup>n</sup> ms, and the last bucket counts
+ * everything longer.
+ */
+public final class SessionContention {
+
+    static final int BUCKETS = 18;
+
+    private final AtomicLongArray waitTimes = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong contended = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    void waited(long nanos, boolean acquired) {
+        contended.incrementAndGet();
+        if (!acquired) {
+            timeouts.incrementAndGet();
+        }
+        totalWaitNanos.addAndGet(nanos);
+        waitTimes.incrementAndGet(bucket(nanos / 1000000L));
+    }
+
+    static int bucket(long ms) {
+        if (ms < 1) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(ms);
+        return bucket < BUCKETS ? bucket : BUCKETS - 1;
+    }
+
+    /**
+     * @return Number of acquires that waited, per bucket
+     */
+    public long[] getWaitTimeHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = waitTimes.get(i);
+        }
+        return histogram;
+    }
+
+    public long getContendedAcquires() {
+        return contended.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getTotalWaitMs() {
+        return totalWaitNanos.get() / 1000000L;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "contended", contended, "timeouts", timeouts, "waitMs", getTotalWaitMs());
+    }
+}
@@ -18,6 +18,8 @@ package vanadis.concurrent;
 
 import vanadis.common.time.TimeSpan;
 
+import java.util.List;
+
 public interface Sessions<K,V> {
 
     V acquire(K key, TimeSpan timeout);
@@ -30,5 +32,14 @@ public interface Sessions<K,V> {
 
     ScavengeResult<V> scavenge();
 
+    /**
+     * Scavenge sessions that have been idle for at least the given time.
+     *
+     * @param idleTime Minimum idle time
+     * @param max Max number of sessions to scavenge
+     * @return Scavenged sessions, fewer than max if there were no more idle sessions
+     */
+    List<ScavengeResult<V>> scavenge(TimeSpan idleTime, int max);
+
     int close();
 }
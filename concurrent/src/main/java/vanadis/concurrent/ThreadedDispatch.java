@@ -66,6 +66,11 @@ public class ThreadedDispatch implements OperationQueuer {
         return Thread.currentThread() == thread;
     }
 
+    @Override
+    public boolean inDispatchThread(Object target) {
+        return inDispatchThread();
+    }
+
     @Override
     public void close() {
         if (inDispatchThread()) {
@@ -85,7 +90,7 @@ public class ThreadedDispatch implements OperationQueuer {
                 (this, timeout,
                  Not.nil(type, "main type"),
                  Not.nil(instance, "instance"),
-                 reentrant ? thread : null, true);
+                 reentrant, true);
         return Proxies.genericProxy(type.getClassLoader(), type, handler, moreClasses);
     }
 
@@ -96,7 +101,7 @@ public class ThreadedDispatch implements OperationQueuer {
                  new ConcurrentInvocationHandler<T>(this, timeout,
                                                     Not.nil(type, "main type"),
                                                     Not.nil(instance, "instance"),
-                                                    thread, false),
+                                                    true, false),
                  moreClasses);
     }
 
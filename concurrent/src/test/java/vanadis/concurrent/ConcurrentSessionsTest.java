@@ -18,7 +18,13 @@ package vanadis.concurrent;
 import junit.framework.Assert;
 import org.junit.Test;
 import vanadis.common.time.TimeSpan;
+import vanadis.core.collections.Generic;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -79,4 +85,171 @@ public class ConcurrentSessionsTest {
         Assert.assertEquals(2, result.getApproximateRemaining());
     }
 
+    @Test
+    public void scavengeLeastRecentlyEdited() {
+        ConcurrentSessions<Integer, VeryDummySession> sessions = new ConcurrentSessions<Integer, VeryDummySession>
+            (new VeryDummySessionFactory(),
+             4);
+        for (int i = 1; i <= 3; i++) {
+            sessions.acquire(i, TimeSpan.HUNDRED_MS);
+            sessions.release();
+        }
+        sessions.acquire(1, TimeSpan.HUNDRED_MS);
+        sessions.release();
+
+        Assert.assertEquals(2, sessions.scavenge().getVictim().getKey());
+        Assert.assertEquals(3, sessions.scavenge().getVictim().getKey());
+        Assert.assertEquals(1, sessions.scavenge().getVictim().getKey());
+        Assert.assertNull(sessions.scavenge());
+    }
+
+    @Test
+    public void scavengeIdleBatch()
+            throws InterruptedException {
+        final ConcurrentSessions<Integer, VeryDummySession> sessions = new ConcurrentSessions<Integer, VeryDummySession>
+            (new VeryDummySessionFactory(),
+             4);
+        for (int i = 0; i < 100; i++) {
+            sessions.acquire(i, TimeSpan.HUNDRED_MS);
+            sessions.release();
+        }
+        Thread.sleep(50);
+        sessions.acquire(100, TimeSpan.HUNDRED_MS);
+        sessions.release();
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sessions.acquire(7, TimeSpan.HUNDRED_MS);
+                held.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException ignore) {
+                }
+                sessions.release();
+            }
+        });
+        holder.start();
+        held.await();
+
+        int first = sessions.scavenge(TimeSpan.millis(40), 60).size();
+        Assert.assertTrue(first <= 60);
+        List<ScavengeResult<VeryDummySession>> rest = sessions.scavenge(TimeSpan.millis(40), 100);
+        Assert.assertEquals(99, first + rest.size());
+        for (ScavengeResult<VeryDummySession> result : rest) {
+            Assert.assertTrue(result.getVictim().getKey() < 100);
+            Assert.assertTrue(result.getVictim().getKey() != 7);
+        }
+        Assert.assertEquals(2, sessions.getSessionCount());
+
+        done.countDown();
+        holder.join();
+        Assert.assertTrue(sessions.scavenge(TimeSpan.millis(40), 100).isEmpty());
+        Assert.assertEquals(2, sessions.getIndexedCount());
+    }
+
+    @Test
+    public void scavengeRoundPastHeldSessions()
+            throws InterruptedException {
+        final ConcurrentSessions<Integer, VeryDummySession> sessions = new ConcurrentSessions<Integer, VeryDummySession>
+            (new VeryDummySessionFactory(),
+             1);
+        for (int i = 0; i < 300; i++) {
+            sessions.acquire(i, TimeSpan.HUNDRED_MS);
+            sessions.release();
+        }
+        Thread.sleep(50);
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sessions.acquire(7, TimeSpan.HUNDRED_MS);
+                held.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException ignore) {
+                }
+                sessions.release();
+            }
+        });
+        holder.start();
+        held.await();
+        try {
+            new ScavengeRunnable<VeryDummySession>(sessions, TimeSpan.millis(40), TimeSpan.MINUTE,
+                                                   new ScavengeFailureListener<VeryDummySession>() {
+                                                       @Override
+                                                       public void failed(Exception e) {
+                                                           Assert.fail("Scavenge failed: " + e);
+                                                       }
+                                                   }).run();
+            Assert.assertEquals(1, sessions.getSessionCount());
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void handOffInOrder()
+            throws InterruptedException {
+        final ConcurrentSessions<Integer, VeryDummySession> sessions = new ConcurrentSessions<Integer, VeryDummySession>
+            (new VeryDummySessionFactory(), 1);
+        sessions.acquire(1, TimeSpan.HUNDRED_MS);
+        final List<Integer> order = Generic.synchList();
+        final CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            final int waiter = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    VeryDummySession session = sessions.acquire(1, TimeSpan.seconds(10));
+                    if (session != null) {
+                        order.add(waiter);
+                        sessions.release();
+                    }
+                    done.countDown();
+                }
+            }).start();
+            while (!Integer.valueOf(i + 1).equals(sessions.getQueueDepths().get(1))) {
+                Thread.yield();
+            }
+        }
+        long released = System.nanoTime();
+        sessions.release();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - released) < 100);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), order);
+        Assert.assertEquals(Collections.emptyMap(), sessions.getQueueDepths());
+        Assert.assertEquals(3, sessions.getContention().getContendedAcquires());
+        Assert.assertEquals(0, sessions.getContention().getTimeouts());
+    }
+
+    @Test
+    public void timeout() {
+        final ConcurrentSessions<Integer, VeryDummySession> sessions = new ConcurrentSessions<Integer, VeryDummySession>
+            (new VeryDummySessionFactory(), 1);
+        sessions.acquire(1, TimeSpan.HUNDRED_MS);
+        final AtomicBoolean acquired = new AtomicBoolean(true);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acquired.set(sessions.acquire(1, TimeSpan.millis(20)) != null);
+            }
+        });
+        thread.start();
+        try {
+            thread.join(10000);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        Assert.assertFalse(acquired.get());
+        Assert.assertEquals(1, sessions.getContention().getTimeouts());
+        long[] histogram = sessions.getContention().getWaitTimeHistogram();
+        Assert.assertEquals(1, histogram[SessionContention.bucket(20)] + histogram[SessionContention.bucket(20) + 1]);
+        sessions.release();
+        Assert.assertNotNull(sessions.acquire(1, TimeSpan.INSTANT));
+    }
+
 }
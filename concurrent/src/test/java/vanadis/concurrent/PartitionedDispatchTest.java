@@ -0,0 +1,237 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.concurrent;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.collections.Generic;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PartitionedDispatchTest extends Assert {
+
+    public interface Recorder {
+
+        void record(int value);
+
+        List<Integer> recorded();
+
+        int recordedInside(int value);
+    }
+
+    private static class RecorderImpl implements Recorder {
+
+        private final List<Integer> values = Generic.synchList();
+
+        private final Set<Thread> threads = Generic.synchSet();
+
+        private final CountDownLatch gate;
+
+        private Recorder self;
+
+        private RecorderImpl(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void record(int value) {
+            if (gate != null) {
+                try {
+                    assertTrue(gate.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            threads.add(Thread.currentThread());
+            values.add(value);
+        }
+
+        @Override
+        public List<Integer> recorded() {
+            return Generic.list(values);
+        }
+
+        @Override
+        public int recordedInside(int value) {
+            self.record(value);
+            return self.recorded().size();
+        }
+    }
+
+    public interface Pinger {
+
+        void ping(int hops);
+
+        int pingBack(int hops);
+    }
+
+    private static class PingerImpl implements Pinger {
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final AtomicInteger overlaps = new AtomicInteger();
+
+        private final AtomicInteger pings = new AtomicInteger();
+
+        private Pinger other;
+
+        private Thread owner;
+
+        @Override
+        public void ping(int hops) {
+            enter();
+            try {
+                if (hops > 0) {
+                    other.ping(hops - 1);
+                }
+                Thread.yield();
+            } finally {
+                exit();
+            }
+        }
+
+        @Override
+        public int pingBack(int hops) {
+            enter();
+            try {
+                return hops > 0 ? other.pingBack(hops - 1) + 1 : 0;
+            } finally {
+                exit();
+            }
+        }
+
+        private synchronized void enter() {
+            pings.incrementAndGet();
+            if (active.getAndIncrement() > 0 && owner != Thread.currentThread()) {
+                overlaps.incrementAndGet();
+            }
+            owner = Thread.currentThread();
+        }
+
+        private synchronized void exit() {
+            if (active.decrementAndGet() == 0) {
+                owner = null;
+            }
+        }
+    }
+
+    private PartitionedDispatch dispatch;
+
+    @Before
+    public void setUp() {
+        dispatch = new PartitionedDispatch("test", 4, TimeSpan.seconds(10));
+    }
+
+    @After
+    public void tearDown() {
+        dispatch.close();
+    }
+
+    @Test
+    public void orderPerTarget() {
+        List<RecorderImpl> targets = Generic.list();
+        List<Recorder> proxies = Generic.list();
+        for (int i = 0; i < 8; i++) {
+            RecorderImpl target = new RecorderImpl(null);
+            targets.add(target);
+            proxies.add(dispatch.createAsynch(target, Recorder.class));
+        }
+        for (int value = 0; value < 500; value++) {
+            for (Recorder proxy : proxies) {
+                proxy.record(value);
+            }
+        }
+        assertTrue(dispatch.synchUp());
+        for (RecorderImpl target : targets) {
+            List<Integer> recorded = target.recorded();
+            assertEquals(500, recorded.size());
+            for (int value = 0; value < 500; value++) {
+                assertEquals(value, recorded.get(value).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void targetsInParallel() {
+        CountDownLatch gate = new CountDownLatch(1);
+        RecorderImpl blocked = new RecorderImpl(gate);
+        RecorderImpl free = new RecorderImpl(null);
+        dispatch.createAsynch(blocked, Recorder.class).record(1);
+        Recorder freeSynch = dispatch.createSynch(free, Recorder.class);
+        freeSynch.record(2);
+        assertEquals(Arrays.asList(2), freeSynch.recorded());
+        assertTrue(blocked.recorded().isEmpty());
+        gate.countDown();
+        assertTrue(dispatch.synchUp());
+        assertEquals(Arrays.asList(1), blocked.recorded());
+    }
+
+    @Test
+    public void reentrant() {
+        RecorderImpl target = new RecorderImpl(null);
+        Recorder synch = dispatch.createSynch(target, Recorder.class);
+        target.self = synch;
+        assertEquals(1, synch.recordedInside(1));
+        assertFalse(dispatch.inDispatchThread());
+        assertEquals(1, target.threads.size());
+        assertFalse(target.threads.contains(Thread.currentThread()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void asynchNeedsVoid() {
+        dispatch.createAsynch(new RecorderImpl(null), Recorder.class).recorded();
+    }
+
+    @Test
+    public void callsBetweenTargetsKeepToStrands() {
+        PingerImpl a = new PingerImpl();
+        PingerImpl b = new PingerImpl();
+        Pinger aProxy = dispatch.createAsynch(a, Pinger.class);
+        Pinger bProxy = dispatch.createAsynch(b, Pinger.class);
+        a.other = bProxy;
+        b.other = aProxy;
+        for (int i = 0; i < 200; i++) {
+            aProxy.ping(10);
+            bProxy.ping(10);
+        }
+        assertTrue(dispatch.synchUp());
+        assertEquals(2 * 200 * 11, a.pings.get() + b.pings.get());
+        assertEquals(0, a.overlaps.get());
+        assertEquals(0, b.overlaps.get());
+    }
+
+    @Test
+    public void synchCallsBetweenTargetsOnOneWorker() {
+        dispatch.close();
+        dispatch = new PartitionedDispatch("test", 1, TimeSpan.seconds(10));
+        PingerImpl a = new PingerImpl();
+        PingerImpl b = new PingerImpl();
+        Pinger aProxy = dispatch.createSynch(a, Pinger.class);
+        Pinger bProxy = dispatch.createSynch(b, Pinger.class);
+        a.other = bProxy;
+        b.other = aProxy;
+        assertEquals(10, aProxy.pingBack(10));
+        assertEquals(0, a.overlaps.get() + b.overlaps.get());
+    }
+}
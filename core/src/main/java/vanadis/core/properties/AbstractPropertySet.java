@@ -233,13 +233,21 @@ public abstract class AbstractPropertySet implements PropertySet, Serializable {
 
     @Override
     public final <T> T get(Class<T> clazz, String key, PropertySet... variables) {
+        return find(clazz, key, variables);
+    }
+
+    protected <T> T find(Class<T> clazz, String key, PropertySet[] variables) {
         Object local = retrieve(key);
         return local == null ? null : process(clazz, local, variables);
     }
 
-    private Object retrieve(String key) {
-        for (PropertySet set : lineage()) {
-            Object local = ((AbstractPropertySet) set).getLocal(key);
+    /**
+     * @param key Key
+     * @return The stored value closest in the lineage, or null
+     */
+    protected Object retrieve(String key) {
+        for (AbstractPropertySet set = this; set != null; set = (AbstractPropertySet) set.parent) {
+            Object local = set.getLocal(key);
             if (local != null) {
                 return local;
             }
@@ -247,11 +255,19 @@ public abstract class AbstractPropertySet implements PropertySet, Serializable {
         return null;
     }
 
+    /**
+     * @return True iff all properties stored locally are listed by {@link #keySet()},
+     *         so they can be copied into a {@link PropertySets#snapshot(PropertySet) snapshot}
+     */
+    protected boolean isEnumerable() {
+        return false;
+    }
+
     private ParentIterable<AbstractPropertySet> lineage() {
         return ParentIterable.create(AbstractPropertySet.class, this);
     }
 
-    private static <T> T process(Class<T> type, Object object, PropertySet... variables) {
+    static <T> T process(Class<T> type, Object object, PropertySet... variables) {
         if (object == NULL) {
             return null;
         }
@@ -272,7 +288,7 @@ public abstract class AbstractPropertySet implements PropertySet, Serializable {
                 ("Failed to coerce " + object + " of " + object.getClass() + " to " + type);
     }
 
-    private static boolean plainValue(String sourceString) {
+    static boolean plainValue(String sourceString) {
         return !sourceString.contains("${");
     }
 
@@ -127,6 +127,11 @@ final class MapPropertySet extends AbstractPropertySet {
         return map.keySet();
     }
 
+    @Override
+    protected boolean isEnumerable() {
+        return true;
+    }
+
     @Override
     protected Object getLocal(String key) {
         return map.get(key);
@@ -88,6 +88,26 @@ public final class PropertySets {
         return create(sp, false);
     }
 
+    /**
+     * <P>Create an immutable snapshot of the property set, for fast repeated lookups.
+     * The properties of the set and its parents are copied into a single table,
+     * and values coerced from strings are remembered per type.</P>
+     *
+     * <P>Parents that cannot list their properties, such as those backed by
+     * a framework, are kept as the parent of the snapshot.</P>
+     *
+     * @param propertySet Property set
+     * @return Snapshot
+     */
+    public static PropertySet snapshot(PropertySet propertySet) {
+        if (propertySet instanceof SnapshotPropertySet) {
+            return propertySet;
+        }
+        return propertySet instanceof AbstractPropertySet
+                ? SnapshotPropertySet.create((AbstractPropertySet) propertySet)
+                : propertySet.copy(false);
+    }
+
     private static PropertySet createFromStringMap(Map<String, ?> stringObjectMap, boolean writable) {
         return new MapPropertySet(stringObjectMap, null, writable, false, true);
     }
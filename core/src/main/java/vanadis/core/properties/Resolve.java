@@ -16,12 +16,23 @@
 
 package vanadis.core.properties;
 
+import vanadis.core.collections.Generic;
 import vanadis.core.lang.VarArgs;
-import vanadis.core.properties.PropertySet;
-import vanadis.core.properties.PropertySets;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * <P>Resolves <code>${variable}</code> references in strings.  Variables may be
+ * nested, as in <code>${db.${env}.url}</code>, and may have a default value,
+ * as in <code>${port:8080}</code>.  Unresolved variables without a default are
+ * left as they are.</P>
+ *
+ * <P>Strings are compiled to templates once, and the most recently used
+ * templates are kept.  Looking up a kept template takes no locks.</P>
+ */
 public final class Resolve {
 
     public static String resolve(String str) {
@@ -41,43 +52,224 @@ public final class Resolve {
 
     private static final String R_DEREF = "}";
 
-    private static final int RIGHT_LEN = R_DEREF.length();
+    private static final char DEFAULT_SEPARATOR = ':';
 
     private static final int LEFT_LEN = L_DEREF.length();
 
-    @SuppressWarnings({"AssignmentToForLoopParameter"})
+    private static final int CACHE_SIZE = 1024;
+
+    private static final int MAX_KEPT_BUILDER = 8192;
+
+    private static final TemplateCache templates = new TemplateCache(CACHE_SIZE);
+
+    private static final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>();
+
     private static String process(String str, PropertySet... vars) {
-        StringBuilder sb = new StringBuilder();
-        for (int p = 0; p < str.length();) {
+        return template(str).render(vars);
+    }
+
+    private static Template template(String str) {
+        Template template = templates.get(str);
+        if (template == null) {
+            template = compile(str);
+            templates.put(str, template);
+        }
+        return template;
+    }
+
+    static Template compile(String str) {
+        List<Segment> segments = Generic.list();
+        int p = 0;
+        while (p < str.length()) {
             int left = str.indexOf(L_DEREF, p);
             if (left < 0) {
-                sb.append(str.substring(p));
+                segments.add(new Literal(str.substring(p)));
                 p = str.length();
             } else {
-                sb.append(str.substring(p, left));
-                int right = str.indexOf(R_DEREF, left);
+                if (left > p) {
+                    segments.add(new Literal(str.substring(p, left)));
+                }
+                int right = closing(str, left + LEFT_LEN);
                 if (right < 0) {
                     throw new IllegalArgumentException
                             ("Unclosed variable:" + str.substring(left));
-                } else {
-                    p = right + RIGHT_LEN;
-                    String variable = str.substring(left + LEFT_LEN, right);
-                    appendByProperties(sb, variable, vars);
+                }
+                segments.add(variable(str.substring(left + LEFT_LEN, right)));
+                p = right + R_DEREF.length();
+            }
+        }
+        return new Template(segments.toArray(new Segment[segments.size()]));
+    }
+
+    private static int closing(String str, int start) {
+        int depth = 0;
+        for (int i = start; i < str.length(); i++) {
+            if (str.startsWith(L_DEREF, i)) {
+                depth++;
+                i += LEFT_LEN - 1;
+            } else if (str.charAt(i) == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private static Segment variable(String body) {
+        int separator = separator(body);
+        String name = separator < 0 ? body : body.substring(0, separator);
+        Template nameTemplate = name.contains(L_DEREF) ? compile(name) : null;
+        Template defaultTemplate = separator < 0 ? null : compile(body.substring(separator + 1));
+        return new Variable(name, nameTemplate, defaultTemplate);
+    }
+
+    private static int separator(String body) {
+        int depth = 0;
+        for (int i = 0; i < body.length(); i++) {
+            if (body.startsWith(L_DEREF, i)) {
+                depth++;
+                i += LEFT_LEN - 1;
+            } else if (body.charAt(i) == '}') {
+                depth--;
+            } else if (depth == 0 && body.charAt(i) == DEFAULT_SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Templates kept in two generations of concurrent maps.  A template found
+     * in the old generation is promoted to the young one.  When the young
+     * generation is full, it replaces the old one, so templates not used for a
+     * generation are dropped.
+     */
+    static final class TemplateCache {
+
+        private final int generationSize;
+
+        private final AtomicInteger youngSize = new AtomicInteger();
+
+        private volatile ConcurrentMap<String, Template> young = Generic.concurrentHashMap();
+
+        private volatile ConcurrentMap<String, Template> old = Generic.concurrentHashMap();
+
+        TemplateCache(int size) {
+            this.generationSize = Math.max(1, size / 2);
+        }
+
+        Template get(String str) {
+            Template template = young.get(str);
+            if (template == null) {
+                template = old.get(str);
+                if (template != null) {
+                    put(str, template);
+                }
+            }
+            return template;
+        }
+
+        void put(String str, Template template) {
+            ConcurrentMap<String, Template> generation = young;
+            if (generation.putIfAbsent(str, template) == null && youngSize.incrementAndGet() > generationSize) {
+                age(generation);
+            }
+        }
+
+        private synchronized void age(ConcurrentMap<String, Template> full) {
+            if (young == full) {
+                old = full;
+                young = Generic.concurrentHashMap();
+                youngSize.set(0);
+            }
+        }
+    }
+
+    /**
+     * A compiled string, rendered into a per-thread builder.
+     */
+    static final class Template {
+
+        private final Segment[] segments;
+
+        private Template(Segment[] segments) {
+            this.segments = segments;
+        }
+
+        String render(PropertySet[] vars) {
+            StringBuilder sb = builders.get();
+            if (sb == null) {
+                sb = new StringBuilder();
+            } else {
+                builders.set(null);
+                sb.setLength(0);
+            }
+            try {
+                renderTo(sb, vars);
+                return sb.toString();
+            } finally {
+                if (sb.capacity() <= MAX_KEPT_BUILDER) {
+                    builders.set(sb);
                 }
             }
         }
-        return sb.toString();
+
+        private void renderTo(StringBuilder sb, PropertySet[] vars) {
+            for (Segment segment : segments) {
+                segment.render(sb, vars);
+            }
+        }
     }
 
-    private static void appendByProperties(StringBuilder sb,
-                                           String variable,
-                                           PropertySet[] propertySets) {
-        for (PropertySet propertySet : propertySets) {
-            if (propertySet.has(String.class, variable)) {
-                sb.append(propertySet.getString(variable));
-                return;
+    private abstract static class Segment {
+
+        abstract void render(StringBuilder sb, PropertySet[] vars);
+    }
+
+    private static final class Literal extends Segment {
+
+        private final String string;
+
+        private Literal(String string) {
+            this.string = string;
+        }
+
+        @Override
+        void render(StringBuilder sb, PropertySet[] vars) {
+            sb.append(string);
+        }
+    }
+
+    private static final class Variable extends Segment {
+
+        private final String name;
+
+        private final Template nameTemplate;
+
+        private final Template defaultTemplate;
+
+        private Variable(String name, Template nameTemplate, Template defaultTemplate) {
+            this.name = name;
+            this.nameTemplate = nameTemplate;
+            this.defaultTemplate = defaultTemplate;
+        }
+
+        @Override
+        void render(StringBuilder sb, PropertySet[] vars) {
+            String variable = nameTemplate == null ? name : nameTemplate.render(vars);
+            for (PropertySet propertySet : vars) {
+                if (propertySet.has(String.class, variable)) {
+                    sb.append(propertySet.getString(variable));
+                    return;
+                }
+            }
+            if (defaultTemplate != null) {
+                defaultTemplate.renderTo(sb, vars);
+            } else {
+                sb.append(L_DEREF).append(variable).append(R_DEREF);
             }
         }
-        sb.append(L_DEREF).append(variable).append(R_DEREF);
     }
 }
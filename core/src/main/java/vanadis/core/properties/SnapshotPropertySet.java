@@ -0,0 +1,236 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.core.properties;
+
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.ToString;
+import vanadis.core.lang.VarArgs;
+
+import java.util.*;
+
+/**
+ * An immutable, flattened copy of a property set and its parents.  Properties
+ * live in a single open-addressing table, values without <code>${...}</code>
+ * variables are known up front, and the last coercion of each value is kept
+ * if it is immutable, so callers never share a mutable result.
+ */
+final class SnapshotPropertySet extends AbstractPropertySet {
+
+    private static final long serialVersionUID = 2319574471520838862L;
+
+    private static final PropertySet[] NO_VARIABLES = new PropertySet[]{};
+
+    private final Map<String, Object> map;
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    private final boolean[] templates;
+
+    /**
+     * Last coercion per slot, not kept across serialization.
+     */
+    private final transient Coerced[] coerced;
+
+    private final int mask;
+
+    static SnapshotPropertySet create(AbstractPropertySet propertySet) {
+        Map<String, Object> map = Generic.linkedHashMap();
+        AbstractPropertySet set = propertySet;
+        while (set != null && set.isEnumerable()) {
+            for (String key : set.keySet()) {
+                if (!map.containsKey(key)) {
+                    Object value = set.getLocal(key);
+                    if (value != null) {
+                        map.put(key, value);
+                    }
+                }
+            }
+            set = (AbstractPropertySet) set.getParent();
+        }
+        return new SnapshotPropertySet(map, set);
+    }
+
+    private SnapshotPropertySet(Map<String, Object> map, PropertySet parent) {
+        super(parent, false);
+        this.map = Collections.unmodifiableMap(map);
+        int capacity = Integer.highestOneBit(Math.max(4, map.size() * 2 - 1)) << 1;
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.templates = new boolean[capacity];
+        this.coerced = new Coerced[capacity];
+        this.mask = capacity - 1;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            int slot = hash(entry.getKey()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = entry.getKey();
+            values[slot] = entry.getValue();
+            templates[slot] = entry.getValue() instanceof String && !plainValue((String) entry.getValue());
+        }
+    }
+
+    @Override
+    protected <T> T find(Class<T> clazz, String key, PropertySet[] variables) {
+        int slot = slot(key);
+        if (slot < 0) {
+            return hasParent() ? getParent().get(clazz, key, variables) : null;
+        }
+        if (templates[slot] && VarArgs.present(variables)) {
+            return process(clazz, values[slot], variables);
+        }
+        if (coerced == null) {
+            return process(clazz, values[slot], NO_VARIABLES);
+        }
+        Coerced last = coerced[slot];
+        if (last != null && last.type == clazz) {
+            return clazz.cast(last.value);
+        }
+        T value = process(clazz, values[slot], NO_VARIABLES);
+        if (immutable(value)) {
+            coerced[slot] = new Coerced(clazz, value);
+        }
+        return value;
+    }
+
+    private static boolean immutable(Object value) {
+        return value instanceof String || value instanceof Enum<?> || value instanceof Class<?> ||
+                value instanceof Boolean || value instanceof Character ||
+                value instanceof Integer || value instanceof Long || value instanceof Short ||
+                value instanceof Byte || value instanceof Double || value instanceof Float;
+    }
+
+    @Override
+    protected Object retrieve(String key) {
+        int slot = slot(key);
+        return slot >= 0 ? values[slot]
+                : hasParent() ? ((AbstractPropertySet) getParent()).retrieve(key)
+                : null;
+    }
+
+    @Override
+    protected Object getLocal(String key) {
+        int slot = slot(key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    private int slot(String key) {
+        for (int slot = hash(key) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    protected boolean isEnumerable() {
+        return true;
+    }
+
+    @Override
+    protected Set<String> keySet() {
+        return map.keySet();
+    }
+
+    @Override
+    protected AbstractPropertySet setLocal(String key, Object value) {
+        throw new IllegalStateException(this + " is immutable, cannot set " + key);
+    }
+
+    @Override
+    protected PropertySet makeCopy(PropertySet parent, boolean writable) {
+        return !writable && parent == getParent() ? this
+                : new MapPropertySet(map, parent, writable, true, true);
+    }
+
+    @Override
+    protected AbstractPropertySet doOrphan() {
+        return new SnapshotPropertySet(map, null);
+    }
+
+    @Override
+    public PropertySet expand(PropertySet... variables) {
+        PropertySet propertySet = PropertySets.create();
+        for (String property : this) {
+            propertySet.set(property, get(property, variables));
+        }
+        return propertySet;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public Collection<String> getPropertyNames() {
+        return map.keySet();
+    }
+
+    @Override
+    public Properties toProperties() {
+        return view().toProperties();
+    }
+
+    @Override
+    public Map<String, Object> toMap(boolean collapse) {
+        return view().toMap(collapse);
+    }
+
+    @Override
+    public Dictionary<String, Object> toDictionary(Object nullValue, boolean collapse) {
+        return view().toDictionary(nullValue, collapse);
+    }
+
+    @Override
+    public Hashtable<String, Object> toHashtable(Object nullValue, boolean collapse) {
+        return view().toHashtable(nullValue, collapse);
+    }
+
+    private PropertySet view() {
+        return new MapPropertySet(map, getParent(), false, false, true);
+    }
+
+    private static final class Coerced {
+
+        private final Class<?> type;
+
+        private final Object value;
+
+        private Coerced(Class<?> type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "properties", map.size(), "parent", getParent());
+    }
+}
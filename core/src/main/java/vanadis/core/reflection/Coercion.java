@@ -0,0 +1,54 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.core.reflection;
+
+import vanadis.core.lang.ToString;
+
+/**
+ * Coercion of values to one type, with the {@link Retyper.Coercer coercer} for the
+ * type resolved once.  If there is no coercer for the type yet, values are
+ * coerced through {@link Retyper} on each call, so a coercer mapped later is
+ * still found.
+ */
+final class Coercion {
+
+    private final Class<?> type;
+
+    private final boolean enumType;
+
+    private final Retyper.Coercer<?> coercer;
+
+    Coercion(Class<?> type) {
+        this.type = type;
+        this.enumType = Enum.class.isAssignableFrom(type);
+        this.coercer = enumType ? null : Retyper.coercer(type.isArray() ? type.getComponentType() : type);
+    }
+
+    Object coerce(Object value) {
+        if (enumType) {
+            return Enums.get(type, value);
+        }
+        if (value == null || coercer == null) {
+            return Retyper.coerce(type, value);
+        }
+        return type.isInstance(value) ? value : Retyper.coerce(type, value, coercer);
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, type, "coercer", coercer);
+    }
+}
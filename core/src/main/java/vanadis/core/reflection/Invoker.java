@@ -40,7 +40,7 @@ public final class Invoker {
         return invoke(invoker, target, method, coerced(method, replaced));
     }
 
-    private static String resolve(PropertySet propertySet, Object value) {
+    static String resolve(PropertySet propertySet, Object value) {
         String string = String.valueOf(value);
         return string == null ? null : propertySet.resolve(string);
     }
@@ -62,7 +62,7 @@ public final class Invoker {
         return coerced;
     }
 
-    private static Object coerced(Class<?> type, Object value) {
+    static Object coerced(Class<?> type, Object value) {
         return Enum.class.isAssignableFrom(type)
                 ? Enums.get(type, value)
                 : Retyper.coerce(type, value);
@@ -147,7 +147,10 @@ public final class Invoker {
     }
 
     private static boolean isType(Field field, Object value) {
-        Class<?> type = field.getType();
+        return isType(field.getType(), value);
+    }
+
+    static boolean isType(Class<?> type, Object value) {
         return type.isInstance(value) || type.isPrimitive() && isPrimitiveType(type, value);
     }
 
@@ -204,6 +207,13 @@ public final class Invoker {
                     (invoker + " passed " + args.length + " arguments " + Arrays.toString(args) +
                             " to " + method);
         }
+        return invokeChecked(invoker, target, method, args);
+    }
+
+    /**
+     * Invoke a method, with the argument count already checked.
+     */
+    static Object invokeChecked(Object invoker, Object target, Method method, Object[] args) {
         try {
             return method.invoke(target, args);
         } catch (IllegalArgumentException e) {
@@ -231,7 +241,7 @@ public final class Invoker {
         return invoker + " failed to invoke " + invocation + " on " + target;
     }
 
-    private static String assignFailureMessage(Object assigner, Object target,
+    static String assignFailureMessage(Object assigner, Object target,
                                                Field field, Object arg) {
         return assigner + " failed to assign " + arg + " to " + field + " on " + target;
     }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.core.reflection;
+
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+import vanadis.core.properties.PropertySet;
+
+import java.lang.reflect.Field;
+
+/**
+ * A field prepared for repeated access, with access checks turned off and the
+ * coercer for its type looked up once.
+ * Assignment follows {@link Invoker#assign(Object, Object, java.lang.reflect.Field, Object)}:
+ * values of the wrong type are ignored.
+ */
+public final class PreparedField {
+
+    private final Field field;
+
+    private final Class<?> type;
+
+    private final Coercion coercion;
+
+    public PreparedField(Field field) {
+        this.field = PreparedMethod.accessible(Not.nil(field, "field"));
+        this.type = field.getType();
+        this.coercion = new Coercion(type);
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public void assign(Object assigner, Object target, Object value) {
+        if (Invoker.isType(type, value)) {
+            try {
+                field.set(target, value);
+            } catch (IllegalAccessException e) {
+                throw new InvokeException(Invoker.assignFailureMessage(assigner, target, field, value), e);
+            }
+        }
+    }
+
+    public void assignCoerced(Object assigner, Object target, Object value) {
+        assign(assigner, target, coercion.coerce(value));
+    }
+
+    public void assignReplacedCoerced(Object assigner, Object target, PropertySet variables, Object value) {
+        assign(assigner, target, coercion.coerce(Invoker.resolve(variables, value)));
+    }
+
+    public Object get(Object getter, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new InvokeException(getter + " failed to get " + field + " from " + target, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, field);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.core.reflection;
+
+import vanadis.core.lang.AccessibleHelper;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+import vanadis.core.properties.PropertySet;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A method prepared for repeated invocation.  Access checks are turned off,
+ * and parameter types and their coercers are looked up once, instead of on
+ * every call as with {@link Invoker}.  Failures are reported the same way.
+ */
+public final class PreparedMethod {
+
+    private static final Logger log = Logger.getLogger(PreparedMethod.class.getName());
+
+    private final Method method;
+
+    private final Class<?>[] parameterTypes;
+
+    private final Coercion[] coercions;
+
+    public PreparedMethod(Method method) {
+        this.method = accessible(Not.nil(method, "method"));
+        this.parameterTypes = method.getParameterTypes();
+        this.coercions = new Coercion[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            coercions[i] = new Coercion(parameterTypes[i]);
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public int getArity() {
+        return parameterTypes.length;
+    }
+
+    public Object invoke(Object invoker, Object target, Object... args) {
+        if (args.length != parameterTypes.length) {
+            throw new InvokeException
+                    (invoker + " passed " + args.length + " arguments " + Arrays.toString(args) +
+                            " to " + method);
+        }
+        return Invoker.invokeChecked(invoker, target, method, args);
+    }
+
+    public Object invokeCoerced(Object invoker, Object target, Object... args) {
+        return invoke(invoker, target, coerced(args));
+    }
+
+    public Object invokeReplacedCoerced(Object invoker, Object target, PropertySet propertySet, Object... args) {
+        Object[] replaced = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            replaced[i] = Invoker.resolve(propertySet, args[i]);
+        }
+        return invoke(invoker, target, coerced(replaced));
+    }
+
+    private Object[] coerced(Object[] args) {
+        if (args.length != parameterTypes.length) {
+            throw new InvokeException
+                    (method + " does not accept " + args.length + " parameters: " + Arrays.toString(args));
+        }
+        Object[] coerced = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            coerced[i] = coercions[i].coerce(args[i]);
+        }
+        return coerced;
+    }
+
+    static <T extends AccessibleObject> T accessible(T object) {
+        try {
+            return AccessibleHelper.openSesame(object);
+        } catch (SecurityException e) {
+            log.log(Level.FINE, "Could not turn off access checks for " + object, e);
+            return object;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, method);
+    }
+}
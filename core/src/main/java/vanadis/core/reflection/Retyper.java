@@ -33,6 +33,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A static utility class that handles uniform value-to-string and string-to-value conversion.
@@ -52,6 +53,12 @@ public final class Retyper {
     }
 
     private static Object coerceRawArray(Class<?> propertyType, String[] value) {
+        if (propertyType.isPrimitive()) {
+            Object primitives = primitiveArray(propertyType, value);
+            if (primitives != null) {
+                return primitives;
+            }
+        }
         Object array = Array.newInstance(propertyType, value.length);
         for (int i = 0; i < value.length; i++) {
             Array.set(array, i, coerce(propertyType, value[i]));
@@ -59,9 +66,25 @@ public final class Retyper {
         return array;
     }
 
-    private static final Map<Class<?>, Coercer<?>> coercers = Generic.map();
+    private static final Map<Class<?>, Coercer<?>> coercers = Generic.concurrentHashMap();
+
+    private static final Map<String, Class<?>> coercedTypeNames = Generic.concurrentHashMap();
+
+    private static final ConcurrentMap<Class<?>, String> typeNames = Generic.concurrentHashMap();
+
+    /**
+     * Coercers resolved per requested class, including enum coercers and
+     * coercers found by assignability.  Cleared whenever a new coercer is mapped.
+     */
+    private static final ConcurrentMap<Class<?>, Coercer<?>> resolved = Generic.concurrentHashMap();
+
+    /**
+     * Bumped before {@link #resolved} is cleared, so a resolve that overlapped a
+     * new mapping can take back what it cached from the old mappings.
+     */
+    private static volatile int generation;
 
-    private static final Map<String, Class<?>> coercedTypeNames = Generic.map();
+    private static final Coercer<?> UNMAPPED = new IdentityCoercer();
 
     /**
      * True iff the class coercable, i.e. we have a {@link Retyper.Coercer coercer}
@@ -99,12 +122,7 @@ public final class Retyper {
     }
 
     public static String nameOf(Class<?> clazz) {
-        for (Map.Entry<String, Class<?>> entry : coercedTypeNames.entrySet()) {
-            if (clazz.equals(entry.getValue())) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return typeNames.get(clazz);
     }
 
     public static void map(Coercer<?> coercer, Class<?>... otherTypes) {
@@ -114,7 +132,7 @@ public final class Retyper {
         }
     }
 
-    public static void doMap(Class<?> clazz, Coercer<?> coercer) {
+    public static synchronized void doMap(Class<?> clazz, Coercer<?> coercer) {
         Class<?> type = clazz == null ? coercer.coercedType() : clazz;
         if (type.isInterface() && Modifier.isAbstract(type.getModifiers())) {
             throw new IllegalArgumentException("Unable to map non-concrete " + type);
@@ -125,11 +143,14 @@ public final class Retyper {
         storeTypeName(type.getName().toLowerCase(), type);
         storeTypeName(type.getSimpleName().toLowerCase(), type);
         coercers.put(type, coercer);
+        generation++;
+        resolved.clear();
     }
 
     private static void storeTypeName(String name, Class<?> type) {
         if (!coercedTypeNames.containsKey(name)) {
             coercedTypeNames.put(name, type);
+            typeNames.putIfAbsent(type, name);
         }
     }
 
@@ -173,28 +194,67 @@ public final class Retyper {
 
     @SuppressWarnings({"unchecked"})
     private static <T> Coercer<T> getCoercer(Class<T> clazz, boolean required) {
+        Coercer<?> coercer = resolved.get(clazz);
+        if (coercer == null) {
+            int resolvedGeneration = generation;
+            coercer = resolve(clazz);
+            if (resolved.putIfAbsent(clazz, coercer) == null && generation != resolvedGeneration) {
+                resolved.remove(clazz, coercer);
+            }
+        }
+        if (coercer != UNMAPPED) {
+            return (Coercer<T>) coercer;
+        }
+        if (required) {
+            throw new IllegalArgumentException("Not mapped: " + clazz);
+        }
+        return null;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static Coercer<?> resolve(Class<?> clazz) {
         if (Enum.class.isAssignableFrom(clazz)) {
             return new EnumCoercer(clazz);
         }
         Coercer<?> coercer = coercers.get(clazz);
         if (coercer != null) {
-            return (Coercer<T>) coercer;
+            return coercer;
         }
-        for (Class<?> mapped : coercers.keySet()) {
-            if (mapped.isAssignableFrom(clazz)) {
-                return (Coercer<T>) coercers.get(mapped);
+        for (Map.Entry<Class<?>, Coercer<?>> entry : coercers.entrySet()) {
+            if (entry.getKey().isAssignableFrom(clazz)) {
+                return entry.getValue();
             }
         }
-        if (required) {
-            throw new IllegalArgumentException("Not mapped: " + clazz);
-        }
-        return null;
+        return UNMAPPED;
     }
 
     private static <T> String coerce(Object object, Coercer<T> coercer) {
         return coercer.toString(coercer.coercedType().cast(object));
     }
 
+    /**
+     * @param type Type
+     * @return Coercer for the type, or null if none is mapped
+     */
+    static Coercer<?> coercer(Class<?> type) {
+        return getCoercer(type, false);
+    }
+
+    /**
+     * Coerce with a coercer already resolved by {@link #coercer(Class)}.
+     *
+     * @param type Type, or array type
+     * @param arg Argument, not an instance of the type
+     * @param coercer Coercer for the type, or for the component type of an array type
+     * @return Coerced argument
+     */
+    @SuppressWarnings({"unchecked"})
+    static Object coerce(Class<?> type, Object arg, Coercer<?> coercer) {
+        return type.isArray()
+                ? toArray((Class<Object>) type.getComponentType(), arg, (Coercer<Object>) coercer)
+                : toInstance((Class<Object>) type, arg, (Coercer<Object>) coercer);
+    }
+
     private static <T> Object arrayOrSingleCoerce(Class<T> type, Object arg) {
         if (type.isInstance(arg)) {
             return type.cast(arg);
@@ -222,6 +282,12 @@ public final class Retyper {
     }
 
     private static <T> Object toArray(Class<T> type, Object arg, Coercer<T> coercer) {
+        if (type.isPrimitive() && arg instanceof String[]) {
+            Object primitives = primitiveArray(type, (String[]) arg);
+            if (primitives != null) {
+                return primitives;
+            }
+        }
         if (arg.getClass().isArray()) {
             int length = Array.getLength(arg);
             Object targetArray = Array.newInstance(type, length);
@@ -237,7 +303,7 @@ public final class Retyper {
             int i = 0;
             for (Object object : collection) {
                 T t = toInstance(type, object, coercer);
-                Array.set(targetArray, i, t);
+                Array.set(targetArray, i++, t);
             }
             return targetArray;
         } else {
@@ -249,10 +315,86 @@ public final class Retyper {
                 return failCoercion(type, arg, e);
             }
             Object array = Array.newInstance(type, instances.size());
+            if (type.isPrimitive()) {
+                for (int i = 0; i < instances.size(); i++) {
+                    Array.set(array, i, instances.get(i));
+                }
+                return array;
+            }
             return instances.toArray((Object[]) array);
         }
     }
 
+    /**
+     * Parse strings straight into a primitive array, without boxing each element.
+     *
+     * @param type Primitive component type
+     * @param strings Strings
+     * @return Primitive array, or null if the type has no fast path
+     */
+    private static Object primitiveArray(Class<?> type, String[] strings) {
+        int length = strings.length;
+        int i = 0;
+        try {
+            if (type == int.class) {
+                int[] array = new int[length];
+                for (; i < length; i++) {
+                    array[i] = Integer.parseInt(element(strings, i));
+                }
+                return array;
+            }
+            if (type == long.class) {
+                long[] array = new long[length];
+                for (; i < length; i++) {
+                    array[i] = Long.parseLong(element(strings, i));
+                }
+                return array;
+            }
+            if (type == double.class) {
+                double[] array = new double[length];
+                for (; i < length; i++) {
+                    array[i] = Double.parseDouble(element(strings, i));
+                }
+                return array;
+            }
+            if (type == boolean.class) {
+                boolean[] array = new boolean[length];
+                for (; i < length; i++) {
+                    array[i] = Boolean.parseBoolean(element(strings, i));
+                }
+                return array;
+            }
+            if (type == short.class) {
+                short[] array = new short[length];
+                for (; i < length; i++) {
+                    array[i] = Short.parseShort(element(strings, i));
+                }
+                return array;
+            }
+            if (type == byte.class) {
+                byte[] array = new byte[length];
+                for (; i < length; i++) {
+                    array[i] = Byte.parseByte(element(strings, i));
+                }
+                return array;
+            }
+            if (type == float.class) {
+                float[] array = new float[length];
+                for (; i < length; i++) {
+                    array[i] = Float.parseFloat(element(strings, i));
+                }
+                return array;
+            }
+        } catch (NumberFormatException e) {
+            return failCoercion(type, strings[i], e);
+        }
+        return null;
+    }
+
+    private static String element(String[] strings, int i) {
+        return Not.nil(strings[i], "arg");
+    }
+
     /**
      * SPI for coercion.  Register instances for new types using
      * {@link Retyper#map(Retyper.Coercer, Class[])}
@@ -19,6 +19,8 @@ package vanadis.core.properties;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class ResolveTest {
 
@@ -27,4 +29,42 @@ public class ResolveTest {
         String value = Resolve.resolve("${foo}${foo}", PropertySets.create("foo", "bar"));
         assertEquals("barbar", value);
     }
+
+    @Test
+    public void testUnresolved() {
+        assertEquals("x${zot}y", Resolve.resolve("x${zot}y", PropertySets.create("foo", "bar")));
+    }
+
+    @Test
+    public void testDefault() {
+        PropertySet vars = PropertySets.create("foo", "bar");
+        assertEquals("bar:8080", Resolve.resolve("${foo}:${port:8080}", vars));
+        assertEquals("bar", Resolve.resolve("${zot:${foo}}", vars));
+    }
+
+    @Test
+    public void testNested() {
+        PropertySet vars = PropertySets.create("env", "test", "db.test.url", "jdbc:h2:mem");
+        assertEquals("jdbc:h2:mem", Resolve.resolve("${db.${env}.url}", vars));
+        assertEquals("${db.prod.url}", Resolve.resolve("${db.${zot:prod}.url}", vars));
+    }
+
+    @Test
+    public void testCacheKeepsRecentlyUsed() {
+        Resolve.TemplateCache cache = new Resolve.TemplateCache(4);
+        Resolve.Template used = Resolve.compile("${used}");
+        cache.put("used", used);
+        cache.put("a", Resolve.compile("${a}"));
+        cache.put("b", Resolve.compile("${b}"));
+        assertSame(used, cache.get("used"));
+        cache.put("c", Resolve.compile("${c}"));
+        cache.put("d", Resolve.compile("${d}"));
+        assertSame(used, cache.get("used"));
+        assertNull(cache.get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnclosed() {
+        Resolve.resolve("${foo}${bar", PropertySets.create("foo", "bar"));
+    }
 }
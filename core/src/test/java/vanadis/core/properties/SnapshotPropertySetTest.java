@@ -0,0 +1,78 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.core.properties;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import vanadis.core.reflection.AbstractCoercer;
+import vanadis.core.reflection.Retyper;
+
+public class SnapshotPropertySetTest extends Assert {
+
+    @Test
+    public void flattenLineage() {
+        PropertySet parent = PropertySets.create("foo", "bar", "zip", "1");
+        PropertySet child = PropertySets.create("zip", "2", "zot", "${foo}").withParent(parent, false);
+        PropertySet snapshot = PropertySets.snapshot(child);
+
+        assertNull(snapshot.getParent());
+        assertEquals(3, snapshot.size());
+        assertEquals("bar", snapshot.get("foo"));
+        assertEquals((Integer) 2, snapshot.getInt("zip"));
+        assertEquals((Long) 2L, snapshot.getLong("zip"));
+        assertEquals((Integer) 2, snapshot.getInt("zip"));
+        assertEquals("${foo}", snapshot.get("zot"));
+        assertEquals("bar", snapshot.get("zot", snapshot));
+        assertTrue(snapshot.has("foo"));
+        assertFalse(snapshot.has("zap"));
+        assertSame(snapshot, PropertySets.snapshot(snapshot));
+    }
+
+    @Test
+    public void copyIsWritable() {
+        PropertySet snapshot = PropertySets.snapshot(PropertySets.create("foo", "bar"));
+        assertFalse(snapshot.isWritable());
+        PropertySet changed = snapshot.set("foo", "zot");
+        assertEquals("zot", changed.get("foo"));
+        assertEquals("bar", snapshot.get("foo"));
+    }
+
+    @Test
+    public void mutableCoercionsAreNotShared() {
+        PropertySet snapshot = PropertySets.snapshot(PropertySets.create("foo", "bar"));
+        Counter counter = snapshot.get(Counter.class, "foo");
+        counter.count++;
+        assertEquals(0, snapshot.get(Counter.class, "foo").count);
+        assertNotSame(counter, snapshot.get(Counter.class, "foo"));
+    }
+
+    public static class Counter {
+
+        private int count;
+    }
+
+    private static class CounterCoercer extends AbstractCoercer<Counter> {
+
+        @Override
+        public Counter coerce(String string) {
+            return new Counter();
+        }
+    }
+
+    static {
+        Retyper.map(new CounterCoercer());
+    }
+}
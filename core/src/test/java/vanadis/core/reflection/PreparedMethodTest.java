@@ -0,0 +1,81 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.core.reflection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.annotation.RetentionPolicy;
+
+public class PreparedMethodTest {
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    private static class Target {
+
+        private int count;
+
+        private RetentionPolicy policy;
+
+        private String name;
+
+        private void setCount(int count) {
+            this.count = count;
+        }
+
+        public void setPolicy(RetentionPolicy policy) {
+            this.policy = policy;
+        }
+    }
+
+    @Test
+    public void invokePrivate()
+        throws NoSuchMethodException {
+        Target target = new Target();
+        PreparedMethod method = new PreparedMethod(Target.class.getDeclaredMethod("setCount", int.class));
+        method.invoke(this, target, 5);
+        Assert.assertEquals(5, target.count);
+        method.invokeCoerced(this, target, "7");
+        Assert.assertEquals(7, target.count);
+    }
+
+    @Test
+    public void invokeCoercedEnum()
+        throws NoSuchMethodException {
+        Target target = new Target();
+        new PreparedMethod(Target.class.getMethod("setPolicy", RetentionPolicy.class))
+                .invokeCoerced(this, target, "RUNTIME");
+        Assert.assertEquals(RetentionPolicy.RUNTIME, target.policy);
+    }
+
+    @Test(expected = InvokeException.class)
+    public void wrongArity()
+        throws NoSuchMethodException {
+        new PreparedMethod(Target.class.getDeclaredMethod("setCount", int.class)).invoke(this, new Target());
+    }
+
+    @Test
+    public void assignField()
+        throws NoSuchFieldException {
+        Target target = new Target();
+        PreparedField field = new PreparedField(Target.class.getDeclaredField("name"));
+        field.assign(this, target, "foo");
+        Assert.assertEquals("foo", field.get(this, target));
+        field.assign(this, target, 5);
+        Assert.assertEquals("foo", target.name);
+        new PreparedField(Target.class.getDeclaredField("count")).assignCoerced(this, target, "3");
+        Assert.assertEquals(3, target.count);
+    }
+}
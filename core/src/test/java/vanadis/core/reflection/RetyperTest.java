@@ -21,6 +21,7 @@ import org.junit.Test;
 import vanadis.core.reflection.Retyper;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 
 public class RetyperTest {
 
@@ -69,4 +70,35 @@ public class RetyperTest {
         Assert.assertEquals(5L, Retyper.coerce("Long", "5"));
         Assert.assertEquals(5L, Retyper.coerce("LONG", "5"));
     }
+
+    @Test
+    public void coercePrimitiveArrays() {
+        Assert.assertTrue(Arrays.equals(new int[]{1, 2, 3},
+                                        (int[]) Retyper.coerceArray("int", new String[]{"1", "2", "3"})));
+        Assert.assertTrue(Arrays.equals(new boolean[]{true, false},
+                                        (boolean[]) Retyper.coerce(boolean[].class, new String[]{"true", "false"})));
+        Assert.assertTrue(Arrays.equals(new long[]{4L, 5L},
+                                        (long[]) Retyper.coerce(long[].class, "4,5")));
+        try {
+            Retyper.coerceArray("int", new String[]{"1", "x"});
+            Assert.fail("Coerced bad int");
+        } catch (IllegalArgumentException ignore) {
+        }
+    }
+
+    @Test
+    public void coerceCollectionToArray() {
+        Object o = Retyper.coerce(Integer[].class, Arrays.asList("1", "2"));
+        Assert.assertTrue(Arrays.equals(new Integer[]{1, 2}, (Integer[]) o));
+    }
+
+    @Test
+    public void resolvedCoercers() {
+        Assert.assertEquals("java.lang.integer", Retyper.nameOf(Integer.class));
+        Assert.assertNull(Retyper.nameOf(Thread.class));
+        Assert.assertFalse(Retyper.isMappable(Thread.class));
+        Assert.assertFalse(Retyper.isMappable(Thread.class));
+        Assert.assertTrue(Retyper.isMappable(Eeenoom.class));
+        Assert.assertEquals(Eeenoom.EEE, Retyper.coerce(Eeenoom.class, "EEE"));
+    }
 }
@@ -37,6 +37,7 @@ import vanadis.osgi.ServiceProperties;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 class BundleManager implements Iterable<String> {
@@ -49,13 +50,18 @@ class BundleManager implements Iterable<String> {
 
     private final Bundle bundle;
 
+    private final Context context;
+
     public static BundleManager manage(Bundle bundle,
                                        ObjectManagerObserver observer,
-                                       OperationQueuer dispatch) {
+                                       OperationQueuer dispatch,
+                                       ModuleScanIndex index,
+                                       ExecutorService scanExecutor) {
         Context context = Contexts.create(bundle.getBundleContext());
         Map<String, ObjectManagerFactory> factories =
-                ModulesProcessor.managedFactories(context, bundle, observer, dispatch);
+                ModulesProcessor.managedFactories(context, bundle, observer, dispatch, index, scanExecutor);
         if (factories == null || factories.isEmpty()) {
+            context.close();
             return null;
         }
         return new BundleManager(context, bundle, factories.values());
@@ -64,6 +70,7 @@ class BundleManager implements Iterable<String> {
     @EntryPoint
     private BundleManager(Context context, Bundle bundle, Collection<ObjectManagerFactory> factories) {
         this.bundle = bundle;
+        this.context = context;
         this.typedFactories = typedFactories(factories);
         this.factories = registerFactories(context, factories);
         autoLaunch();
@@ -85,6 +92,7 @@ class BundleManager implements Iterable<String> {
             unregisterFactories();
         } finally {
             closed.set(true);
+            context.close();
         }
     }
 
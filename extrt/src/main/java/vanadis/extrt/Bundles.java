@@ -17,7 +17,11 @@ package vanadis.extrt;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleException;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.packageadmin.PackageAdmin;
@@ -35,11 +39,19 @@ import vanadis.osgi.Context;
 import vanadis.osgi.OSGiException;
 import vanadis.osgi.OSGiUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 class Bundles implements Iterable<Bundle>, Closeable {
 
@@ -63,6 +75,25 @@ class Bundles implements Iterable<Bundle>, Closeable {
 
     private final ConfigurationAdmin configurationAdmin;
 
+    /**
+     * Unresolved bundles, by what they are waiting for.
+     */
+    private final ResolutionIndex resolutionIndex = new ResolutionIndex();
+
+    /**
+     * Bundles that came up since we last looked, including those started by others.
+     */
+    private final Queue<Bundle> cameUp = new ConcurrentLinkedQueue<Bundle>();
+
+    /**
+     * Set when packages are refreshed, which may resolve anything.
+     */
+    private final AtomicBoolean refreshed = new AtomicBoolean();
+
+    private final ResolutionListener resolutionListener = new ResolutionListener();
+
+    private boolean scanned;
+
     private static final int HISTORY_SIZE = 100;
 
     Bundles(BundleContext bundleContext, Context context) {
@@ -72,6 +103,8 @@ class Bundles implements Iterable<Bundle>, Closeable {
         this.packageAdmin = context.getServiceProxy(PackageAdmin.class);
         this.configurationAdmin = context.getServiceProxy(ConfigurationAdmin.class);
         this.startLevel = context.getServiceProxy(StartLevel.class);
+        this.bundleContext.addBundleListener(resolutionListener);
+        this.bundleContext.addFrameworkListener(resolutionListener);
     }
 
     List<Set<Long>> dependentBundles(long id) {
@@ -103,6 +136,7 @@ class Bundles implements Iterable<Bundle>, Closeable {
 
     public void uninstall(BundleSpecification uri) {
         Bundle bundle = removeBundle(uri);
+        resolutionIndex.remove(bundle.getBundleId());
         stop(bundle);
         uninstall(bundle);
         log.info("Uninstalled bundle " + bundle + " @ " + uri + " : " + bundle);
@@ -110,6 +144,47 @@ class Bundles implements Iterable<Bundle>, Closeable {
 
 
     public void install(BundleSpecification specification) {
+        configure(specification);
+        Bundle bundle = installed(specification, null);
+        adjustStartLevel(bundle, specification);
+        storeBundle(specification, bundle);
+        tryStartingBundles(specification, Collections.singleton(bundle));
+    }
+
+    /**
+     * Install a batch of bundles, e.g. all the bundles of a system specification.
+     * Bundles that are not files are read in parallel on the executor while the
+     * others are installed.  Bundles are installed in start level order, and
+     * started in a single pass when all are installed.
+     *
+     * @param specifications Bundles to install
+     * @param executor Executor for reading bundle streams
+     * @return Specifications that failed to install, mapped to the failure
+     */
+    public Map<BundleSpecification, Exception> install(Collection<BundleSpecification> specifications,
+                                                       ExecutorService executor) {
+        List<BundleSpecification> ordered = inStartLevelOrder(specifications);
+        Map<BundleSpecification, Future<byte[]>> fetches = fetch(ordered, executor);
+        Map<BundleSpecification, Exception> failures = Generic.linkedHashMap();
+        List<Bundle> installed = Generic.list();
+        for (BundleSpecification specification : ordered) {
+            try {
+                configure(specification);
+                Bundle bundle = installed(specification, fetches.get(specification));
+                adjustStartLevel(bundle, specification);
+                storeBundle(specification, bundle);
+                installed.add(bundle);
+            } catch (Exception e) {
+                failures.put(specification, e);
+            }
+        }
+        if (!installed.isEmpty()) {
+            tryStartingBundles(installed.size() + " bundles", installed);
+        }
+        return failures;
+    }
+
+    private void configure(BundleSpecification specification) {
         if (specification.isGlobalProperties()) {
             PortUtils.writeToSystemProperties(specification.getPropertySet(), context.getLocation());
         }
@@ -120,10 +195,6 @@ class Bundles implements Iterable<Bundle>, Closeable {
                 updateConfiguration(specification, pid, configuration);
             }
         }
-        Bundle bundle = installed(specification);
-        adjustStartLevel(bundle, specification);
-        storeBundle(specification, bundle);
-        tryStartingBundles(specification);
     }
 
     private Configuration getConfiguration(String pid) {
@@ -136,6 +207,12 @@ class Bundles implements Iterable<Bundle>, Closeable {
 
     @Override
     public void close() {
+        try {
+            bundleContext.removeBundleListener(resolutionListener);
+            bundleContext.removeFrameworkListener(resolutionListener);
+        } catch (IllegalStateException e) {
+            log.debug(this + " could not remove listeners, bundle context is gone", e);
+        }
         List<Long> ids = Generic.list(idSpecs.keySet());
         Collections.reverse(ids);
         for (long id : ids) {
@@ -234,10 +311,10 @@ class Bundles implements Iterable<Bundle>, Closeable {
         idSpecs.put(bundle.getBundleId(), specification);
     }
 
-    private void tryStartingBundles(BundleSpecification uri) {
+    private void tryStartingBundles(Object uri, Collection<Bundle> installed) {
         Collection<Throwable> exceptions = Generic.list();
         Collection<Long> started = Generic.linkedHashSet();
-        startBundles(exceptions, started);
+        startBundles(installed, exceptions, started);
         if (!started.isEmpty()) {
             log.info(this + " got " + started + " bundles started after installing " + uri + ": " + started);
         }
@@ -246,22 +323,91 @@ class Bundles implements Iterable<Bundle>, Closeable {
         }
     }
 
-    private void startBundles(Collection<Throwable> exceptions, Collection<Long> started) {
-        int currentInactive = Integer.MAX_VALUE;
-        while (true) {
-            int previousInactive = currentInactive;
-            currentInactive = startResolvedBundles(exceptions, started);
-            if (currentInactive == 0 || currentInactive == previousInactive) {
-                return;
+    /**
+     * Try to start the installed bundles, and then any bundles waiting for what they
+     * provide, and so on.  The first time around, all bundles in the framework are
+     * tried.  After that, only bundles that may have become resolvable are tried:
+     * Those waiting for something provided by a bundle that came up.
+     *
+     * @param installed Newly installed bundles, in start level order
+     * @param exceptions Start failures
+     * @param started Ids of bundles started
+     */
+    private void startBundles(Collection<Bundle> installed, Collection<Throwable> exceptions,
+                              Collection<Long> started) {
+        Map<Long, Bundle> work = Generic.linkedHashMap();
+        if (!scanned) {
+            for (Bundle bundle : bundleContext.getBundles()) {
+                work.put(bundle.getBundleId(), bundle);
+            }
+            scanned = true;
+        }
+        if (refreshed.getAndSet(false)) {
+            addWork(work, resolutionIndex.all());
+        }
+        for (Bundle bundle = cameUp.poll(); bundle != null; bundle = cameUp.poll()) {
+            addWork(work, resolutionIndex.provided(ResolutionIndex.provisions(bundle)));
+        }
+        for (Bundle bundle : installed) {
+            work.put(bundle.getBundleId(), bundle);
+        }
+        while (!work.isEmpty()) {
+            Iterator<Bundle> iterator = work.values().iterator();
+            Bundle bundle = iterator.next();
+            iterator.remove();
+            long id = bundle.getBundleId();
+            if (bundle.getState() == Bundle.UNINSTALLED) {
+                resolutionIndex.remove(id);
+            } else if (isUp(bundle) || wasStarted(bundle, exceptions)) {
+                started.add(id);
+                addWork(work, resolutionIndex.provided(ResolutionIndex.provisions(bundle)));
+            } else {
+                resolutionIndex.await(id, missingRequirements(bundle));
+            }
+        }
+    }
+
+    private void addWork(Map<Long, Bundle> work, Collection<Long> ids) {
+        for (long id : ids) {
+            if (!work.containsKey(id)) {
+                Bundle bundle = bundleContext.getBundle(id);
+                if (bundle != null) {
+                    work.put(id, bundle);
+                }
+            }
+        }
+    }
+
+    private Collection<String> missingRequirements(Bundle bundle) {
+        Collection<String> missing = Generic.list();
+        for (String requirement : ResolutionIndex.requirements(bundle)) {
+            if (!isProvided(requirement)) {
+                missing.add(requirement);
             }
         }
+        return missing;
     }
 
-    private Bundle installed(BundleSpecification specification) {
+    private boolean isProvided(String requirement) {
+        if (ResolutionIndex.isBundle(requirement)) {
+            Bundle[] providers = packageAdmin.getBundles(ResolutionIndex.bundleName(requirement), null);
+            if (providers != null) {
+                for (Bundle provider : providers) {
+                    if (isUp(provider)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        return packageAdmin.getExportedPackage(requirement) != null;
+    }
+
+    private Bundle installed(BundleSpecification specification, Future<byte[]> fetch) {
         String uriString = specification.getUriString();
-        Bundle bundle = specification.isFile()
-                ? installBundle(uriString)
-                : installFromStream(specification, uriString);
+        Bundle bundle = specification.isFile() ? installBundle(uriString)
+                : fetch == null ? installFromStream(specification, uriString)
+                : installBundle(uriString, new ByteArrayInputStream(fetched(specification, fetch)));
         log.info("Installed bundle @ " + uriString + " : " + bundle);
         return bundle;
     }
@@ -275,6 +421,50 @@ class Bundles implements Iterable<Bundle>, Closeable {
             }
     }
 
+    private static Map<BundleSpecification, Future<byte[]>> fetch(Collection<BundleSpecification> specifications,
+                                                                  ExecutorService executor) {
+        Map<BundleSpecification, Future<byte[]>> fetches = Generic.map();
+        for (BundleSpecification specification : specifications) {
+            if (!specification.isFile()) {
+                fetches.put(specification, executor.submit(new Fetch(specification.getUri())));
+            }
+        }
+        return fetches;
+    }
+
+    private static byte[] fetched(BundleSpecification specification, Future<byte[]> fetch) {
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OSGiException("Interrupted while reading bundle @ " + specification.getUri(), e);
+        } catch (ExecutionException e) {
+            throw new OSGiException("Failed to read bundle @ " + specification.getUri(), e.getCause());
+        }
+    }
+
+    /**
+     * @param specifications Bundle specifications
+     * @return The specifications, ordered by start level.  Those without a start
+     *         level come last, and the order is otherwise kept.
+     */
+    static List<BundleSpecification> inStartLevelOrder(Collection<BundleSpecification> specifications) {
+        List<BundleSpecification> ordered = Generic.list(specifications);
+        Collections.sort(ordered, START_LEVEL_ORDER);
+        return ordered;
+    }
+
+    private static final Comparator<BundleSpecification> START_LEVEL_ORDER = new Comparator<BundleSpecification>() {
+        @Override
+        public int compare(BundleSpecification spec1, BundleSpecification spec2) {
+            Integer level1 = spec1.getStartLevel();
+            Integer level2 = spec2.getStartLevel();
+            return level1 == null ? (level2 == null ? 0 : 1)
+                    : level2 == null ? -1
+                    : level1.compareTo(level2);
+        }
+    };
+
     private Bundle installBundle(String uriString) {
         Bundle bundle;
         try {
@@ -295,18 +485,6 @@ class Bundles implements Iterable<Bundle>, Closeable {
         return nonNull(bundle, uriString);
     }
 
-    private int startResolvedBundles(Collection<Throwable> exceptions, Collection<Long> nowResolved) {
-        int inactive = 0;
-        for (Bundle bundle : bundleContext.getBundles()) {
-            if (!(isUp(bundle) || wasStarted(bundle, exceptions))) {
-                inactive++;
-            } else {
-                nowResolved.add(bundle.getBundleId());
-            }
-        }
-        return inactive;
-    }
-
     private boolean wasStarted(Bundle bundle, Collection<Throwable> exceptions) {
         long id = bundle.getBundleId();
         if (isStarted(bundle)) {
@@ -445,8 +623,59 @@ class Bundles implements Iterable<Bundle>, Closeable {
                 message.contains(FELIX_UNRESOLVED_2);
     }
 
+    /**
+     * Reads a bundle into memory, so the framework can install it without waiting for I/O.
+     */
+    private static final class Fetch implements Callable<byte[]> {
+
+        private final URI uri;
+
+        private Fetch(URI uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        public byte[] call()
+                throws IOException {
+            InputStream stream = openStream(uri);
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                for (int count = stream.read(buffer); count >= 0; count = stream.read(buffer)) {
+                    bytes.write(buffer, 0, count);
+                }
+                return bytes.toByteArray();
+            } finally {
+                Closeables.close(stream);
+            }
+        }
+    }
+
+    /**
+     * Notes bundles that come up, and package refreshes.  Events may arrive on
+     * any thread, so they are only queued here, and picked up on the next install.
+     */
+    private final class ResolutionListener implements SynchronousBundleListener, FrameworkListener {
+
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            int type = event.getType();
+            if (type == BundleEvent.RESOLVED || type == BundleEvent.STARTED) {
+                cameUp.add(event.getBundle());
+            }
+        }
+
+        @Override
+        public void frameworkEvent(FrameworkEvent event) {
+            if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+                refreshed.set(true);
+            }
+        }
+    }
+
     @Override
     public String toString() {
-        return ToString.of(this, "uris", specifiedBundles.size(), "uriHistory", specHistory.size());
+        return ToString.of(this, "uris", specifiedBundles.size(), "uriHistory", specHistory.size(),
+                           "unresolved", resolutionIndex.size());
     }
 }
@@ -29,7 +29,8 @@ import vanadis.core.lang.ToString;
 import vanadis.core.properties.PropertySet;
 import vanadis.core.properties.PropertySets;
 import vanadis.core.reflection.GetNSet;
-import vanadis.core.reflection.Invoker;
+import vanadis.core.reflection.PreparedField;
+import vanadis.core.reflection.PreparedMethod;
 import vanadis.ext.Configuration;
 import vanadis.ext.Configure;
 import vanadis.ext.ModuleSystemException;
@@ -64,6 +65,10 @@ class Configurer {
 
     private final Object element;
 
+    private final PreparedMethod method;
+
+    private final PreparedField field;
+
     private final boolean required;
 
     private final boolean setNull;
@@ -75,10 +80,12 @@ class Configurer {
         this.managed = Not.nil(managed, "managed");
         this.location = location;
         this.moduleSpecificationPropertySet = moduleSpecificationPropertySet == null ? PropertySets.EMPTY
-            : moduleSpecificationPropertySet.copy(false);
+            : PropertySets.snapshot(moduleSpecificationPropertySet);
         this.datum = datum;
         element = datum.getElement();
         propertyType = typeOf(element);
+        method = element instanceof Method ? new PreparedMethod((Method) element) : null;
+        field = element instanceof Field ? new PreparedField((Field) element) : null;
         if (datum.isType(Configure.class)) {
             Configure configure = datum.createProxy(CLASS_LOADER, Configure.class);
             required = configure.required();
@@ -226,19 +233,17 @@ class Configurer {
 
     private void set(Object configured, PropertySet variables, Object finalValue) {
         try {
-            if (element instanceof Method) {
-                Method method = (Method) element;
+            if (method != null) {
                 if (variables == null) {
-                    Invoker.invoke(this, configured, method, finalValue);
+                    method.invoke(this, configured, finalValue);
                 } else {
-                    Invoker.invokeReplacedCoerced(this, configured, method, variables, finalValue);
+                    method.invokeReplacedCoerced(this, configured, variables, finalValue);
                 }
             } else {
-                Field field = (Field) element;
                 if (variables == null) {
-                    Invoker.assign(this, configured, field, finalValue);
+                    field.assign(this, configured, finalValue);
                 } else {
-                    Invoker.assignReplacedCoerced(this, configured, field, variables, finalValue);
+                    field.assignReplacedCoerced(this, configured, variables, finalValue);
                 }
             }
         } finally {
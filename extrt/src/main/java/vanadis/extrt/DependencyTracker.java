@@ -21,55 +21,95 @@ import org.slf4j.LoggerFactory;
 import vanadis.core.collections.Generic;
 import vanadis.core.lang.ToString;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
+/**
+ * Tracks the completion of a set of features.  Features are numbered as they are
+ * tracked, and completion is kept in bit sets, so progress and setbacks are O(1),
+ * and iterating over the complete or incomplete features does not copy them.
+ * Iterators reflect later changes, and tolerate changes to the current element.
+ *
+ * <P>A {@link Listener listener} is told when the required features
+ * become complete, and when they become incomplete again.</P>
+ */
 final class DependencyTracker<T extends ManagedFeature<?,?>> implements Iterable<T> {
 
+    /**
+     * Notified of transitions in the completion of required features.
+     */
+    interface Listener {
+
+        void requiredComplete(DependencyTracker<?> tracker);
+
+        void requiredIncomplete(DependencyTracker<?> tracker);
+    }
+
     private static final Logger log = LoggerFactory.getLogger(DependencyTracker.class);
 
-    private final Set<String> complete = Generic.set();
+    private final Map<String, Integer> ordinals = Generic.map();
+
+    private final List<T> trackees = Generic.list();
+
+    private final BitSet complete = new BitSet();
+
+    private final BitSet required = new BitSet();
+
+    private final Set<String> completeNames = new LinkedHashSet<String>();
 
-    private final Set<String> requiredIncomplete = Generic.set();
+    private final Set<String> unmodifiableCompleteNames = Collections.unmodifiableSet(completeNames);
 
-    private final Set<String> incomplete = Generic.set();
+    private final Listener listener;
 
-    private final Map<String, T> trackees = Generic.map();
+    private int requiredIncompleteCount;
+
+    DependencyTracker() {
+        this(null);
+    }
+
+    DependencyTracker(Listener listener) {
+        this.listener = listener;
+    }
 
     public T track(T trackee) {
         if (trackee.isComplete()) {
             throw new IllegalStateException(this + " is already complete");
         }
         String name = trackee.getFeatureName();
-        if (trackees.containsKey(name)) {
+        if (ordinals.containsKey(name)) {
             throw new IllegalArgumentException
                     (this + " failed to setup injectorDependencyTracker, duplicate injection: " + name);
         }
-
-        trackees.put(name, trackee);
+        int ordinal = trackees.size();
+        trackees.add(trackee);
+        ordinals.put(name, ordinal);
         if (trackee.isRequired()) {
-            requiredIncomplete.add(name);
+            required.set(ordinal);
+            requiredIncompleteCount++;
+            if (requiredIncompleteCount == 1) {
+                fireRequiredIncomplete();
+            }
         }
-        incomplete.add(name);
         return trackee;
     }
 
-
     public boolean isTracking(String featureName) {
-        return trackees.containsKey(featureName);
+        return ordinals.containsKey(featureName);
     }
 
     public void progress(String name) {
-        checkArgument(name);
-        if (incomplete.contains(name) && trackee(name).isComplete()) {
-            incomplete.remove(name);
-            requiredIncomplete.remove(name);
-            complete.add(name);
+        int ordinal = ordinal(name);
+        if (!complete.get(ordinal) && trackees.get(ordinal).isComplete()) {
+            complete.set(ordinal);
+            completeNames.add(name);
             if (log.isDebugEnabled()) {
                 log.debug(this + " completed " + name);
             }
+            if (required.get(ordinal)) {
+                requiredIncompleteCount--;
+                if (requiredIncompleteCount == 0) {
+                    fireRequiredComplete();
+                }
+            }
         } else {
             if (log.isDebugEnabled()) {
                 log.debug(this + " progressing: " + name);
@@ -78,74 +118,141 @@ final class DependencyTracker<T extends ManagedFeature<?,?>> implements Iterable
     }
 
     public T setback(String name) {
-        checkArgument(name);
-        T trackee = trackee(name);
-        if (complete.contains(name) && !trackee.isComplete()) {
-            complete.remove(name);
-            incomplete.add(name);
-            if (trackee.isRequired()) {
-                requiredIncomplete.add(name);
+        int ordinal = ordinal(name);
+        T trackee = trackees.get(ordinal);
+        if (complete.get(ordinal) && !trackee.isComplete()) {
+            complete.clear(ordinal);
+            completeNames.remove(name);
+            if (required.get(ordinal)) {
+                requiredIncompleteCount++;
+                if (requiredIncompleteCount == 1) {
+                    fireRequiredIncomplete();
+                }
             }
-            return trackees.get(name);
+            return trackee;
         }
         return null;
     }
 
     @Override
     public Iterator<T> iterator() {
-        return trackees.values().iterator();
+        return trackees.iterator();
     }
 
     public Iterable<T> requiredIncomplete() {
-        return trackees(requiredIncomplete);
+        return new Selection(true, false);
     }
 
     public Iterable<T> incomplete() {
-        return trackees(incomplete);
+        return new Selection(false, false);
     }
 
     public Iterable<T> complete() {
-        return trackees(complete);
+        return new Selection(false, true);
     }
 
     public Collection<String> completeNames() {
-        return complete;
+        return unmodifiableCompleteNames;
     }
 
     public boolean isRequiredComplete() {
-        return requiredIncomplete.isEmpty();
+        return requiredIncompleteCount == 0;
     }
 
+    /**
+     * Stop tracking all features.  Listeners are not notified.
+     */
     public void reset() {
-        complete.clear();
-        requiredIncomplete.clear();
-        incomplete.clear();
+        ordinals.clear();
         trackees.clear();
+        complete.clear();
+        required.clear();
+        completeNames.clear();
+        requiredIncompleteCount = 0;
     }
 
-    private T trackee(String name) {
-        return trackees.get(name);
+    private int ordinal(String name) {
+        Integer ordinal = ordinals.get(name);
+        if (ordinal == null) {
+            throw new IllegalStateException("Unknown property: " + name);
+        }
+        return ordinal;
     }
 
-    private Iterable<T> trackees(Collection<String> names) {
-        Collection<T> inc = Generic.list(names.size());
-        for (String name : names) {
-            inc.add(trackee(name));
+    private void fireRequiredComplete() {
+        if (listener != null) {
+            listener.requiredComplete(this);
         }
-        return inc;
     }
 
-    private void checkArgument(String name) {
-        if (!trackees.containsKey(name)) {
-            throw new IllegalStateException("Unknown property: " + name);
+    private void fireRequiredIncomplete() {
+        if (listener != null) {
+            listener.requiredIncomplete(this);
+        }
+    }
+
+    /**
+     * The tracked features that are complete, or incomplete, and optionally only the required ones.
+     */
+    private final class Selection implements Iterable<T> {
+
+        private final boolean requiredOnly;
+
+        private final boolean completed;
+
+        private Selection(boolean requiredOnly, boolean completed) {
+            this.requiredOnly = requiredOnly;
+            this.completed = completed;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+
+                private int from;
+
+                @Override
+                public boolean hasNext() {
+                    return find(from) >= 0;
+                }
+
+                @Override
+                public T next() {
+                    int next = find(from);
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    from = next + 1;
+                    return trackees.get(next);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private int find(int from) {
+            int size = trackees.size();
+            if (requiredOnly) {
+                for (int i = required.nextSetBit(from); i >= 0 && i < size; i = required.nextSetBit(i + 1)) {
+                    if (complete.get(i) == completed) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            int i = completed ? complete.nextSetBit(from) : complete.nextClearBit(from);
+            return i >= 0 && i < size ? i : -1;
         }
     }
 
     @Override
     public String toString() {
-        return ToString.of(this, "tracking", trackees.keySet(),
-                           "complete", complete.size(),
-                           "requiredIncomplete", requiredIncomplete.size(),
-                           "incomplete", incomplete.size());
+        return ToString.of(this, "tracking", ordinals.keySet(),
+                           "complete", completeNames.size(),
+                           "requiredIncomplete", requiredIncompleteCount,
+                           "incomplete", trackees.size() - completeNames.size());
     }
 }
@@ -16,8 +16,8 @@
 
 package vanadis.extrt;
 
-import vanadis.core.reflection.Invoker;
 import vanadis.core.properties.PropertySet;
+import vanadis.core.reflection.PreparedField;
 import vanadis.ext.Expose;
 import vanadis.jmx.ManagedDynamicMBeans;
 
@@ -25,16 +25,16 @@ import java.lang.reflect.Field;
 
 final class FieldExposer<T> extends Exposer<T> {
 
-    private final Field field;
+    private final PreparedField field;
 
     FieldExposer(FeatureAnchor<T> featureAnchor, Field field, Expose annotation, ManagedDynamicMBeans mbeans) {
         super(featureAnchor, annotation, mbeans);
-        this.field = field;
+        this.field = field == null ? null : new PreparedField(field);
     }
 
     @Override
     protected Object resolveExposedObject(PropertySet runtimePropertySet) {
         Object managed = getObjectManager().getManagedObject();
-        return field == null ? managed : Invoker.getByForce(this, managed, field);
+        return field == null ? managed : field.get(this, managed);
     }
 }
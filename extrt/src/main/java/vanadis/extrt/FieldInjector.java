@@ -15,7 +15,7 @@
  */
 package vanadis.extrt;
 
-import vanadis.core.reflection.Invoker;
+import vanadis.core.reflection.PreparedField;
 import vanadis.ext.Inject;
 import vanadis.osgi.Reference;
 
@@ -23,7 +23,7 @@ import java.lang.reflect.Field;
 
 final class FieldInjector<T> extends AccessibleInjector<T> {
 
-    private final Field field;
+    private final PreparedField field;
 
     FieldInjector(FeatureAnchor<T> featureAnchor,
                   Field field,
@@ -34,16 +34,16 @@ final class FieldInjector<T> extends AccessibleInjector<T> {
               false,
               field.getType().equals(Reference.class),
               listener);
-        this.field = field;
+        this.field = new PreparedField(field);
     }
 
     @Override
     protected void performInject(Reference<T> reference, T service) {
-        Invoker.assign(this, getManaged(), field, isPassReference() ? reference : service);
+        field.assign(this, getManaged(), isPassReference() ? reference : service);
     }
 
     @Override
     protected void performUninject(Reference<T> reference, T service) {
-        Invoker.assign(this, getManaged(), field, null);
+        field.assign(this, getManaged(), null);
     }
 }
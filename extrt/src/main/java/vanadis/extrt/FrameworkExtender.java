@@ -20,6 +20,7 @@ import org.osgi.framework.BundleContext;
 import vanadis.blueprints.BundleSpecification;
 import vanadis.blueprints.ModuleSpecification;
 import vanadis.concurrent.OperationQueuer;
+import vanadis.concurrent.PartitionedDispatch;
 import vanadis.concurrent.ThreadedDispatch;
 import vanadis.core.collections.Generic;
 import vanadis.core.lang.Not;
@@ -55,11 +56,13 @@ class FrameworkExtender {
 
     private final Collection<Registration<Command>> commandRegistrations = Generic.set();
 
-    FrameworkExtender(BundleContext bundleContext, TimeSpan timeout) {
+    FrameworkExtender(BundleContext bundleContext, TimeSpan timeout, int dispatchThreads) {
         this.context = Contexts.create(Not.nil(bundleContext, "bundleContext"));
 
-        OperationQueuer queuer = new ThreadedDispatch
-                (THREAD_NAME + "[" + this.context.getLocation() + "@" + this.context.getHome() + "]", timeout);
+        String threadName = THREAD_NAME + "[" + this.context.getLocation() + "@" + this.context.getHome() + "]";
+        OperationQueuer queuer = dispatchThreads > 1
+                ? new PartitionedDispatch(threadName, dispatchThreads, timeout)
+                : new ThreadedDispatch(threadName, timeout);
         synchSystemEvents = new SystemEventsImpl(bundleContext, this.context, queuer);
 
         this.asynchSystemEvents = queuer.createAsynch(synchSystemEvents, SystemEvents.class);
@@ -100,6 +103,7 @@ class FrameworkExtender {
         moduleSpecificationMediator.close();
         bundleSpecificationMediator.close();
         synchSystemEvents.close();
+        context.close();
     }
 
     private void cmd(String name, String desc, CommandExecution exec) {
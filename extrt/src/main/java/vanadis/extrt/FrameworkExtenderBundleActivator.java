@@ -70,7 +70,7 @@ public final class FrameworkExtenderBundleActivator implements BundleActivator {
 
     private void start() {
         TimeSpan timeout = timeout();
-        frameworkExtender = new FrameworkExtender(this.bundleContext, timeout);
+        frameworkExtender = new FrameworkExtender(this.bundleContext, timeout, dispatchThreads());
         registerCommands(frameworkExtender.getContext());
         log.info(this + " activated");
     }
@@ -106,6 +106,25 @@ public final class FrameworkExtenderBundleActivator implements BundleActivator {
 
     private static final TimeSpan DEFAULT_TIMEOUT = TimeSpan.HALF_MINUTE;
 
+    /**
+     * Threads running object manager and system event work.  With more than
+     * one, work on different targets runs in parallel.
+     */
+    private static final String DISPATCH_THREADS_SYSTEM_PROPERTY = "vanadis.dispatch.threads";
+
+    private static int dispatchThreads() {
+        String threads = System.getProperty(DISPATCH_THREADS_SYSTEM_PROPERTY);
+        if (threads != null) {
+            try {
+                return Integer.parseInt(threads.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Failed to parse thread count in system property " + DISPATCH_THREADS_SYSTEM_PROPERTY +
+                        ", using a single dispatch thread", e);
+            }
+        }
+        return 1;
+    }
+
     private static TimeSpan timeout() {
         String timeout = System.getProperty(TIMEOUT_SYSTEM_PROPERTY);
         if (timeout != null) {
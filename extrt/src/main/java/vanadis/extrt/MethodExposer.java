@@ -18,7 +18,7 @@ package vanadis.extrt;
 
 import vanadis.core.properties.PropertySet;
 import vanadis.core.properties.PropertySets;
-import vanadis.core.reflection.Invoker;
+import vanadis.core.reflection.PreparedMethod;
 import vanadis.ext.Expose;
 import vanadis.jmx.ManagedDynamicMBeans;
 import vanadis.osgi.ServiceProperties;
@@ -27,14 +27,14 @@ import java.lang.reflect.Method;
 
 final class MethodExposer<T> extends Exposer<T> {
 
-    private final Method method;
+    private final PreparedMethod method;
 
     private final boolean runtimeProperties;
 
     MethodExposer(FeatureAnchor<T> featureAnchor, Method method, Expose annotation, ManagedDynamicMBeans mbeans) {
         super(featureAnchor, annotation, mbeans);
         this.runtimeProperties = method != null && method.getParameterTypes().length == 1;
-        this.method = method;
+        this.method = method == null ? null : new PreparedMethod(method);
     }
 
     @Override
@@ -52,7 +52,7 @@ final class MethodExposer<T> extends Exposer<T> {
     protected Object resolveExposedObject(PropertySet runtimePropertySet) {
         Object managed = getObjectManager().getManagedObject();
         return method == null ? managed
-                : runtimePropertySet == null ? Invoker.invoke(this, managed, this.method)
-                        : Invoker.invoke(this, managed, this.method, runtimePropertySet);
+                : runtimePropertySet == null ? this.method.invoke(this, managed)
+                        : this.method.invoke(this, managed, runtimePropertySet);
     }
 }
@@ -19,7 +19,7 @@ package vanadis.extrt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vanadis.core.lang.ToString;
-import static vanadis.core.reflection.Invoker.invoke;
+import vanadis.core.reflection.PreparedMethod;
 import vanadis.ext.Inject;
 import vanadis.ext.ModuleSystemException;
 import vanadis.osgi.Reference;
@@ -34,6 +34,10 @@ final class MethodInjector<T> extends AccessibleInjector<T> {
 
     private final Method retractPoint;
 
+    private final PreparedMethod injector;
+
+    private final PreparedMethod retractor;
+
     private final boolean passProperties;
 
     MethodInjector(FeatureAnchor<T> featureAnchor,
@@ -48,6 +52,8 @@ final class MethodInjector<T> extends AccessibleInjector<T> {
         this.injectPoint = injectPoint;
         this.retractPoint = retractPoint;
         this.passProperties = takesProperties(injectPoint);
+        this.injector = new PreparedMethod(injectPoint);
+        this.retractor = reuseInjectionPoint() ? injector : new PreparedMethod(retractPoint);
         verifyState();
     }
 
@@ -55,9 +61,9 @@ final class MethodInjector<T> extends AccessibleInjector<T> {
     protected void performInject(Reference<T> reference, T service) {
         Object object = isPassReference() ? reference : service;
         if (passProperties) {
-            invoke(this, getManaged(), injectPoint, object, reference.getServiceProperties());
+            injector.invoke(this, getManaged(), object, reference.getServiceProperties());
         } else {
-            invoke(this, getManaged(), injectPoint, object);
+            injector.invoke(this, getManaged(), object);
         }
     }
 
@@ -69,8 +75,7 @@ final class MethodInjector<T> extends AccessibleInjector<T> {
             log.info(this + " uninjected " + service + ", replaced it directly with " + replacement);
         } else {
             T uninjected = reuseInjectionPoint() ? null : service;
-            Method method = retractPoint;
-            invoke(this, getManaged(), method, uninjected);
+            retractor.invoke(this, getManaged(), uninjected);
             if (isReplaceUnregistered() && replacementsReady) {
                 Map.Entry<Reference<T>, T> replacement = setReplacement();
                 log.info(this + " uninjected " + service + ", replaced it with " + replacement);
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.extrt;
+
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.EqHc;
+import vanadis.core.lang.ToString;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Remembers which classes in a bundle carry the {@link vanadis.ext.Module} annotation,
+ * so that an unchanged bundle need not have all its classes scanned again on restart.
+ * Entries are keyed on bundle location, and are valid as long as the bundle's
+ * {@link Bundle#getLastModified() last-modified time} is unchanged.  Bundles
+ * without modules are remembered too, since they are the common case.
+ *
+ * <P>The index is kept in a properties file, typically in the extender bundle's
+ * data area.  With no file, it only remembers bundles for the lifetime of the instance.</P>
+ */
+final class ModuleScanIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ModuleScanIndex.class);
+
+    static final String FILE_NAME = "module-scan.index";
+
+    private static final char STAMP_SEPARATOR = '|';
+
+    private static final String CLASS_SEPARATOR = ",";
+
+    private final File file;
+
+    private final Map<String, Entry> entries = Generic.map();
+
+    private int hits;
+
+    private int misses;
+
+    private boolean dirty;
+
+    ModuleScanIndex(File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * @param bundle Bundle
+     * @return Names of module classes in the bundle, or null if the bundle
+     *         is not indexed, or has changed since it was indexed
+     */
+    synchronized List<String> moduleClasses(Bundle bundle) {
+        Entry entry = entries.get(bundle.getLocation());
+        if (entry != null && entry.lastModified == bundle.getLastModified()) {
+            hits++;
+            return entry.classNames;
+        }
+        misses++;
+        return null;
+    }
+
+    synchronized void record(Bundle bundle, Collection<String> moduleClasses) {
+        Entry entry = new Entry(bundle.getLastModified(), Generic.list(moduleClasses));
+        if (!entry.equals(entries.put(bundle.getLocation(), entry))) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Write the index, if it has changed.  Entries for bundles no longer installed are dropped.
+     *
+     * @param installed Installed bundles
+     */
+    synchronized void store(Iterable<Bundle> installed) {
+        if (file == null || !dirty) {
+            return;
+        }
+        Set<String> locations = Generic.set();
+        for (Bundle bundle : installed) {
+            locations.add(bundle.getLocation());
+        }
+        entries.keySet().retainAll(locations);
+        Properties properties = new Properties();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        try {
+            write(properties);
+            dirty = false;
+        } catch (IOException e) {
+            log.warn(this + " failed to write " + file + ", bundles will be scanned on next start", e);
+        }
+    }
+
+    synchronized int getHits() {
+        return hits;
+    }
+
+    synchronized int getMisses() {
+        return misses;
+    }
+
+    private void write(Properties properties)
+        throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream outputStream = new FileOutputStream(tmp);
+        try {
+            properties.store(outputStream, "Module classes per bundle location");
+        } finally {
+            outputStream.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Failed to replace " + file + " with " + tmp);
+            }
+        }
+    }
+
+    private void load() {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new FileInputStream(file);
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            log.warn(this + " failed to read " + file + ", bundles will be scanned", e);
+            return;
+        }
+        for (String location : properties.stringPropertyNames()) {
+            Entry entry = Entry.parse(properties.getProperty(location));
+            if (entry != null) {
+                entries.put(location, entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final long lastModified;
+
+        private final List<String> classNames;
+
+        private Entry(long lastModified, List<String> classNames) {
+            this.lastModified = lastModified;
+            this.classNames = Collections.unmodifiableList(classNames);
+        }
+
+        private static Entry parse(String value) {
+            int separator = value.indexOf(STAMP_SEPARATOR);
+            if (separator < 0) {
+                return null;
+            }
+            long lastModified;
+            try {
+                lastModified = Long.parseLong(value.substring(0, separator));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            List<String> classNames = Generic.list();
+            for (String className : value.substring(separator + 1).split(CLASS_SEPARATOR)) {
+                if (className.trim().length() > 0) {
+                    classNames.add(className.trim());
+                }
+            }
+            return new Entry(lastModified, classNames);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            Entry entry = EqHc.retyped(this, object);
+            return entry != null && lastModified == entry.lastModified && EqHc.eq(classNames, entry.classNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return EqHc.hc(lastModified, classNames);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder().append(lastModified).append(STAMP_SEPARATOR);
+            for (int i = 0; i < classNames.size(); i++) {
+                sb.append(i == 0 ? "" : CLASS_SEPARATOR).append(classNames.get(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, file, "hits", hits, "misses", misses);
+    }
+}
@@ -32,13 +32,14 @@ import vanadis.ext.ModuleSystemException;
 import vanadis.objectmanagers.ObjectManagerFactory;
 import vanadis.osgi.Context;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 final class ModulesProcessor {
 
@@ -48,11 +49,45 @@ final class ModulesProcessor {
 
     private static final String DIR = "/";
 
+    /**
+     * @param index Index of module classes from earlier scans, may be null
+     * @param scanExecutor Executor to scan class files on, may be null
+     * @return Factories for the bundle's modules, by type
+     */
     static Map<String, ObjectManagerFactory> managedFactories(Context context, Bundle bundle,
                                                               ObjectManagerObserver observer,
-                                                              OperationQueuer dispatch) {
+                                                              OperationQueuer dispatch,
+                                                              ModuleScanIndex index,
+                                                              ExecutorService scanExecutor) {
         Map<String, ObjectManagerFactory> factories = Generic.map();
-        collect(ROOT, context, bundle, factories, observer, dispatch);
+        List<String> indexed = index == null ? null : index.moduleClasses(bundle);
+        if (indexed != null) {
+            for (String className : indexed) {
+                ObjectManagerFactory factory =
+                        moduleFactory(context, null, bundle, className, observer, dispatch);
+                if (factory != null) {
+                    map(bundle, factories, factory);
+                }
+            }
+            return factories;
+        }
+        Map<String, URL> classResources = Generic.map();
+        collect(ROOT, bundle, classResources);
+        Map<String, AnnotationsDigest> digests = AnnotationsDigests.createFromResources
+                (classResources, Module.class.getName(), scanExecutor);
+        for (String className : digests.keySet()) {
+            ObjectManagerFactory factory = moduleFactory(context, null, bundle, className, observer, dispatch);
+            if (factory != null) {
+                map(bundle, factories, factory);
+            }
+        }
+        if (index != null) {
+            List<String> moduleClasses = Generic.list();
+            for (ObjectManagerFactory factory : factories.values()) {
+                moduleClasses.add(factory.getModuleClass().getName());
+            }
+            index.record(bundle, moduleClasses);
+        }
         return factories;
     }
 
@@ -119,15 +154,6 @@ final class ModulesProcessor {
         return moduleSpecifications;
     }
 
-    private static ObjectManagerFactory objectManagerFactory(Context context,
-                                                             Bundle bundle,
-                                                             String className,
-                                                             InputStream inputStream,
-                                                             ObjectManagerObserver observer,
-                                                             OperationQueuer dispatch) {
-        return objectManagerFactory(context, null, bundle, className, inputStream, observer, dispatch);
-    }
-
     private static ObjectManagerFactory objectManagerFactory(Context context,
                                                              ClassLoader classLoader, Bundle bundle,
                                                              String className,
@@ -136,17 +162,28 @@ final class ModulesProcessor {
                                                              OperationQueuer dispatch) {
         AnnotationsDigest digest = annotations(inputStream);
         if (digest.hasClassData(Module.class)) {
-            Class<?> annotatedClass = loadClass(classLoader, bundle, className);
-            AnnotationDatum<Class<?>> datum = moduleData(annotatedClass);
-            Module module = module(datum, annotatedClass);
-            String type = moduleType(bundle, annotatedClass, module);
-            return new ObjectManagerFactoryImpl(context, annotatedClass, type,
-                                                launches(type, module.autolaunch(), module.launch()),
-                                                observer, dispatch);
+            return moduleFactory(context, classLoader, bundle, className, observer, dispatch);
         }
         return null;
     }
 
+    private static ObjectManagerFactory moduleFactory(Context context,
+                                                      ClassLoader classLoader, Bundle bundle,
+                                                      String className,
+                                                      ObjectManagerObserver observer,
+                                                      OperationQueuer dispatch) {
+        Class<?> annotatedClass = loadClass(classLoader, bundle, className);
+        AnnotationDatum<Class<?>> datum = moduleData(annotatedClass);
+        if (datum == null) {
+            return null;
+        }
+        Module module = module(datum, annotatedClass);
+        String type = moduleType(bundle, annotatedClass, module);
+        return new ObjectManagerFactoryImpl(context, annotatedClass, type,
+                                            launches(type, module.autolaunch(), module.launch()),
+                                            observer, dispatch);
+    }
+
     private static String moduleType(Bundle bundle, Class<?> annotatedClass, Module module) {
         String annotatedType = module.moduleType();
         if (Strings.isBlank(annotatedType)) {
@@ -158,20 +195,13 @@ final class ModulesProcessor {
         return annotatedType;
     }
 
-    private static void collect(String prefix, Context context, Bundle bundle,
-                                Map<String, ObjectManagerFactory> factories,
-                                ObjectManagerObserver observer,
-                                OperationQueuer dispatch) {
+    private static void collect(String prefix, Bundle bundle, Map<String, URL> classResources) {
         for (Object pathObject : entryPaths(prefix, bundle)) {
             String path = pathObject.toString();
             if (isClassFile(path)) {
-                ObjectManagerFactory factory =
-                        objectManagerFactories(context, bundle, path, className(path), observer, dispatch);
-                if (factory != null) {
-                    map(bundle, factories, factory);
-                }
+                classResources.put(className(path), entry(bundle, path));
             } else if (isDirectory(path)) {
-                collect(path, context, bundle, factories, observer, dispatch);
+                collect(path, bundle, classResources);
             }
         }
     }
@@ -212,23 +242,13 @@ final class ModulesProcessor {
         return entryPaths;
     }
 
-    private static ObjectManagerFactory objectManagerFactories(Context context,
-                                                               Bundle bundle,
-                                                               String path,
-                                                               String className,
-                                                               ObjectManagerObserver observer,
-                                                               OperationQueuer dispatch) {
-        return objectManagerFactory(context, bundle, className, stream(bundle, path, className), observer, dispatch);
-    }
-
-    private static InputStream stream(Bundle bundle, String path, String className) {
+    private static URL entry(Bundle bundle, String path) {
         URL url = bundle.getEntry(path);
-        try {
-            return url.openStream();
-        } catch (IOException e) {
+        if (url == null) {
             throw new IllegalStateException
-                    ("Failed to open entry " + path + " to load " + className + " from " + bundle.getSymbolicName(), e);
+                    ("Failed to find entry " + path + " in " + bundle.getSymbolicName());
         }
+        return url;
     }
 
     private ModulesProcessor() {
@@ -18,6 +18,7 @@ package vanadis.extrt;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import vanadis.annopro.AnnotationsDigest;
 import vanadis.blueprints.ModuleSpecification;
 import vanadis.concurrent.OperationQueuer;
 import vanadis.core.collections.Generic;
@@ -55,6 +56,12 @@ final class ObjectManagerFactoryImpl implements ObjectManagerFactory {
 
     private final OperationQueuer dispatch;
 
+    /**
+     * Validated annotations of the implementation class, read on first launch
+     * and shared by all launches.
+     */
+    private AnnotationsDigest digest;
+
     ObjectManagerFactoryImpl(Context context, Class<?> implementationClass,
                              String type, Collection<ModuleSpecification> autoModules,
                              ObjectManagerObserver observer,
@@ -117,7 +124,8 @@ final class ObjectManagerFactoryImpl implements ObjectManagerFactory {
             PortUtils.writeToSystemProperties(specification.getPropertySet(), context.getLocation());
         }
         ObjectManager objectManager =
-                ObjectManagerImpl.create(context, specification, implementationClass , observer, dispatch);
+                ObjectManagerImpl.create(context, specification, implementationClass, null, digest(),
+                                         observer, dispatch);
         managers.put(specification, objectManager);
         log.info(this + " received " + specification + ", created " + objectManager);
         return objectManager;
@@ -138,6 +146,13 @@ final class ObjectManagerFactoryImpl implements ObjectManagerFactory {
         }
     }
 
+    private synchronized AnnotationsDigest digest() {
+        if (digest == null) {
+            digest = ValidAnnotations.read(implementationClass);
+        }
+        return digest;
+    }
+
     private void failIllegalType(ModuleSpecification specification) {
         if (!specification.getType().equalsIgnoreCase(getType())) {
             throw new IllegalArgumentException
@@ -61,7 +61,16 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
                                     Class<T> type, T managed,
                                     ObjectManagerObserver observer, OperationQueuer dispatch) {
         Class<T> managedType = type == null ? (Class<T>)managed.getClass() : type;
-        AnnotationsDigest digest = ValidAnnotations.read(managedType);
+        return create(context, moduleSpecification, managedType, managed,
+                      ValidAnnotations.read(managedType), observer, dispatch);
+    }
+
+    /**
+     * @param digest Validated annotations of the managed type, see {@link ValidAnnotations#read(Class)}
+     */
+    static <T> ObjectManager create(Context context, ModuleSpecification moduleSpecification,
+                                    Class<T> managedType, T managed, AnnotationsDigest digest,
+                                    ObjectManagerObserver observer, OperationQueuer dispatch) {
         T managedInstance = managed == null
                 ? isNoArgConstructable(digest) ? newInstance(managedType) : null
                 : managed;
@@ -90,7 +99,8 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
      * Tracks injectors such as {@link vanadis.extrt.MethodInjector}
      * and {@link vanadis.extrt.TrackingInjector}.
      */
-    private final DependencyTracker<Injector<?>> injectorDependencyTracker = new DependencyTracker<Injector<?>>();
+    private final DependencyTracker<Injector<?>> injectorDependencyTracker =
+            new DependencyTracker<Injector<?>>(new InjectorCompletionListener());
 
     /**
      * Tracks constructor injectors such as {@link vanadis.extrt.MethodInjector}
@@ -119,6 +129,8 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
 
     private final List<ConstructorGatherer> constructorGatherers;
 
+    private volatile boolean shuttingDown;
+
     private ObjectManagerImpl(Context context, ModuleSpecification moduleSpecification,
                               Class<?> managedClass, Object managed,
                               AnnotationsDigest digest, ObjectManagerObserver observer,
@@ -237,6 +249,7 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
                 log.info(this + " was asked to close again");
                 return;
             }
+            shuttingDown = true;
             notifyManagedFeatures();
             for (JmxRegistration<?> jmxReg : jmxRegs) {
                 jmxReg.unregister();
@@ -341,7 +354,7 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
 
     private Set<Configurer> setupConfigurers(Location location) {
         Set<Configurer> configurers = Generic.set();
-        PropertySet propertySet = moduleSpecification.getPropertySet();
+        PropertySet propertySet = PropertySets.snapshot(moduleSpecification.getPropertySet());
         for (Class<? extends Annotation> type : Arrays.asList(Configure.class, Configuration.class)) {
             for (AnnotationDatum<?> datum : annotationsDigest.getAccessibleData(type)) {
                 configurers.add(new Configurer(managed.get(), location, datum, propertySet));
@@ -622,9 +635,6 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
 
     private void handleRetractionEvent() {
         if (state.is(DEPENDENCIES_RESOLVED, SERVICES_EXPOSED, ACTIVE)) {
-            if (!injectorDependencyTracker.isRequiredComplete()) {
-                state.transition(Transition.BECOME_UNRESOLVED);
-            }
             for (Exposer<?> exposer : exposerDependencyTracker.complete()) {
                 if (!canActivate(exposer) && !exposer.isPersistent()) {
                     deactivate(exposer, exposerDependencyTracker);
@@ -645,13 +655,7 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
     }
 
     private boolean injectionIncomplete() {
-        Iterable<Injector<?>> injectors = injectorDependencyTracker.requiredIncomplete();
-        for (Injector<?> injector : injectors) {
-            if (injector.isRequired()) {
-                return true;
-            }
-        }
-        return false;
+        return !injectorDependencyTracker.isRequiredComplete();
     }
 
     private void checkResolvedStatus() {
@@ -794,6 +798,27 @@ final class ObjectManagerImpl implements ObjectManager, InjectionListener, Const
         }
     }
 
+    /**
+     * Becomes unresolved as soon as a required injection is retracted.  Retractions
+     * during shutdown are not state changes.
+     */
+    private class InjectorCompletionListener implements DependencyTracker.Listener {
+
+        @Override
+        public void requiredComplete(DependencyTracker<?> tracker) {
+            if (log.isDebugEnabled()) {
+                log.debug(ObjectManagerImpl.this + " has required injections complete: " + tracker);
+            }
+        }
+
+        @Override
+        public void requiredIncomplete(DependencyTracker<?> tracker) {
+            if (!shuttingDown && state.is(DEPENDENCIES_RESOLVED, SERVICES_EXPOSED, ACTIVE)) {
+                state.transition(Transition.BECOME_UNRESOLVED);
+            }
+        }
+    }
+
     private class ObjectManagerInjectionListener implements InjectionListener {
 
         private final DependencyTracker<?> injectorDependencyTracker;
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.extrt;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.ToString;
+
+import java.util.*;
+
+/**
+ * Unresolved bundles, indexed on the requirements they are waiting for.  A
+ * requirement is an imported package name, or {@link #bundle(String) a bundle}
+ * for required bundles and fragment hosts.  When a bundle comes up, the bundles
+ * waiting for something it provides are the only ones worth another try.
+ *
+ * <P>Bundles that failed for no reason the index can tell, e.g. a version
+ * mismatch, are retried whenever any bundle comes up.</P>
+ */
+final class ResolutionIndex {
+
+    private static final String BUNDLE_PREFIX = "bundle:";
+
+    private static final String OPTIONAL = "resolution:=optional";
+
+    private final Map<String, Set<Long>> waiters = Generic.map();
+
+    private final Map<Long, Collection<String>> requirements = Generic.map();
+
+    private final Set<Long> unexplained = Generic.linkedHashSet();
+
+    /**
+     * @param bundleId Unresolved bundle
+     * @param missing Requirements not currently provided, possibly empty
+     */
+    void await(long bundleId, Collection<String> missing) {
+        remove(bundleId);
+        if (missing.isEmpty()) {
+            unexplained.add(bundleId);
+            return;
+        }
+        requirements.put(bundleId, missing);
+        for (String requirement : missing) {
+            Set<Long> ids = waiters.get(requirement);
+            if (ids == null) {
+                waiters.put(requirement, ids = Generic.linkedHashSet());
+            }
+            ids.add(bundleId);
+        }
+    }
+
+    /**
+     * Take out the bundles that may resolve now that something new is provided.
+     *
+     * @param provided Requirements now provided
+     * @return Ids of the bundles worth retrying, no longer in the index
+     */
+    Set<Long> provided(Collection<String> provided) {
+        Set<Long> woken = Generic.linkedHashSet(unexplained);
+        for (String requirement : provided) {
+            Set<Long> ids = waiters.get(requirement);
+            if (ids != null) {
+                woken.addAll(ids);
+            }
+        }
+        for (Long id : woken) {
+            remove(id);
+        }
+        return woken;
+    }
+
+    /**
+     * @return Ids of all waiting bundles, no longer in the index
+     */
+    Set<Long> all() {
+        Set<Long> all = Generic.linkedHashSet(unexplained);
+        all.addAll(requirements.keySet());
+        unexplained.clear();
+        requirements.clear();
+        waiters.clear();
+        return all;
+    }
+
+    void remove(long bundleId) {
+        unexplained.remove(bundleId);
+        Collection<String> missing = requirements.remove(bundleId);
+        if (missing != null) {
+            for (String requirement : missing) {
+                Set<Long> ids = waiters.get(requirement);
+                if (ids != null && ids.remove(bundleId) && ids.isEmpty()) {
+                    waiters.remove(requirement);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return unexplained.size() + requirements.size();
+    }
+
+    static String bundle(String symbolicName) {
+        return BUNDLE_PREFIX + symbolicName;
+    }
+
+    static boolean isBundle(String requirement) {
+        return requirement.startsWith(BUNDLE_PREFIX);
+    }
+
+    static String bundleName(String requirement) {
+        return requirement.substring(BUNDLE_PREFIX.length());
+    }
+
+    /**
+     * @return Mandatory requirements of the bundle: imported packages, required bundles and fragment host
+     */
+    static Collection<String> requirements(Bundle bundle) {
+        Dictionary<?, ?> headers = bundle.getHeaders();
+        Collection<String> requirements = Generic.linkedHashSet();
+        requirements.addAll(names(header(headers, Constants.IMPORT_PACKAGE), false));
+        for (String name : names(header(headers, Constants.REQUIRE_BUNDLE), false)) {
+            requirements.add(bundle(name));
+        }
+        for (String name : names(header(headers, Constants.FRAGMENT_HOST), false)) {
+            requirements.add(bundle(name));
+        }
+        return requirements;
+    }
+
+    /**
+     * @return What the bundle provides to others: exported packages, and the bundle itself
+     */
+    static Collection<String> provisions(Bundle bundle) {
+        Collection<String> provisions = names(header(bundle.getHeaders(), Constants.EXPORT_PACKAGE), true);
+        String symbolicName = bundle.getSymbolicName();
+        if (symbolicName != null) {
+            provisions.add(bundle(symbolicName));
+        }
+        return provisions;
+    }
+
+    /**
+     * Names in a manifest header, e.g. the packages in
+     * {@code a.b;c.d;version="[1,2)",e.f;resolution:=optional}.
+     *
+     * @param header Header value, may be null
+     * @param includeOptional Include clauses with optional resolution
+     * @return Names
+     */
+    static Collection<String> names(String header, boolean includeOptional) {
+        Collection<String> names = Generic.linkedHashSet();
+        if (header == null) {
+            return names;
+        }
+        for (String clause : split(header, ',')) {
+            List<String> parts = split(clause, ';');
+            if (!includeOptional && isOptional(parts)) {
+                continue;
+            }
+            for (String part : parts) {
+                String name = part.trim();
+                if (name.length() > 0 && name.indexOf('=') < 0) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static boolean isOptional(List<String> parts) {
+        for (String part : parts) {
+            if (part.replace(" ", "").equals(OPTIONAL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> split(String string, char separator) {
+        List<String> parts = Generic.list();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && !quoted) {
+                parts.add(string.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(string.substring(start));
+        return parts;
+    }
+
+    private static String header(Dictionary<?, ?> headers, String name) {
+        Object value = headers == null ? null : headers.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "waiting", requirements.size(), "unexplained", unexplained.size());
+    }
+}
@@ -25,4 +25,16 @@ interface SystemEvents extends BundleMediatorListener,
     void reloadBundles(String[] ids);
 
     void launchBundles(String[] uris);
+
+    /**
+     * Install the bundle specifications that have been added since the last
+     * call, as one batch.
+     */
+    void installPendingBundles();
+
+    /**
+     * Write the module scan index, if bundles have been indexed since it was
+     * last written.
+     */
+    void storeScanIndex();
 }
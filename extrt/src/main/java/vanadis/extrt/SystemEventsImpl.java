@@ -33,6 +33,10 @@ import vanadis.osgi.Context;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 class SystemEventsImpl implements SystemEvents {
@@ -49,11 +53,32 @@ class SystemEventsImpl implements SystemEvents {
 
     private final Bundles bundles;
 
+    private final ModuleScanIndex scanIndex;
+
+    /**
+     * Bundle specifications added, but not yet installed.  Specifications tend to
+     * arrive in bursts, e.g. all bundles in a system specification at once, and
+     * are installed as a batch.
+     */
+    private final List<BundleSpecification> pendingInstalls = Generic.list();
+
+    private final ExecutorService scanExecutor;
+
+    /**
+     * True while a {@link #storeScanIndex() store} of the scan index is queued.
+     * Bundles activated in a burst, e.g. on a cold boot, are indexed before the
+     * index is written once.
+     */
+    private boolean scanIndexStorePending;
+
     private final AtomicReference<Thread> shutdownThread = new AtomicReference();
 
     SystemEventsImpl(BundleContext bundleContext, Context context, OperationQueuer queuer) {
         this.queuer = queuer;
         this.bundles = new Bundles(bundleContext, context);
+        this.scanIndex = new ModuleScanIndex(bundleContext.getDataFile(ModuleScanIndex.FILE_NAME));
+        this.scanExecutor = Executors.newFixedThreadPool
+                (Runtime.getRuntime().availableProcessors(), new ScanThreadFactory());
     }
 
     Bundles getBundles() {
@@ -93,17 +118,41 @@ class SystemEventsImpl implements SystemEvents {
             log.info("Ignoring bundle add:" + bundleSpecification +
                     ", shutdown initiated in " + shutdownThread() + "!");
         } else {
-            log.info("Installing " + bundleSpecification);
-            try {
-                bundles.install(bundleSpecification);
-            } catch (Exception e) {
-                log.error(this + " failed to install " + bundleSpecification, e);
+            if (pendingInstalls.isEmpty()) {
+                asynch.installPendingBundles();
+            }
+            pendingInstalls.add(bundleSpecification);
+        }
+    }
+
+    @Override
+    public void installPendingBundles() {
+        if (pendingInstalls.isEmpty()) {
+            return;
+        }
+        List<BundleSpecification> specifications = Generic.list(pendingInstalls);
+        pendingInstalls.clear();
+        if (isShuttingDown()) {
+            log.info("Ignoring " + specifications.size() + " bundle adds, shutdown initiated in " +
+                    shutdownThread() + "!");
+            return;
+        }
+        log.info("Installing " + specifications.size() + " bundles: " + specifications);
+        try {
+            Map<BundleSpecification, Exception> failures = bundles.install(specifications, scanExecutor);
+            for (Map.Entry<BundleSpecification, Exception> entry : failures.entrySet()) {
+                log.error(this + " failed to install " + entry.getKey(), entry.getValue());
             }
+        } catch (Exception e) {
+            log.error(this + " failed to install " + specifications, e);
         }
     }
 
     @Override
     public void bundleSpecificationRemoved(BundleSpecification bundleSpecification) {
+        if (pendingInstalls.remove(bundleSpecification)) {
+            return;
+        }
         if (bundles.isHosting(bundleSpecification)) {
             Long bundleId = bundles.getBundleId(bundleSpecification);
             if (isManaged(bundleId)) {
@@ -121,11 +170,23 @@ class SystemEventsImpl implements SystemEvents {
                 considerTracking(bundle);
             }
         }
+        scanIndex.store(this.bundles);
+        log.info(this + " spooled bundles, " + scanIndex);
     }
 
     @Override
     public void activated(Bundle bundle) {
         considerTracking(bundle);
+        if (!scanIndexStorePending) {
+            scanIndexStorePending = true;
+            asynch.storeScanIndex();
+        }
+    }
+
+    @Override
+    public void storeScanIndex() {
+        scanIndexStorePending = false;
+        scanIndex.store(bundles);
     }
 
     @Override
@@ -194,6 +255,7 @@ class SystemEventsImpl implements SystemEvents {
     }
 
     private void closeResources() {
+        scanExecutor.shutdown();
         bundles.close();
         queuer.synchUp();
         try {
@@ -226,7 +288,7 @@ class SystemEventsImpl implements SystemEvents {
     private void considerTracking(Bundle bundle) {
         BundleManager existing = bundleManagers.get(bundle.getBundleId());
         if (existing == null) {
-            BundleManager bundleManager = BundleManager.manage(bundle, asynch, queuer);
+            BundleManager bundleManager = BundleManager.manage(bundle, asynch, queuer, scanIndex, scanExecutor);
             if (bundleManager != null) {
                 storeBundleManager(bundle.getBundleId(), bundleManager);
                 launchUnhostedModuleSpecifications(bundleManager);
@@ -398,6 +460,21 @@ class SystemEventsImpl implements SystemEvents {
         return moduleSpecifications;
     }
 
+    /**
+     * Daemon threads for scanning bundle classes, so a stuck scan does not hold up the VM.
+     */
+    private static final class ScanThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ModuleScan-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(SystemEventsImpl.class);
 
     @Override
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.extrt;
+
+import org.junit.Assert;
+import org.junit.Test;
+import vanadis.blueprints.BundleSpecification;
+
+import java.net.URI;
+import java.util.Arrays;
+
+public class BundlesTest {
+
+    @Test
+    public void installInStartLevelOrder() {
+        BundleSpecification noLevel1 = spec("a", null);
+        BundleSpecification level3 = spec("b", 3);
+        BundleSpecification noLevel2 = spec("c", null);
+        BundleSpecification level1 = spec("d", 1);
+        BundleSpecification otherLevel3 = spec("e", 3);
+        Assert.assertEquals(Arrays.asList(level1, level3, otherLevel3, noLevel1, noLevel2),
+                            Bundles.inStartLevelOrder
+                                    (Arrays.asList(noLevel1, level3, noLevel2, level1, otherLevel3)));
+    }
+
+    private static BundleSpecification spec(String name, Integer startLevel) {
+        return BundleSpecification.createFixed(URI.create("file:/tmp/" + name + ".jar"), startLevel, null);
+    }
+}
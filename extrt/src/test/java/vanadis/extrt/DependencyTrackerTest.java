@@ -0,0 +1,263 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.extrt;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import vanadis.core.collections.Generic;
+import vanadis.objectmanagers.ObjectManager;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class DependencyTrackerTest extends ObjectManagementTestCase {
+
+    private ObjectManager objectManager;
+
+    private final List<String> events = Generic.list();
+
+    private final DependencyTracker.Listener listener = new DependencyTracker.Listener() {
+        @Override
+        public void requiredComplete(DependencyTracker<?> tracker) {
+            events.add("complete");
+        }
+
+        @Override
+        public void requiredIncomplete(DependencyTracker<?> tracker) {
+            events.add("incomplete");
+        }
+    };
+
+    @Before
+    public void setUp() {
+        objectManager = manage(new Object());
+    }
+
+    @Test
+    public void trackByName() {
+        DependencyTracker<Feature> tracker = new DependencyTracker<Feature>();
+        Feature a = tracker.track(feature("a", true));
+        Feature b = tracker.track(feature("b", false));
+        Assert.assertTrue(tracker.isTracking("a"));
+        Assert.assertTrue(tracker.isTracking("b"));
+        Assert.assertFalse(tracker.isTracking("c"));
+        Assert.assertEquals(Generic.list(a, b), Generic.list(tracker));
+        try {
+            tracker.track(feature("a", false));
+            Assert.fail("Tracked a twice");
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            tracker.progress("c");
+            Assert.fail("Progressed untracked c");
+        } catch (IllegalStateException ignore) {
+        }
+        Feature done = feature("c", true);
+        done.complete = true;
+        try {
+            tracker.track(done);
+            Assert.fail("Tracked complete c");
+        } catch (IllegalStateException ignore) {
+        }
+        Assert.assertFalse(tracker.isTracking("c"));
+
+        b.complete = true;
+        tracker.progress("b");
+        Assert.assertEquals(Generic.list("b"), Generic.list(tracker.completeNames()));
+        Assert.assertFalse(tracker.isRequiredComplete());
+
+        tracker.reset();
+        Assert.assertFalse(tracker.isTracking("a"));
+        Assert.assertFalse(tracker.iterator().hasNext());
+        Assert.assertTrue(tracker.completeNames().isEmpty());
+        Assert.assertTrue(tracker.isRequiredComplete());
+        Feature again = tracker.track(feature("a", true));
+        Assert.assertEquals(Generic.list(again), Generic.list(tracker.incomplete()));
+    }
+
+    @Test
+    public void selectByCompletion() {
+        DependencyTracker<Feature> tracker = new DependencyTracker<Feature>();
+        Feature a = tracker.track(feature("a", true));
+        Feature b = tracker.track(feature("b", false));
+        Feature c = tracker.track(feature("c", true));
+        Feature d = tracker.track(feature("d", false));
+        Assert.assertTrue(Generic.list(tracker.complete()).isEmpty());
+        Assert.assertEquals(Generic.list(a, b, c, d), Generic.list(tracker.incomplete()));
+        Assert.assertEquals(Generic.list(a, c), Generic.list(tracker.requiredIncomplete()));
+
+        b.complete = true;
+        tracker.progress("b");
+        c.complete = true;
+        tracker.progress("c");
+        Assert.assertEquals(Generic.list(b, c), Generic.list(tracker.complete()));
+        Assert.assertEquals(Generic.list(a, d), Generic.list(tracker.incomplete()));
+        Assert.assertEquals(Generic.list(a), Generic.list(tracker.requiredIncomplete()));
+    }
+
+    @Test
+    public void iterateLive() {
+        DependencyTracker<Feature> tracker = new DependencyTracker<Feature>();
+        Feature a = tracker.track(feature("a", true));
+        Feature b = tracker.track(feature("b", true));
+        Feature c = tracker.track(feature("c", true));
+        Iterator<Feature> incomplete = tracker.incomplete().iterator();
+        Assert.assertSame(a, incomplete.next());
+        a.complete = true;
+        tracker.progress("a");
+        Assert.assertSame(b, incomplete.next());
+        c.complete = true;
+        tracker.progress("c");
+        Assert.assertFalse(incomplete.hasNext());
+        try {
+            incomplete.next();
+            Assert.fail("Iterated past the end");
+        } catch (NoSuchElementException ignore) {
+        }
+
+        Feature d = tracker.track(feature("d", false));
+        Iterator<Feature> complete = tracker.complete().iterator();
+        Assert.assertSame(a, complete.next());
+        try {
+            complete.remove();
+            Assert.fail("Removed through selection");
+        } catch (UnsupportedOperationException ignore) {
+        }
+        Assert.assertTrue(tracker.isTracking("a"));
+        Assert.assertSame(c, complete.next());
+        Assert.assertFalse(complete.hasNext());
+        Assert.assertEquals(Generic.list(b, d), Generic.list(tracker.incomplete()));
+    }
+
+    @Test
+    public void notifyTransitions() {
+        DependencyTracker<Feature> tracker = new DependencyTracker<Feature>(listener);
+        Feature a = tracker.track(feature("a", true));
+        Assert.assertEquals(Generic.list("incomplete"), events);
+        Feature b = tracker.track(feature("b", true));
+        Feature c = tracker.track(feature("c", false));
+        Assert.assertEquals(1, events.size());
+
+        tracker.progress("a");
+        Assert.assertEquals(1, events.size());
+        a.complete = true;
+        tracker.progress("a");
+        c.complete = true;
+        tracker.progress("c");
+        Assert.assertEquals(1, events.size());
+        Assert.assertFalse(tracker.isRequiredComplete());
+
+        b.complete = true;
+        tracker.progress("b");
+        Assert.assertEquals(Generic.list("incomplete", "complete"), events);
+        Assert.assertTrue(tracker.isRequiredComplete());
+        tracker.progress("b");
+        Assert.assertEquals(2, events.size());
+
+        c.complete = false;
+        Assert.assertSame(c, tracker.setback("c"));
+        Assert.assertEquals(2, events.size());
+        Assert.assertTrue(tracker.isRequiredComplete());
+    }
+
+    @Test
+    public void notifyRemoval() {
+        DependencyTracker<Feature> tracker = new DependencyTracker<Feature>(listener);
+        Feature a = tracker.track(feature("a", true));
+        Feature b = tracker.track(feature("b", true));
+        a.complete = true;
+        tracker.progress("a");
+        b.complete = true;
+        tracker.progress("b");
+        Assert.assertEquals(Generic.list("incomplete", "complete"), events);
+
+        Assert.assertNull(tracker.setback("a"));
+        Assert.assertEquals(2, events.size());
+
+        a.complete = false;
+        Assert.assertSame(a, tracker.setback("a"));
+        Assert.assertEquals(Generic.list("incomplete", "complete", "incomplete"), events);
+        Assert.assertFalse(tracker.isRequiredComplete());
+        Assert.assertEquals(Generic.list("b"), Generic.list(tracker.completeNames()));
+        Assert.assertNull(tracker.setback("a"));
+
+        b.complete = false;
+        Assert.assertSame(b, tracker.setback("b"));
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(Generic.list(a, b), Generic.list(tracker.requiredIncomplete()));
+
+        a.complete = true;
+        tracker.progress("a");
+        b.complete = true;
+        tracker.progress("b");
+        Assert.assertEquals(Generic.list("incomplete", "complete", "incomplete", "complete"), events);
+    }
+
+    private Feature feature(String name, boolean required) {
+        return new Feature(FeatureAnchor.create
+                (objectManager, name, Runnable.class, required, getContext(), null));
+    }
+
+    private static final class Feature extends ManagedFeature<Runnable, Runnable> {
+
+        private static final Runnable MBEAN = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        private boolean complete;
+
+        private Feature(FeatureAnchor<Runnable> anchor) {
+            super(anchor, Runnable.class);
+        }
+
+        @Override
+        protected Runnable mbean() {
+            return MBEAN;
+        }
+
+        @Override
+        boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        boolean isMulti() {
+            return false;
+        }
+
+        @Override
+        void activate() {
+        }
+
+        @Override
+        long[] getServiceIds() {
+            return new long[0];
+        }
+
+        @Override
+        protected void performDeactivate() {
+        }
+
+        @Override
+        public String toString() {
+            return getFeatureName();
+        }
+    }
+}
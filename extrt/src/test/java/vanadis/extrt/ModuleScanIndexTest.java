@@ -0,0 +1,126 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.extrt;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ModuleScanIndexTest {
+
+    @Test
+    public void rememberAcrossRestart()
+        throws IOException {
+        File file = File.createTempFile("vanadis", ".index");
+        try {
+            Bundle modules = bundle("file:modules.jar", 100L);
+            Bundle plain = bundle("file:plain.jar", 200L);
+
+            ModuleScanIndex index = new ModuleScanIndex(file);
+            Assert.assertNull(index.moduleClasses(modules));
+            index.record(modules, Arrays.asList("foo.Bar", "foo.Zot"));
+            index.record(plain, Collections.<String>emptyList());
+            index.store(Arrays.asList(modules, plain));
+
+            ModuleScanIndex restarted = new ModuleScanIndex(file);
+            Assert.assertEquals(Arrays.asList("foo.Bar", "foo.Zot"), restarted.moduleClasses(modules));
+            Assert.assertTrue(restarted.moduleClasses(plain).isEmpty());
+            Assert.assertEquals(2, restarted.getHits());
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void forgetChangedAndRemoved()
+        throws IOException {
+        File file = File.createTempFile("vanadis", ".index");
+        try {
+            Bundle modules = bundle("file:modules.jar", 100L);
+            Bundle removed = bundle("file:removed.jar", 100L);
+
+            ModuleScanIndex index = new ModuleScanIndex(file);
+            index.record(modules, Arrays.asList("foo.Bar"));
+            index.record(removed, Arrays.asList("foo.Zot"));
+            index.store(Arrays.asList(modules));
+
+            ModuleScanIndex restarted = new ModuleScanIndex(file);
+            Assert.assertNull(restarted.moduleClasses(bundle("file:modules.jar", 101L)));
+            Assert.assertNull(restarted.moduleClasses(removed));
+            Assert.assertEquals(2, restarted.getMisses());
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void storeOnlyChanges()
+        throws IOException {
+        File file = File.createTempFile("vanadis", ".index");
+        try {
+            Bundle modules = bundle("file:modules.jar", 100L);
+            ModuleScanIndex index = new ModuleScanIndex(file);
+            index.record(modules, Arrays.asList("foo.Bar"));
+            index.store(Arrays.asList(modules));
+            Assert.assertTrue(file.delete());
+
+            index.record(modules, Arrays.asList("foo.Bar"));
+            index.store(Arrays.asList(modules));
+            Assert.assertFalse(file.exists());
+
+            index.record(modules, Arrays.asList("foo.Bar", "foo.Zot"));
+            index.store(Arrays.asList(modules));
+            Assert.assertTrue(file.exists());
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void noFile() {
+        ModuleScanIndex index = new ModuleScanIndex(null);
+        Bundle bundle = bundle("file:modules.jar", 100L);
+        index.record(bundle, Arrays.asList("foo.Bar"));
+        index.store(Arrays.asList(bundle));
+        List<String> classes = index.moduleClasses(bundle);
+        Assert.assertEquals(Arrays.asList("foo.Bar"), classes);
+    }
+
+    private static Bundle bundle(final String location, final long lastModified) {
+        return (Bundle) Proxy.newProxyInstance
+                (Bundle.class.getClassLoader(), new Class<?>[]{Bundle.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getLocation")) {
+                            return location;
+                        }
+                        if (method.getName().equals("getLastModified")) {
+                            return lastModified;
+                        }
+                        throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.extrt;
+
+import org.junit.Assert;
+import org.junit.Test;
+import vanadis.core.collections.Generic;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ResolutionIndexTest {
+
+    @Test
+    public void parseNames() {
+        Assert.assertEquals(Generic.linkedHashSet("a.b", "c.d", "e.f"),
+                            ResolutionIndex.names("a.b;c.d;version=\"[1,2)\", e.f;uses:=\"x.y,z\"", true));
+        Assert.assertEquals(Generic.linkedHashSet("a.b"),
+                            ResolutionIndex.names("a.b,c.d;resolution:=optional", false));
+        Assert.assertTrue(ResolutionIndex.names(null, true).isEmpty());
+    }
+
+    @Test
+    public void wakeWaiters() {
+        ResolutionIndex index = new ResolutionIndex();
+        index.await(1L, Arrays.asList("a", "b"));
+        index.await(2L, Arrays.asList("b"));
+        index.await(3L, Arrays.asList("c"));
+        Assert.assertEquals(3, index.size());
+
+        Assert.assertEquals(Generic.linkedHashSet(1L, 2L), index.provided(Arrays.asList("b")));
+        Assert.assertEquals(1, index.size());
+        Assert.assertTrue(index.provided(Arrays.asList("a")).isEmpty());
+    }
+
+    @Test
+    public void retryUnexplained() {
+        ResolutionIndex index = new ResolutionIndex();
+        index.await(1L, Collections.<String>emptyList());
+        index.await(2L, Arrays.asList("c"));
+        Assert.assertEquals(Generic.linkedHashSet(1L), index.provided(Arrays.asList("x")));
+        Assert.assertEquals(Generic.linkedHashSet(2L), index.all());
+        Assert.assertEquals(0, index.size());
+    }
+}
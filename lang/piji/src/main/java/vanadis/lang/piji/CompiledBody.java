@@ -1,5 +1,5 @@
 /*
- * Copyright 2008 Kjetil Valstadsve
+ * Copyright 2009 Kjetil Valstadsve
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,20 +13,18 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package vanadis.osgi;
+package vanadis.lang.piji;
 
-final class MatchesIterator extends FiltersIterator {
-
-    private final ServiceProperties<?> properties;
-
-    MatchesIterator(Filter[] exprs, ServiceProperties<?> properties) {
-        super(exprs);
-        this.properties = properties;
-    }
-
-    @Override
-    protected Boolean next(Filter filter) {
-        return filter.matches(properties);
-    }
+/**
+ * Implemented by classes generated from lambdas, see {@link LambdaCompiler}.
+ */
+public interface CompiledBody {
 
+    /**
+     * @param args Argument values, of the types the body was compiled for
+     * @return Value of the body
+     * @throws Throwable iff the evaluation goes awry
+     */
+    Object apply(Object[] args)
+            throws Throwable;
 }
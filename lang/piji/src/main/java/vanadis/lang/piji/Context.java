@@ -21,11 +21,19 @@ import vanadis.core.lang.TraverseIterable;
 import vanadis.lang.piji.hold.DataHolderFactory;
 import vanadis.lang.piji.loading.ClassResolver;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
+/**
+ * <P>Bindings of symbols to values, with a parent context to fall back on.</P>
+ *
+ * <P>Bindings are kept in slots, in the order they were made.  Small contexts, like
+ * those made for each <code>let</code> and lambda application, are searched by
+ * comparing symbols directly.  Larger ones, like the global context, get an
+ * index.</P>
+ */
 public class Context {
 
     private static class ContextIterable extends TraverseIterable<Context> {
@@ -66,7 +74,17 @@ public class Context {
         return ClassLoader.getSystemClassLoader();
     }
 
-    private final Map<Symbol, Object> bindings = Generic.map();
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private static final int INDEX_THRESHOLD = 8;
+
+    private Symbol[] names;
+
+    private Object[] values;
+
+    private int size;
+
+    private Map<Symbol, Integer> index;
 
     private final ClassResolver classResolver;
 
@@ -90,7 +108,17 @@ public class Context {
         this(parent, true);
     }
 
+    Context(Context parent, int capacity) {
+        this(parent, true, capacity);
+    }
+
     private Context(Context parent, boolean recursive) {
+        this(parent, recursive, DEFAULT_CAPACITY);
+    }
+
+    private Context(Context parent, boolean recursive, int capacity) {
+        this.names = new Symbol[capacity < 1 ? 1 : capacity];
+        this.values = new Object[this.names.length];
         this.parent = parent;
         this.recursive = this.parent != null && recursive;
         this.classLoader = parent == null
@@ -104,6 +132,8 @@ public class Context {
         if (parent == null && recursive) {
             throw new IllegalArgumentException("Null parent, but recursive is true!");
         }
+        this.names = new Symbol[DEFAULT_CAPACITY];
+        this.values = new Object[DEFAULT_CAPACITY];
         this.parent = parent;
         this.recursive = recursive;
         this.classLoader = loader;
@@ -142,22 +172,23 @@ public class Context {
     public final Iterator<Object> symbols() {
         Collection<Object> collection = Generic.list();
         for (Context ctx : towardsTheRoot()) {
-            collection.addAll(ctx.bindings.keySet());
+            collection.addAll(Arrays.asList(ctx.names).subList(0, ctx.size));
         }
         return collection.iterator();
     }
 
     public final Iterator<Symbol> symbolsLocal() {
-        return this.bindings.keySet().iterator();
+        return Generic.list(Arrays.asList(this.names).subList(0, this.size)).iterator();
     }
 
     public final Object set(Symbol symbol, Object value) {
         for (Context ctx = this; ctx != null; ctx = (ctx.recursive
                 ? ctx.parent
                 : null)) {
-            if (ctx.bindings.containsKey(symbol)) {
-                Object bound = ctx.bindings.get(symbol);
-                ctx.bind(symbol, value);
+            int slot = ctx.slot(symbol);
+            if (slot >= 0) {
+                Object bound = ctx.values[slot];
+                ctx.values[slot] = value == null ? Context.NULL : value;
                 return bound;
             }
         }
@@ -167,8 +198,9 @@ public class Context {
 
     public final Object lookup(Symbol symbol) {
         for (Context ctx = this; ctx != null; ctx = ctx.parent) {
-            if (ctx.bindings.containsKey(symbol)) {
-                return ctx.bindings.get(symbol);
+            int slot = ctx.slot(symbol);
+            if (slot >= 0) {
+                return ctx.values[slot];
             }
         }
         return null;
@@ -184,10 +216,9 @@ public class Context {
 
     public Symbol reverseLookup(Object object) {
         for (Context ctx = this; ctx != null; ctx = ctx.parent) {
-            Set<Map.Entry<Symbol, Object>> entries = ctx.bindings.entrySet();
-            for (Map.Entry<Symbol, Object> entry : entries) {
-                if (entry.getValue().equals(object)) {
-                    return entry.getKey();
+            for (int i = 0; i < ctx.size; i++) {
+                if (ctx.values[i].equals(object)) {
+                    return ctx.names[i];
                 }
             }
         }
@@ -207,25 +238,78 @@ public class Context {
     }
 
     public final void bind(Symbol symbol, Object value) {
-        this.bindings.put(symbol, (value == null ? Context.NULL : value));
+        if (symbol == null) {
+            throw new NullPointerException("Null symbol given");
+        }
+        Object bound = value == null ? Context.NULL : value;
+        int slot = slot(symbol);
+        if (slot >= 0) {
+            this.values[slot] = bound;
+        } else {
+            add(symbol, bound);
+        }
     }
 
     public final Object unbind(Symbol symbol) {
         for (Context ctx = this; ctx != null; ctx = (ctx.recursive ? ctx.parent : null)) {
-            if (ctx.bindings.containsKey(symbol)) {
-                return ctx.bindings.remove(symbol);
+            int slot = ctx.slot(symbol);
+            if (slot >= 0) {
+                return ctx.remove(slot);
             }
         }
         return null;
     }
 
     public final boolean isBound(Symbol symbol) {
-        for (Context ctx = this; ctx != null; ctx = ctx.parent) {
-            if (ctx.bindings.containsKey(symbol)) {
-                return true;
+        return lookup(symbol) != null;
+    }
+
+    private int slot(Symbol symbol) {
+        if (this.index != null) {
+            Integer slot = this.index.get(symbol);
+            return slot == null ? -1 : slot;
+        }
+        for (int i = 0; i < this.size; i++) {
+            if (this.names[i] == symbol) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void add(Symbol symbol, Object value) {
+        if (this.size == this.names.length) {
+            this.names = Arrays.copyOf(this.names, this.size * 2);
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+        int slot = this.size++;
+        this.names[slot] = symbol;
+        this.values[slot] = value;
+        if (this.index != null) {
+            this.index.put(symbol, slot);
+        } else if (this.size > INDEX_THRESHOLD) {
+            this.index = Generic.map();
+            for (int i = 0; i < this.size; i++) {
+                this.index.put(this.names[i], i);
+            }
+        }
+    }
+
+    private Object remove(int slot) {
+        Symbol symbol = this.names[slot];
+        Object value = this.values[slot];
+        int last = --this.size;
+        this.names[slot] = this.names[last];
+        this.values[slot] = this.values[last];
+        this.names[last] = null;
+        this.values[last] = null;
+        if (this.index != null) {
+            this.index.remove(symbol);
+            if (slot != last) {
+                this.index.put(this.names[slot], slot);
             }
         }
-        return false;
+        return value;
     }
 
     public final void bind(String name, int val) {
@@ -264,7 +348,7 @@ public class Context {
         StringBuffer sb = new StringBuffer();
         for (Context ctx = this; ctx != null; ctx = ctx.parent) {
             if (ctx.classResolver != null) {
-                sb.append(ctx.bindings.size());
+                sb.append(ctx.size);
                 if (ctx.parent != null) {
                     sb.append(":");
                 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vanadis.lang.piji;
+
+import vanadis.core.lang.ToString;
+import vanadis.lang.piji.loading.MethodFinder;
+
+import java.lang.reflect.Method;
+
+/**
+ * The methods resolved at one call site, keyed on the finder, the receiver
+ * type and the argument types.  Instances are immutable; a site replaces its
+ * cache with an extended copy when it sees a new receiver or signature.  A
+ * site that sees more than {@link #MAX_ENTRIES} combinations stops adding
+ * entries, and leaves it to the finder's per-class tables.
+ */
+final class InlineCache {
+
+    static final int MAX_ENTRIES = 4;
+
+    static final InlineCache EMPTY = new InlineCache(new Entry[0]);
+
+    private final Entry[] entries;
+
+    private InlineCache(Entry[] entries) {
+        this.entries = entries;
+    }
+
+    Method lookup(MethodFinder finder, Class<?> type, Class<?>[] signature) {
+        for (Entry entry : entries) {
+            if (entry.matches(finder, type, signature)) {
+                return entry.method;
+            }
+        }
+        return null;
+    }
+
+    boolean isFull() {
+        return entries.length >= MAX_ENTRIES;
+    }
+
+    InlineCache with(MethodFinder finder, Class<?> type, Class<?>[] signature, Method method) {
+        if (isFull()) {
+            return this;
+        }
+        Entry[] extended = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, extended, 0, entries.length);
+        extended[entries.length] = new Entry(finder, type, signature.clone(), method);
+        return new InlineCache(extended);
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "entries", entries.length);
+    }
+
+    private static final class Entry {
+
+        private final MethodFinder finder;
+
+        private final Class<?> type;
+
+        private final Class<?>[] signature;
+
+        private final Method method;
+
+        private Entry(MethodFinder finder, Class<?> type, Class<?>[] signature, Method method) {
+            this.finder = finder;
+            this.type = type;
+            this.signature = signature;
+            this.method = method;
+        }
+
+        private boolean matches(MethodFinder finder, Class<?> type, Class<?>[] signature) {
+            if (this.finder != finder || this.type != type || this.signature.length != signature.length) {
+                return false;
+            }
+            for (int i = 0; i < signature.length; i++) {
+                if (this.signature[i] != signature[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -30,5 +30,13 @@ final class InternalClassLoader extends URLClassLoader {
         this(urls.toArray(new URL[urls.size()]), parent);
     }
 
+    InternalClassLoader(ClassLoader parent) {
+        this(new URL[0], parent);
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
 }
 
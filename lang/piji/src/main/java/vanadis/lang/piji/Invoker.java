@@ -64,12 +64,16 @@ public class Invoker extends ReflectorHelper {
         MethodFinder finder = getRef().getMethodFinder();
         RealAndFormalArrays arrays =
                 new RealAndFormalArrays(getRef(), offset + 1, args, context);
-        Method method = finder.getMethod(object, name, arrays.getSignature(), true);
-
-        if (method == null && !name.startsWith("get")) {
-            String getName =
-                    "get" + name.substring(0, 1).toUpperCase() + name.substring(1);
-            method = finder.getMethod(object, getName, arrays.getSignature(), true);
+        LeafNode site = object != null && args[offset] instanceof LeafNode
+                ? (LeafNode) args[offset]
+                : null;
+        Method method = site == null ? null : cachedMethod(site, finder, object, arrays);
+
+        if (method == null) {
+            method = findMethod(finder, object, name, arrays.getSignature());
+            if (method != null && site != null) {
+                cacheMethod(site, finder, object, arrays, method);
+            }
         }
 
         if (method != null) {
@@ -99,6 +103,33 @@ public class Invoker extends ReflectorHelper {
         }
     }
 
+    private static Method findMethod(MethodFinder finder, Object object,
+                                     String name, Class<?>[] signature)
+            throws Throwable {
+        Method method = finder.getMethod(object, name, signature, true);
+        if (method == null && !name.startsWith("get")) {
+            String getName =
+                    "get" + name.substring(0, 1).toUpperCase() + name.substring(1);
+            method = finder.getMethod(object, getName, signature, true);
+        }
+        return method;
+    }
+
+    private static Method cachedMethod(LeafNode site, MethodFinder finder,
+                                       Object object, RealAndFormalArrays arrays) {
+        return site.getInlineCache().lookup
+                (finder, Reflector.resolveType(object), arrays.getSignature());
+    }
+
+    private static void cacheMethod(LeafNode site, MethodFinder finder, Object object,
+                                    RealAndFormalArrays arrays, Method method) {
+        InlineCache cache = site.getInlineCache();
+        if (cache.isFull()) {
+            return;
+        }
+        site.setInlineCache(cache.with(finder, Reflector.resolveType(object), arrays.getSignature(), method));
+    }
+
     private static Object invokeMethod(Object object,
                                        Method method,
                                        Object[] realArguments)
@@ -108,8 +139,9 @@ public class Invoker extends ReflectorHelper {
                     ("Got null target for " + method +
                             " " + argumentString(realArguments));
         }
-        boolean inaccessible = !method.isAccessible();
-        if (inaccessible) {
+        if (!method.isAccessible()) {
+            // Methods are cached and shared between threads, so they are
+            // made accessible once and left that way
             method.setAccessible(true);
         }
         try {
@@ -133,10 +165,6 @@ public class Invoker extends ReflectorHelper {
                             argumentString(realArguments) + ":\n  " + e, e);
         } catch (InvocationTargetException e) {
             throw e.getTargetException();
-        } finally {
-            if (inaccessible) {
-                method.setAccessible(false);
-            }
         }
     }
 
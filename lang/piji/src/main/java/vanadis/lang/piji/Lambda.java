@@ -20,6 +20,7 @@ import vanadis.core.collections.Generic;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class Lambda extends AbstractFunction {
 
@@ -72,6 +73,14 @@ public final class Lambda extends AbstractFunction {
 
     private final int bodyOffset;
 
+    private final int compileThreshold;
+
+    private final AtomicInteger applications = new AtomicInteger();
+
+    private volatile LambdaCompiler.Compiled compiled;
+
+    private volatile boolean uncompilable;
+
     private Lambda(Symbol[] formals, boolean vararg, int formalCount,
                    String docString, Expression[] body, int bodyOffset,
                    Context context) {
@@ -79,6 +88,19 @@ public final class Lambda extends AbstractFunction {
         this.body = body;
         this.bodyOffset = bodyOffset;
         this.formals = formals;
+        this.compileThreshold = LambdaCompiler.threshold(context);
+    }
+
+    Symbol[] getFormals() {
+        return this.formals;
+    }
+
+    Expression[] getBody() {
+        return this.body;
+    }
+
+    int getBodyOffset() {
+        return this.bodyOffset;
     }
 
     @Override
@@ -93,11 +115,20 @@ public final class Lambda extends AbstractFunction {
         throws Throwable {
         checkArgumentCount(args);
 
-        Context applyContext = new Context(getContext());
+        Object[] values = new Object[getArgumentCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = args[i + 1].evaluate(context);
+        }
 
-        for (int i = 0; i < getArgumentCount(); i++) {
-            Object value = args[i + 1].evaluate(context);
-            applyContext.bind(this.formals[i], value);
+        LambdaCompiler.Compiled compiled = this.isVararg() ? null : compiled(values);
+        if (compiled != null && compiled.accepts(values)) {
+            return compiled.apply(values);
+        }
+
+        Context applyContext = new Context(getContext(), this.formals.length);
+
+        for (int i = 0; i < values.length; i++) {
+            applyContext.bind(this.formals[i], values[i]);
         }
 
         if (this.isVararg()) {
@@ -115,6 +146,19 @@ public final class Lambda extends AbstractFunction {
         return value;
     }
 
+    private LambdaCompiler.Compiled compiled(Object[] values) {
+        if (this.compiled == null && !this.uncompilable &&
+            this.compileThreshold > 0 && this.applications.incrementAndGet() == this.compileThreshold) {
+            this.compiled = LambdaCompiler.compile(this, values);
+            this.uncompilable = this.compiled == null;
+        }
+        return this.compiled;
+    }
+
+    boolean isCompiled() {
+        return this.compiled != null;
+    }
+
     @Override
     public String toString() {
         return "Lambda[" + Arrays.toString(this.formals) + "]";
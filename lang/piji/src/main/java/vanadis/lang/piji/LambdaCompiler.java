@@ -0,0 +1,610 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.lang.piji;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.core.collections.Generic;
+import vanadis.lang.piji.fun.AddFunction;
+import vanadis.lang.piji.fun.DivideFunction;
+import vanadis.lang.piji.fun.GreaterThanEqualFunction;
+import vanadis.lang.piji.fun.GreaterThanFunction;
+import vanadis.lang.piji.fun.IfFunction;
+import vanadis.lang.piji.fun.LessThanEqualFunction;
+import vanadis.lang.piji.fun.LessThanFunction;
+import vanadis.lang.piji.fun.MultiplyFunction;
+import vanadis.lang.piji.fun.SubtractFunction;
+import vanadis.lang.piji.hold.DataHolderFactory;
+import vanadis.lang.piji.hold.PrimitiveBooleanHolder;
+import vanadis.lang.piji.hold.PrimitiveDoubleHolder;
+import vanadis.lang.piji.hold.PrimitiveFloatHolder;
+import vanadis.lang.piji.hold.PrimitiveIntegerHolder;
+import vanadis.lang.piji.hold.PrimitiveLongHolder;
+import vanadis.lang.piji.hold.PrimitiveNumberHolder;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <P>Compiles lambdas to JVM classes.  Enabled by binding
+ * <code>compile-threshold</code> to a positive number, after which lambdas
+ * created in that context are compiled when they have been applied that many
+ * times.</P>
+ *
+ * <P>Only lambdas with a single body expression built from number and boolean
+ * literals, formal arguments, the arithmetic and compare functions,
+ * <code>if</code> and calls to the lambda itself are compiled.  The compiled
+ * code is specialized for the argument types of the application that triggered
+ * compilation, and works on unboxed <code>int</code>, <code>long</code>,
+ * <code>float</code>, <code>double</code> and <code>boolean</code> values.  Applications with other
+ * argument types, or made after any of the functions the body uses has been
+ * rebound, are interpreted as before.</P>
+ */
+final class LambdaCompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(LambdaCompiler.class);
+
+    static final Symbol COMPILE_THRESHOLD = Symbol.get("compile-threshold");
+
+    private static final String PACKAGE = "vanadis/lang/piji/compiled/";
+
+    private static final String BODY = CompiledBody.class.getName().replace('.', '/');
+
+    private static final String FACTORY = DataHolderFactory.class.getName().replace('.', '/');
+
+    private static final String RUN = "run";
+
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private enum Type {
+
+        INT("I", PrimitiveIntegerHolder.class, "getInt"),
+
+        LONG("J", PrimitiveLongHolder.class, "getLong"),
+
+        FLOAT("F", PrimitiveFloatHolder.class, "getFloat"),
+
+        DOUBLE("D", PrimitiveDoubleHolder.class, "getDouble"),
+
+        BOOLEAN("Z", PrimitiveBooleanHolder.class, "getBoolean");
+
+        private final String descriptor;
+
+        private final Class<?> holderType;
+
+        private final String holderName;
+
+        private final String getter;
+
+        Type(String descriptor, Class<?> holderType, String getter) {
+            this.descriptor = descriptor;
+            this.holderType = holderType;
+            this.holderName = holderType.getName().replace('.', '/');
+            this.getter = getter;
+        }
+
+        private boolean isNumber() {
+            return this != BOOLEAN;
+        }
+
+        private boolean isIntegral() {
+            return this == INT || this == LONG;
+        }
+
+        private int size() {
+            return this == LONG || this == DOUBLE ? 2 : 1;
+        }
+
+        private int load() {
+            return op(Opcodes.ILOAD);
+        }
+
+        private int ret() {
+            return op(Opcodes.IRETURN);
+        }
+
+        /**
+         * The JVM orders typed instructions int, long, float, double.
+         */
+        private int op(int intOp) {
+            return this == LONG ? intOp + 1
+                    : this == FLOAT ? intOp + 2
+                            : this == DOUBLE ? intOp + 3
+                                    : intOp;
+        }
+
+        private static Type of(Object holder) {
+            for (Type type : values()) {
+                if (holder != null && holder.getClass() == type.holderType) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        private static Type promote(Type one, Type two) {
+            return one == DOUBLE || two == DOUBLE ? DOUBLE
+                    : one == FLOAT || two == FLOAT ? FLOAT
+                            : one == LONG || two == LONG ? LONG
+                                    : INT;
+        }
+    }
+
+    private static final class NotCompilable extends Exception {
+
+        private static final long serialVersionUID = 3907650455108813826L;
+
+        private NotCompilable(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A compiled lambda, with the assumptions it was compiled under.
+     */
+    static final class Compiled {
+
+        private final Context context;
+
+        private final Class<?>[] argumentTypes;
+
+        private final Symbol[] symbols;
+
+        private final Object[] functions;
+
+        private final CompiledBody body;
+
+        private Compiled(Context context, Class<?>[] argumentTypes,
+                         Map<Symbol, Object> functions, CompiledBody body) {
+            this.context = context;
+            this.argumentTypes = argumentTypes;
+            this.symbols = functions.keySet().toArray(new Symbol[functions.size()]);
+            this.functions = new Object[this.symbols.length];
+            for (int i = 0; i < this.symbols.length; i++) {
+                this.functions[i] = functions.get(this.symbols[i]);
+            }
+            this.body = body;
+        }
+
+        boolean accepts(Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null || values[i].getClass() != argumentTypes[i]) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < symbols.length; i++) {
+                if (context.lookup(symbols[i]) != functions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Object apply(Object[] values)
+                throws Throwable {
+            return body.apply(values);
+        }
+    }
+
+    static int threshold(Context context) {
+        Object threshold = context.lookup(COMPILE_THRESHOLD);
+        return threshold instanceof PrimitiveNumberHolder
+                ? ((PrimitiveNumberHolder) threshold).getInt()
+                : 0;
+    }
+
+    /**
+     * Compile a lambda for the types of the given argument values.
+     *
+     * @param lambda Lambda
+     * @param values Argument values
+     * @return Compiled lambda, or null if it could not be compiled
+     */
+    static Compiled compile(Lambda lambda, Object[] values) {
+        try {
+            return new LambdaCompiler(lambda, values).compile();
+        } catch (NotCompilable e) {
+            log.debug(lambda + " not compiled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private final Lambda lambda;
+
+    private final Symbol[] formals;
+
+    private final Type[] argumentTypes;
+
+    private final Map<Symbol, Object> functions = Generic.linkedHashMap();
+
+    private final Map<Expression, Type> types = new IdentityHashMap<Expression, Type>();
+
+    private final String className;
+
+    private Type returnType;
+
+    private LambdaCompiler(Lambda lambda, Object[] values)
+            throws NotCompilable {
+        this.lambda = lambda;
+        this.formals = lambda.getFormals();
+        if (lambda.isVararg()) {
+            throw new NotCompilable("vararg");
+        }
+        this.argumentTypes = new Type[values.length];
+        for (int i = 0; i < values.length; i++) {
+            this.argumentTypes[i] = Type.of(values[i]);
+            if (this.argumentTypes[i] == null) {
+                throw new NotCompilable("argument " + values[i]);
+            }
+        }
+        this.className = PACKAGE + "Lambda" + count.incrementAndGet();
+    }
+
+    private Compiled compile()
+            throws NotCompilable {
+        Expression[] body = lambda.getBody();
+        if (body.length - lambda.getBodyOffset() != 1) {
+            throw new NotCompilable("body of " + (body.length - lambda.getBodyOffset()) + " expressions");
+        }
+        Expression expression = body[lambda.getBodyOffset()];
+        returnType = type(expression);
+        if (returnType == null) {
+            throw new NotCompilable("no return type");
+        }
+        types.clear();
+        if (type(expression) != returnType) {
+            throw new NotCompilable("inconsistent return type");
+        }
+        byte[] bytes = generate(expression);
+        Class<?> type = new InternalClassLoader(CompiledBody.class.getClassLoader())
+                .define(className.replace('/', '.'), bytes);
+        try {
+            CompiledBody compiledBody = (CompiledBody) type.newInstance();
+            Class<?>[] holderTypes = new Class<?>[argumentTypes.length];
+            for (int i = 0; i < argumentTypes.length; i++) {
+                holderTypes[i] = argumentTypes[i].holderType;
+            }
+            return new Compiled(lambda.getContext(), holderTypes, functions, compiledBody);
+        } catch (Exception e) {
+            throw new IllegalStateException(this + " failed to instantiate " + type, e);
+        }
+    }
+
+    /**
+     * Type an expression.  While the return type is not known yet, calls to
+     * the lambda itself are typed as null.
+     */
+    private Type type(Expression expression)
+            throws NotCompilable {
+        Type type = doType(expression);
+        if (type != null) {
+            types.put(expression, type);
+        }
+        return type;
+    }
+
+    private Type doType(Expression expression)
+            throws NotCompilable {
+        if (expression instanceof LeafNode) {
+            LeafNode leaf = (LeafNode) expression;
+            if (leaf.isContentSymbol()) {
+                return argumentTypes[formal(leaf.getSymbolContent())];
+            }
+            Type type = Type.of(leaf.getContent());
+            if (type == null) {
+                throw new NotCompilable("literal " + leaf);
+            }
+            return type;
+        }
+        if (!(expression instanceof ListNode) || ((ListNode) expression).size() == 0) {
+            throw new NotCompilable("expression " + expression);
+        }
+        ListNode list = (ListNode) expression;
+        Object function = function(list);
+        int argc = list.size() - 1;
+        if (function == lambda) {
+            if (argc != formals.length) {
+                throw new NotCompilable("call with " + argc + " arguments");
+            }
+            for (int i = 0; i < argc; i++) {
+                Type type = type(list.getArgumentNode(i));
+                if (type != null && type != argumentTypes[i]) {
+                    throw new NotCompilable("call with " + type + " argument");
+                }
+            }
+            return returnType;
+        }
+        if (function instanceof AddFunction || function instanceof MultiplyFunction ||
+                function instanceof SubtractFunction || function instanceof DivideFunction) {
+            int minimum = function instanceof SubtractFunction || function instanceof DivideFunction ? 2 : 1;
+            if (argc < minimum) {
+                throw new NotCompilable("arithmetic on " + argc + " arguments");
+            }
+            Type type = function instanceof AddFunction || function instanceof MultiplyFunction
+                    ? Type.INT
+                    : null;
+            boolean known = true;
+            for (int i = 0; i < argc; i++) {
+                Type argumentType = type(list.getArgumentNode(i));
+                if (argumentType == null) {
+                    known = false;
+                } else if (!argumentType.isNumber()) {
+                    throw new NotCompilable("arithmetic on " + argumentType);
+                } else {
+                    type = type == null ? argumentType : Type.promote(type, argumentType);
+                }
+            }
+            return known ? type : null;
+        }
+        if (function instanceof LessThanFunction || function instanceof LessThanEqualFunction ||
+                function instanceof GreaterThanFunction || function instanceof GreaterThanEqualFunction) {
+            if (argc != 2) {
+                throw new NotCompilable("compare of " + argc);
+            }
+            for (int i = 0; i < argc; i++) {
+                Type argumentType = type(list.getArgumentNode(i));
+                if (argumentType != null && !argumentType.isIntegral()) {
+                    throw new NotCompilable("compare of " + argumentType);
+                }
+            }
+            return Type.BOOLEAN;
+        }
+        if (function instanceof IfFunction) {
+            if (argc != 3) {
+                throw new NotCompilable("if with " + argc + " arguments");
+            }
+            Type test = type(list.getArgumentNode(0));
+            if (test != null && test != Type.BOOLEAN) {
+                throw new NotCompilable("if on " + test);
+            }
+            Type consequent = type(list.getArgumentNode(1));
+            Type alternative = type(list.getArgumentNode(2));
+            if (consequent != null && alternative != null && consequent != alternative) {
+                throw new NotCompilable("if of " + consequent + " and " + alternative);
+            }
+            return consequent == null ? alternative : consequent;
+        }
+        throw new NotCompilable("function " + function);
+    }
+
+    private int formal(Symbol symbol)
+            throws NotCompilable {
+        for (int i = 0; i < formals.length; i++) {
+            if (formals[i] == symbol) {
+                return i;
+            }
+        }
+        throw new NotCompilable("free variable " + symbol);
+    }
+
+    private Object function(ListNode list)
+            throws NotCompilable {
+        if (list.getType() == ListNodeType.PRIVATE || !(list.getFunNode() instanceof LeafNode)) {
+            throw new NotCompilable("call " + list);
+        }
+        LeafNode head = (LeafNode) list.getFunNode();
+        if (!head.isContentSymbol()) {
+            throw new NotCompilable("call " + list);
+        }
+        Symbol symbol = head.getSymbolContent();
+        for (Symbol formal : formals) {
+            if (formal == symbol) {
+                throw new NotCompilable("call to argument " + symbol);
+            }
+        }
+        Object function = lambda.getContext().lookup(symbol);
+        if (function == null) {
+            throw new NotCompilable("unbound " + symbol);
+        }
+        functions.put(symbol, function);
+        return function;
+    }
+
+    private byte[] generate(Expression expression) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                     className, null, "java/lang/Object", new String[]{BODY});
+        generateConstructor(writer);
+        generateApply(writer);
+        MethodVisitor run = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                                               RUN, runDescriptor(), null, null);
+        run.visitCode();
+        generate(run, expression);
+        run.visitInsn(returnType.ret());
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter writer) {
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+    }
+
+    private void generateApply(ClassWriter writer) {
+        MethodVisitor apply = writer.visitMethod(Opcodes.ACC_PUBLIC, "apply",
+                                                 "([Ljava/lang/Object;)Ljava/lang/Object;",
+                                                 null, new String[]{"java/lang/Throwable"});
+        apply.visitCode();
+        for (int i = 0; i < argumentTypes.length; i++) {
+            Type type = argumentTypes[i];
+            apply.visitVarInsn(Opcodes.ALOAD, 1);
+            apply.visitLdcInsn(i);
+            apply.visitInsn(Opcodes.AALOAD);
+            apply.visitTypeInsn(Opcodes.CHECKCAST, type.holderName);
+            apply.visitMethodInsn(Opcodes.INVOKEVIRTUAL, type.holderName, type.getter, "()" + type.descriptor);
+        }
+        apply.visitMethodInsn(Opcodes.INVOKESTATIC, className, RUN, runDescriptor());
+        apply.visitMethodInsn(Opcodes.INVOKESTATIC, FACTORY, "holder",
+                              "(" + returnType.descriptor + ")L" + returnType.holderName + ";");
+        apply.visitInsn(Opcodes.ARETURN);
+        apply.visitMaxs(0, 0);
+        apply.visitEnd();
+    }
+
+    private String runDescriptor() {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Type type : argumentTypes) {
+            descriptor.append(type.descriptor);
+        }
+        return descriptor.append(')').append(returnType.descriptor).toString();
+    }
+
+    private Type generate(MethodVisitor mv, Expression expression) {
+        Type type = types.get(expression);
+        if (expression instanceof LeafNode) {
+            LeafNode leaf = (LeafNode) expression;
+            if (leaf.isContentSymbol()) {
+                mv.visitVarInsn(type.load(), slot(formalIndex(leaf.getSymbolContent())));
+            } else {
+                constant(mv, leaf.getContent());
+            }
+            return type;
+        }
+        ListNode list = (ListNode) expression;
+        Object function = functions.get(((LeafNode) list.getFunNode()).getSymbolContent());
+        int argc = list.size() - 1;
+        if (function == lambda) {
+            for (int i = 0; i < argc; i++) {
+                generate(mv, list.getArgumentNode(i));
+            }
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, RUN, runDescriptor());
+        } else if (function instanceof AddFunction || function instanceof MultiplyFunction) {
+            boolean add = function instanceof AddFunction;
+            mv.visitLdcInsn(add ? 0 : 1);
+            arithmetic(mv, list, Type.INT, 0, add ? Opcodes.IADD : Opcodes.IMUL);
+        } else if (function instanceof SubtractFunction || function instanceof DivideFunction) {
+            Type first = generate(mv, list.getArgumentNode(0));
+            arithmetic(mv, list, first, 1,
+                       function instanceof SubtractFunction ? Opcodes.ISUB : Opcodes.IDIV);
+        } else if (function instanceof IfFunction) {
+            Label alternative = new Label();
+            Label end = new Label();
+            generate(mv, list.getArgumentNode(0));
+            mv.visitJumpInsn(Opcodes.IFEQ, alternative);
+            generate(mv, list.getArgumentNode(1));
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(alternative);
+            generate(mv, list.getArgumentNode(2));
+            mv.visitLabel(end);
+        } else {
+            compare(mv, list, function);
+        }
+        return type;
+    }
+
+    /**
+     * Fold arguments into the value on the stack, promoting like the
+     * {@link PrimitiveNumberHolder holders} do at each step.
+     */
+    private void arithmetic(MethodVisitor mv, ListNode list, Type start, int offset, int intOp) {
+        Type current = start;
+        for (int i = offset; i < list.size() - 1; i++) {
+            Expression argument = list.getArgumentNode(i);
+            Type next = Type.promote(current, types.get(argument));
+            convert(mv, current, next);
+            convert(mv, generate(mv, argument), next);
+            mv.visitInsn(next.op(intOp));
+            current = next;
+        }
+    }
+
+    private void compare(MethodVisitor mv, ListNode list, Object function) {
+        Expression left = list.getArgumentNode(0);
+        Expression right = list.getArgumentNode(1);
+        Type type = Type.promote(types.get(left), types.get(right));
+        convert(mv, generate(mv, left), type);
+        convert(mv, generate(mv, right), type);
+        int failed = function instanceof LessThanFunction ? Opcodes.IF_ICMPGE
+                : function instanceof LessThanEqualFunction ? Opcodes.IF_ICMPGT
+                        : function instanceof GreaterThanFunction ? Opcodes.IF_ICMPLE
+                                : Opcodes.IF_ICMPLT;
+        if (type == Type.LONG) {
+            mv.visitInsn(Opcodes.LCMP);
+            failed = failed - Opcodes.IF_ICMPEQ + Opcodes.IFEQ;
+        }
+        Label no = new Label();
+        Label end = new Label();
+        mv.visitJumpInsn(failed, no);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitJumpInsn(Opcodes.GOTO, end);
+        mv.visitLabel(no);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitLabel(end);
+    }
+
+    private static void convert(MethodVisitor mv, Type from, Type to) {
+        if (from == to) {
+            return;
+        }
+        if (from == Type.INT) {
+            mv.visitInsn(to == Type.LONG ? Opcodes.I2L : to == Type.FLOAT ? Opcodes.I2F : Opcodes.I2D);
+        } else if (from == Type.LONG) {
+            mv.visitInsn(to == Type.FLOAT ? Opcodes.L2F : Opcodes.L2D);
+        } else if (from == Type.FLOAT && to == Type.DOUBLE) {
+            mv.visitInsn(Opcodes.F2D);
+        } else {
+            throw new IllegalStateException("Cannot convert " + from + " to " + to);
+        }
+    }
+
+    private static void constant(MethodVisitor mv, Object holder) {
+        if (holder instanceof PrimitiveIntegerHolder) {
+            mv.visitLdcInsn(((PrimitiveIntegerHolder) holder).getInt());
+        } else if (holder instanceof PrimitiveLongHolder) {
+            mv.visitLdcInsn(((PrimitiveLongHolder) holder).getLong());
+        } else if (holder instanceof PrimitiveFloatHolder) {
+            mv.visitLdcInsn(((PrimitiveFloatHolder) holder).getFloat());
+        } else if (holder instanceof PrimitiveDoubleHolder) {
+            mv.visitLdcInsn(((PrimitiveDoubleHolder) holder).getDouble());
+        } else {
+            mv.visitInsn(((PrimitiveBooleanHolder) holder).getBoolean() ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+        }
+    }
+
+    private int formalIndex(Symbol symbol) {
+        for (int i = 0; i < formals.length; i++) {
+            if (formals[i] == symbol) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Not a formal: " + symbol);
+    }
+
+    private int slot(int formal) {
+        int slot = 0;
+        for (int i = 0; i < formal; i++) {
+            slot += argumentTypes[i].size();
+        }
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return "LambdaCompiler[" + lambda + "]";
+    }
+}
@@ -33,6 +33,11 @@ public final class LeafNode extends AbstractNode {
 
     private static final long serialVersionUID = 181071817937142320L;
 
+    /**
+     * Methods invoked when this leaf names a method, see {@link Invoker}.
+     */
+    private transient volatile InlineCache inlineCache;
+
     boolean isContentExplicitlyTyped() {
         return this.content instanceof Holder;
     }
@@ -53,6 +58,25 @@ public final class LeafNode extends AbstractNode {
         return (Symbol) this.content;
     }
 
+    InlineCache getInlineCache() {
+        InlineCache inlineCache = this.inlineCache;
+        return inlineCache == null ? InlineCache.EMPTY : inlineCache;
+    }
+
+    void setInlineCache(InlineCache inlineCache) {
+        this.inlineCache = inlineCache;
+    }
+
+    /**
+     * Look up the symbol content in a context.
+     *
+     * @param context The context
+     * @return The bound value, or null
+     */
+    Object lookup(Context context) {
+        return context.lookup(this.getSymbolContent());
+    }
+
     String getStringContent() {
         return (String) this.content;
     }
@@ -184,7 +208,7 @@ public final class LeafNode extends AbstractNode {
     public Object evaluate(Context context)
             throws Throwable {
         if (this.isContentSymbol()) {
-            Object value = context.lookup(this.getSymbolContent());
+            Object value = this.lookup(context);
             if (value == null) {
                 value = Reflector.get().resolveLeafNode(context, this);
                 if (value == null) {
@@ -175,10 +175,10 @@ public class Reflector {
     public final Object resolveLeafNode(Context ctx, LeafNode node)
             throws Throwable {
         Symbol symb = ExpressionCheck.checkSymbol(this, node, false);
-        Object object;
-        object = symb == null ? node.evaluate(ctx)
-                : ctx.isBound(symb) ? ctx.lookup(symb)
-                        : getClass(symb.getName(), ctx);
+        Object object = symb == null ? node.evaluate(ctx) : node.lookup(ctx);
+        if (object == null && symb != null) {
+            object = getClass(symb.getName(), ctx);
+        }
         if (object == null) {
             throw new BadArgumentException((symb == null
                     ? "Null target from " + node
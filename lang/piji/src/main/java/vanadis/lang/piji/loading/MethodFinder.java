@@ -18,11 +18,21 @@ package vanadis.lang.piji.loading;
 
 import vanadis.core.collections.Generic;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Map;
 
 public class MethodFinder extends AccessibleFinder {
 
+    /**
+     * Tables by class, held weakly so that finders do not keep classes, or
+     * their class loaders, from being unloaded.  The tables refer to the
+     * classes through their methods, so they are held softly.
+     */
+    private final Map<Class<?>, Reference<MethodTable>> tables = Generic.weakHashMap();
+
     public MethodFinder() {
         this(false);
     }
@@ -69,7 +79,19 @@ public class MethodFinder extends AccessibleFinder {
     }
 
     public Method[] getMethods(Class<?> type) {
-        return findCandidates(type);
+        return table(type).getMethods();
+    }
+
+    private MethodTable table(Class<?> type) {
+        synchronized (tables) {
+            Reference<MethodTable> reference = tables.get(type);
+            MethodTable table = reference == null ? null : reference.get();
+            if (table == null) {
+                table = new MethodTable(findCandidates(type), isPrivates());
+                tables.put(type, new SoftReference<MethodTable>(table));
+            }
+            return table;
+        }
     }
 
     private Method[] findCandidates(Class<?> type) {
@@ -98,24 +120,7 @@ public class MethodFinder extends AccessibleFinder {
     private Method findByMatching(Class<?> type,
                                   String methodName,
                                   Class<?>[] signature) {
-        Method foundMethod = null;
-        Class<?>[] foundTypes = null;
-        Method[] methods = findCandidates(type);
-        for (Method candidate : methods) {
-            if (candidate.getName().equals(methodName)) {
-                Class<?>[] candidateTypes = candidate.getParameterTypes();
-                if (candidateTypes.length == signature.length
-                        && fitsBetween(foundTypes, candidateTypes, signature)) {
-
-                    foundMethod = candidate;
-                    foundTypes = candidateTypes;
-                }
-            }
-        }
-        if (foundMethod != null && isPrivates()) {
-            foundMethod.setAccessible(true);
-        }
-        return foundMethod;
+        return table(type).find(methodName, signature);
     }
 
     public static Method getMethod(Class<?> type,
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vanadis.lang.piji.loading;
+
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.ToString;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The methods of a class, grouped by name, and the outcome of each
+ * signature lookup done against them.  Built once per class and finder,
+ * so that {@link Class#getMethods()} and signature fitting are not repeated
+ * for every call.  Up to {@link #MAX_RESOLVED} outcomes are kept; lookups
+ * beyond that are matched each time.
+ */
+final class MethodTable {
+
+    static final int MAX_RESOLVED = 256;
+
+    private static final Method[] NO_METHODS = new Method[0];
+
+    private static final Object NO_MATCH = new Object();
+
+    private final Method[] methods;
+
+    private final Map<String, Method[]> byName;
+
+    private final ConcurrentMap<Lookup, Object> resolved = Generic.concurrentHashMap();
+
+    private final boolean privates;
+
+    MethodTable(Method[] methods, boolean privates) {
+        this.methods = methods;
+        this.privates = privates;
+        Map<String, List<Method>> lists = Generic.map();
+        for (Method method : methods) {
+            List<Method> named = lists.get(method.getName());
+            if (named == null) {
+                named = Generic.list();
+                lists.put(method.getName(), named);
+            }
+            named.add(method);
+        }
+        Map<String, Method[]> byName = Generic.map();
+        for (Map.Entry<String, List<Method>> entry : lists.entrySet()) {
+            byName.put(entry.getKey(), entry.getValue().toArray(new Method[entry.getValue().size()]));
+        }
+        this.byName = byName;
+    }
+
+    Method[] getMethods() {
+        return methods.clone();
+    }
+
+    private Method[] getNamed(String name) {
+        Method[] named = byName.get(name);
+        return named == null ? NO_METHODS : named;
+    }
+
+    /**
+     * Find the most specific method accepting the signature, matching the
+     * methods only the first time the name and signature is seen.
+     *
+     * @param name Method name
+     * @param signature Argument types, with null for null arguments
+     * @return The method, or null if none fits
+     */
+    Method find(String name, Class<?>[] signature) {
+        Lookup lookup = new Lookup(name, signature);
+        Object method = resolved.get(lookup);
+        if (method == null) {
+            Method found = match(name, signature);
+            if (resolved.size() < MAX_RESOLVED) {
+                resolved.putIfAbsent(new Lookup(name, signature.clone()), found == null ? NO_MATCH : found);
+            }
+            return found;
+        }
+        return method == NO_MATCH ? null : (Method) method;
+    }
+
+    private Method match(String name, Class<?>[] signature) {
+        Method foundMethod = null;
+        Class<?>[] foundTypes = null;
+        for (Method candidate : getNamed(name)) {
+            Class<?>[] candidateTypes = candidate.getParameterTypes();
+            if (candidateTypes.length == signature.length
+                    && AccessibleFinder.fitsBetween(foundTypes, candidateTypes, signature)) {
+                foundMethod = candidate;
+                foundTypes = candidateTypes;
+            }
+        }
+        if (foundMethod != null && privates) {
+            foundMethod.setAccessible(true);
+        }
+        return foundMethod;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "methods", methods.length, "resolved", resolved.size());
+    }
+
+    private static final class Lookup {
+
+        private final String name;
+
+        private final Class<?>[] signature;
+
+        private final int hashCode;
+
+        private Lookup(String name, Class<?>[] signature) {
+            this.name = name;
+            this.signature = signature;
+            this.hashCode = 31 * name.hashCode() + Arrays.hashCode(signature);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (!(object instanceof Lookup)) {
+                return false;
+            }
+            Lookup lookup = (Lookup) object;
+            return hashCode == lookup.hashCode &&
+                    name.equals(lookup.name) &&
+                    Arrays.equals(signature, lookup.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
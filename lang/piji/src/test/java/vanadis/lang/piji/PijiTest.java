@@ -31,4 +31,121 @@ public class PijiTest {
         Assert.assertEquals("10", result.getValueString());
     }
 
+    @Test
+    public void testNestedLet() {
+        Interpreter interpreter = new Interpreter(getClass().getClassLoader());
+        for (int i = 0; i < 3; i++) {
+            Result result = interpreter.evalResult("(let ((x 1)) (let ((y 2)) (+ x y)))");
+            Assert.assertTrue(result.isOK());
+            Assert.assertEquals("3", result.getValueString());
+        }
+    }
+
+    @Test
+    public void testShadowing()
+        throws Throwable {
+        Context root = new Context();
+        root.bind("x", "root");
+        Context child = new Context(root);
+        LeafNode x = new LeafNode(Symbol.get("x"));
+        Assert.assertEquals("root", x.evaluate(child));
+        child.bind("x", "child");
+        Assert.assertEquals("child", x.evaluate(child));
+        Assert.assertEquals("root", x.evaluate(root));
+        child.unbind("x");
+        Assert.assertEquals("root", x.evaluate(child));
+    }
+
+    @Test
+    public void testManyBindings() {
+        Context context = new Context();
+        for (int i = 0; i < 20; i++) {
+            context.bind("v" + i, "value" + i);
+        }
+        context.unbind("v3");
+        Assert.assertFalse(context.isBound("v3"));
+        for (int i = 0; i < 20; i++) {
+            if (i != 3) {
+                Assert.assertEquals("value" + i, context.lookup("v" + i));
+            }
+        }
+        context.set("v19", "changed");
+        Assert.assertEquals("changed", context.lookup("v19"));
+    }
+
+    private static final String FIB =
+            "(define (fib n) (if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))";
+
+    @Test
+    public void testCompiledLambda() {
+        Interpreter interpreted = new Interpreter(getClass().getClassLoader());
+        interpreted.eval(FIB);
+        Interpreter compiling = new Interpreter(getClass().getClassLoader());
+        compiling.eval("(define compile-threshold 2)");
+        compiling.eval(FIB);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(interpreted.evalResult("(fib 15)").getValueString(),
+                                compiling.evalResult("(fib 15)").getValueString());
+        }
+        Assert.assertFalse(((Lambda) interpreted.getContext().lookup("fib")).isCompiled());
+        Assert.assertTrue(((Lambda) compiling.getContext().lookup("fib")).isCompiled());
+    }
+
+    @Test
+    public void testSingleArgumentSubtractIsNotCompiled() {
+        Interpreter compiling = new Interpreter(getClass().getClassLoader());
+        compiling.eval("(define compile-threshold 1)");
+        compiling.eval("(define (f x) (- x))");
+        for (int i = 0; i < 2; i++) {
+            try {
+                compiling.evalResult("(f 3)");
+                Assert.fail("Single argument subtract");
+            } catch (WrongArgumentCountException ignore) { }
+        }
+        Assert.assertFalse(((Lambda) compiling.getContext().lookup("f")).isCompiled());
+    }
+
+    @Test
+    public void testCompiledLambdaPromotion() {
+        String f = "(define (f x y) (- (* x 2147483647) y 0.5))";
+        Interpreter interpreted = new Interpreter(getClass().getClassLoader());
+        interpreted.eval(f);
+        Interpreter compiling = new Interpreter(getClass().getClassLoader());
+        compiling.eval("(define compile-threshold 1)");
+        compiling.eval(f);
+        for (String call : new String[]{"(f 2 0)", "(f 2 3000000000)"}) {
+            Assert.assertEquals(interpreted.evalResult(call).getValueString(),
+                                compiling.evalResult(call).getValueString());
+        }
+        Assert.assertEquals("-2.5", compiling.evalResult("(f 2 0)").getValueString());
+        Assert.assertTrue(((Lambda) compiling.getContext().lookup("f")).isCompiled());
+    }
+
+    @Test
+    public void testCompiledLambdaFallback() {
+        Interpreter interpreter = new Interpreter(getClass().getClassLoader());
+        interpreter.eval("(define compile-threshold 1)");
+        interpreter.eval("(define (double x) (+ x x))");
+        Assert.assertEquals("4", interpreter.evalResult("(double 2)").getValueString());
+        Assert.assertTrue(((Lambda) interpreter.getContext().lookup("double")).isCompiled());
+        Assert.assertEquals("5.0", interpreter.evalResult("(double 2.5)").getValueString());
+        interpreter.eval("(define + -)");
+        Assert.assertEquals("0", interpreter.evalResult("(double 2)").getValueString());
+    }
+
+    @Test
+    public void testInlineCache() {
+        Interpreter interpreter = new Interpreter(getClass().getClassLoader());
+        Expression call = Interpreter.parse("(x length)");
+        LeafNode site = (LeafNode) ((ListNode) call).getArgumentNode(0);
+        Object[] receivers = {"abc", new StringBuilder("abcd"), "abcde", new StringBuffer("ab")};
+        for (int i = 0; i < 2; i++) {
+            for (Object receiver : receivers) {
+                interpreter.getContext().bind("x", receiver);
+                Assert.assertEquals(String.valueOf(receiver.toString().length()),
+                                    interpreter.evalResult(call).getValueString());
+            }
+        }
+        Assert.assertEquals(3, site.getInlineCache().size());
+    }
 }
@@ -20,14 +20,15 @@ import org.h2.Driver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vanadis.core.lang.ToString;
-import vanadis.services.db.Connections;
 import vanadis.services.db.DbException;
+import vanadis.services.db.PoolSettings;
+import vanadis.services.db.PooledConnections;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 
-public class H2Connections implements Connections {
+public class H2Connections extends PooledConnections {
 
     static {
         Driver.load();
@@ -42,23 +43,32 @@ public class H2Connections implements Connections {
     private final String url;
 
     public H2Connections(File file) {
-        this(file, null, null, null);
+        this(file, null, null, null, null);
     }
 
     public H2Connections(String memoryDatabase) {
-        this(null, memoryDatabase, null, null);
+        this(null, memoryDatabase, null, null, null);
     }
 
     public H2Connections(File file, String user, String passwd) {
-        this(file, null, user, passwd);
+        this(file, null, user, passwd, null);
     }
 
     public H2Connections(String memoryDatabase, String user, String passwd) {
-        this(null, memoryDatabase, user, passwd);
+        this(null, memoryDatabase, user, passwd, null);
+    }
+
+    public H2Connections(File file, String user, String passwd, PoolSettings settings) {
+        this(file, null, user, passwd, settings);
+    }
+
+    public H2Connections(String memoryDatabase, String user, String passwd, PoolSettings settings) {
+        this(null, memoryDatabase, user, passwd, settings);
     }
 
     private H2Connections(File file, String memoryDatabase,
-                          String user, String passwd) {
+                          String user, String passwd, PoolSettings settings) {
+        super(user, passwd, settings);
         this.user = user;
         this.passwd = passwd;
         this.url = url(file, memoryDatabase);
@@ -74,7 +84,7 @@ public class H2Connections implements Connections {
     }
 
     @Override
-    public Connection get(String user, String passwd) {
+    protected Connection open(String user, String passwd) {
         try {
             return DriverManager.getConnection(url, user, passwd);
         } catch (Exception e) {
@@ -82,15 +92,6 @@ public class H2Connections implements Connections {
         }
     }
 
-    @Override
-    public void drop(Connection connection) {
-        try {
-            connection.close();
-        } catch (Exception e) {
-            log.warn(this + " failed to close " + connection, e);
-        }
-    }
-
     private static String url(File file, String memoryDatabase) {
         return "jdbc:h2:" + (file != null
                 ? file.getAbsolutePath()
@@ -20,6 +20,7 @@ import vanadis.core.lang.Not;
 import vanadis.services.db.ConnectionsMBean;
 
 import java.sql.CallableStatement;
+import java.sql.Connection;
 import java.sql.SQLException;
 
 public class H2ConnectionsMBean implements ConnectionsMBean {
@@ -32,50 +33,82 @@ public class H2ConnectionsMBean implements ConnectionsMBean {
 
     @Override
     public String query(String sql) {
-        CallableStatement statement;
+        Connection connection = h2Connections.get();
         try {
-            statement = statement(sql);
-        } catch (SQLException e) {
-            return e.toString();
-        }
-        try {
-            return String.valueOf(statement.executeQuery());
+            CallableStatement statement = connection.prepareCall(sql);
+            try {
+                return String.valueOf(statement.executeQuery());
+            } finally {
+                statement.close();
+            }
         } catch (SQLException e) {
             return e.toString();
+        } finally {
+            h2Connections.drop(connection);
         }
     }
 
     @Override
     public String command(String sql) {
-        CallableStatement statement;
-        try {
-            statement = statement(sql);
-        } catch (SQLException e) {
-            return e.toString();
-        }
+        Connection connection = h2Connections.get();
         try {
-            return String.valueOf(statement.execute());
+            CallableStatement statement = connection.prepareCall(sql);
+            try {
+                return String.valueOf(statement.execute());
+            } finally {
+                statement.close();
+            }
         } catch (SQLException e) {
             return e.toString();
+        } finally {
+            h2Connections.drop(connection);
         }
     }
 
     @Override
     public String update(String sql) {
-        CallableStatement statement;
+        Connection connection = h2Connections.get();
         try {
-            statement = statement(sql);
-        } catch (SQLException e) {
-            return e.toString();
-        }
-        try {
-            return String.valueOf(statement.executeUpdate());
+            CallableStatement statement = connection.prepareCall(sql);
+            try {
+                return String.valueOf(statement.executeUpdate());
+            } finally {
+                statement.close();
+            }
         } catch (SQLException e) {
             return e.toString();
+        } finally {
+            h2Connections.drop(connection);
         }
     }
 
-    private CallableStatement statement(String sql) throws SQLException {
-        return h2Connections.get().prepareCall(sql);
+    @Override
+    public int getActiveConnections() {
+        return h2Connections.getActiveConnections();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return h2Connections.getIdleConnections();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return h2Connections.getBorrowCount();
+    }
+
+    @Override
+    public long getWaitCount() {
+        return h2Connections.getWaitCount();
+    }
+
+    @Override
+    public long getAverageBorrowMicros() {
+        return h2Connections.getAverageBorrowMicros();
+    }
+
+    @Override
+    public long getMaxBorrowMicros() {
+        return h2Connections.getMaxBorrowMicros();
     }
 }
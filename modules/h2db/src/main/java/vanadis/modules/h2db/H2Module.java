@@ -15,6 +15,7 @@
  */
 package vanadis.modules.h2db;
 
+import vanadis.common.time.TimeSpan;
 import vanadis.core.lang.ToString;
 import vanadis.core.lang.UsedByReflection;
 import vanadis.ext.AbstractModule;
@@ -23,6 +24,7 @@ import vanadis.ext.Expose;
 import vanadis.ext.Module;
 import vanadis.services.db.Connections;
 import vanadis.services.db.ConnectionsMBean;
+import vanadis.services.db.PoolSettings;
 
 import java.io.File;
 
@@ -41,6 +43,43 @@ public class H2Module extends AbstractModule {
     @Configure(def = "vanadis-mem")
     private String memoryDatabase;
 
+    /**
+     * Max number of connections handed out at the same time, per user.
+     */
+    @Configure(def = "10")
+    private int poolSize;
+
+    /**
+     * How long to wait for a connection when all are handed out.
+     */
+    @Configure(def = "30s")
+    private TimeSpan poolBorrowTimeout;
+
+    /**
+     * Idle connections are closed after this long.
+     */
+    @Configure(def = "300s")
+    private TimeSpan poolIdleTimeout;
+
+    /**
+     * Connections are closed after this long, regardless of use.
+     */
+    @Configure(def = "1800s")
+    private TimeSpan poolMaxLifetime;
+
+    /**
+     * Query run to check an idle connection before it is reused.  If not set,
+     * the connection is just checked to be open.
+     */
+    @Configure
+    private String poolValidationQuery;
+
+    /**
+     * Max number of prepared statements kept per connection.
+     */
+    @Configure(def = "32")
+    private int statementCacheSize;
+
     private H2Connections h2Connections;
 
     private H2ConnectionsMBean h2ConnectionsMBean;
@@ -85,11 +124,27 @@ public class H2Module extends AbstractModule {
     @Override
     public void dependenciesResolved() {
         h2Connections = file == null
-                ? new H2Connections(memoryDatabase, user, passwd)
-                : new H2Connections(file, user, passwd);
+                ? new H2Connections(memoryDatabase, user, passwd, poolSettings())
+                : new H2Connections(file, user, passwd, poolSettings());
         h2ConnectionsMBean = new H2ConnectionsMBean(h2Connections);
     }
 
+    @Override
+    public void closed() {
+        if (h2Connections != null) {
+            try {
+                h2Connections.close();
+            } finally {
+                h2Connections = null;
+            }
+        }
+    }
+
+    private PoolSettings poolSettings() {
+        return new PoolSettings(poolSize, poolBorrowTimeout, poolIdleTimeout, poolMaxLifetime, poolValidationQuery,
+                                statementCacheSize);
+    }
+
     @Override
     public String toString() {
         return ToString.of(this, "memoryDatabase", memoryDatabase,
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.modules.h2db;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vanadis.common.time.TimeSpan;
+import vanadis.services.db.Batch;
+import vanadis.services.db.DbException;
+import vanadis.services.db.PoolSettings;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class H2ConnectionsTest {
+
+    private H2Connections connections;
+
+    @After
+    public void close() {
+        if (connections != null) {
+            connections.close();
+        }
+    }
+
+    @Test
+    public void reuseDropped() {
+        connections = new H2Connections("pool-reuse", "sa", "sa");
+        Connection connection = connections.get();
+        Assert.assertEquals(1, connections.getActiveConnections());
+        connections.drop(connection);
+        Assert.assertEquals(0, connections.getActiveConnections());
+        Assert.assertEquals(1, connections.getIdleConnections());
+        Assert.assertSame(connection, connections.get());
+        Assert.assertEquals(1L, connections.getOpenedConnections());
+        Assert.assertEquals(2L, connections.getBorrowCount());
+    }
+
+    @Test
+    public void waitForDropped() {
+        connections = new H2Connections("pool-wait", "sa", "sa",
+                                        new PoolSettings(1, TimeSpan.millis(50), null, null, null));
+        Connection connection = connections.get();
+        try {
+            connections.get();
+            Assert.fail("Got second connection from pool of one");
+        } catch (DbException expected) {
+        }
+        Assert.assertEquals(1L, connections.getWaitCount());
+        connections.drop(connection);
+        Assert.assertSame(connection, connections.get());
+    }
+
+    @Test
+    public void replaceInvalid()
+        throws SQLException {
+        connections = new H2Connections("pool-invalid", "sa", "sa",
+                                        new PoolSettings(2, null, null, null, "SELECT 1"));
+        Connection connection = connections.get();
+        connections.drop(connection);
+        connection.close();
+        Connection replacement = connections.get();
+        Assert.assertNotSame(connection, replacement);
+        Assert.assertFalse(replacement.isClosed());
+        Assert.assertEquals(1L, connections.getEvictions());
+    }
+
+    @Test
+    public void evictIdle()
+        throws InterruptedException {
+        connections = new H2Connections("pool-idle", "sa", "sa",
+                                        new PoolSettings(2, null, TimeSpan.millis(10), null, null));
+        connections.drop(connections.get());
+        Thread.sleep(50);
+        Assert.assertEquals(1, connections.evictIdle());
+        Assert.assertEquals(0, connections.getIdleConnections());
+    }
+
+    @Test
+    public void evictIdleInBackground()
+        throws InterruptedException {
+        connections = new H2Connections("pool-idle-background", "sa", "sa",
+                                        new PoolSettings(2, null, TimeSpan.millis(10), null, null));
+        connections.drop(connections.get());
+        for (int i = 0; i < 50 && connections.getIdleConnections() > 0; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(0, connections.getIdleConnections());
+        Assert.assertEquals(1L, connections.getEvictions());
+    }
+
+    @Test
+    public void poolPerUser()
+        throws SQLException {
+        connections = new H2Connections("pool-users", "sa", "sa");
+        Connection admin = connections.get();
+        Statement statement = admin.createStatement();
+        try {
+            statement.execute("CREATE USER bob PASSWORD 'bob'");
+        } finally {
+            statement.close();
+        }
+        Connection bob = connections.get("bob", "bob");
+        connections.drop(admin);
+        connections.drop(bob);
+        Assert.assertEquals(2, connections.getIdleConnections());
+        Assert.assertSame(bob, connections.get("bob", "bob"));
+        Assert.assertSame(admin, connections.get());
+    }
+
+    @Test
+    public void cacheStatements()
+        throws SQLException {
+        connections = new H2Connections("pool-statements", "sa", "sa",
+                                        new PoolSettings(1, null, null, null, null, 1));
+        Connection connection = connections.get();
+        PreparedStatement statement = connections.prepare(connection, "SELECT 1");
+        connections.drop(connection);
+        connection = connections.get();
+        Assert.assertSame(statement, connections.prepare(connection, "SELECT 1"));
+        Assert.assertNotSame(statement, connections.prepare(connection, "SELECT 2"));
+        Assert.assertNotSame(statement, connections.prepare(connection, "SELECT 1"));
+        Assert.assertEquals(1L, connections.getStatementHits());
+        Assert.assertEquals(3L, connections.getStatementMisses());
+    }
+
+    @Test
+    public void closeUncachedOnDrop()
+        throws SQLException {
+        connections = new H2Connections("pool-uncached", "sa", "sa",
+                                        new PoolSettings(1, null, null, null, null, 0));
+        Connection connection = connections.get();
+        PreparedStatement statement = connections.prepare(connection, "SELECT 1");
+        Assert.assertNotSame(statement, connections.prepare(connection, "SELECT 1"));
+        Assert.assertFalse(statement.isClosed());
+        connections.drop(connection);
+        Assert.assertTrue(statement.isClosed());
+    }
+
+    @Test
+    public void clearFailedBatch()
+        throws SQLException {
+        connections = new H2Connections("pool-failed-batch", "sa", "sa");
+        Connection connection = connections.get();
+        connections.prepare(connection, "CREATE TABLE item (id INT PRIMARY KEY)").execute();
+        Batch batch = connections.batch(connection, "INSERT INTO item VALUES (?)", 10);
+        batch.add(1).add(1).add(2);
+        try {
+            batch.flush();
+            Assert.fail("Duplicate key");
+        } catch (DbException ignore) { }
+        Assert.assertEquals(0, batch.getPending());
+        PreparedStatement statement = connections.prepare(connection, "INSERT INTO item VALUES (?)");
+        Assert.assertEquals(0, statement.executeBatch().length);
+    }
+
+    @Test
+    public void clearAbandonedBatch()
+        throws SQLException {
+        connections = new H2Connections("pool-abandoned-batch", "sa", "sa");
+        Connection connection = connections.get();
+        connections.prepare(connection, "CREATE TABLE item (id INT PRIMARY KEY)").execute();
+        connections.batch(connection, "INSERT INTO item VALUES (?)", 10).add(1).add(2);
+        connections.drop(connection);
+        connection = connections.get();
+        PreparedStatement statement = connections.prepare(connection, "INSERT INTO item VALUES (?)");
+        Assert.assertEquals(0, statement.executeBatch().length);
+    }
+
+    @Test
+    public void batchInserts()
+        throws SQLException {
+        connections = new H2Connections("pool-batch", "sa", "sa");
+        Connection connection = connections.get();
+        connections.prepare(connection, "CREATE TABLE item (id INT PRIMARY KEY, name VARCHAR(32))").execute();
+        Batch batch = connections.batch(connection, "INSERT INTO item VALUES (?, ?)", 10);
+        for (int i = 0; i < 25; i++) {
+            batch.add(i, "item" + i);
+        }
+        Assert.assertEquals(20L, batch.getExecuted());
+        Assert.assertEquals(5, batch.getPending());
+        batch.close();
+        Assert.assertEquals(25L, batch.getExecuted());
+        ResultSet resultSet = connections.prepare(connection, "SELECT COUNT(*) FROM item").executeQuery();
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals(25, resultSet.getInt(1));
+        resultSet.close();
+    }
+}
@@ -15,107 +15,68 @@
  */
 package vanadis.modules.httpprovider;
 
-import vanadis.common.io.Closeables;
-import vanadis.core.lang.ContextClassLoaderSwitch;
-import vanadis.core.reflection.ContextClassLoaderObjectInputStream;
+import vanadis.core.lang.Not;
 import vanadis.remoting.AbstractHandler;
+import vanadis.remoting.Batching;
+import vanadis.remoting.Codec;
+import vanadis.remoting.Codecs;
 import vanadis.remoting.MethodCall;
+import vanadis.remoting.MethodCallBatch;
+import vanadis.remoting.MethodCallBatchResult;
 import vanadis.remoting.MethodCallResult;
 import vanadis.services.remoting.RemotingException;
 import vanadis.services.remoting.TargetHandle;
 
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class Handler<T> extends AbstractHandler {
 
-    private final URL url;
+    private final HttpConnectionPool pool;
 
     private final ClassLoader classLoader;
 
+    private final Codec codec;
+
     public Handler(TargetHandle<T> targetHandle, ClassLoader classLoader) {
-        super(targetHandle);
-        this.classLoader = classLoader;
-        this.url = targetHandle.getLocation().toHttpUrl();
+        this(targetHandle, classLoader, new HttpConnectionPool(targetHandle.getLocation()));
     }
 
-    private HttpURLConnection connect() {
-        HttpURLConnection connection;
-        try {
-            connection = (HttpURLConnection) url.openConnection();
-        } catch (IOException e) {
-            throw new IllegalArgumentException
-                (this + " got bad location: " + url, e);
-        }
-        connection.setDoOutput(true);
-        return connection;
+    public Handler(TargetHandle<T> targetHandle, ClassLoader classLoader, HttpConnectionPool pool) {
+        this(targetHandle, classLoader, pool, Batching.NONE, Codecs.DEFAULT, null);
     }
 
-    private HttpURLConnection write(MethodCall call, HttpURLConnection connection) {
-        connection.setDoOutput(true);
-        try {
-            connection.connect();
-        } catch (IOException e) {
-            throw new RemotingException(this + " failed to connect " + connection, e);
-        }
-        OutputStream outputStream;
-        try {
-            outputStream = connection.getOutputStream();
-        } catch (IOException e) {
-            throw new RemotingException(this + " failed to open output on " + connection, e);
-        }
-        ObjectOutputStream objectOutputStream;
-        try {
-            objectOutputStream = new ObjectOutputStream(outputStream);
-        } catch (IOException e) {
-            throw new RemotingException(this + " failed to write header to " + connection, e);
-        }
-        try {
-            objectOutputStream.writeObject(call);
-        } catch (IOException e) {
-            throw new RemotingException(this + " failed to write " + call + " to " + connection, e);
-        }
-        Closeables.close(objectOutputStream);
-        return connection;
+    public Handler(TargetHandle<T> targetHandle, ClassLoader classLoader, HttpConnectionPool pool,
+                   Batching batching, Codec codec, Executor asyncExecutor) {
+        super(null, targetHandle, batching, asyncExecutor);
+        this.classLoader = classLoader;
+        this.pool = Not.nil(pool, "pool");
+        this.codec = Not.nil(codec, "codec");
     }
 
     @Override
     protected MethodCallResult invoke(MethodCall methodCall) {
-        HttpURLConnection connection = connect();
-        write(methodCall, connection);
-        return read(connection);
+        Object result = exchange(methodCall);
+        if (result instanceof MethodCallResult) {
+            return (MethodCallResult) result;
+        }
+        throw new RemotingException(this + " got unexpected result for " + methodCall + ": " + result);
     }
 
-    private MethodCallResult read(HttpURLConnection connection) {
-        InputStream inputStream;
-        try {
-            inputStream = connection.getInputStream();
-        } catch (IOException e) {
-            throw new RemotingException
-                (this + " failed to open input from " + connection, e);
+    @Override
+    protected List<MethodCallResult> invoke(MethodCallBatch batch) {
+        Object result = exchange(batch);
+        if (result instanceof MethodCallBatchResult) {
+            return ((MethodCallBatchResult) result).getResults();
         }
-        ObjectInputStream objectInputStream;
-        try {
-            objectInputStream = new ContextClassLoaderObjectInputStream(inputStream);
-        } catch (IOException e) {
+        if (result instanceof MethodCallResult) {
             throw new RemotingException
-                (this + " failed to read object headers from " + connection, e);
-        }
-        ContextClassLoaderSwitch classLoaderSwitch = new ContextClassLoaderSwitch(getClass().getClassLoader());
-        try {
-            MethodCallResult.setThreadLocalClassLoader(classLoader);
-            try {
-                return (MethodCallResult) objectInputStream.readObject();
-            } catch (Exception e) {
-                throw new RemotingException
-                    (this + " failed to read result from " + connection, e);
-            } finally {
-                MethodCallResult.setThreadLocalClassLoader(null);
-            }
-        } finally {
-            classLoaderSwitch.revert();
+                (this + " failed to send " + batch + ": " + result, ((MethodCallResult) result).getException());
         }
+        throw new RemotingException(this + " got unexpected result for " + batch + ": " + result);
     }
 
+    private Object exchange(Object frame) {
+        return codec.decode(pool.exchange(codec.encode(frame)), classLoader);
+    }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.modules.httpprovider;
+
+import vanadis.common.io.Location;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * A persistent HTTP/1.1 connection, speaking just enough of the protocol
+ * to POST a serialized call and read back the serialized result.  Instances
+ * are handed out by a {@link HttpConnectionPool}, and are used by one
+ * thread at a time.
+ */
+final class HttpConnection {
+
+    private static final byte[] CRLF = new byte[]{'\r', '\n'};
+
+    private final Location location;
+
+    private final String path;
+
+    private final Socket socket;
+
+    private final InputStream inputStream;
+
+    private final OutputStream outputStream;
+
+    private final byte[] requestHeader;
+
+    private long lastUsed;
+
+    private boolean reusable = true;
+
+    private int exchanges;
+
+    private boolean responseStarted;
+
+    HttpConnection(Location location, String path, String contentType, Socket socket)
+        throws IOException {
+        this.location = Not.nil(location, "location");
+        this.path = path == null || path.length() == 0 ? "/" : path;
+        this.socket = Not.nil(socket, "socket");
+        this.inputStream = new BufferedInputStream(socket.getInputStream());
+        this.outputStream = new BufferedOutputStream(socket.getOutputStream());
+        this.requestHeader = ascii("POST " + this.path + " HTTP/1.1\r\n" +
+                                   "Host: " + location.getHost() + ":" + location.getPort() + "\r\n" +
+                                   "Connection: keep-alive\r\n" +
+                                   "Content-Type: " + contentType + "\r\n" +
+                                   "Content-Length: ");
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Post a request body, and read the full response body.
+     *
+     * @param body Request body
+     * @param offset Start of body
+     * @param length Number of bytes in body
+     * @return Response body
+     * @throws IOException If the exchange failed
+     */
+    byte[] exchange(byte[] body, int offset, int length)
+        throws IOException {
+        reusable = false;
+        responseStarted = false;
+        outputStream.write(requestHeader);
+        outputStream.write(ascii(String.valueOf(length)));
+        outputStream.write(CRLF);
+        outputStream.write(CRLF);
+        outputStream.write(body, offset, length);
+        outputStream.flush();
+        byte[] response = readResponse();
+        exchanges++;
+        lastUsed = System.currentTimeMillis();
+        return response;
+    }
+
+    boolean isReusable() {
+        return reusable && !socket.isClosed();
+    }
+
+    /**
+     * @return True iff this connection was reused, and failed before the peer
+     *         started responding, e.g. because the peer timed it out while idle
+     */
+    boolean isStale() {
+        return exchanges > 0 && !responseStarted;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    Location getLocation() {
+        return location;
+    }
+
+    void close() {
+        reusable = false;
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private byte[] readResponse()
+        throws IOException {
+        String statusLine = readLine();
+        if (statusLine == null) {
+            throw new EOFException(this + " was closed by peer");
+        }
+        responseStarted = true;
+        int status = status(statusLine);
+        int contentLength = -1;
+        boolean chunked = false;
+        boolean keepAlive = statusLine.startsWith("HTTP/1.1");
+        for (String header = readLine(); header != null && header.length() > 0; header = readLine()) {
+            int colon = header.indexOf(':');
+            if (colon > 0) {
+                String name = header.substring(0, colon).trim();
+                String value = header.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    contentLength = Integer.parseInt(value);
+                } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                    chunked = value.equalsIgnoreCase("chunked");
+                } else if (name.equalsIgnoreCase("Connection")) {
+                    keepAlive = value.equalsIgnoreCase("keep-alive") ||
+                            keepAlive && !value.equalsIgnoreCase("close");
+                }
+            }
+        }
+        byte[] body = chunked ? readChunked()
+                : contentLength >= 0 ? readFully(contentLength)
+                : readToEnd();
+        if (status != 200) {
+            throw new IOException(this + " got response " + statusLine);
+        }
+        reusable = keepAlive && (chunked || contentLength >= 0);
+        return body;
+    }
+
+    private static int status(String statusLine)
+        throws IOException {
+        String[] parts = statusLine.split(" ");
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+    }
+
+    private byte[] readChunked()
+        throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine();
+            if (sizeLine == null) {
+                throw new EOFException(this + " ended in chunk header");
+            }
+            int semi = sizeLine.indexOf(';');
+            int size = Integer.parseInt((semi < 0 ? sizeLine : sizeLine.substring(0, semi)).trim(), 16);
+            if (size == 0) {
+                for (String trailer = readLine(); trailer != null && trailer.length() > 0; trailer = readLine()) {
+                    // Trailers are not used
+                }
+                return body.toByteArray();
+            }
+            body.write(readFully(size));
+            readLine();
+        }
+    }
+
+    private byte[] readFully(int length)
+        throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int count = inputStream.read(bytes, read, length - read);
+            if (count < 0) {
+                throw new EOFException(this + " ended after " + read + "/" + length + " bytes");
+            }
+            read += count;
+        }
+        return bytes;
+    }
+
+    private byte[] readToEnd()
+        throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int count = inputStream.read(buffer); count >= 0; count = inputStream.read(buffer)) {
+            body.write(buffer, 0, count);
+        }
+        return body.toByteArray();
+    }
+
+    private String readLine()
+        throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int b = inputStream.read();
+            if (b < 0) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r'
+                        ? line.substring(0, length - 1)
+                        : line.toString();
+            }
+            line.append((char) b);
+        }
+    }
+
+    private static byte[] ascii(String string) {
+        try {
+            return string.getBytes("US-ASCII");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("US-ASCII not supported", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, location, "path", path, "exchanges", exchanges);
+    }
+}
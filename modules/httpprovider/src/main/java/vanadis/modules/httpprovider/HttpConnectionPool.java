@@ -0,0 +1,286 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.modules.httpprovider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.common.io.Location;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+import vanadis.remoting.Codecs;
+import vanadis.services.remoting.RemotingException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keep-alive connections to a single location.  Idle connections are kept
+ * most-recently-used first, so the connections that are allowed to go stale
+ * are the ones nobody needs.
+ */
+public final class HttpConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpConnectionPool.class);
+
+    static final int DEFAULT_SIZE = 5;
+
+    static final TimeSpan DEFAULT_IDLE_TIMEOUT = TimeSpan.seconds(15);
+
+    static final TimeSpan DEFAULT_CONNECT_TIMEOUT = TimeSpan.seconds(10);
+
+    static final TimeSpan DEFAULT_READ_TIMEOUT = TimeSpan.seconds(60);
+
+    private final Location location;
+
+    private final String path;
+
+    private final String contentType;
+
+    private final int size;
+
+    private final long idleTimeoutMs;
+
+    private final int connectTimeoutMs;
+
+    private final int readTimeoutMs;
+
+    private final LinkedList<HttpConnection> idle = new LinkedList<HttpConnection>();
+
+    private final AtomicInteger open = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private boolean closed;
+
+    public HttpConnectionPool(Location location) {
+        this(location, DEFAULT_SIZE, DEFAULT_IDLE_TIMEOUT, Codecs.DEFAULT.getName());
+    }
+
+    public HttpConnectionPool(Location location, int size, TimeSpan idleTimeout, String contentType) {
+        this(location, size, idleTimeout, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, contentType);
+    }
+
+    /**
+     * @param location Remote location
+     * @param size Max idle connections kept
+     * @param idleTimeout Time before an idle connection is closed
+     * @param connectTimeout Max time to wait for a new connection, null for the default
+     * @param readTimeout Max time to wait for a response to start or continue, null for the default
+     * @param contentType Content type of requests
+     */
+    public HttpConnectionPool(Location location, int size, TimeSpan idleTimeout,
+                              TimeSpan connectTimeout, TimeSpan readTimeout, String contentType) {
+        this.location = Not.nil(location, "location");
+        this.path = path(location.toHttpUrl());
+        this.contentType = Not.nil(contentType, "content type");
+        this.size = size < 1 ? DEFAULT_SIZE : size;
+        this.idleTimeoutMs = (idleTimeout == null ? DEFAULT_IDLE_TIMEOUT : idleTimeout).msTime();
+        this.connectTimeoutMs = timeoutMs(connectTimeout == null ? DEFAULT_CONNECT_TIMEOUT : connectTimeout);
+        this.readTimeoutMs = timeoutMs(readTimeout == null ? DEFAULT_READ_TIMEOUT : readTimeout);
+    }
+
+    /**
+     * Post a request body to the location, on a pooled connection if one is
+     * available.  A pooled connection may have been closed by the server while
+     * idle, so failing to even get a response on a reused connection is retried
+     * once on a fresh one.  A read timeout is not retried, since the server
+     * may still be working on the request.
+     *
+     * @param request Request body, backed by an array
+     * @return Response body
+     */
+    public ByteBuffer exchange(ByteBuffer request) {
+        byte[] body = request.array();
+        int offset = request.arrayOffset() + request.position();
+        int length = request.remaining();
+        HttpConnection connection = borrow();
+        try {
+            return exchange(connection, body, offset, length);
+        } catch (IOException e) {
+            if (!connection.isStale() || e instanceof SocketTimeoutException) {
+                throw new RemotingException(this + " failed exchange on " + connection, e);
+            }
+            log.debug(this + " got stale " + connection + ", retrying", e);
+        }
+        try {
+            return exchange(newConnection(), body, offset, length);
+        } catch (IOException e) {
+            throw new RemotingException(this + " failed exchange", e);
+        }
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    public int getIdleConnections() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Close connections that have been idle longer than the idle timeout.
+     *
+     * @return Number of connections evicted
+     */
+    public int evictIdle() {
+        long threshold = System.currentTimeMillis() - idleTimeoutMs;
+        int evicted = 0;
+        while (true) {
+            HttpConnection stale;
+            synchronized (idle) {
+                if (idle.isEmpty() || idle.getLast().getLastUsed() > threshold) {
+                    return evicted;
+                }
+                stale = idle.removeLast();
+            }
+            evict(stale);
+            evicted++;
+        }
+    }
+
+    public void close() {
+        LinkedList<HttpConnection> connections;
+        synchronized (idle) {
+            closed = true;
+            connections = new LinkedList<HttpConnection>(idle);
+            idle.clear();
+        }
+        for (HttpConnection connection : connections) {
+            discard(connection);
+        }
+    }
+
+    private ByteBuffer exchange(HttpConnection connection, byte[] body, int offset, int length)
+        throws IOException {
+        boolean failed = true;
+        try {
+            byte[] response = connection.exchange(body, offset, length);
+            failed = false;
+            return ByteBuffer.wrap(response);
+        } finally {
+            if (failed) {
+                discard(connection);
+            } else {
+                release(connection);
+            }
+        }
+    }
+
+    private HttpConnection borrow() {
+        evictIdle();
+        HttpConnection connection;
+        synchronized (idle) {
+            connection = idle.poll();
+        }
+        if (connection == null) {
+            misses.incrementAndGet();
+            return newConnection();
+        }
+        hits.incrementAndGet();
+        return connection;
+    }
+
+    private void release(HttpConnection connection) {
+        evictIdle();
+        if (connection.isReusable()) {
+            synchronized (idle) {
+                if (!closed && idle.size() < size) {
+                    idle.addFirst(connection);
+                    return;
+                }
+            }
+        }
+        discard(connection);
+    }
+
+    private HttpConnection newConnection() {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(location.toInetAddress(), location.getPort()), connectTimeoutMs);
+            socket.setSoTimeout(readTimeoutMs);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            HttpConnection connection = new HttpConnection(location, path, contentType, socket);
+            open.incrementAndGet();
+            return connection;
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+            throw new RemotingException(this + " failed to connect", e);
+        }
+    }
+
+    private void evict(HttpConnection connection) {
+        evictions.incrementAndGet();
+        discard(connection);
+    }
+
+    private void discard(HttpConnection connection) {
+        open.decrementAndGet();
+        connection.close();
+    }
+
+    private static int timeoutMs(TimeSpan timeout) {
+        return timeout.isForever() ? 0 : (int) Math.min(Integer.MAX_VALUE, Math.max(1L, timeout.msTime()));
+    }
+
+    private static String path(URL url) {
+        String file = url.getFile();
+        return file == null || file.length() == 0 ? "/" : file;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, location,
+                           "size", size,
+                           "open", open,
+                           "hits", hits,
+                           "misses", misses,
+                           "evictions", evictions);
+    }
+}
@@ -15,17 +15,152 @@
  */
 package vanadis.modules.httpprovider;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.common.io.Location;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.lang.Not;
 import vanadis.core.lang.Proxies;
+import vanadis.core.lang.ToString;
 import vanadis.remoting.AbstractRemoteClientFactory;
+import vanadis.remoting.Batching;
+import vanadis.remoting.Codec;
+import vanadis.remoting.Codecs;
+import vanadis.remoting.DaemonThreadFactory;
 import vanadis.services.remoting.TargetHandle;
 
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 public class HttpRemoteClientFactory extends AbstractRemoteClientFactory {
 
+    private static final Logger log = LoggerFactory.getLogger(HttpRemoteClientFactory.class);
+
+    private static final long MIN_EVICTION_INTERVAL_MS = 100L;
+
+    private final ConcurrentMap<Location, HttpConnectionPool> pools =
+            new ConcurrentHashMap<Location, HttpConnectionPool>();
+
+    private final int poolSize;
+
+    private final TimeSpan poolIdleTimeout;
+
+    private final TimeSpan connectTimeout;
+
+    private final TimeSpan readTimeout;
+
+    private final ScheduledExecutorService evictor;
+
+    private final ScheduledExecutorService flusher;
+
+    private final Batching batching;
+
+    private final Codec codec;
+
+    private final ExecutorService asyncExecutor;
+
+    public HttpRemoteClientFactory() {
+        this(HttpConnectionPool.DEFAULT_SIZE, HttpConnectionPool.DEFAULT_IDLE_TIMEOUT,
+             HttpConnectionPool.DEFAULT_CONNECT_TIMEOUT, HttpConnectionPool.DEFAULT_READ_TIMEOUT,
+             0, null, Codecs.DEFAULT, 0);
+    }
+
+    /**
+     * @param poolSize Max idle connections per location
+     * @param poolIdleTimeout Time before an idle connection is closed, checked at half this interval
+     * @param connectTimeout Max time to wait for a new connection
+     * @param readTimeout Max time to wait for a response
+     * @param batchSize Max fire-and-forget calls per batch, 0 for no batching
+     * @param batchLinger Max time a fire-and-forget call waits for its batch
+     * @param codec Codec
+     * @param asyncThreads Threads for sending asynchronous calls, 0 to send them on the calling thread
+     */
+    public HttpRemoteClientFactory(int poolSize, TimeSpan poolIdleTimeout,
+                                   TimeSpan connectTimeout, TimeSpan readTimeout,
+                                   int batchSize, TimeSpan batchLinger,
+                                   Codec codec, int asyncThreads) {
+        this.codec = Not.nil(codec, "codec");
+        this.asyncExecutor = asyncThreads > 0 ? Executors.newFixedThreadPool
+                (asyncThreads, new DaemonThreadFactory("HttpRemoting-Async")) : null;
+        this.poolSize = poolSize;
+        this.poolIdleTimeout = poolIdleTimeout;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("HttpRemoting-Evictor"));
+        long evictionIntervalMs = Math.max
+                (MIN_EVICTION_INTERVAL_MS,
+                 (poolIdleTimeout == null ? HttpConnectionPool.DEFAULT_IDLE_TIMEOUT : poolIdleTimeout).msTime() / 2);
+        this.evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdle();
+            }
+        }, evictionIntervalMs, evictionIntervalMs, TimeUnit.MILLISECONDS);
+        this.flusher = batchSize > 1 && batchLinger != null
+                ? Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("HttpRemoting-Flusher"))
+                : null;
+        this.batching = new Batching(batchSize, batchLinger, flusher);
+    }
+
     @Override
     public <T> T createClient(ClassLoader classLoader, TargetHandle<T> targetHandle) {
         return Proxies.genericProxy(classLoader,
                                     targetHandle.getReference().getTargetInterface(),
                                     new Handler<T>(targetHandle,
-                                                   classLoader));
+                                                   classLoader,
+                                                   pool(targetHandle.getLocation()),
+                                                   batching,
+                                                   codec,
+                                                   asyncExecutor));
+    }
+
+    public Collection<HttpConnectionPool> getPools() {
+        return pools.values();
+    }
+
+    public void close() {
+        evictor.shutdownNow();
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            batching.getLinger().added(TimeSpan.SECOND).awaitTermination(flusher, false);
+        }
+        for (HttpConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    private void evictIdle() {
+        for (HttpConnectionPool pool : pools.values()) {
+            try {
+                pool.evictIdle();
+            } catch (RuntimeException e) {
+                log.warn(this + " failed to evict idle connections from " + pool, e);
+            }
+        }
+    }
+
+    private HttpConnectionPool pool(Location location) {
+        HttpConnectionPool pool = pools.get(location);
+        if (pool != null) {
+            return pool;
+        }
+        HttpConnectionPool newPool = new HttpConnectionPool
+                (location, poolSize, poolIdleTimeout, connectTimeout, readTimeout, codec.getName());
+        HttpConnectionPool existing = pools.putIfAbsent(location, newPool);
+        return existing == null ? newPool : existing;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "pools", pools.values(), "batching", batching, "codec", codec);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2008 Kjetil Valstadsve
+ * Copyright 2009 Kjetil Valstadsve
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,22 +13,27 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package vanadis.osgi;
+package vanadis.modules.httpprovider;
 
-import java.util.Iterator;
+import vanadis.core.lang.EntryPoint;
 
-final class MatchesIterable extends FiltersIterable {
+public interface HttpRemotingMBean {
 
-    private final ServiceProperties<?> properties;
+    @EntryPoint("JMX")
+    long getPoolHits();
 
-    MatchesIterable(Filter[] exprs, ServiceProperties<?> properties) {
-        super(exprs);
-        this.properties = properties;
-    }
+    @EntryPoint("JMX")
+    long getPoolMisses();
 
-    @Override
-    protected Iterator<Boolean> newIterator(Filter[] filters) {
-        return new MatchesIterator(filters, properties);
-    }
+    @EntryPoint("JMX")
+    long getPoolEvictions();
 
+    @EntryPoint("JMX")
+    int getOpenConnections();
+
+    @EntryPoint("JMX")
+    int getIdleConnections();
+
+    @EntryPoint("JMX")
+    String[] getPools();
 }
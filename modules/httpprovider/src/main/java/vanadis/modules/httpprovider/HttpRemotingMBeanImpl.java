@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.modules.httpprovider;
+
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.ToString;
+
+import java.util.List;
+
+final class HttpRemotingMBeanImpl implements HttpRemotingMBean {
+
+    private final HttpRemoteClientFactory clientFactory;
+
+    HttpRemotingMBeanImpl(HttpRemoteClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    @Override
+    public long getPoolHits() {
+        long hits = 0;
+        for (HttpConnectionPool pool : clientFactory.getPools()) {
+            hits += pool.getHits();
+        }
+        return hits;
+    }
+
+    @Override
+    public long getPoolMisses() {
+        long misses = 0;
+        for (HttpConnectionPool pool : clientFactory.getPools()) {
+            misses += pool.getMisses();
+        }
+        return misses;
+    }
+
+    @Override
+    public long getPoolEvictions() {
+        long evictions = 0;
+        for (HttpConnectionPool pool : clientFactory.getPools()) {
+            evictions += pool.getEvictions();
+        }
+        return evictions;
+    }
+
+    @Override
+    public int getOpenConnections() {
+        int open = 0;
+        for (HttpConnectionPool pool : clientFactory.getPools()) {
+            open += pool.getOpenConnections();
+        }
+        return open;
+    }
+
+    @Override
+    public int getIdleConnections() {
+        int idle = 0;
+        for (HttpConnectionPool pool : clientFactory.getPools()) {
+            idle += pool.getIdleConnections();
+        }
+        return idle;
+    }
+
+    @Override
+    public String[] getPools() {
+        List<String> pools = Generic.list();
+        for (HttpConnectionPool pool : clientFactory.getPools()) {
+            pools.add(String.valueOf(pool));
+        }
+        return pools.toArray(new String[pools.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, clientFactory);
+    }
+}
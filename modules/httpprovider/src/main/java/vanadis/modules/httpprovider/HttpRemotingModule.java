@@ -23,6 +23,8 @@ import vanadis.ext.AbstractModule;
 import vanadis.ext.Configure;
 import vanadis.ext.Expose;
 import vanadis.ext.Module;
+import vanadis.remoting.Codec;
+import vanadis.remoting.Codecs;
 import vanadis.services.remoting.RemoteClientFactory;
 import vanadis.services.remoting.RemotingInfrastructure;
 
@@ -51,12 +53,67 @@ public class HttpRemotingModule extends AbstractModule {
     @Configure(def = "false")
     private boolean outgoingOnly;
 
+    /**
+     * Max number of idle keep-alive connections kept per remote location.
+     */
+    @Configure(def = "5")
+    private int poolSize;
+
+    /**
+     * Idle connections are closed after this long.  Should be shorter than
+     * the keep-alive of the remote end.
+     */
+    @Configure(def = "15s")
+    private TimeSpan poolIdleTimeout;
+
+    /**
+     * Max time to wait for a connection to a remote location.
+     */
+    @Configure(def = "10s")
+    private TimeSpan connectTimeout;
+
+    /**
+     * Max time to wait for a remote call to respond.
+     */
+    @Configure(def = "60s")
+    private TimeSpan readTimeout;
+
+    /**
+     * If larger than 1, void calls without checked exceptions are queued and sent
+     * in batches of up to this size.  Such calls become fire-and-forget; failures are
+     * only logged.
+     */
+    @Configure(def = "0")
+    private int batchSize;
+
+    /**
+     * Max time a queued call waits for its batch to fill up.
+     */
+    @Configure(def = "10ms")
+    private TimeSpan batchLinger;
+
+    /**
+     * Wire format of outgoing calls, <code>compact</code> or <code>serialization</code>.
+     * Incoming calls are decoded in the format the caller used.
+     */
+    @Configure(def = "compact")
+    private String codec;
+
+    /**
+     * Threads sending asynchronous calls.  Calls made while others are in
+     * flight are sent together, so a few threads go a long way.
+     */
+    @Configure(def = "2")
+    private int asyncThreads;
+
     @Expose
     public RemoteClientFactory getRemoteClientFactory() {
-        if (remoteClientFactory == null) {
-            remoteClientFactory = new HttpRemoteClientFactory();
-        }
-        return remoteClientFactory;
+        return remoteClientFactory();
+    }
+
+    @Expose(managed = true)
+    public HttpRemotingMBean getHttpRemotingMBean() {
+        return new HttpRemotingMBeanImpl(remoteClientFactory());
     }
 
     @Expose
@@ -69,6 +126,33 @@ public class HttpRemotingModule extends AbstractModule {
         return infrastructure;
     }
 
+    @Override
+    public void closed() {
+        if (remoteClientFactory != null) {
+            try {
+                remoteClientFactory.close();
+            } finally {
+                remoteClientFactory = null;
+            }
+        }
+    }
+
+    private HttpRemoteClientFactory remoteClientFactory() {
+        if (remoteClientFactory == null) {
+            remoteClientFactory = new HttpRemoteClientFactory(poolSize, poolIdleTimeout, connectTimeout, readTimeout,
+                                                              batchSize, batchLinger, codec(), asyncThreads);
+        }
+        return remoteClientFactory;
+    }
+
+    private Codec codec() {
+        Codec configured = Codecs.get(codec);
+        if (configured == null) {
+            throw new IllegalArgumentException(this + " has unknown codec: " + codec);
+        }
+        return configured;
+    }
+
     @Override
     public String toString() {
         return ToString.of(this, infrastructure, remoteClientFactory);
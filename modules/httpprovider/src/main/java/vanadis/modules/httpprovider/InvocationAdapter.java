@@ -18,21 +18,24 @@ package vanadis.modules.httpprovider;
 import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
 import com.sun.grizzly.tcp.http11.GrizzlyRequest;
 import com.sun.grizzly.tcp.http11.GrizzlyResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import vanadis.common.io.Closeables;
+import vanadis.common.io.IO;
 import vanadis.core.lang.ContextClassLoaderSwitch;
-import vanadis.core.reflection.ContextClassLoaderObjectInputStream;
-import vanadis.remoting.*;
+import vanadis.remoting.Codec;
+import vanadis.remoting.Codecs;
+import vanadis.remoting.Dispatch;
 import vanadis.services.remoting.RemotingException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
-@SuppressWarnings({"RawUseOfParameterizedType"})
+/**
+ * Receives calls.  The request content type says which {@link Codec} to
+ * decode it with, and the result is encoded with the same codec.  Requests
+ * without a known content type are taken to be Java serialized.
+ */
 public class InvocationAdapter extends GrizzlyAdapter {
 
-    private static final Logger log = LoggerFactory.getLogger(InvocationAdapter.class);
-
     private final ClassLoader classLoader;
 
     public InvocationAdapter(File publicDirectory, ClassLoader classLoader) {
@@ -42,112 +45,56 @@ public class InvocationAdapter extends GrizzlyAdapter {
 
     @Override
     public void service(GrizzlyRequest request, GrizzlyResponse response) {
-        MethodCallResult result = result(request);
-        writeMethodCallResult(response, result);
+        Codec codec = Codecs.getOrSerialization(request.getContentType());
+        ByteBuffer frame = ByteBuffer.wrap(readRequest(request));
+        ByteBuffer result = invoke(codec, frame);
+        writeResponse(response, codec, result);
     }
 
-    private MethodCallResult result(GrizzlyRequest request) {
-        Session session = null;
-        MethodCall call = null;
-        try {
-            call = readMethodCall(request);
-            session = call.getSession();
-            if (call.isOnTarget()) {
-                return call.invoke();
-            }
-            log.error(call + " failed to find its target" + (session == null ? "" : ", session: " + session));
-            return UnknownMethodTarget.INSTANCE;
-        } catch (Exception e) {
-            log.error(call == null ? "Deserialization of call failed"
-                    : "Processing of call " + call + " failed" +
-                            (session == null ? "" : ", session: " + session), e);
-            return new MethodExceptionThrown(session, e);
-        }
-    }
-
-    private static void writeMethodCallResult(GrizzlyResponse response,
-                                              MethodCallResult result) {
-        OutputStream outputStream = openOutputStream(response, result);
+    private ByteBuffer invoke(Codec codec, ByteBuffer frame) {
+        ContextClassLoaderSwitch contextSwitch = new ContextClassLoaderSwitch(classLoader);
         try {
-            ObjectOutputStream objectOutputStream = openObjectOutputStream(response, result, outputStream);
-            writeObjectResponse(response, result, objectOutputStream);
+            return Dispatch.invoke(codec, frame, classLoader);
         } finally {
-            Closeables.close(outputStream);
-        }
-    }
-
-    private static void writeObjectResponse(GrizzlyResponse response, MethodCallResult result, ObjectOutputStream objectOutputStream) {
-        try {
-            objectOutputStream.writeObject(result);
-        } catch (IOException e) {
-            throw new RemotingException
-                    ("Failed to write to " + response + ", could not write result " + result, e);
+            contextSwitch.revert();
         }
     }
 
-    private static ObjectOutputStream openObjectOutputStream(GrizzlyResponse response, MethodCallResult result, OutputStream outputStream) {
+    private static void writeResponse(GrizzlyResponse response, Codec codec, ByteBuffer result) {
+        response.setContentType(codec.getName());
+        response.setContentLength(result.remaining());
+        OutputStream outputStream = openOutputStream(response);
         try {
-            return new ObjectOutputStream(outputStream);
+            outputStream.write(result.array(), result.arrayOffset() + result.position(), result.remaining());
         } catch (IOException e) {
             throw new RemotingException
-                    ("Failed to write object header to " + response + ", could not write result " + result, e);
-
+                    ("Failed to write to " + response + ", could not write result", e);
+        } finally {
+            Closeables.close(outputStream);
         }
     }
 
-    private static OutputStream openOutputStream(GrizzlyResponse response, MethodCallResult result) {
+    private static OutputStream openOutputStream(GrizzlyResponse response) {
         try {
             return response.getOutputStream();
         } catch (IOException e) {
             throw new RemotingException
-                    ("Failed to open response stream for " + response + ", could not write result " + result, e);
+                    ("Failed to open response stream for " + response, e);
         }
     }
 
-    private MethodCall readMethodCall(GrizzlyRequest request) {
-        Object object = readRequestObject(request);
-        if (object == null) {
-            throw new RemotingException
-                    ("Read null object from " + request);
-        }
-        if (object instanceof MethodCall) {
-            return (MethodCall) object;
-        }
-        throw new RemotingException
-                ("Read unexpected instance " + object + " of unknown " + object.getClass() + " from " + request);
-    }
-
-    private Object readRequestObject(GrizzlyRequest request) {
+    private static byte[] readRequest(GrizzlyRequest request) {
         InputStream inputStream = requestInputStream(request);
         try {
-            ObjectInputStream objectInputStream = objectInputStream(request, inputStream);
-            return readObjectWithClassLoader(request, objectInputStream);
+            int contentLength = request.getContentLength();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(contentLength > 0 ? contentLength : IO.BUFFER_SIZE);
+            IO.copy(inputStream, bytes, false);
+            return bytes.toByteArray();
         } finally {
             Closeables.close(inputStream);
         }
     }
 
-    private Object readObjectWithClassLoader(GrizzlyRequest request, ObjectInputStream objectInputStream) {
-        ContextClassLoaderSwitch contextSwitch = new ContextClassLoaderSwitch(classLoader);
-        try {
-            return objectInputStream.readObject();
-        } catch (IOException e) {
-            throw new RemotingException("Failed to read method invocation from " + request, e);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("Failed to read class from " + request, e);
-        } finally {
-            contextSwitch.revert();
-        }
-    }
-
-    private static ObjectInputStream objectInputStream(GrizzlyRequest request, InputStream inputStream) {
-        try {
-            return new ContextClassLoaderObjectInputStream(inputStream);
-        } catch (IOException e) {
-            throw new RemotingException("Failed to read object header from " + request, e);
-        }
-    }
-
     private static InputStream requestInputStream(GrizzlyRequest request) {
         try {
             return request.getInputStream();
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.modules.httpprovider;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vanadis.common.io.Location;
+import vanadis.common.time.TimeSpan;
+import vanadis.remoting.Codecs;
+import vanadis.remoting.MapTargetReference;
+import vanadis.services.remoting.RemotingException;
+import vanadis.services.remoting.TargetHandle;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpConnectionPoolTest extends Assert {
+
+    private ServerSocket serverSocket;
+
+    private Thread server;
+
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    private volatile boolean closeAfterResponse;
+
+    private volatile boolean hang;
+
+    @Test
+    public void reuseConnection() {
+        HttpConnectionPool pool = new HttpConnectionPool(location());
+        try {
+            assertEquals("foo", exchange(pool, "foo"));
+            assertEquals("bar", exchange(pool, "bar"));
+            assertEquals("zot", exchange(pool, "zot"));
+            assertEquals(1, pool.getMisses());
+            assertEquals(2, pool.getHits());
+            assertEquals(1, pool.getOpenConnections());
+            assertEquals(1, pool.getIdleConnections());
+            assertEquals(1, accepted.get());
+        } finally {
+            pool.close();
+        }
+        assertEquals(0, pool.getOpenConnections());
+    }
+
+    @Test
+    public void evictIdle() {
+        HttpConnectionPool pool = new HttpConnectionPool(location(), 2, TimeSpan.INSTANT, "text/plain");
+        try {
+            assertEquals("foo", exchange(pool, "foo"));
+            TimeSpan.millis(10).sleep();
+            assertEquals(1, pool.evictIdle());
+            assertEquals(1, pool.getEvictions());
+            assertEquals(0, pool.getIdleConnections());
+            assertEquals("bar", exchange(pool, "bar"));
+            assertEquals(2, pool.getMisses());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void evictIdleInBackground() {
+        HttpRemoteClientFactory factory = new HttpRemoteClientFactory
+                (2, TimeSpan.millis(200), null, null, 0, null, Codecs.DEFAULT, 0);
+        try {
+            factory.createClient(getClass().getClassLoader(), new TargetHandle<Runnable>
+                    (location(), new MapTargetReference<Runnable>("foo", Runnable.class)));
+            HttpConnectionPool pool = factory.getPools().iterator().next();
+            assertEquals("foo", exchange(pool, "foo"));
+            assertEquals(1, pool.getIdleConnections());
+            for (int i = 0; i < 50 && pool.getIdleConnections() > 0; i++) {
+                TimeSpan.HUNDRED_MS.sleep();
+            }
+            assertEquals(0, pool.getIdleConnections());
+            assertEquals(1, pool.getEvictions());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void retryStaleConnection() {
+        HttpConnectionPool pool = new HttpConnectionPool(location());
+        try {
+            closeAfterResponse = true;
+            assertEquals("foo", exchange(pool, "foo"));
+            assertEquals("bar", exchange(pool, "bar"));
+            assertEquals(2, accepted.get());
+            assertEquals(1, pool.getHits());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void readTimeout() {
+        HttpConnectionPool pool = new HttpConnectionPool
+                (location(), 2, HttpConnectionPool.DEFAULT_IDLE_TIMEOUT,
+                 TimeSpan.seconds(5), TimeSpan.millis(200), "text/plain");
+        try {
+            assertEquals("foo", exchange(pool, "foo"));
+            hang = true;
+            try {
+                exchange(pool, "bar");
+                fail("Expected timeout");
+            } catch (RemotingException e) {
+                assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+            assertEquals(0, pool.getOpenConnections());
+            assertEquals(1, accepted.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static String exchange(HttpConnectionPool pool, String body) {
+        ByteBuffer response = pool.exchange(ByteBuffer.wrap(body.getBytes()));
+        return new String(response.array(), response.arrayOffset() + response.position(), response.remaining());
+    }
+
+    private Location location() {
+        return new Location(serverSocket.getLocalPort());
+    }
+
+    @Before
+    public void before()
+            throws IOException {
+        serverSocket = new ServerSocket(0);
+        server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        serve(serverSocket.accept());
+                    }
+                } catch (IOException ignore) {
+                }
+            }
+        }, "HttpConnectionPoolTest");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    @After
+    public void after()
+            throws IOException, InterruptedException {
+        serverSocket.close();
+        server.join(5000L);
+    }
+
+    private void serve(Socket socket)
+            throws IOException {
+        accepted.incrementAndGet();
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        OutputStream output = socket.getOutputStream();
+        try {
+            while (true) {
+                int contentLength = -1;
+                for (String line = readLine(input); line.length() > 0; line = readLine(input)) {
+                    if (line.startsWith("Content-Length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                byte[] body = new byte[contentLength];
+                input.readFully(body);
+                if (hang) {
+                    while (input.read() >= 0) {
+                        // Wait for the client to give up
+                    }
+                    return;
+                }
+                output.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes());
+                output.write(body);
+                output.flush();
+                if (closeAfterResponse) {
+                    return;
+                }
+            }
+        } catch (EOFException ignore) {
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static String readLine(InputStream input)
+            throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int b = input.read(); b != '\n'; b = input.read()) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -21,14 +21,15 @@ import org.slf4j.LoggerFactory;
 import vanadis.core.lang.Not;
 import vanadis.core.lang.Strings;
 import vanadis.core.lang.ToString;
-import vanadis.services.db.Connections;
 import vanadis.services.db.DbException;
+import vanadis.services.db.PoolSettings;
+import vanadis.services.db.PooledConnections;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
-public class JdbcConnections implements Connections {
+public class JdbcConnections extends PooledConnections {
 
     private static final Logger log = LoggerFactory.getLogger(JdbcConnections.class);
 
@@ -43,6 +44,12 @@ public class JdbcConnections implements Connections {
     private final boolean readOnly;
 
     public JdbcConnections(String connectionUrl, String driverClassName, String user, String passwd, boolean readOnly) {
+        this(connectionUrl, driverClassName, user, passwd, readOnly, null);
+    }
+
+    public JdbcConnections(String connectionUrl, String driverClassName, String user, String passwd, boolean readOnly,
+                           PoolSettings settings) {
+        super(user, passwd, settings);
         this.user = user;
         this.passwd = passwd;
         this.readOnly = readOnly;
@@ -57,12 +64,7 @@ public class JdbcConnections implements Connections {
     }
 
     @Override
-    public Connection get() {
-        return get(user, passwd);
-    }
-
-    @Override
-    public Connection get(String user, String passwd) {
+    protected Connection open(String user, String passwd) {
         Connection connection = newConnection(user, passwd);
         setReadOnly(connection);
         return connection;
@@ -91,15 +93,6 @@ public class JdbcConnections implements Connections {
         }
     }
 
-    @Override
-    public void drop(Connection connection) {
-        try {
-            connection.close();
-        } catch (Exception e) {
-            log.warn(this + " failed to close " + connection, e);
-        }
-    }
-
     @Override
     public String toString() {
         return ToString.of(this, connectionUrl, "user", user, "passwd", passwd, "class", driverClassName);
@@ -20,6 +20,7 @@ import vanadis.core.lang.Not;
 import vanadis.services.db.ConnectionsMBean;
 
 import java.sql.CallableStatement;
+import java.sql.Connection;
 import java.sql.SQLException;
 
 public class JdbcConnectionsMBean implements ConnectionsMBean {
@@ -32,50 +33,82 @@ public class JdbcConnectionsMBean implements ConnectionsMBean {
 
     @Override
     public String query(String sql) {
-        CallableStatement statement;
+        Connection connection = jdbcConnections.get();
         try {
-            statement = statement(sql);
-        } catch (SQLException e) {
-            return e.toString();
-        }
-        try {
-            return String.valueOf(statement.executeQuery());
+            CallableStatement statement = connection.prepareCall(sql);
+            try {
+                return String.valueOf(statement.executeQuery());
+            } finally {
+                statement.close();
+            }
         } catch (SQLException e) {
             return e.toString();
+        } finally {
+            jdbcConnections.drop(connection);
         }
     }
 
     @Override
     public String command(String sql) {
-        CallableStatement statement;
-        try {
-            statement = statement(sql);
-        } catch (SQLException e) {
-            return e.toString();
-        }
+        Connection connection = jdbcConnections.get();
         try {
-            return String.valueOf(statement.execute());
+            CallableStatement statement = connection.prepareCall(sql);
+            try {
+                return String.valueOf(statement.execute());
+            } finally {
+                statement.close();
+            }
         } catch (SQLException e) {
             return e.toString();
+        } finally {
+            jdbcConnections.drop(connection);
         }
     }
 
     @Override
     public String update(String sql) {
-        CallableStatement statement;
+        Connection connection = jdbcConnections.get();
         try {
-            statement = statement(sql);
-        } catch (SQLException e) {
-            return e.toString();
-        }
-        try {
-            return String.valueOf(statement.executeUpdate());
+            CallableStatement statement = connection.prepareCall(sql);
+            try {
+                return String.valueOf(statement.executeUpdate());
+            } finally {
+                statement.close();
+            }
         } catch (SQLException e) {
             return e.toString();
+        } finally {
+            jdbcConnections.drop(connection);
         }
     }
 
-    private CallableStatement statement(String sql) throws SQLException {
-        return jdbcConnections.get().prepareCall(sql);
+    @Override
+    public int getActiveConnections() {
+        return jdbcConnections.getActiveConnections();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return jdbcConnections.getIdleConnections();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return jdbcConnections.getBorrowCount();
+    }
+
+    @Override
+    public long getWaitCount() {
+        return jdbcConnections.getWaitCount();
+    }
+
+    @Override
+    public long getAverageBorrowMicros() {
+        return jdbcConnections.getAverageBorrowMicros();
+    }
+
+    @Override
+    public long getMaxBorrowMicros() {
+        return jdbcConnections.getMaxBorrowMicros();
     }
 }
@@ -15,6 +15,7 @@
  */
 package vanadis.modules.jdbcdb;
 
+import vanadis.common.time.TimeSpan;
 import vanadis.core.lang.ToString;
 import vanadis.core.lang.UsedByReflection;
 import vanadis.ext.AbstractModule;
@@ -23,6 +24,7 @@ import vanadis.ext.Expose;
 import vanadis.ext.Module;
 import vanadis.services.db.Connections;
 import vanadis.services.db.ConnectionsMBean;
+import vanadis.services.db.PoolSettings;
 
 @Module(moduleType = "jdbcdb")
 public class JdbcModule extends AbstractModule {
@@ -42,6 +44,43 @@ public class JdbcModule extends AbstractModule {
     @Configure(def = "false")
     private boolean readOnly;
 
+    /**
+     * Max number of connections handed out at the same time, per user.
+     */
+    @Configure(def = "10")
+    private int poolSize;
+
+    /**
+     * How long to wait for a connection when all are handed out.
+     */
+    @Configure(def = "30s")
+    private TimeSpan poolBorrowTimeout;
+
+    /**
+     * Idle connections are closed after this long.
+     */
+    @Configure(def = "300s")
+    private TimeSpan poolIdleTimeout;
+
+    /**
+     * Connections are closed after this long, regardless of use.
+     */
+    @Configure(def = "1800s")
+    private TimeSpan poolMaxLifetime;
+
+    /**
+     * Query run to check an idle connection before it is reused.  If not set,
+     * the connection is just checked to be open.
+     */
+    @Configure
+    private String poolValidationQuery;
+
+    /**
+     * Max number of prepared statements kept per connection.
+     */
+    @Configure(def = "32")
+    private int statementCacheSize;
+
     private JdbcConnections jdbcConnections;
 
     private JdbcConnectionsMBean jdbcConnectionsMBean;
@@ -70,10 +109,27 @@ public class JdbcModule extends AbstractModule {
 
     @Override
     public void dependenciesResolved() {
-        jdbcConnections = new JdbcConnections(connectionUrl, driverClassName, user, passwd, readOnly);
+        jdbcConnections = new JdbcConnections(connectionUrl, driverClassName, user, passwd, readOnly,
+                                              poolSettings());
         jdbcConnectionsMBean = new JdbcConnectionsMBean(jdbcConnections);
     }
 
+    @Override
+    public void closed() {
+        if (jdbcConnections != null) {
+            try {
+                jdbcConnections.close();
+            } finally {
+                jdbcConnections = null;
+            }
+        }
+    }
+
+    private PoolSettings poolSettings() {
+        return new PoolSettings(poolSize, poolBorrowTimeout, poolIdleTimeout, poolMaxLifetime, poolValidationQuery,
+                                statementCacheSize);
+    }
+
     @Override
     public String toString() {
         return ToString.of(this, connectionUrl,
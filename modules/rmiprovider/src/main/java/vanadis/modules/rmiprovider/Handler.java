@@ -17,30 +17,72 @@ package vanadis.modules.rmiprovider;
 
 import vanadis.core.lang.Not;
 import vanadis.remoting.AbstractHandler;
+import vanadis.remoting.Batching;
+import vanadis.remoting.Codec;
+import vanadis.remoting.Codecs;
 import vanadis.remoting.MethodCall;
+import vanadis.remoting.MethodCallBatch;
+import vanadis.remoting.MethodCallBatchResult;
 import vanadis.remoting.MethodCallResult;
 import vanadis.services.remoting.RemotingException;
 import vanadis.services.remoting.TargetHandle;
 
+import java.nio.ByteBuffer;
 import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 class Handler extends AbstractHandler {
 
     private final RemoteInvoker invoker;
 
-    Handler(TargetHandle<?> handle, RemoteInvoker invoker) {
-        super(handle);
+    private final ClassLoader classLoader;
+
+    private final Codec codec;
+
+    Handler(TargetHandle<?> handle, RemoteInvoker invoker, ClassLoader classLoader) {
+        this(handle, invoker, classLoader, Batching.NONE, Codecs.DEFAULT, null);
+    }
+
+    Handler(TargetHandle<?> handle, RemoteInvoker invoker, ClassLoader classLoader,
+            Batching batching, Codec codec, Executor asyncExecutor) {
+        super(null, handle, batching, asyncExecutor);
         this.invoker = Not.nil(invoker, "invoker");
+        this.classLoader = classLoader;
+        this.codec = Not.nil(codec, "codec");
     }
 
     @Override
     protected MethodCallResult invoke(MethodCall methodCall) {
+        Object result = exchange(methodCall);
+        if (result instanceof MethodCallResult) {
+            return (MethodCallResult) result;
+        }
+        throw new RemotingException(this + " got unexpected result for " + methodCall + ": " + result);
+    }
+
+    @Override
+    protected List<MethodCallResult> invoke(MethodCallBatch batch) {
+        Object result = exchange(batch);
+        if (result instanceof MethodCallBatchResult) {
+            return ((MethodCallBatchResult) result).getResults();
+        }
+        if (result instanceof MethodCallResult) {
+            throw new RemotingException
+                (this + " failed to send " + batch + ": " + result, ((MethodCallResult) result).getException());
+        }
+        throw new RemotingException(this + " got unexpected result for " + batch + ": " + result);
+    }
+
+    private Object exchange(Object frame) {
+        byte[] response;
         try {
-            return invoker.perform(methodCall);
+            response = invoker.perform(codec.getName(), RemoteInvokerImpl.bytes(codec.encode(frame)));
         } catch (RemoteException e) {
             throw new RemotingException
-                    (this + " failed to invoke " + methodCall, e);
+                    (this + " failed to invoke " + frame, e);
         }
+        return codec.decode(ByteBuffer.wrap(response), classLoader);
     }
 
 }
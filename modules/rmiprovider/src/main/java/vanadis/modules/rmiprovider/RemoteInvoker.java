@@ -15,15 +15,18 @@
  */
 package vanadis.modules.rmiprovider;
 
-import vanadis.remoting.MethodCall;
-import vanadis.remoting.MethodCallResult;
-
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 
 interface RemoteInvoker extends Remote {
 
-    MethodCallResult perform(MethodCall methodCall)
+    /**
+     * @param codec Name of the {@link vanadis.remoting.Codec} the frame is encoded with
+     * @param frame Encoded call or batch
+     * @return Encoded result, with the same codec
+     * @throws RemoteException If the remote call failed
+     */
+    byte[] perform(String codec, byte[] frame)
         throws RemoteException;
 
 }
@@ -15,18 +15,40 @@
  */
 package vanadis.modules.rmiprovider;
 
+import vanadis.core.lang.ContextClassLoaderSwitch;
 import vanadis.core.lang.ToString;
-import vanadis.remoting.MethodCall;
-import vanadis.remoting.MethodCallResult;
+import vanadis.remoting.Codecs;
+import vanadis.remoting.Dispatch;
 
+import java.nio.ByteBuffer;
 import java.rmi.RemoteException;
 
 class RemoteInvokerImpl implements RemoteInvoker {
 
+    private final ClassLoader classLoader;
+
+    RemoteInvokerImpl(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
     @Override
-    public MethodCallResult perform(MethodCall methodCall)
+    public byte[] perform(String codec, byte[] frame)
             throws RemoteException {
-        return methodCall.invoke();
+        ContextClassLoaderSwitch contextSwitch = new ContextClassLoaderSwitch(classLoader);
+        try {
+            return bytes(Dispatch.invoke(Codecs.getOrSerialization(codec), ByteBuffer.wrap(frame), classLoader));
+        } finally {
+            contextSwitch.revert();
+        }
+    }
+
+    static byte[] bytes(ByteBuffer buffer) {
+        if (buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
     }
 
     @Override
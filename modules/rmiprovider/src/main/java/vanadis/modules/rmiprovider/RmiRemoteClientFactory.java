@@ -17,22 +17,60 @@ package vanadis.modules.rmiprovider;
 
 import vanadis.core.collections.Generic;
 import vanadis.common.io.Location;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.lang.Not;
 import vanadis.core.lang.Proxies;
 import vanadis.core.lang.ToString;
+import vanadis.remoting.Batching;
+import vanadis.remoting.Codec;
+import vanadis.remoting.Codecs;
+import vanadis.remoting.DaemonThreadFactory;
 import vanadis.services.remoting.RemoteClientFactory;
 import vanadis.services.remoting.TargetHandle;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 class RmiRemoteClientFactory implements RemoteClientFactory {
 
     private final Map<Location, RemoteConnector> invokers = Generic.map();
 
+    private final ExecutorService asyncExecutor;
+
+    private final ScheduledExecutorService flusher;
+
+    private final Batching batching;
+
+    private final Codec codec;
+
+    RmiRemoteClientFactory() {
+        this(0, null, Codecs.DEFAULT, 0);
+    }
+
+    /**
+     * @param batchSize Max fire-and-forget calls per batch, 0 for no batching
+     * @param batchLinger Max time a fire-and-forget call waits for its batch
+     * @param codec Codec
+     * @param asyncThreads Threads for sending asynchronous calls, 0 to send them on the calling thread
+     */
+    RmiRemoteClientFactory(int batchSize, TimeSpan batchLinger, Codec codec, int asyncThreads) {
+        this.codec = Not.nil(codec, "codec");
+        this.asyncExecutor = asyncThreads > 0 ? Executors.newFixedThreadPool
+                (asyncThreads, new DaemonThreadFactory("RmiRemoting-Async")) : null;
+        this.flusher = batchSize > 1 && batchLinger != null
+                ? Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("RmiRemoting-Flusher"))
+                : null;
+        this.batching = new Batching(batchSize, batchLinger, flusher);
+    }
+
     @Override
     public <T> T createClient(ClassLoader classLoader, TargetHandle<T> targetHandle) {
         RemoteInvoker remoteInvoker = getInvoker(targetHandle.getLocation());
         Class<T> targetInterface = targetHandle.getReference().getTargetInterface();
-        Handler handler = new Handler(targetHandle, remoteInvoker);
+        Handler handler = new Handler(targetHandle, remoteInvoker, classLoader,
+                                      batching, codec, asyncExecutor);
         return Proxies.genericProxy(classLoader, targetInterface, handler);
     }
 
@@ -53,8 +91,18 @@ class RmiRemoteClientFactory implements RemoteClientFactory {
         }
     }
 
+    void close() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            batching.getLinger().added(TimeSpan.SECOND).awaitTermination(flusher, false);
+        }
+    }
+
     @Override
     public String toString() {
-        return ToString.of(this, invokers.keySet());
+        return ToString.of(this, invokers.keySet(), "batching", batching, "codec", codec);
     }
 }
@@ -39,7 +39,7 @@ class RmiRemotingInfrastructure extends AbstractRemotingInfrastructure {
 
     @Override
     protected void setupServer(ClassLoader classLoader) {
-        this.localInvoker = new RemoteInvokerImpl();
+        this.localInvoker = new RemoteInvokerImpl(classLoader);
         ensureLocalRegistry(getLocation());
         rmiExport(localInvoker, getLocation().incrementPort());
         rmiBind(name, localInvoker);
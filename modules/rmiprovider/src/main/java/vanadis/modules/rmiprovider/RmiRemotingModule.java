@@ -16,12 +16,15 @@
 package vanadis.modules.rmiprovider;
 
 import vanadis.common.io.Location;
+import vanadis.common.time.TimeSpan;
 import vanadis.core.lang.ToString;
 import vanadis.core.lang.UsedByReflection;
 import vanadis.ext.AbstractModule;
 import vanadis.ext.Configure;
 import vanadis.ext.Expose;
 import vanadis.ext.Module;
+import vanadis.remoting.Codec;
+import vanadis.remoting.Codecs;
 import vanadis.services.remoting.RemoteClientFactory;
 import vanadis.services.remoting.RemotingInfrastructure;
 
@@ -35,6 +38,33 @@ public class RmiRemotingModule extends AbstractModule {
     @Configure(required = true)
     private Location location;
 
+    /**
+     * If larger than 1, void calls without checked exceptions are queued and sent
+     * in batches of up to this size.  Such calls become fire-and-forget; failures are
+     * only logged.
+     */
+    @Configure(def = "0")
+    private int batchSize;
+
+    /**
+     * Max time a queued call waits for its batch to fill up.
+     */
+    @Configure(def = "10ms")
+    private TimeSpan batchLinger;
+
+    /**
+     * Wire format of outgoing calls, <code>compact</code> or <code>serialization</code>.
+     * Incoming calls are decoded in the format the caller used.
+     */
+    @Configure(def = "compact")
+    private String codec;
+
+    /**
+     * Threads sending asynchronous calls.
+     */
+    @Configure(def = "2")
+    private int asyncThreads;
+
     @UsedByReflection public RmiRemotingModule() {
         this(null);
     }
@@ -55,11 +85,30 @@ public class RmiRemotingModule extends AbstractModule {
     @Expose
     public RemoteClientFactory getRemoteClientFactory() {
         if (remoteClientFactory == null) {
-            remoteClientFactory = new RmiRemoteClientFactory();
+            remoteClientFactory = new RmiRemoteClientFactory(batchSize, batchLinger, codec(), asyncThreads);
         }
         return remoteClientFactory;
     }
 
+    private Codec codec() {
+        Codec configured = Codecs.get(codec);
+        if (configured == null) {
+            throw new IllegalArgumentException(this + " has unknown codec: " + codec);
+        }
+        return configured;
+    }
+
+    @Override
+    public void closed() {
+        if (remoteClientFactory != null) {
+            try {
+                remoteClientFactory.close();
+            } finally {
+                remoteClientFactory = null;
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return ToString.of(this, infrastructure, "@", location);
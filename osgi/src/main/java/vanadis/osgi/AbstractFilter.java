@@ -17,16 +17,25 @@ package vanadis.osgi;
 
 import vanadis.core.lang.EqHc;
 
+import java.util.Map;
+
 abstract class AbstractFilter implements Filter {
 
     private static final long serialVersionUID = -6167511130706528182L;
 
     private Integer cachedHashCode;
 
+    private transient String cachedFilterString;
+
+    private transient Matcher matcher;
+
     final StringBuilder write(StringBuilder builder) {
         if (isNull()) {
             return builder;
         }
+        if (cachedFilterString != null) {
+            return builder.append(cachedFilterString);
+        }
         builder.append("(");
         writeBody(builder);
         builder.append(")");
@@ -35,9 +44,37 @@ abstract class AbstractFilter implements Filter {
 
     protected abstract StringBuilder writeBody(StringBuilder builder);
 
+    abstract Matcher compile();
+
+    void requiredValues(Map<String, Object> values) {
+    }
+
+    final Matcher matcher() {
+        if (matcher == null) {
+            matcher = compile();
+        }
+        return matcher;
+    }
+
+    @Override
+    public final boolean matches(ServiceProperties<?> properties) {
+        return matcher().matches(Matcher.Attributes.of(properties));
+    }
+
+    @Override
+    public final boolean matches(Map<String, ?> properties) {
+        return matcher().matches(Matcher.Attributes.of(properties));
+    }
+
     @Override
     public String toFilterString() {
-        return isNull() ? null : write(new StringBuilder()).toString();
+        if (isNull()) {
+            return null;
+        }
+        if (cachedFilterString == null) {
+            cachedFilterString = write(new StringBuilder()).toString();
+        }
+        return cachedFilterString;
     }
 
     @Override
@@ -18,6 +18,8 @@ package vanadis.osgi;
 import vanadis.core.lang.EqHc;
 import vanadis.core.lang.Not;
 
+import java.util.Map;
+
 final class CompareFilter extends AbstractFilter {
 
     private static final long serialVersionUID = -2482379452163899248L;
@@ -83,23 +85,14 @@ final class CompareFilter extends AbstractFilter {
     }
 
     @Override
-    public boolean matches(ServiceProperties<?> serviceProperties) {
-        Object propertyValue = serviceProperties.getPropertySet().get(attribute);
-        if (propertyValue == null) {
-            return false;
-        }
-        if (Comparable.class.isInstance(propertyValue)) {
-            for (Object value : values) {
-                if (value instanceof Comparable<?>) {
-                    if (!op.compares(propertyValue, value)) {
-                        return false;
-                    }
-                }
-            }
-            return true;
-        } else {
-            throw new IllegalStateException
-                    (this + " could not compare non-comparable value " + propertyValue);
+    void requiredValues(Map<String, Object> values) {
+        if (op == CompareOperator.EQUAL && !multi && String.valueOf(this.values[0]).indexOf('*') < 0) {
+            values.put(attribute, this.values[0]);
         }
     }
+
+    @Override
+    Matcher compile() {
+        return new Matcher.Compare(op, attribute, values);
+    }
 }
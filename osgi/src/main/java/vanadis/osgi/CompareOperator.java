@@ -32,13 +32,13 @@ enum CompareOperator {
     GREATER(">=") {
         @Override
         protected boolean match(int result) {
-            return result > 0;
+            return result >= 0;
         }},
 
     LESS("<=") {
         @Override
         protected boolean match(int result) {
-            return result < 0;
+            return result <= 0;
         }};
 
     private final String repr;
@@ -51,20 +51,6 @@ enum CompareOperator {
         return repr;
     }
 
-    public boolean compares(Object c1, Object c2) {
-        if (c1.getClass().equals(c2.getClass()) && c1 instanceof Comparable<?>) {
-            return compare(c1, c2);
-        } else {
-            throw new IllegalStateException(this + " could not compare " + c1 + " to " + c2);
-        }
-    }
-
-    @SuppressWarnings({ "RawUseOfParameterizedType", "unchecked" })
-    private boolean compare(Object c1, Object c2) {
-        Class<? extends Comparable> type = c1.getClass().asSubclass(Comparable.class);
-        return match(type.cast(c1).compareTo(type.cast(c2)));
-    }
-
     protected abstract boolean match(int result);
 
 }
@@ -17,6 +17,8 @@ package vanadis.osgi;
 
 import vanadis.core.lang.EqHc;
 
+import java.util.Map;
+
 final class CompositeFilter extends AbstractFilter {
 
     private static final long serialVersionUID = -1806077997439757072L;
@@ -73,8 +75,21 @@ final class CompositeFilter extends AbstractFilter {
     }
 
     @Override
-    public boolean matches(ServiceProperties<?> properties) {
-        return op.match(new MatchesIterable(filters, properties));
+    void requiredValues(Map<String, Object> values) {
+        if (op == CompositeOp.AND) {
+            for (Filter filter : filters) {
+                ((AbstractFilter) filter).requiredValues(values);
+            }
+        }
+    }
+
+    @Override
+    Matcher compile() {
+        Matcher[] matchers = new Matcher[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            matchers[i] = ((AbstractFilter) filters[i]).matcher();
+        }
+        return Matcher.composite(op, matchers);
     }
 
     @Override
@@ -339,4 +339,10 @@ public interface Context {
      * @return URL for the entry
      */
     URI getEntry(String location);
+
+    /**
+     * Release resources held by the context, such as service listeners.  Services
+     * may still be looked up afterwards, but without caching.
+     */
+    void close();
 }
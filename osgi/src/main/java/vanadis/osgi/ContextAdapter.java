@@ -184,6 +184,10 @@ public class ContextAdapter implements Context {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void close() {
+    }
+
     @Override
     public <T> T getServiceProxy(Class<T> serviceInterface) {
         return getServiceProxy(serviceInterface, null);
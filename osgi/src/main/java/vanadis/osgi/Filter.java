@@ -16,6 +16,7 @@
 package vanadis.osgi;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * A programmatic model of the string-based OSGi service filter.
@@ -116,4 +117,14 @@ public interface Filter extends Serializable {
      * @return True iff properties match this filter
      */
     boolean matches(ServiceProperties<?> properties);
+
+    /**
+     * True iff this filter matches the properties, as in the properties
+     * of a service registration.  The object classes are expected under
+     * the <code>objectClass</code> key.
+     *
+     * @param properties Properties
+     * @return True iff properties match this filter
+     */
+    boolean matches(Map<String, ?> properties);
 }
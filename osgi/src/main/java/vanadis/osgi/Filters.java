@@ -15,10 +15,12 @@
  */
 package vanadis.osgi;
 
+import vanadis.core.collections.Generic;
 import vanadis.core.lang.VarArgs;
 import vanadis.core.properties.PropertySet;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Static factory methods for creating {@link Filter Filter} instances.
@@ -120,6 +122,23 @@ public final class Filters {
         return filter;
     }
 
+    /**
+     * Find the attribute values that anything matching the filter must have,
+     * i.e. the single-valued equality terms of the filter, or of its top-level AND.
+     * Values containing <code>*</code> are left out, since they render as substring
+     * filters.
+     *
+     * @param filter Filter, may be null
+     * @return Required values by attribute, possibly empty
+     */
+    public static Map<String, Object> requiredValues(Filter filter) {
+        Map<String, Object> values = Generic.linkedHashMap();
+        if (filter instanceof AbstractFilter) {
+            ((AbstractFilter) filter).requiredValues(values);
+        }
+        return values;
+    }
+
     private static Filter compare(CompareOperator op, String attribute, Object... values) {
         return new CompareFilter(op, attribute, values);
     }
@@ -0,0 +1,481 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.osgi;
+
+import vanadis.core.properties.PropertySet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Compiled form of a {@link Filter}, for matching properties without going
+ * through the framework.  Composite matchers try their cheapest parts first.
+ */
+abstract class Matcher {
+
+    static final Matcher ALWAYS = new Matcher() {
+        @Override
+        boolean matches(Attributes attributes) {
+            return true;
+        }
+
+        @Override
+        int cost() {
+            return 0;
+        }
+    };
+
+    abstract boolean matches(Attributes attributes);
+
+    /**
+     * @return Rough cost of matching, used to order the parts of composites
+     */
+    abstract int cost();
+
+    static Matcher composite(CompositeOp op, Matcher[] matchers) {
+        if (op == CompositeOp.NOT) {
+            if (matchers.length != 1) {
+                throw new IllegalStateException(op + " got " + matchers.length + " arguments!");
+            }
+            return new Not(matchers[0]);
+        }
+        Matcher[] ordered = matchers.clone();
+        Arrays.sort(ordered, BY_COST);
+        return op == CompositeOp.AND ? new All(ordered) : new Any(ordered);
+    }
+
+    private static final Comparator<Matcher> BY_COST = new Comparator<Matcher>() {
+        @Override
+        public int compare(Matcher matcher1, Matcher matcher2) {
+            int cost1 = matcher1.cost();
+            int cost2 = matcher2.cost();
+            return cost1 < cost2 ? -1 : cost1 == cost2 ? 0 : 1;
+        }
+    };
+
+    /**
+     * The properties being matched.
+     */
+    abstract static class Attributes {
+
+        abstract Object get(String attribute);
+
+        abstract String[] objectClasses();
+
+        static Attributes of(final ServiceProperties<?> serviceProperties) {
+            final PropertySet propertySet = serviceProperties.getPropertySet();
+            return new Attributes() {
+                @Override
+                Object get(String attribute) {
+                    Object value = propertySet.get(attribute);
+                    return value == null && OBJECT_CLASS.equalsIgnoreCase(attribute)
+                            ? serviceProperties.getObjectClasses()
+                            : value;
+                }
+
+                @Override
+                String[] objectClasses() {
+                    return serviceProperties.getObjectClasses();
+                }
+            };
+        }
+
+        static Attributes of(final Map<String, ?> properties) {
+            return new Attributes() {
+                @Override
+                Object get(String attribute) {
+                    Object value = properties.get(attribute);
+                    if (value != null) {
+                        return value;
+                    }
+                    for (Map.Entry<String, ?> entry : properties.entrySet()) {
+                        if (attribute.equalsIgnoreCase(entry.getKey())) {
+                            return entry.getValue();
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                String[] objectClasses() {
+                    Object value = get(OBJECT_CLASS);
+                    return value instanceof String[] ? (String[]) value
+                            : value == null ? NO_OBJECT_CLASSES
+                            : new String[]{String.valueOf(value)};
+                }
+            };
+        }
+
+        private static final String OBJECT_CLASS = "objectClass";
+
+        private static final String[] NO_OBJECT_CLASSES = new String[]{};
+    }
+
+    static final class Present extends Matcher {
+
+        private final String attribute;
+
+        Present(String attribute) {
+            this.attribute = attribute;
+        }
+
+        @Override
+        boolean matches(Attributes attributes) {
+            return attributes.get(attribute) != null;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+    }
+
+    static final class ObjectClasses extends Matcher {
+
+        private final String[] sortedObjectClasses;
+
+        ObjectClasses(String[] sortedObjectClasses) {
+            this.sortedObjectClasses = sortedObjectClasses;
+        }
+
+        @Override
+        boolean matches(Attributes attributes) {
+            for (String objectClass : attributes.objectClasses()) {
+                if (Arrays.binarySearch(sortedObjectClasses, objectClass) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int cost() {
+            return 2;
+        }
+    }
+
+    /**
+     * Compares the attribute to each value.  The values are converted up front
+     * to the types a property is likely to have, so no parsing is needed when
+     * matching.  A multi-valued property matches if any of its values do.
+     */
+    static final class Compare extends Matcher {
+
+        private final CompareOperator op;
+
+        private final String attribute;
+
+        private final Operand[] operands;
+
+        Compare(CompareOperator op, String attribute, Object[] values) {
+            this.op = op;
+            this.attribute = attribute;
+            this.operands = new Operand[values.length];
+            for (int i = 0; i < values.length; i++) {
+                operands[i] = new Operand(values[i]);
+            }
+        }
+
+        @Override
+        boolean matches(Attributes attributes) {
+            Object value = attributes.get(attribute);
+            if (value == null) {
+                return false;
+            }
+            for (Operand operand : operands) {
+                if (!matches(value, operand)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matches(Object value, Operand operand) {
+            if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    if (element != null && operand.matches(op, element)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (value instanceof Collection<?>) {
+                for (Object element : (Collection<?>) value) {
+                    if (element != null && operand.matches(op, element)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return operand.matches(op, value);
+        }
+
+        @Override
+        int cost() {
+            return 2 + operands.length;
+        }
+    }
+
+    private static final class Operand {
+
+        private final Object value;
+
+        private final String string;
+
+        private final Long integral;
+
+        private final Double decimal;
+
+        private Operand(Object value) {
+            this.value = value;
+            this.string = String.valueOf(value);
+            this.integral = value instanceof Number && !isDecimal(value) ? Long.valueOf(((Number) value).longValue())
+                    : parseLong(string);
+            this.decimal = value instanceof Number ? Double.valueOf(((Number) value).doubleValue())
+                    : parseDouble(string);
+        }
+
+        @SuppressWarnings({"unchecked"})
+        private boolean matches(CompareOperator op, Object property) {
+            if (property instanceof String) {
+                return op == CompareOperator.APPROX ? approx((String) property)
+                        : op.match(((String) property).compareTo(string));
+            }
+            if (isIntegral(property)) {
+                long number = ((Number) property).longValue();
+                return integral != null && op.match(number < integral ? -1 : number == integral ? 0 : 1);
+            }
+            if (isDecimal(property)) {
+                return decimal != null && op.match(Double.compare(((Number) property).doubleValue(), decimal));
+            }
+            if (property instanceof Boolean) {
+                return isEquality(op) && property.toString().equalsIgnoreCase(string.trim());
+            }
+            if (property instanceof Character) {
+                return string.length() == 1 && op.match(((Character) property).compareTo(string.charAt(0)));
+            }
+            if (property instanceof Comparable<?> && property.getClass() == value.getClass()) {
+                return op.match(((Comparable<Object>) property).compareTo(value));
+            }
+            return isEquality(op) && (property.equals(value) || property.toString().equals(string));
+        }
+
+        private boolean approx(String property) {
+            return strip(property).equalsIgnoreCase(strip(string));
+        }
+
+        private static boolean isEquality(CompareOperator op) {
+            return op == CompareOperator.EQUAL || op == CompareOperator.APPROX;
+        }
+
+        private static boolean isDecimal(Object object) {
+            return object instanceof Double || object instanceof Float;
+        }
+
+        private static boolean isIntegral(Object object) {
+            return object instanceof Integer || object instanceof Long ||
+                    object instanceof Short || object instanceof Byte;
+        }
+
+        private static String strip(String string) {
+            StringBuilder builder = new StringBuilder(string.length());
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if (!Character.isWhitespace(c)) {
+                    builder.append(c);
+                }
+            }
+            return builder.toString();
+        }
+
+        private static Long parseLong(String string) {
+            try {
+                return Long.valueOf(string.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static Double parseDouble(String string) {
+            try {
+                return Double.valueOf(string.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Matches a pattern with * wildcards, by finding the pieces between the
+     * wildcards in order.  A pattern without wildcards matches anywhere in the
+     * value.
+     */
+    static final class Substring extends Matcher {
+
+        private final String attribute;
+
+        private final String[] pieces;
+
+        private final boolean anchoredStart;
+
+        private final boolean anchoredEnd;
+
+        Substring(String attribute, String pattern) {
+            this.attribute = attribute;
+            boolean wildcards = pattern.indexOf('*') >= 0;
+            this.anchoredStart = wildcards && !pattern.startsWith("*");
+            this.anchoredEnd = wildcards && !pattern.endsWith("*");
+            this.pieces = wildcards ? pattern.split("\\*+") : new String[]{pattern};
+        }
+
+        @Override
+        boolean matches(Attributes attributes) {
+            Object value = attributes.get(attribute);
+            if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    if (element != null && matches(element.toString())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (value instanceof Collection<?>) {
+                for (Object element : (Collection<?>) value) {
+                    if (element != null && matches(element.toString())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return value != null && matches(value.toString());
+        }
+
+        private boolean matches(String value) {
+            int position = 0;
+            int first = 0;
+            while (first < pieces.length && pieces[first].length() == 0) {
+                first++;
+            }
+            for (int i = first; i < pieces.length; i++) {
+                String piece = pieces[i];
+                boolean last = i == pieces.length - 1;
+                if (i == first && anchoredStart) {
+                    if (!value.startsWith(piece)) {
+                        return false;
+                    }
+                    position = piece.length();
+                } else if (last && anchoredEnd) {
+                    return value.length() - piece.length() >= position && value.endsWith(piece);
+                } else {
+                    int index = value.indexOf(piece, position);
+                    if (index < 0) {
+                        return false;
+                    }
+                    position = index + piece.length();
+                }
+            }
+            return !anchoredEnd || position == value.length();
+        }
+
+        @Override
+        int cost() {
+            return 3 + pieces.length;
+        }
+    }
+
+    private static final class Not extends Matcher {
+
+        private final Matcher matcher;
+
+        private Not(Matcher matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        boolean matches(Attributes attributes) {
+            return !matcher.matches(attributes);
+        }
+
+        @Override
+        int cost() {
+            return matcher.cost();
+        }
+    }
+
+    private static final class All extends Matcher {
+
+        private final Matcher[] matchers;
+
+        private final int cost;
+
+        private All(Matcher[] matchers) {
+            this.matchers = matchers;
+            this.cost = sum(matchers);
+        }
+
+        @Override
+        boolean matches(Attributes attributes) {
+            for (Matcher matcher : matchers) {
+                if (!matcher.matches(attributes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int cost() {
+            return cost;
+        }
+    }
+
+    private static final class Any extends Matcher {
+
+        private final Matcher[] matchers;
+
+        private final int cost;
+
+        private Any(Matcher[] matchers) {
+            this.matchers = matchers;
+            this.cost = sum(matchers);
+        }
+
+        @Override
+        boolean matches(Attributes attributes) {
+            for (Matcher matcher : matchers) {
+                if (matcher.matches(attributes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int cost() {
+            return cost;
+        }
+    }
+
+    private static int sum(Matcher[] matchers) {
+        int sum = 0;
+        for (Matcher matcher : matchers) {
+            sum += matcher.cost();
+        }
+        return sum;
+    }
+}
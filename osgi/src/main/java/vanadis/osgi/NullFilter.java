@@ -44,8 +44,8 @@ final class NullFilter extends AbstractFilter {
     }
 
     @Override
-    public boolean matches(ServiceProperties<?> properties) {
-        return true;
+    Matcher compile() {
+        return Matcher.ALWAYS;
     }
 
     private Object readResolve()
@@ -96,14 +96,8 @@ final class ObjectClassesFilter extends AbstractFilter {
     }
 
     @Override
-    public boolean matches(ServiceProperties<?> properties) {
-        for (String objectClass : properties.getObjectClasses()) {
-            int index = Arrays.binarySearch(this.sortedObjectClasses, objectClass);
-            if (index < 0) {
-                return false;
-            }
-        }
-        return true;
+    Matcher compile() {
+        return new Matcher.ObjectClasses(sortedObjectClasses);
     }
 
     @Override
@@ -46,7 +46,7 @@ final class PresentFilter extends AbstractFilter {
     }
 
     @Override
-    public boolean matches(ServiceProperties<?> serviceProperties) {
-        return serviceProperties.getPropertySet().has(attribute);
+    Matcher compile() {
+        return new Matcher.Present(attribute);
     }
 }
@@ -17,7 +17,6 @@ package vanadis.osgi;
 
 import vanadis.core.lang.EqHc;
 import vanadis.core.lang.Not;
-import vanadis.core.properties.PropertySet;
 
 final class SubstringFilter extends AbstractFilter {
 
@@ -52,10 +51,7 @@ final class SubstringFilter extends AbstractFilter {
     }
 
     @Override
-    public boolean matches(ServiceProperties<?> serviceProperties) {
-        PropertySet propertySet = serviceProperties.getPropertySet();
-        return propertySet.has(attribute) &&
-                propertySet.getString(attribute).contains(substring);
+    Matcher compile() {
+        return new Matcher.Substring(attribute, substring);
     }
-
 }
@@ -16,7 +16,6 @@
 package vanadis.osgi.impl;
 
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.slf4j.Logger;
@@ -52,6 +51,8 @@ public final class OSGiContext extends ContextAdapter {
 
     private final URI repo;
 
+    private final ServiceLookupCache lookupCache;
+
     public OSGiContext(BundleContext bundleContext, URI home, Location location) {
         this(bundleContext, home, location, null);
     }
@@ -64,6 +65,7 @@ public final class OSGiContext extends ContextAdapter {
         this.symbolicName = bundleContext.getBundle().getSymbolicName();
         this.serviceProxyFactory = new OSGiServiceProxyFactory(this);
         this.repo = repo;
+        this.lookupCache = new ServiceLookupCache(this.bundleContext);
     }
 
     @Override
@@ -190,6 +192,11 @@ public final class OSGiContext extends ContextAdapter {
         serviceProxyFactory.closePersistent(service);
     }
 
+    @Override
+    public void close() {
+        lookupCache.close();
+    }
+
     @Override
     public Collection<Reference<?>> getReferences(String serviceInterfaceName, Filter filter) {
         ServiceReference[] serviceReferences = lookupReferences(serviceInterfaceName, filter);
@@ -223,14 +230,7 @@ public final class OSGiContext extends ContextAdapter {
     }
 
     private ServiceReference[] lookupReferences(String name, Filter filter) {
-        String filterString = filter == null ? null : filter.toFilterString();
-        try {
-            ServiceReference[] serviceReferences = bundleContext.getServiceReferences(name, filterString);
-            return serviceReferences == null ? NO_SERVICE_REFERENCES
-                    : serviceReferences;
-        } catch (InvalidSyntaxException e) {
-            throw new OSGiException("Invalid filter: " + filterString, e);
-        }
+        return lookupCache.lookup(name, filter);
     }
 
     private <T> Reference<T> lookupReference(Class<T> serviceInterface,
@@ -319,8 +319,6 @@ public final class OSGiContext extends ContextAdapter {
 
     private static final Logger log = LoggerFactory.getLogger(OSGiContext.class);
 
-    private static final ServiceReference[] NO_SERVICE_REFERENCES = new ServiceReference[]{};
-
     private static final String OBJECT_NAME = Object.class.getName();
 
     @Override
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.osgi.impl;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+import vanadis.osgi.OSGiException;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <P>A view of the service registry, with hash indexes on service properties.
+ * A property is indexed the first time a lookup asks for it, and the index is
+ * then kept up to date from service events.</P>
+ *
+ * <P>One index is {@link #acquire(BundleContext) shared} by all contexts of a
+ * framework, listening through the system bundle's context.  It is also the
+ * single service listener for their {@link ServiceLookupCache lookup caches}:
+ * Each event is applied to the index before it is passed on to them, so a
+ * cache never sees an event before the index does.</P>
+ *
+ * <P>Strings, characters and booleans are indexed in a normalized string form,
+ * and integral numbers by their long value.  Other values, such as decimal
+ * numbers, compare to a filter value in ways a hash key cannot capture, so
+ * services holding them are candidates for any lookup.  Either way, a lookup
+ * yields candidates which must still be checked against the actual filter.</P>
+ */
+final class ServiceIndex implements ServiceListener {
+
+    static final int MAX_INDEXED_PROPERTIES = 16;
+
+    private static final Map<Object, ServiceIndex> SHARED = Generic.map();
+
+    private final BundleContext bundleContext;
+
+    private final Object framework;
+
+    private final List<ServiceListener> listeners = Generic.copyOnWriteArrayList();
+
+    private int users;
+
+    private final Map<String, Map<Object, Set<ServiceReference>>> indexes = Generic.map();
+
+    private boolean listening;
+
+    private boolean disabled;
+
+    ServiceIndex(BundleContext bundleContext) {
+        this(bundleContext, bundleContext);
+    }
+
+    private ServiceIndex(BundleContext bundleContext, Object framework) {
+        this.bundleContext = Not.nil(bundleContext, "bundle context");
+        this.framework = framework;
+    }
+
+    /**
+     * Get the index of the framework the bundle context belongs to, creating it
+     * if need be.  It should be {@link #release() released} when no longer used.
+     *
+     * @param bundleContext Bundle context
+     * @return Shared index
+     */
+    static ServiceIndex acquire(BundleContext bundleContext) {
+        Bundle system = systemBundle(bundleContext);
+        BundleContext systemContext = system == null ? null : system.getBundleContext();
+        Object framework = systemContext == null ? bundleContext : system;
+        synchronized (SHARED) {
+            ServiceIndex index = SHARED.get(framework);
+            if (index == null) {
+                index = new ServiceIndex(systemContext == null ? bundleContext : systemContext, framework);
+                SHARED.put(framework, index);
+            }
+            index.users++;
+            return index;
+        }
+    }
+
+    /**
+     * Release a {@link #acquire(BundleContext) shared} index.  The last release closes it.
+     */
+    void release() {
+        synchronized (SHARED) {
+            if (--users > 0) {
+                return;
+            }
+            SHARED.remove(framework);
+        }
+        close();
+    }
+
+    /**
+     * Pass service events on to a listener, after they have been applied to the index.
+     *
+     * @param listener Listener
+     * @return False if the index cannot listen for service events
+     */
+    synchronized boolean addListener(ServiceListener listener) {
+        if (disabled || !listen()) {
+            return false;
+        }
+        listeners.add(listener);
+        return true;
+    }
+
+    void removeListener(ServiceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Look up services with the given property value.
+     *
+     * @param bundle Bundle looking up services, may be null
+     * @param serviceInterfaceName Service interface, may be null
+     * @param property Property
+     * @param value Property value
+     * @param filter Compiled filter the services must match, may be null
+     * @return Matching services, or null if the property cannot be indexed
+     */
+    ServiceReference[] lookup(Bundle bundle, String serviceInterfaceName, String property, Object value,
+                              org.osgi.framework.Filter filter) {
+        Collection<ServiceReference> candidates = candidates(property, value);
+        if (candidates == null) {
+            return null;
+        }
+        List<ServiceReference> references = Generic.list();
+        for (ServiceReference reference : candidates) {
+            if (reference.getBundle() != null &&
+                    (serviceInterfaceName == null || isTyped(reference, serviceInterfaceName, bundle)) &&
+                    (filter == null || filter.match(reference))) {
+                references.add(reference);
+            }
+        }
+        return references.toArray(new ServiceReference[references.size()]);
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        apply(event);
+        for (ServiceListener listener : listeners) {
+            listener.serviceChanged(event);
+        }
+    }
+
+    private synchronized void apply(ServiceEvent event) {
+        ServiceReference reference = event.getServiceReference();
+        int type = event.getType();
+        if (type == ServiceEvent.UNREGISTERING || type == ServiceEvent.MODIFIED) {
+            for (Map<Object, Set<ServiceReference>> index : indexes.values()) {
+                remove(index, reference);
+            }
+        }
+        if (type == ServiceEvent.REGISTERED || type == ServiceEvent.MODIFIED) {
+            for (Map.Entry<String, Map<Object, Set<ServiceReference>>> entry : indexes.entrySet()) {
+                add(entry.getValue(), entry.getKey(), reference);
+            }
+        }
+    }
+
+    /**
+     * Stop listening for service events, and drop all indexes.
+     */
+    synchronized void close() {
+        disabled = true;
+        indexes.clear();
+        listeners.clear();
+        if (listening) {
+            listening = false;
+            try {
+                bundleContext.removeServiceListener(this);
+            } catch (IllegalStateException ignore) {
+                // The bundle context is gone, and took the listener with it
+            }
+        }
+    }
+
+    private synchronized Collection<ServiceReference> candidates(String property, Object value) {
+        String key = normalized(property);
+        Map<Object, Set<ServiceReference>> index = indexes.get(key);
+        if (index == null) {
+            index = newIndex(key);
+            if (index == null) {
+                return null;
+            }
+        }
+        String string = String.valueOf(value);
+        Set<ServiceReference> references = Generic.set();
+        addAll(references, index.get(normalized(string)));
+        addAll(references, index.get(integral(string)));
+        addAll(references, index.get(UNINDEXED));
+        return references;
+    }
+
+    private Map<Object, Set<ServiceReference>> newIndex(String key) {
+        if (disabled || indexes.size() >= MAX_INDEXED_PROPERTIES || !listen()) {
+            return null;
+        }
+        Map<Object, Set<ServiceReference>> index = Generic.map();
+        for (ServiceReference reference : allReferences()) {
+            add(index, key, reference);
+        }
+        indexes.put(key, index);
+        return index;
+    }
+
+    private boolean listen() {
+        if (!listening) {
+            try {
+                bundleContext.addServiceListener(this);
+                listening = true;
+            } catch (IllegalStateException e) {
+                disabled = true;
+            }
+        }
+        return listening;
+    }
+
+    private static Bundle systemBundle(BundleContext bundleContext) {
+        try {
+            return bundleContext.getBundle(0);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private ServiceReference[] allReferences() {
+        try {
+            ServiceReference[] references = bundleContext.getAllServiceReferences(null, null);
+            return references == null ? NO_SERVICE_REFERENCES : references;
+        } catch (InvalidSyntaxException e) {
+            throw new OSGiException(this + " failed to list services", e);
+        }
+    }
+
+    private static void add(Map<Object, Set<ServiceReference>> index, String key, ServiceReference reference) {
+        Object value = property(reference, key);
+        if (value != null && value.getClass().isArray()) {
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                add(index, Array.get(value, i), reference);
+            }
+        } else if (value instanceof Collection<?>) {
+            for (Object element : (Collection<?>) value) {
+                add(index, element, reference);
+            }
+        } else if (value != null) {
+            add(index, value, reference);
+        }
+    }
+
+    private static void add(Map<Object, Set<ServiceReference>> index, Object value, ServiceReference reference) {
+        if (value != null) {
+            Object key = key(value);
+            Set<ServiceReference> references = index.get(key);
+            if (references == null) {
+                references = Generic.set();
+                index.put(key, references);
+            }
+            references.add(reference);
+        }
+    }
+
+    private static void addAll(Set<ServiceReference> references, Set<ServiceReference> indexed) {
+        if (indexed != null) {
+            references.addAll(indexed);
+        }
+    }
+
+    private static void remove(Map<Object, Set<ServiceReference>> index, ServiceReference reference) {
+        for (Iterator<Set<ServiceReference>> iterator = index.values().iterator(); iterator.hasNext();) {
+            Set<ServiceReference> references = iterator.next();
+            if (references.remove(reference) && references.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Object property(ServiceReference reference, String key) {
+        Object value = reference.getProperty(key);
+        if (value != null) {
+            return value;
+        }
+        String[] keys = reference.getPropertyKeys();
+        if (keys != null) {
+            for (String candidate : keys) {
+                if (candidate.equalsIgnoreCase(key)) {
+                    return reference.getProperty(candidate);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isTyped(ServiceReference reference, String serviceInterfaceName, Bundle bundle) {
+        Object objectClasses = reference.getProperty(Constants.OBJECTCLASS);
+        if (objectClasses instanceof String[]) {
+            for (String objectClass : (String[]) objectClasses) {
+                if (objectClass.equals(serviceInterfaceName)) {
+                    return bundle == null || reference.isAssignableTo(bundle, serviceInterfaceName);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Object key(Object value) {
+        if (value instanceof String || value instanceof Character || value instanceof Boolean) {
+            return normalized(value);
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Long.valueOf(((Number) value).longValue());
+        }
+        return UNINDEXED;
+    }
+
+    private static Long integral(String value) {
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalized(Object value) {
+        return String.valueOf(value).trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final Object UNINDEXED = new Object();
+
+    private static final ServiceReference[] NO_SERVICE_REFERENCES = new ServiceReference[]{};
+
+    @Override
+    public synchronized String toString() {
+        return ToString.of(this, "indexed", indexes.keySet());
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.osgi.impl;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.core.lang.EqHc;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+import vanadis.osgi.Filter;
+import vanadis.osgi.Filters;
+import vanadis.osgi.OSGiException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service references by interface name and filter, as last looked up in the
+ * framework.  Entries are dropped when a service event could change them:
+ * A matching service is registered, a listed service goes away, or a service
+ * of the interface is modified.  Lookups that race with an event are not cached.
+ * A service is unregistered only after its UNREGISTERING event is delivered,
+ * so a lookup may still cache it after the event; cached references are
+ * therefore checked on each hit, and an entry listing a service that is gone
+ * is dropped.  Lookups requiring a property value are answered from the
+ * framework's shared {@link ServiceIndex}, which also passes on the service
+ * events, after applying them to itself.
+ */
+final class ServiceLookupCache implements ServiceListener {
+
+    static final int MAX_ENTRIES = 256;
+
+    private final BundleContext bundleContext;
+
+    private volatile ServiceIndex index;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+    private final AtomicLong events = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile boolean disabled;
+
+    ServiceLookupCache(BundleContext bundleContext) {
+        this.bundleContext = Not.nil(bundleContext, "bundle context");
+    }
+
+    ServiceReference[] lookup(String name, Filter filter) {
+        ServiceIndex index = listen();
+        if (index == null) {
+            return fetch(name, filterString(filter));
+        }
+        Key key = new Key(name, filter);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.isLive()) {
+                hits.incrementAndGet();
+                return entry.references;
+            }
+            entries.remove(key, entry);
+        }
+        misses.incrementAndGet();
+        long eventsBefore = events.get();
+        String filterString = filterString(filter);
+        org.osgi.framework.Filter compiled = compile(filterString);
+        ServiceReference[] references = indexed(index, name, filter, compiled);
+        if (references == null) {
+            references = fetch(name, filterString);
+        }
+        if (events.get() == eventsBefore) {
+            Entry fetched = new Entry(compiled, references);
+            makeRoom();
+            entries.put(key, fetched);
+            if (events.get() != eventsBefore) {
+                entries.remove(key, fetched);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Stop listening for service events, and stop caching.
+     */
+    void close() {
+        ServiceIndex closed;
+        synchronized (this) {
+            disabled = true;
+            closed = index;
+            index = null;
+        }
+        if (closed != null) {
+            closed.removeListener(this);
+            closed.release();
+        }
+        entries.clear();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        events.incrementAndGet();
+        ServiceReference reference = event.getServiceReference();
+        String[] objectClasses = objectClasses(reference);
+        int type = event.getType();
+        for (Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<Key, Entry> mapEntry = iterator.next();
+            if (affected(type, reference, objectClasses, mapEntry.getKey(), mapEntry.getValue())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean affected(int type, ServiceReference reference, String[] objectClasses,
+                                    Key key, Entry entry) {
+        if (!key.covers(objectClasses)) {
+            return false;
+        }
+        if (type == ServiceEvent.REGISTERED) {
+            return entry.compiled == null || entry.compiled.match(reference);
+        }
+        if (type == ServiceEvent.UNREGISTERING) {
+            return entry.lists(reference);
+        }
+        return true;
+    }
+
+    /**
+     * Keep the cache within {@link #MAX_ENTRIES}, dropping arbitrary entries.
+     * Lookups are keyed on filters, which need not come from a fixed set.
+     */
+    private void makeRoom() {
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (entries.size() >= MAX_ENTRIES && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * @return The shared index, passing service events on to this cache, or null if not caching
+     */
+    private ServiceIndex listen() {
+        ServiceIndex listening = index;
+        if (listening != null || disabled) {
+            return listening;
+        }
+        synchronized (this) {
+            if (index == null && !disabled) {
+                ServiceIndex shared = ServiceIndex.acquire(bundleContext);
+                if (shared.addListener(this)) {
+                    index = shared;
+                } else {
+                    shared.release();
+                    log.debug(this + " could not listen for service events, not caching");
+                    disabled = true;
+                }
+            }
+            return index;
+        }
+    }
+
+    private ServiceReference[] indexed(ServiceIndex index, String name, Filter filter,
+                                       org.osgi.framework.Filter compiled) {
+        Bundle bundle = bundleContext.getBundle();
+        for (Map.Entry<String, Object> required : Filters.requiredValues(filter).entrySet()) {
+            ServiceReference[] references =
+                    index.lookup(bundle, name, required.getKey(), required.getValue(), compiled);
+            if (references != null) {
+                return references;
+            }
+        }
+        return null;
+    }
+
+    private ServiceReference[] fetch(String name, String filterString) {
+        try {
+            ServiceReference[] references = bundleContext.getServiceReferences(name, filterString);
+            return references == null ? NO_SERVICE_REFERENCES : references;
+        } catch (InvalidSyntaxException e) {
+            throw new OSGiException("Invalid filter: " + filterString, e);
+        }
+    }
+
+    private org.osgi.framework.Filter compile(String filterString) {
+        if (filterString == null) {
+            return null;
+        }
+        try {
+            return bundleContext.createFilter(filterString);
+        } catch (InvalidSyntaxException e) {
+            throw new OSGiException("Invalid filter: " + filterString, e);
+        }
+    }
+
+    private static String filterString(Filter filter) {
+        return filter == null ? null : filter.toFilterString();
+    }
+
+    private static String[] objectClasses(ServiceReference reference) {
+        Object value = reference.getProperty(Constants.OBJECTCLASS);
+        return value instanceof String[] ? (String[]) value
+                : value instanceof String ? new String[]{(String) value}
+                : NO_OBJECT_CLASSES;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceLookupCache.class);
+
+    private static final ServiceReference[] NO_SERVICE_REFERENCES = new ServiceReference[]{};
+
+    private static final String[] NO_OBJECT_CLASSES = new String[]{};
+
+    private static final class Key {
+
+        private final String name;
+
+        private final Filter filter;
+
+        private final int hashCode;
+
+        private Key(String name, Filter filter) {
+            this.name = name;
+            this.filter = filter;
+            this.hashCode = EqHc.hc(name, filter);
+        }
+
+        private boolean covers(String[] objectClasses) {
+            if (name == null) {
+                return true;
+            }
+            for (String objectClass : objectClasses) {
+                if (name.equals(objectClass)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            Key key = EqHc.retyped(this, object);
+            return key != null && EqHc.eq(name, key.name, filter, key.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Entry {
+
+        private final org.osgi.framework.Filter compiled;
+
+        private final ServiceReference[] references;
+
+        private Entry(org.osgi.framework.Filter compiled, ServiceReference[] references) {
+            this.compiled = compiled;
+            this.references = references;
+        }
+
+        private boolean isLive() {
+            for (ServiceReference reference : references) {
+                if (reference.getBundle() == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean lists(ServiceReference reference) {
+            for (ServiceReference listed : references) {
+                if (listed.equals(reference)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "entries", entries.size(), "hits", hits, "misses", misses);
+    }
+}
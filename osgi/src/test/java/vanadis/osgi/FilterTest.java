@@ -263,6 +263,9 @@ public class FilterTest {
                 (ServiceProperties.create(Object.class, Generic.map("foo", "babarian"))));
         Assert.assertFalse(substring("foo", "bar").matches
                 (ServiceProperties.create(Object.class, Generic.map("fox", "babazian"))));
+        Assert.assertTrue(substring("foo", "b*r").matches(Generic.map("foo", new String[]{"zot", "babar"})));
+        Assert.assertTrue(substring("foo", "b*r").matches(Generic.map("foo", Generic.list("zot", "babar"))));
+        Assert.assertFalse(substring("foo", "b*r").matches(Generic.map("foo", Generic.list("zot", "barb"))));
     }
 
     @Test
@@ -308,4 +311,30 @@ public class FilterTest {
                             filter.and(Filters.eq("hip", "hop")).toFilterString());
     }
 
+    @Test
+    public void testMapMatch() {
+        Filter filter = eq("port", "8080").and(substring("name", "web*-?").or(present("primary")));
+        Assert.assertTrue(filter.matches(Generic.map("port", 8080, "primary", true)));
+        Assert.assertTrue(filter.matches(Generic.<String, Object>map("port", 8080L, "name", "webapp-?")));
+        Assert.assertFalse(filter.matches(Generic.<String, Object>map("port", 8080, "name", "appweb-?")));
+        Assert.assertFalse(filter.matches(Generic.map("port", 8081, "primary", true)));
+    }
+
+    @Test
+    public void testTypedCompareMatch() {
+        Assert.assertTrue(gt("foo", 5).matches(Generic.map("foo", 5)));
+        Assert.assertTrue(lt("foo", "5.5").matches(Generic.map("foo", 5.0)));
+        Assert.assertTrue(eq("foo", "bar").matches(Generic.map("foo", new String[]{"zot", "bar"})));
+        Assert.assertFalse(eq("foo", "bar").matches(Generic.map("foo", 5)));
+    }
+
+    @Test
+    public void testRequiredValues() {
+        Filter filter = eq("foo", "bar").and(eq("zip", 5), present("zot"), eq("hip", "a", "b"));
+        Assert.assertEquals(Generic.<String, Object>map("foo", "bar", "zip", 5), Filters.requiredValues(filter));
+        Assert.assertTrue(Filters.requiredValues(eq("foo", "bar").or(eq("zip", 5))).isEmpty());
+        Assert.assertTrue(Filters.requiredValues(null).isEmpty());
+        Assert.assertEquals(Generic.<String, Object>map("zip", 5),
+                            Filters.requiredValues(eq("foo", "b*r").and(eq("zip", 5))));
+    }
 }
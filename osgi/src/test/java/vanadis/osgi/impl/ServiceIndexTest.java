@@ -0,0 +1,87 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.osgi.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
+import vanadis.core.collections.Generic;
+
+import java.util.Arrays;
+import java.util.Map;
+
+public class ServiceIndexTest {
+
+    private final StubRegistry registry = new StubRegistry();
+
+    @Test
+    public void lookupByProperty() {
+        for (int i = 0; i < 100; i++) {
+            registry.register("foo.Service", Generic.<String, Object>map("name", "foo" + i, "match", true));
+        }
+        ServiceReference bar = registry.register("bar.Service", Generic.<String, Object>map("name", "foo7", "match", true));
+        ServiceIndex index = new ServiceIndex(registry.bundleContext());
+
+        ServiceReference[] foo7 = index.lookup(null, "foo.Service", "name", "foo7", null);
+        Assert.assertEquals(1, foo7.length);
+        Assert.assertEquals("foo7", foo7[0].getProperty("name"));
+        Assert.assertEquals(Arrays.asList(bar), Arrays.asList(index.lookup(null, "bar.Service", "NAME", "FOO7", null)));
+        Assert.assertEquals(2, index.lookup(null, null, "name", "foo7", null).length);
+        Assert.assertEquals(1, registry.getLookups());
+
+        registry.unregister(foo7[0]);
+        Assert.assertEquals(0, index.lookup(null, "foo.Service", "name", "foo7", null).length);
+        registry.register("foo.Service", Generic.<String, Object>map("name", "foo7", "match", false));
+        Assert.assertEquals(1, index.lookup(null, "foo.Service", "name", "foo7", null).length);
+        Assert.assertEquals(0, index.lookup(null, "foo.Service", "name", "foo7", StubRegistry.filter()).length);
+        Assert.assertEquals(1, registry.getLookups());
+    }
+
+    @Test
+    public void modifiedIsReindexed() {
+        Map<String, Object> properties = Generic.<String, Object>map("name", "foo");
+        ServiceReference reference = registry.register("foo.Service", properties);
+        ServiceIndex index = new ServiceIndex(registry.bundleContext());
+        Assert.assertEquals(1, index.lookup(null, null, "name", "foo", null).length);
+
+        properties.put("name", "bar");
+        registry.fire(ServiceEvent.MODIFIED, reference);
+        Assert.assertEquals(0, index.lookup(null, null, "name", "foo", null).length);
+        Assert.assertEquals(1, index.lookup(null, null, "name", "bar", null).length);
+    }
+
+    @Test
+    public void lookupDecimal() {
+        ServiceReference five = registry.register("foo.Service", Generic.<String, Object>map("x", 5.0d, "match", true));
+        registry.register("foo.Service", Generic.<String, Object>map("x", 6.5d, "match", false));
+        ServiceIndex index = new ServiceIndex(registry.bundleContext());
+
+        Assert.assertEquals(Arrays.asList(five), Arrays.asList(index.lookup(null, null, "x", "5", StubRegistry.filter())));
+    }
+
+    @Test
+    public void lookupPrimitiveArrayElements() {
+        ServiceReference numbers = registry.register("foo.Service",
+                                                     Generic.<String, Object>map("x", new int[]{3, 5}, "match", true));
+        registry.register("foo.Service", Generic.<String, Object>map("x", 4, "match", true));
+        ServiceIndex index = new ServiceIndex(registry.bundleContext());
+
+        Assert.assertEquals(Arrays.asList(numbers), Arrays.asList(index.lookup(null, null, "x", "5", null)));
+        Assert.assertEquals(Arrays.asList(numbers), Arrays.asList(index.lookup(null, null, "x", "3", null)));
+        Assert.assertEquals(1, index.lookup(null, null, "x", "4", null).length);
+    }
+}
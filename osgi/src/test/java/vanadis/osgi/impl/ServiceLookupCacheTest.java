@@ -0,0 +1,137 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.osgi.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import vanadis.core.collections.Generic;
+import vanadis.osgi.Filter;
+import vanadis.osgi.Filters;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class ServiceLookupCacheTest {
+
+    private final StubRegistry registry = new StubRegistry();
+
+    @Test
+    public void cacheUntilChanged() {
+        ServiceLookupCache cache = new ServiceLookupCache(registry.bundleContext());
+        Filter filter = Filters.present("name");
+        ServiceReference foo = registry.register("foo.Service", Generic.map("name", "foo", "match", true));
+
+        Assert.assertSame(foo, cache.lookup("foo.Service", filter)[0]);
+        Assert.assertSame(foo, cache.lookup("foo.Service", Filters.present("name"))[0]);
+        Assert.assertEquals(1, registry.getLookups());
+        Assert.assertEquals(1, cache.getHits());
+
+        registry.register("bar.Service", Generic.map("name", "bar", "match", true));
+        registry.register("foo.Service", Generic.map("name", "zot", "match", false));
+        cache.lookup("foo.Service", filter);
+        Assert.assertEquals(1, registry.getLookups());
+
+        registry.unregister(foo);
+        Assert.assertEquals(0, cache.lookup("foo.Service", filter).length);
+        Assert.assertEquals(2, registry.getLookups());
+
+        registry.fire(ServiceEvent.MODIFIED, foo);
+        cache.lookup("foo.Service", filter);
+        Assert.assertEquals(3, registry.getLookups());
+    }
+
+    @Test
+    public void dropUnregisteredCachedDuringEvent() {
+        final ServiceLookupCache cache = new ServiceLookupCache(registry.bundleContext());
+        final Filter filter = Filters.present("name");
+        ServiceReference foo = registry.register("foo.Service", Generic.map("name", "foo", "match", true));
+        Assert.assertSame(foo, cache.lookup("foo.Service", filter)[0]);
+        registry.bundleContext().addServiceListener(new ServiceListener() {
+            @Override
+            public void serviceChanged(ServiceEvent event) {
+                cache.lookup("foo.Service", filter);
+            }
+        });
+
+        registry.unregister(foo);
+        Assert.assertEquals(0, cache.lookup("foo.Service", filter).length);
+    }
+
+    @Test
+    public void shareIndexAndListener() {
+        ServiceLookupCache cache = new ServiceLookupCache(registry.bundleContext());
+        ServiceLookupCache other = new ServiceLookupCache(registry.bundleContext());
+        registry.register("foo.Service", Generic.map("name", "foo", "match", true));
+        Assert.assertEquals(1, cache.lookup("foo.Service", Filters.eq("name", "foo")).length);
+        Assert.assertEquals(1, other.lookup("foo.Service", Filters.eq("name", "foo")).length);
+        Assert.assertEquals(1, registry.getLookups());
+        Assert.assertEquals(1, registry.getListenerCount());
+
+        cache.close();
+        Assert.assertEquals(1, registry.getListenerCount());
+        other.close();
+        Assert.assertEquals(0, registry.getListenerCount());
+    }
+
+    @Test
+    public void indexAppliesEventBeforeCache() {
+        final ServiceLookupCache cache = new ServiceLookupCache(registry.bundleContext());
+        final Filter filter = Filters.eq("name", "bar");
+        Map<String, Object> properties = Generic.<String, Object>map("name", "foo", "match", true);
+        ServiceReference foo = registry.register("foo.Service", properties);
+        final ServiceIndex index = ServiceIndex.acquire(registry.bundleContext());
+        final List<Integer> found = Generic.list();
+        index.addListener(new ServiceListener() {
+            @Override
+            public void serviceChanged(ServiceEvent event) {
+                found.add(cache.lookup("foo.Service", filter).length);
+            }
+        });
+        Assert.assertEquals(0, cache.lookup("foo.Service", Filters.eq("name", "zot")).length);
+
+        properties.put("name", "bar");
+        registry.fire(ServiceEvent.MODIFIED, foo);
+        Assert.assertEquals(Arrays.asList(1), found);
+        Assert.assertEquals(1, cache.lookup("foo.Service", filter).length);
+        index.release();
+    }
+
+    @Test
+    public void boundedSize() {
+        ServiceLookupCache cache = new ServiceLookupCache(registry.bundleContext());
+        registry.register("foo.Service", Generic.map("name", "foo", "match", true));
+        for (int i = 0; i < ServiceLookupCache.MAX_ENTRIES + 44; i++) {
+            cache.lookup("foo.Service", Filters.present("name" + i));
+        }
+        Assert.assertTrue(cache.size() <= ServiceLookupCache.MAX_ENTRIES);
+    }
+
+    @Test
+    public void closeRemovesListener() {
+        ServiceLookupCache cache = new ServiceLookupCache(registry.bundleContext());
+        registry.register("foo.Service", Generic.map("name", "foo", "match", true));
+        cache.lookup("foo.Service", Filters.present("name"));
+        cache.lookup("foo.Service", Filters.eq("name", "foo"));
+        Assert.assertTrue(registry.getListenerCount() > 0);
+
+        cache.close();
+        Assert.assertEquals(0, registry.getListenerCount());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.osgi.impl;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import vanadis.core.collections.Generic;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bundle context with just a service registry, for testing lookups.
+ * Compiled filters match references with a true <code>match</code> property.
+ */
+class StubRegistry {
+
+    private final List<ServiceListener> listeners = Generic.list();
+
+    private final List<ServiceReference> registered = Generic.list();
+
+    private static final Set<ServiceReference> unregistered = Generic.synchSet();
+
+    private static final Bundle BUNDLE = (Bundle) Proxy.newProxyInstance
+            (Bundle.class.getClassLoader(), new Class<?>[]{Bundle.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("toString")) {
+                        return "StubBundle";
+                    }
+                    throw new UnsupportedOperationException(method.toString());
+                }
+            });
+
+    private final Bundle system = (Bundle) Proxy.newProxyInstance
+            (Bundle.class.getClassLoader(), new Class<?>[]{Bundle.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    String name = method.getName();
+                    if (name.equals("getBundleContext")) {
+                        return bundleContext();
+                    }
+                    if (name.equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    if (name.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (name.equals("toString")) {
+                        return "StubSystemBundle";
+                    }
+                    throw new UnsupportedOperationException(method.toString());
+                }
+            });
+
+    private int lookups;
+
+    BundleContext bundleContext() {
+        return (BundleContext) Proxy.newProxyInstance
+                (BundleContext.class.getClassLoader(), new Class<?>[]{BundleContext.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("addServiceListener")) {
+                            listeners.add((ServiceListener) args[0]);
+                            return null;
+                        }
+                        if (name.equals("removeServiceListener")) {
+                            listeners.remove((ServiceListener) args[0]);
+                            return null;
+                        }
+                        if (name.equals("getServiceReferences") || name.equals("getAllServiceReferences")) {
+                            lookups++;
+                            return lookup((String) args[0], (String) args[1]);
+                        }
+                        if (name.equals("createFilter")) {
+                            return filter();
+                        }
+                        if (name.equals("getBundle")) {
+                            return args == null ? null : system;
+                        }
+                        throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+
+    private ServiceReference[] lookup(String objectClass, String filterString) {
+        List<ServiceReference> references = Generic.list();
+        for (ServiceReference reference : registered) {
+            if ((objectClass == null || objectClass.equals(((String[]) reference.getProperty(Constants.OBJECTCLASS))[0])) &&
+                    (filterString == null || Boolean.TRUE.equals(reference.getProperty("match")))) {
+                references.add(reference);
+            }
+        }
+        return references.toArray(new ServiceReference[references.size()]);
+    }
+
+    int getLookups() {
+        return lookups;
+    }
+
+    int getListenerCount() {
+        return listeners.size();
+    }
+
+    ServiceReference register(String objectClass, Map<String, ?> properties) {
+        ServiceReference reference = reference(objectClass, properties);
+        registered.add(reference);
+        fire(ServiceEvent.REGISTERED, reference);
+        return reference;
+    }
+
+    void unregister(ServiceReference reference) {
+        fire(ServiceEvent.UNREGISTERING, reference);
+        registered.remove(reference);
+        unregistered.add(reference);
+    }
+
+    void fire(int type, ServiceReference reference) {
+        for (ServiceListener listener : Generic.list(listeners)) {
+            listener.serviceChanged(new ServiceEvent(type, reference));
+        }
+    }
+
+    static ServiceReference reference(final String objectClass, final Map<String, ?> properties) {
+        return (ServiceReference) Proxy.newProxyInstance
+                (ServiceReference.class.getClassLoader(), new Class<?>[]{ServiceReference.class},
+                 new InvocationHandler() {
+                     @Override
+                     public Object invoke(Object proxy, Method method, Object[] args) {
+                         String name = method.getName();
+                         if (name.equals("getProperty")) {
+                             return Constants.OBJECTCLASS.equals(args[0]) ? new String[]{objectClass}
+                                     : properties.get(args[0]);
+                         }
+                         if (name.equals("getBundle")) {
+                             return unregistered.contains(proxy) ? null : BUNDLE;
+                         }
+                         if (name.equals("getPropertyKeys")) {
+                             return properties.keySet().toArray(new String[properties.size()]);
+                         }
+                         if (name.equals("equals")) {
+                             return proxy == args[0];
+                         }
+                         if (name.equals("hashCode")) {
+                             return System.identityHashCode(proxy);
+                         }
+                         if (name.equals("toString")) {
+                             return objectClass + properties;
+                         }
+                         throw new UnsupportedOperationException(method.toString());
+                     }
+                 });
+    }
+
+    static org.osgi.framework.Filter filter() {
+        return (org.osgi.framework.Filter) Proxy.newProxyInstance
+                (org.osgi.framework.Filter.class.getClassLoader(), new Class<?>[]{org.osgi.framework.Filter.class},
+                 new InvocationHandler() {
+                     @Override
+                     public Object invoke(Object proxy, Method method, Object[] args) {
+                         if (method.getName().equals("match") && args[0] instanceof ServiceReference) {
+                             return Boolean.TRUE.equals(((ServiceReference) args[0]).getProperty("match"));
+                         }
+                         throw new UnsupportedOperationException(method.toString());
+                     }
+                 });
+    }
+}
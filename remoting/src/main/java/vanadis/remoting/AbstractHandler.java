@@ -15,6 +15,10 @@
  */
 package vanadis.remoting;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.common.time.Deadline;
+import vanadis.core.collections.Generic;
 import vanadis.core.lang.EqHc;
 import vanadis.core.lang.Not;
 import vanadis.core.lang.ToString;
@@ -24,18 +28,71 @@ import vanadis.services.remoting.TargetHandle;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class AbstractHandler extends AbstractSessionable implements InvocationHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(AbstractHandler.class);
+
     private final TargetHandle<?> handle;
 
+    private final Batching batching;
+
+    private final List<MethodCall> queued = Generic.list();
+
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    private final Executor asyncExecutor;
+
+    private final List<AsyncCall> pending = Generic.list();
+
+    private boolean sendingPending;
+
+    private final Runnable sendPending = new Runnable() {
+        @Override
+        public void run() {
+            sendPending();
+        }
+    };
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (Exception e) {
+                log.warn(AbstractHandler.this + " failed to flush queued calls", e);
+            }
+        }
+    };
+
     protected AbstractHandler(TargetHandle<?> handle) {
         this(null, handle);
     }
 
     protected AbstractHandler(Session session, TargetHandle<?> handle) {
+        this(session, handle, Batching.NONE);
+    }
+
+    protected AbstractHandler(Session session, TargetHandle<?> handle, Batching batching) {
+        this(session, handle, batching, null);
+    }
+
+    /**
+     * @param session Session
+     * @param handle Target
+     * @param batching Batching of fire-and-forget calls
+     * @param asyncExecutor Executor for sending asynchronous calls.  If null,
+     * they are sent on the calling thread
+     */
+    protected AbstractHandler(Session session, TargetHandle<?> handle, Batching batching, Executor asyncExecutor) {
         super(session);
         this.handle = Not.nil(handle, "handle");
+        this.batching = batching == null ? Batching.NONE : batching;
+        this.asyncExecutor = asyncExecutor;
     }
 
     @Override
@@ -45,14 +102,193 @@ public abstract class AbstractHandler extends AbstractSessionable implements Inv
             return method.invoke(this, args);
         }
         MethodCall methodCall = new MethodCall(getSession(), getHandle().getReference(), method, args);
-        MethodCallResult result = invoke(methodCall);
+        if (batching.isFireAndForget(method)) {
+            queue(methodCall);
+            return null;
+        }
+        MethodCallResult result = batching.isEnabled() ? invokeAfterQueued(methodCall)
+                : invoke(methodCall);
         adoptOrVerifySession(result);
-        return result.isReturnedNormally() ? result.getValue()
-                : handleAbnormalReturn(methodCall, result);
+        return returnedValue(methodCall, result);
+    }
+
+    /**
+     * Send any queued fire-and-forget calls.
+     */
+    public final void flush() {
+        sendLock.lock();
+        try {
+            List<MethodCall> calls = dequeue();
+            if (!calls.isEmpty()) {
+                send(calls, calls.size());
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private void queue(MethodCall methodCall) {
+        boolean first;
+        boolean full;
+        synchronized (queued) {
+            queued.add(methodCall);
+            first = queued.size() == 1;
+            full = queued.size() >= batching.getSize();
+        }
+        if (full) {
+            flush();
+        } else if (first) {
+            try {
+                batching.scheduleFlush(flush);
+            } catch (RejectedExecutionException e) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Invoke a call that needs an answer.  If there are queued calls, or
+     * queued calls are being sent, they must be sent first.  We send them
+     * in one frame, with this call at the end.
+     *
+     * @param methodCall Call
+     * @return Result of call
+     */
+    private MethodCallResult invokeAfterQueued(MethodCall methodCall) {
+        synchronized (queued) {
+            if (queued.isEmpty() && !sendLock.isLocked()) {
+                return invoke(methodCall);
+            }
+        }
+        sendLock.lock();
+        try {
+            List<MethodCall> calls = dequeue();
+            int queuedCount = calls.size();
+            calls.add(methodCall);
+            return send(calls, queuedCount).get(queuedCount);
+        } finally {
+            sendLock.unlock();
+        }
     }
 
-    private static Object handleAbnormalReturn(MethodCall call, MethodCallResult result)
+    /**
+     * Queue a call for sending on the async executor.  All calls pending when
+     * the executor gets around to it go out together, after any queued
+     * fire-and-forget calls.
+     *
+     * @param method Method
+     * @param args Arguments
+     * @param deadline Deadline, or null
+     * @return Future result
+     */
+    final AsyncCall submit(Method method, Object[] args, Deadline deadline) {
+        AsyncCall call = new AsyncCall(new MethodCall(getSession(), getHandle().getReference(), method, args), deadline);
+        boolean start;
+        synchronized (pending) {
+            pending.add(call);
+            start = !sendingPending;
+            sendingPending = true;
+        }
+        if (start) {
+            if (asyncExecutor == null) {
+                sendPending();
+            } else {
+                try {
+                    asyncExecutor.execute(sendPending);
+                } catch (RejectedExecutionException e) {
+                    sendPending();
+                }
+            }
+        }
+        return call;
+    }
+
+    private void sendPending() {
+        boolean drained = false;
+        try {
+            while (true) {
+                List<AsyncCall> calls;
+                synchronized (pending) {
+                    if (pending.isEmpty()) {
+                        sendingPending = false;
+                        drained = true;
+                        return;
+                    }
+                    calls = Generic.list(pending);
+                    pending.clear();
+                }
+                sendAsync(calls);
+            }
+        } finally {
+            if (!drained) {
+                synchronized (pending) {
+                    sendingPending = false;
+                }
+            }
+        }
+    }
+
+    private void sendAsync(List<AsyncCall> asyncCalls) {
+        List<AsyncCall> sent = Generic.list();
+        for (AsyncCall asyncCall : asyncCalls) {
+            if (asyncCall.send()) {
+                sent.add(asyncCall);
+            }
+        }
+        if (sent.isEmpty()) {
+            return;
+        }
+        sendLock.lock();
+        try {
+            List<MethodCall> calls = dequeue();
+            int queuedCount = calls.size();
+            for (AsyncCall asyncCall : sent) {
+                calls.add(asyncCall.getMethodCall());
+            }
+            List<MethodCallResult> results = send(calls, queuedCount);
+            for (int i = 0; i < sent.size(); i++) {
+                sent.get(i).complete(results.get(queuedCount + i));
+            }
+        } catch (RuntimeException e) {
+            for (AsyncCall asyncCall : sent) {
+                asyncCall.fail(e);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private List<MethodCall> dequeue() {
+        synchronized (queued) {
+            List<MethodCall> calls = Generic.list(queued);
+            queued.clear();
+            return calls;
+        }
+    }
+
+    private List<MethodCallResult> send(List<MethodCall> calls, int queuedCount) {
+        List<MethodCallResult> results = calls.size() == 1
+                ? Generic.list(invoke(calls.get(0)))
+                : invoke(new MethodCallBatch(calls));
+        if (results.size() != calls.size()) {
+            throw new RemotingException
+                    (this + " got " + results.size() + " results for " + calls.size() + " calls");
+        }
+        for (int i = 0; i < calls.size(); i++) {
+            MethodCallResult result = results.get(i);
+            adoptOrVerifySession(result);
+            if (i < queuedCount && !result.isReturnedNormally()) {
+                log.warn(this + ": Queued call " + calls.get(i) + " failed: " + result);
+            }
+        }
+        return results;
+    }
+
+    static Object returnedValue(MethodCall call, MethodCallResult result)
             throws Throwable {
+        if (result.isReturnedNormally()) {
+            return result.getValue();
+        }
         if (!result.isTargetFound()) {
             throw new RemotingException(call + " failed, did not hit a target!");
         }
@@ -94,6 +330,21 @@ public abstract class AbstractHandler extends AbstractSessionable implements Inv
 
     protected abstract MethodCallResult invoke(MethodCall methodCall);
 
+    /**
+     * Invoke a batch of calls.  Subclasses that can send the batch in a single
+     * frame should override this, the default is to invoke the calls one by one.
+     *
+     * @param batch Calls
+     * @return Results, in call order
+     */
+    protected List<MethodCallResult> invoke(MethodCallBatch batch) {
+        List<MethodCallResult> results = Generic.list(batch.size());
+        for (MethodCall call : batch.getCalls()) {
+            results.add(invoke(call));
+        }
+        return results;
+    }
+
     public TargetHandle<?> getHandle() {
         return handle;
     }
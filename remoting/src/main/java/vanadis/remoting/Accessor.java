@@ -21,15 +21,30 @@ import vanadis.core.collections.Generic;
 import vanadis.core.lang.Not;
 import vanadis.services.remoting.TargetReference;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 public class Accessor {
 
     private static final Logger log = LoggerFactory.getLogger(Accessor.class);
 
-    public static final Map<String, TypeEnumerator> ENUMS = Generic.weakHashMap();
+    /**
+     * Enumerations by interface.  Keyed by class rather than class name, so
+     * same-named interfaces from different class loaders don't share an
+     * enumeration.  Keys are weak and the enumerations, which refer back to
+     * their classes, are soft, so the map does not keep class loaders of
+     * stopped bundles alive.  Lookups are lock-free; keys of collected
+     * classes are purged when enumerations are added.
+     */
+    private static final ConcurrentMap<ClassKey, Reference<TypeEnumerator>> ENUMS = Generic.concurrentHashMap();
+
+    private static final ReferenceQueue<Class<?>> COLLECTED = new ReferenceQueue<Class<?>>();
 
     private static <T> Session computeSession(T target) {
         return new Session(target.getClass().getName() + "@" + System.identityHashCode(target));
@@ -76,9 +91,9 @@ public class Accessor {
     private Accessor() {
     }
 
-    @SuppressWarnings({"unchecked"})
     static TypeEnumerator get(Class<?> type) {
-        return ENUMS.get(type.getName());
+        Reference<TypeEnumerator> reference = ENUMS.get(new ClassKey(type, null));
+        return reference == null ? null : reference.get();
     }
 
     static int indexOf(Class<?> clazz, Method method) {
@@ -90,15 +105,65 @@ public class Accessor {
     }
 
     static <T> TypeEnumerator enumerate(Class<T> type) {
-        if (!Not.nil((Class<?>) type, "type").isInterface()) {
+        TypeEnumerator enumerator = get(Not.nil((Class<?>) type, "type"));
+        if (enumerator != null) {
+            return enumerator;
+        }
+        if (!type.isInterface()) {
             throw new IllegalArgumentException("Only interface types allowed, could not process " + type);
         }
-        if (ENUMS.containsKey(type.getName())) {
-            return get(type);
-        } else {
-            TypeEnumerator enumerator = new TypeEnumerator(type);
-            ENUMS.put(type.getName(), enumerator);
-            return enumerator;
+        purge();
+        TypeEnumerator newEnumerator = new TypeEnumerator(type);
+        ClassKey key = new ClassKey(type, COLLECTED);
+        Reference<TypeEnumerator> newReference = new SoftReference<TypeEnumerator>(newEnumerator);
+        while (true) {
+            Reference<TypeEnumerator> reference = ENUMS.putIfAbsent(key, newReference);
+            if (reference == null) {
+                return newEnumerator;
+            }
+            TypeEnumerator existing = reference.get();
+            if (existing != null) {
+                return existing;
+            }
+            if (ENUMS.replace(key, reference, newReference)) {
+                return newEnumerator;
+            }
+        }
+    }
+
+    private static void purge() {
+        for (Object key = COLLECTED.poll(); key != null; key = COLLECTED.poll()) {
+            ENUMS.remove(key);
+        }
+    }
+
+    /**
+     * A weak reference to a class, equal to other references to the same class.
+     */
+    private static final class ClassKey extends WeakReference<Class<?>> {
+
+        private final int hashCode;
+
+        private ClassKey(Class<?> type, ReferenceQueue<Class<?>> queue) {
+            super(type, queue);
+            this.hashCode = System.identityHashCode(type);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (!(object instanceof ClassKey)) {
+                return false;
+            }
+            Class<?> type = get();
+            return type != null && type == ((ClassKey) object).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
     }
 }
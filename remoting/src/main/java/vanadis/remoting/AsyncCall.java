@@ -0,0 +1,161 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.common.time.Deadline;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.lang.ToString;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Future result of an asynchronous call.  A call is pending until it is
+ * sent, and can be cancelled or time out while pending; after that it is
+ * left to complete, but a cancelled call's result is dropped.
+ */
+final class AsyncCall implements Future<Object> {
+
+    private static final int PENDING = 0;
+
+    private static final int SENT = 1;
+
+    private static final int DONE = 2;
+
+    private static final int CANCELLED = 3;
+
+    private final MethodCall methodCall;
+
+    private final Deadline deadline;
+
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile Object value;
+
+    private volatile Throwable exception;
+
+    AsyncCall(MethodCall methodCall, Deadline deadline) {
+        this.methodCall = methodCall;
+        this.deadline = deadline;
+    }
+
+    MethodCall getMethodCall() {
+        return methodCall;
+    }
+
+    /**
+     * @return True iff the call should be sent, false if it was cancelled or has expired
+     */
+    boolean send() {
+        if (deadline != null && deadline.hasExpired()) {
+            fail(new TimeoutException(this + " expired before it was sent"));
+            return false;
+        }
+        return state.compareAndSet(PENDING, SENT);
+    }
+
+    void complete(MethodCallResult result) {
+        try {
+            Object returned = AbstractHandler.returnedValue(methodCall, result);
+            if (finish()) {
+                value = returned;
+                done.countDown();
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    void fail(Throwable exception) {
+        if (finish()) {
+            this.exception = exception;
+            done.countDown();
+        }
+    }
+
+    private boolean finish() {
+        return state.compareAndSet(SENT, DONE) || state.compareAndSet(PENDING, DONE);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (state.compareAndSet(PENDING, CANCELLED) || state.compareAndSet(SENT, CANCELLED)) {
+            done.countDown();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() >= DONE;
+    }
+
+    /**
+     * Waits for the result, but no longer than the call's deadline, if it
+     * has one.  A call that times out is cancelled, unless it completed
+     * in the meantime.
+     */
+    @Override
+    public Object get()
+            throws InterruptedException, ExecutionException {
+        if (deadline == null) {
+            done.await();
+            return report();
+        }
+        TimeSpan timeLeft = deadline.timeLeft();
+        if (!done.await(timeLeft.time(), timeLeft.unit())) {
+            if (cancel(false)) {
+                throw new ExecutionException(new TimeoutException(this + " timed out"));
+            }
+            // Completed or cancelled while timing out, the latch is about to open
+            done.await();
+        }
+        return report();
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException(this + " did not complete in " + TimeSpan.create(timeout, unit));
+        }
+        return report();
+    }
+
+    private Object report()
+            throws ExecutionException {
+        if (state.get() == CANCELLED) {
+            throw new CancellationException(this + " was cancelled");
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, methodCall, "state", state, "deadline", deadline);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.common.time.Deadline;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.Proxies;
+import vanadis.core.lang.ToString;
+import vanadis.services.remoting.AsyncClient;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+final class AsyncClientImpl<T> implements AsyncClient<T>, InvocationHandler {
+
+    private static final Map<Class<?>, Object> DEFAULTS = Generic.map();
+
+    static {
+        DEFAULTS.put(boolean.class, false);
+        DEFAULTS.put(byte.class, (byte) 0);
+        DEFAULTS.put(short.class, (short) 0);
+        DEFAULTS.put(char.class, (char) 0);
+        DEFAULTS.put(int.class, 0);
+        DEFAULTS.put(long.class, 0L);
+        DEFAULTS.put(float.class, 0.0f);
+        DEFAULTS.put(double.class, 0.0d);
+    }
+
+    private final AbstractHandler handler;
+
+    private final ClassLoader classLoader;
+
+    private final Class<T> type;
+
+    private final TimeSpan timeout;
+
+    private final T proxy;
+
+    /**
+     * The call just made on this thread, until {@link #future()} hands it out.
+     */
+    private final ThreadLocal<AsyncCall> last = new ThreadLocal<AsyncCall>();
+
+    AsyncClientImpl(AbstractHandler handler, ClassLoader classLoader, Class<T> type, TimeSpan timeout) {
+        this.handler = Not.nil(handler, "handler");
+        this.classLoader = classLoader;
+        this.type = Not.nil(type, "type");
+        this.timeout = timeout == null || timeout.isForever() ? null : timeout;
+        this.proxy = Proxies.genericProxy(classLoader, type, this);
+    }
+
+    @Override
+    public T call() {
+        return proxy;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked"})
+    public <R> Future<R> future(R returned) {
+        return (Future<R>) future();
+    }
+
+    @Override
+    public Future<?> future() {
+        AsyncCall call = last.get();
+        last.remove();
+        if (call == null) {
+            throw new IllegalStateException(this + " has no call to pick up on " + Thread.currentThread());
+        }
+        return call;
+    }
+
+    @Override
+    public AsyncClient<T> withTimeout(TimeSpan timeout) {
+        return new AsyncClientImpl<T>(handler, classLoader, type, timeout);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+        if (method.getDeclaringClass().equals(Object.class)) {
+            return method.invoke(this, args);
+        }
+        last.set(handler.submit(method, args, timeout == null ? null : new Deadline(timeout)));
+        return DEFAULTS.get(method.getReturnType());
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, handler, "timeout", timeout);
+    }
+}
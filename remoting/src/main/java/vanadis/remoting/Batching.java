@@ -0,0 +1,86 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.common.time.TimeSpan;
+import vanadis.core.lang.ToString;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for batching of fire-and-forget calls.  A void method that declares
+ * no checked exceptions can be queued by the {@link AbstractHandler handler}
+ * and sent later, together with other calls in the same {@link MethodCallBatch frame}.
+ *
+ * <p>Queued calls are sent when {@link #getSize() size} calls are queued, when a
+ * call that needs an answer is made (the queued calls are then sent in the same
+ * frame, ahead of it), or when the {@link #getLinger() linger} time has passed.</p>
+ */
+public final class Batching {
+
+    public static final Batching NONE = new Batching(0, null, null);
+
+    private final int size;
+
+    private final TimeSpan linger;
+
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * @param size Max number of calls to queue, batching is disabled if less than two
+     * @param linger Max time to keep a call queued, or null to wait for the queue to fill
+     * @param flusher Service to flush lingering calls, required if linger is set
+     */
+    public Batching(int size, TimeSpan linger, ScheduledExecutorService flusher) {
+        this.size = size;
+        this.linger = linger;
+        this.flusher = flusher;
+        if (isEnabled() && linger != null && flusher == null) {
+            throw new IllegalArgumentException(this + " needs a flusher to linger");
+        }
+    }
+
+    public boolean isEnabled() {
+        return size > 1;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public TimeSpan getLinger() {
+        return linger;
+    }
+
+    boolean isFireAndForget(Method method) {
+        return isEnabled() &&
+                method.getReturnType() == void.class &&
+                method.getExceptionTypes().length == 0;
+    }
+
+    void scheduleFlush(Runnable flush) {
+        if (linger != null) {
+            flusher.schedule(flush, linger.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "size", size, "linger", linger);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes frames for the wire.  A frame is a {@link MethodCall},
+ * a {@link MethodCallBatch}, a {@link MethodCallResult} or a {@link MethodCallBatchResult}.
+ *
+ * <p>Codecs are stateless and thread-safe, and are looked up by {@link #getName() name}
+ * in {@link Codecs}.</p>
+ */
+public interface Codec {
+
+    /**
+     * The name of this codec, used by transports to tell the receiving end
+     * how to decode a frame, e.g. as an HTTP content type.
+     *
+     * @return Name
+     */
+    String getName();
+
+    /**
+     * @param frame Frame
+     * @return Encoded frame, ready for reading
+     */
+    ByteBuffer encode(Object frame);
+
+    /**
+     * @param buffer Encoded frame
+     * @param classLoader Class loader for references in calls, and for values in results
+     * @return Frame
+     */
+    Object decode(ByteBuffer buffer, ClassLoader classLoader);
+}
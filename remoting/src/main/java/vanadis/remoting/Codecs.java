@@ -0,0 +1,58 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.core.collections.Generic;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Known {@link Codec codecs}.
+ */
+public final class Codecs {
+
+    public static final Codec SERIALIZATION = new SerializationCodec();
+
+    public static final Codec COMPACT = new CompactCodec();
+
+    public static final Codec DEFAULT = COMPACT;
+
+    private static final Map<String, Codec> CODECS = Collections.unmodifiableMap
+            (Generic.map(SERIALIZATION.getName(), SERIALIZATION,
+                         COMPACT.getName(), COMPACT,
+                         "serialization", SERIALIZATION,
+                         "compact", COMPACT));
+
+    /**
+     * @param name Name of codec, or a short name: <code>compact</code> or <code>serialization</code>
+     * @return Codec, or null if unknown
+     */
+    public static Codec get(String name) {
+        return name == null ? null : CODECS.get(name.trim());
+    }
+
+    /**
+     * @param name Name of codec, or null
+     * @return Codec, or {@link #SERIALIZATION} if name is null or unknown
+     */
+    public static Codec getOrSerialization(String name) {
+        Codec codec = get(name);
+        return codec == null ? SERIALIZATION : codec;
+    }
+
+    private Codecs() { }
+}
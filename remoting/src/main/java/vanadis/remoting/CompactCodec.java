@@ -0,0 +1,410 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.ToString;
+import vanadis.core.reflection.ClassloaderAwareObjectInputStream;
+import vanadis.services.remoting.RemotingException;
+import vanadis.services.remoting.TargetReference;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A compact binary encoding of frames.  Primitives, strings and byte arrays
+ * are written directly, with variable-length integers.  Other values, target
+ * references and exceptions fall back to Java serialization, each in a
+ * length-prefixed chunk.
+ *
+ * <p>The serialized form of a target reference is cached on the sending
+ * side, since a client sends the same reference on every call.</p>
+ */
+final class CompactCodec implements Codec {
+
+    static final String NAME = "application/x-vanadis-compact";
+
+    private static final byte VERSION = 1;
+
+    private static final byte CALL = 1;
+
+    private static final byte BATCH = 2;
+
+    private static final byte RETURNED = 3;
+
+    private static final byte THROWN = 4;
+
+    private static final byte UNKNOWN = 5;
+
+    private static final byte BATCH_RESULT = 6;
+
+    private static final byte NULL = 0;
+
+    private static final byte TRUE = 1;
+
+    private static final byte FALSE = 2;
+
+    private static final byte BYTE = 3;
+
+    private static final byte SHORT = 4;
+
+    private static final byte CHAR = 5;
+
+    private static final byte INT = 6;
+
+    private static final byte LONG = 7;
+
+    private static final byte FLOAT = 8;
+
+    private static final byte DOUBLE = 9;
+
+    private static final byte STRING = 10;
+
+    private static final byte BYTES = 11;
+
+    private static final byte SERIALIZED = 12;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<TargetReference<?, ?>, byte[]> references =
+            Collections.synchronizedMap(new WeakHashMap<TargetReference<?, ?>, byte[]>());
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ByteBuffer encode(Object frame) {
+        FrameBuffer buffer = new FrameBuffer().put(VERSION);
+        try {
+            writeFrame(buffer, frame);
+        } catch (IOException e) {
+            throw new RemotingException(this + " failed to write " + frame, e);
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer, ClassLoader classLoader) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new RemotingException(this + " got unknown version " + version);
+        }
+        try {
+            return readFrame(buffer, classLoader);
+        } catch (RemotingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RemotingException(this + " failed to read frame", e);
+        }
+    }
+
+    private void writeFrame(FrameBuffer buffer, Object frame)
+            throws IOException {
+        if (frame instanceof MethodCall) {
+            buffer.put(CALL);
+            writeCall(buffer, (MethodCall) frame);
+        } else if (frame instanceof MethodCallBatch) {
+            List<MethodCall> calls = ((MethodCallBatch) frame).getCalls();
+            buffer.put(BATCH).putVarInt(calls.size());
+            for (MethodCall call : calls) {
+                int lengthPosition = buffer.position();
+                buffer.putInt(0);
+                writeCall(buffer, call);
+                buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+            }
+        } else if (frame instanceof MethodCallResult) {
+            writeResult(buffer, (MethodCallResult) frame);
+        } else if (frame instanceof MethodCallBatchResult) {
+            List<MethodCallResult> results = ((MethodCallBatchResult) frame).getResults();
+            buffer.put(BATCH_RESULT).putVarInt(results.size());
+            for (MethodCallResult result : results) {
+                writeResult(buffer, result);
+            }
+        } else {
+            throw new IllegalArgumentException(this + " cannot write " + frame);
+        }
+    }
+
+    private Object readFrame(ByteBuffer buffer, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        byte type = buffer.get();
+        switch (type) {
+            case CALL:
+                return readCall(buffer, classLoader);
+            case BATCH:
+                return readBatch(buffer, classLoader);
+            case RETURNED:
+            case THROWN:
+            case UNKNOWN:
+                return readResult(type, buffer, classLoader);
+            case BATCH_RESULT:
+                int size = FrameBuffer.getVarInt(buffer);
+                List<MethodCallResult> results = Generic.list(size);
+                for (int i = 0; i < size; i++) {
+                    results.add(readResult(buffer.get(), buffer, classLoader));
+                }
+                return new MethodCallBatchResult(results);
+            default:
+                throw new RemotingException(this + " got unknown frame type " + type);
+        }
+    }
+
+    private void writeCall(FrameBuffer buffer, MethodCall call)
+            throws IOException {
+        writeSession(buffer, call.getSession());
+        byte[] reference = serializedReference(call.getTargetIdentifier());
+        buffer.putVarInt(reference.length).put(reference, 0, reference.length);
+        buffer.putVarInt(call.getMethodNo());
+        Object[] args = call.getArgs();
+        buffer.putVarInt(args.length);
+        for (Object arg : args) {
+            writeValue(buffer, arg);
+        }
+    }
+
+    private static MethodCall readCall(ByteBuffer buffer, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        MethodCall call = new MethodCall();
+        call.restoreSession(readSession(buffer));
+        TargetReference<?, ?> reference =
+                (TargetReference<?, ?>) readSerialized(buffer, FrameBuffer.getVarInt(buffer), classLoader);
+        if (call.restore(reference, FrameBuffer.getVarInt(buffer))) {
+            ClassLoader targetClassLoader = call.getTargetClassLoader();
+            Object[] args = new Object[FrameBuffer.getVarInt(buffer)];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = readValue(buffer, targetClassLoader);
+            }
+            call.restoreArgs(args);
+        }
+        return call;
+    }
+
+    private static MethodCallBatch readBatch(ByteBuffer buffer, ClassLoader classLoader) {
+        int size = FrameBuffer.getVarInt(buffer);
+        List<MethodCall> calls = Generic.list(size);
+        List<Exception> failures = Generic.list(size);
+        for (int i = 0; i < size; i++) {
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            MethodCall call = null;
+            Exception failure = null;
+            try {
+                call = readCall(buffer, classLoader);
+            } catch (Exception e) {
+                failure = e;
+            }
+            calls.add(call);
+            failures.add(failure);
+            buffer.position(end);
+        }
+        return new MethodCallBatch(calls, failures);
+    }
+
+    private static void writeResult(FrameBuffer buffer, MethodCallResult result)
+            throws IOException {
+        if (result instanceof UnknownMethodTarget) {
+            buffer.put(UNKNOWN);
+        } else if (result.getException() != null) {
+            buffer.put(THROWN);
+            writeSession(buffer, result.getSession());
+            writeSerialized(buffer, result.getException());
+        } else {
+            buffer.put(RETURNED);
+            writeSession(buffer, result.getSession());
+            writeValue(buffer, result.getValue());
+        }
+    }
+
+    private static MethodCallResult readResult(byte type, ByteBuffer buffer, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        switch (type) {
+            case UNKNOWN:
+                return UnknownMethodTarget.INSTANCE;
+            case THROWN:
+                Session session = readSession(buffer);
+                return new MethodExceptionThrown(session, (Throwable) readValue(buffer, classLoader));
+            case RETURNED:
+                return new MethodReturned(readSession(buffer), readValue(buffer, classLoader));
+            default:
+                throw new RemotingException("Unknown result type " + type);
+        }
+    }
+
+    private static void writeValue(FrameBuffer buffer, Object value)
+            throws IOException {
+        if (value == null) {
+            buffer.put(NULL);
+        } else if (value instanceof String) {
+            buffer.put(STRING);
+            writeString(buffer, (String) value);
+        } else if (value instanceof Integer) {
+            buffer.put(INT).putVarInt(zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            buffer.put(LONG).putVarLong(zigzag((Long) value));
+        } else if (value instanceof Boolean) {
+            buffer.put((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            buffer.put(DOUBLE).putLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            buffer.put(FLOAT).putInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Byte) {
+            buffer.put(BYTE).put((Byte) value);
+        } else if (value instanceof Short) {
+            buffer.put(SHORT).putVarInt(zigzag((Short) value));
+        } else if (value instanceof Character) {
+            buffer.put(CHAR).putVarInt((Character) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            buffer.put(BYTES).putVarInt(bytes.length).put(bytes, 0, bytes.length);
+        } else {
+            writeSerialized(buffer, value);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(buffer);
+            case INT:
+                return unzigzag(FrameBuffer.getVarInt(buffer));
+            case LONG:
+                return unzigzag(FrameBuffer.getVarLong(buffer));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(buffer.getLong());
+            case FLOAT:
+                return Float.intBitsToFloat(buffer.getInt());
+            case BYTE:
+                return buffer.get();
+            case SHORT:
+                return (short) unzigzag(FrameBuffer.getVarInt(buffer));
+            case CHAR:
+                return (char) FrameBuffer.getVarInt(buffer);
+            case BYTES:
+                byte[] bytes = new byte[FrameBuffer.getVarInt(buffer)];
+                buffer.get(bytes);
+                return bytes;
+            case SERIALIZED:
+                return readSerialized(buffer, buffer.getInt(), classLoader);
+            default:
+                throw new RemotingException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void writeSerialized(FrameBuffer buffer, Object value)
+            throws IOException {
+        buffer.put(SERIALIZED);
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(buffer.asOutputStream());
+        objectOutputStream.writeObject(value);
+        objectOutputStream.close();
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+    }
+
+    private static Object readSerialized(ByteBuffer buffer, int length, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        return new ClassloaderAwareObjectInputStream
+                (FrameBuffer.asInputStream(buffer, length), classLoader).readObject();
+    }
+
+    private byte[] serializedReference(TargetReference<?, ?> reference)
+            throws IOException {
+        byte[] bytes = references.get(reference);
+        if (bytes == null) {
+            FrameBuffer buffer = new FrameBuffer();
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(buffer.asOutputStream());
+            objectOutputStream.writeObject(reference);
+            objectOutputStream.close();
+            ByteBuffer serialized = buffer.flip();
+            bytes = new byte[serialized.remaining()];
+            serialized.get(bytes);
+            references.put(reference, bytes);
+        }
+        return bytes;
+    }
+
+    private static void writeSession(FrameBuffer buffer, Session session) {
+        writeString(buffer, session == null ? null : session.id());
+    }
+
+    private static Session readSession(ByteBuffer buffer) {
+        String id = readString(buffer);
+        return id == null ? null : new Session(id);
+    }
+
+    private static void writeString(FrameBuffer buffer, String string) {
+        if (string == null) {
+            buffer.putVarInt(0);
+        } else {
+            byte[] bytes = string.getBytes(UTF8);
+            buffer.putVarInt(bytes.length + 1).put(bytes, 0, bytes.length);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = FrameBuffer.getVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String string;
+        if (buffer.hasArray()) {
+            string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            string = new String(bytes, UTF8);
+        }
+        return string;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, NAME);
+    }
+}
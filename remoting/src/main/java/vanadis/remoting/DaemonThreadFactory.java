@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named daemon threads for the executors of remote client factories, so
+ * that sender and flusher threads never keep the VM running.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+
+    private final String name;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    public DaemonThreadFactory(String name) {
+        this.name = Not.nil(name, "name");
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, name, "threads", count);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receiving end of a transport: decodes a frame, invokes the call(s) in it,
+ * and encodes the result(s).
+ */
+public final class Dispatch {
+
+    private static final Logger log = LoggerFactory.getLogger(Dispatch.class);
+
+    /**
+     * Decode a frame, invoke it and encode the result.  Failure to decode
+     * the frame is sent back as a {@link MethodExceptionThrown}.
+     *
+     * @param codec Codec
+     * @param frame Encoded call or batch
+     * @param classLoader Class loader for target references
+     * @return Encoded result or batch result
+     */
+    public static ByteBuffer invoke(Codec codec, ByteBuffer frame, ClassLoader classLoader) {
+        Object decoded;
+        try {
+            decoded = codec.decode(frame, classLoader);
+        } catch (Exception e) {
+            log.error("Deserialization of call failed", e);
+            return codec.encode(new MethodExceptionThrown(null, e));
+        }
+        return codec.encode(invoke(decoded));
+    }
+
+    /**
+     * @param frame Call or batch
+     * @return Result or batch result
+     */
+    public static Object invoke(Object frame) {
+        if (frame instanceof MethodCallBatch) {
+            return ((MethodCallBatch) frame).invoke();
+        }
+        if (frame instanceof MethodCall) {
+            return invoke((MethodCall) frame);
+        }
+        return new MethodExceptionThrown
+                (null, new IllegalArgumentException("Not a call: " + frame));
+    }
+
+    public static MethodCallResult invoke(MethodCall call) {
+        Session session = call.getSession();
+        try {
+            if (call.isOnTarget()) {
+                return call.invoke();
+            }
+            log.error(call + " failed to find its target" + (session == null ? "" : ", session: " + session));
+            return UnknownMethodTarget.INSTANCE;
+        } catch (Exception e) {
+            log.error("Processing of call " + call + " failed" + (session == null ? "" : ", session: " + session), e);
+            return new MethodExceptionThrown(session, e);
+        }
+    }
+
+    private Dispatch() { }
+}
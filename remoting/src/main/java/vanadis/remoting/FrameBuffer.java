@@ -0,0 +1,171 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A growable, heap-backed buffer for encoding frames.  The encoded frame
+ * is handed out as a {@link ByteBuffer} over the buffer's own array, so
+ * transports can write it without copying.
+ */
+final class FrameBuffer {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    FrameBuffer put(byte b) {
+        ensure(1);
+        buffer.put(b);
+        return this;
+    }
+
+    FrameBuffer put(byte[] bytes, int offset, int length) {
+        ensure(length);
+        buffer.put(bytes, offset, length);
+        return this;
+    }
+
+    FrameBuffer putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    FrameBuffer putLong(long value) {
+        ensure(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    FrameBuffer putVarInt(int value) {
+        ensure(5);
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+        return this;
+    }
+
+    FrameBuffer putVarLong(long value) {
+        ensure(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+        return this;
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    void putInt(int position, int value) {
+        buffer.putInt(position, value);
+    }
+
+    ByteBuffer flip() {
+        buffer.flip();
+        return buffer;
+    }
+
+    OutputStream asOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                put(bytes, offset, length);
+            }
+        };
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in " + buffer);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varlong in " + buffer);
+    }
+
+    /**
+     * Read the remaining bytes of the buffer as a stream, without copying
+     * if the buffer has an array.  The buffer is consumed.
+     *
+     * @param buffer Buffer
+     * @return Stream
+     */
+    static InputStream asInputStream(ByteBuffer buffer) {
+        return asInputStream(buffer, buffer.remaining());
+    }
+
+    /**
+     * Read the next length bytes of the buffer as a stream, without copying
+     * if the buffer has an array.  The bytes are consumed from the buffer.
+     *
+     * @param buffer Buffer
+     * @param length Number of bytes
+     * @return Stream
+     */
+    static InputStream asInputStream(ByteBuffer buffer, int length) {
+        if (buffer.hasArray()) {
+            InputStream stream = new ByteArrayInputStream
+                    (buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            return stream;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+}
@@ -113,16 +113,52 @@ public final class MethodCall extends AbstractWireSessionable {
     public void readExternal(ObjectInput stream)
             throws IOException, ClassNotFoundException {
         super.readExternal(stream);
-        this.reference = readReference(stream);
-        this.methodNo = stream.readInt();
-        this.target = resolveTarget(reference);
-        if (target != null) {
-            this.reference.restoreTargetInterface(this.target.getClass().getClassLoader());
+        if (restore(readReference(stream), stream.readInt())) {
             this.args = readArgs(stream);
-            this.method = Accessor.methodNo(this.reference.getTargetInterface(), this.methodNo);
         }
     }
 
+    /**
+     * Restore a call read off the wire, and resolve its target.  The arguments
+     * can only be read if the target is found, since they must be resolved
+     * in the target's class loader.
+     *
+     * @param reference Reference
+     * @param methodNo Method number
+     * @return True iff the target was found
+     */
+    boolean restore(TargetReference<?, ?> reference, int methodNo) {
+        this.reference = reference;
+        this.methodNo = methodNo;
+        this.target = resolveTarget(reference);
+        if (target == null) {
+            return false;
+        }
+        this.reference.restoreTargetInterface(getTargetClassLoader());
+        this.method = Accessor.methodNo(this.reference.getTargetInterface(), this.methodNo);
+        return true;
+    }
+
+    void restoreArgs(Object[] args) {
+        this.args = VarArgs.present(args) ? args : NO_ARGS;
+    }
+
+    void restoreSession(Session session) {
+        setSession(session);
+    }
+
+    ClassLoader getTargetClassLoader() {
+        return target.getClass().getClassLoader();
+    }
+
+    int getMethodNo() {
+        return methodNo;
+    }
+
+    Object[] getArgs() {
+        return args;
+    }
+
     private static TargetReference<?, ?> readReference(ObjectInput stream)
             throws IOException, ClassNotFoundException {
         return (TargetReference<?, ?>) stream.readObject();
@@ -148,8 +184,7 @@ public final class MethodCall extends AbstractWireSessionable {
 
     private Object[] readArgs(ObjectInput ois)
             throws IOException, ClassNotFoundException {
-        ClassLoader classLoader = target.getClass().getClassLoader();
-        ContextClassLoaderSwitch contextSwitch = new ContextClassLoaderSwitch(classLoader);
+        ContextClassLoaderSwitch contextSwitch = new ContextClassLoaderSwitch(getTargetClassLoader());
         try {
             return (Object[]) ois.readObject();
         } finally {
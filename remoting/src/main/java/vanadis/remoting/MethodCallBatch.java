@@ -0,0 +1,140 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+import vanadis.core.reflection.ContextClassLoaderObjectInputStream;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A number of {@link MethodCall method calls}, sent in one frame and
+ * invoked in order on the receiving end.
+ *
+ * <p>Each call is written as a separately serialized chunk, since a
+ * {@link MethodCall} that misses its target on the receiving end leaves
+ * its arguments unread.  One lost target should not garble the rest
+ * of the frame.</p>
+ */
+public final class MethodCallBatch implements Externalizable {
+
+    private static final long serialVersionUID = 6108212564853129718L;
+
+    private static final Logger log = LoggerFactory.getLogger(MethodCallBatch.class);
+
+    private List<MethodCall> calls;
+
+    private List<Exception> failures;
+
+    public MethodCallBatch() {
+    } // Required for Externalizable classes
+
+    public MethodCallBatch(List<MethodCall> calls) {
+        this.calls = Collections.unmodifiableList(Not.empty(calls, "calls"));
+    }
+
+    /**
+     * A batch read off the wire, where some calls may have failed to decode.
+     *
+     * @param calls Calls, null where decoding failed
+     * @param failures Decoding failures, null where decoding succeeded
+     */
+    MethodCallBatch(List<MethodCall> calls, List<Exception> failures) {
+        this.calls = Collections.unmodifiableList(calls);
+        this.failures = failures;
+    }
+
+    public List<MethodCall> getCalls() {
+        return calls;
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * Invoke all calls, in order.
+     *
+     * @return One result per call
+     */
+    public MethodCallBatchResult invoke() {
+        List<MethodCallResult> results = Generic.list(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            Exception failure = failures == null ? null : failures.get(i);
+            results.add(failure == null ? Dispatch.invoke(calls.get(i))
+                    : new MethodExceptionThrown(null, failure));
+        }
+        return new MethodCallBatchResult(results);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput stream)
+            throws IOException {
+        stream.writeInt(calls.size());
+        for (MethodCall call : calls) {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            ObjectOutputStream chunkStream = new ObjectOutputStream(chunk);
+            chunkStream.writeObject(call);
+            chunkStream.close();
+            stream.writeInt(chunk.size());
+            stream.write(chunk.toByteArray());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput stream)
+            throws IOException, ClassNotFoundException {
+        int size = stream.readInt();
+        List<MethodCall> calls = Generic.list(size);
+        List<Exception> failures = null;
+        for (int i = 0; i < size; i++) {
+            byte[] chunk = new byte[stream.readInt()];
+            stream.readFully(chunk);
+            MethodCall call = null;
+            Exception failure = null;
+            try {
+                call = (MethodCall) new ContextClassLoaderObjectInputStream
+                        (new ByteArrayInputStream(chunk)).readObject();
+            } catch (Exception e) {
+                log.error("Deserialization of call " + i + "/" + size + " failed", e);
+                failure = e;
+            }
+            if (failure != null && failures == null) {
+                failures = Generic.list(size);
+                for (int j = 0; j < i; j++) {
+                    failures.add(null);
+                }
+            }
+            if (failures != null) {
+                failures.add(failure);
+            }
+            calls.add(call);
+        }
+        this.calls = Collections.unmodifiableList(calls);
+        this.failures = failures;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "calls", calls);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of a {@link MethodCallBatch}, in call order.
+ */
+public final class MethodCallBatchResult implements Externalizable {
+
+    private static final long serialVersionUID = -1538950357233860471L;
+
+    private List<MethodCallResult> results;
+
+    public MethodCallBatchResult() {
+    } // Required for Externalizable classes
+
+    public MethodCallBatchResult(List<MethodCallResult> results) {
+        this.results = Collections.unmodifiableList(Not.nil(results, "results"));
+    }
+
+    public List<MethodCallResult> getResults() {
+        return results;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput stream)
+            throws IOException {
+        stream.writeInt(results.size());
+        for (MethodCallResult result : results) {
+            stream.writeObject(result);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput stream)
+            throws IOException, ClassNotFoundException {
+        int size = stream.readInt();
+        List<MethodCallResult> results = Generic.list(size);
+        for (int i = 0; i < size; i++) {
+            results.add((MethodCallResult) stream.readObject());
+        }
+        this.results = Collections.unmodifiableList(results);
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "results", results);
+    }
+}
@@ -17,7 +17,10 @@ package vanadis.remoting;
 
 import vanadis.core.collections.Generic;
 import vanadis.common.io.Location;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.Proxies;
 import vanadis.core.lang.ToString;
+import vanadis.services.remoting.AsyncClient;
 import vanadis.services.remoting.RemoteClientFactory;
 import vanadis.services.remoting.Remoting;
 import vanadis.services.remoting.RemotingInfrastructure;
@@ -91,6 +94,17 @@ public class RemotingImpl implements Remoting {
         }
     }
 
+    @Override
+    @SuppressWarnings({"unchecked"})
+    public <T> AsyncClient<T> async(T client) {
+        AbstractHandler handler = Proxies.handler(AbstractHandler.class, Not.nil(client, "client"));
+        if (handler == null) {
+            throw new IllegalArgumentException(this + " did not create client " + client);
+        }
+        Class<T> type = (Class<T>) handler.getHandle().getReference().getTargetInterface();
+        return new AsyncClientImpl<T>(handler, client.getClass().getClassLoader(), type, null);
+    }
+
     @Override
     public boolean isEndPoint() {
         return infrastructure != null && infrastructure.isEndPoint();
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import vanadis.core.lang.ContextClassLoaderSwitch;
+import vanadis.core.lang.ToString;
+import vanadis.core.reflection.ContextClassLoaderObjectInputStream;
+import vanadis.services.remoting.RemotingException;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Plain Java serialization of frames.  Frames are read with the class loader
+ * of the remoting classes, which may not be visible to the caller's; only the
+ * values of results are read with the caller's class loader.
+ */
+final class SerializationCodec implements Codec {
+
+    static final String NAME = "application/x-java-serialized-object";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ByteBuffer encode(Object frame) {
+        FrameBuffer buffer = new FrameBuffer();
+        try {
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(buffer.asOutputStream());
+            objectOutputStream.writeObject(frame);
+            objectOutputStream.close();
+        } catch (IOException e) {
+            throw new RemotingException(this + " failed to write " + frame, e);
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer, ClassLoader classLoader) {
+        ContextClassLoaderSwitch classLoaderSwitch = new ContextClassLoaderSwitch(getClass().getClassLoader());
+        try {
+            MethodCallResult.setThreadLocalClassLoader(classLoader);
+            try {
+                ObjectInputStream objectInputStream =
+                        new ContextClassLoaderObjectInputStream(FrameBuffer.asInputStream(buffer));
+                return objectInputStream.readObject();
+            } catch (Exception e) {
+                throw new RemotingException(this + " failed to read frame", e);
+            } finally {
+                MethodCallResult.setThreadLocalClassLoader(null);
+            }
+        } finally {
+            classLoaderSwitch.revert();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, NAME);
+    }
+}
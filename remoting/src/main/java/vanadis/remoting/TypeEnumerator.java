@@ -16,16 +16,23 @@
 package vanadis.remoting;
 
 import vanadis.core.collections.Generic;
+import vanadis.core.lang.AccessibleHelper;
 import vanadis.core.lang.EqHc;
 import vanadis.core.lang.ToString;
 
 import java.lang.reflect.Method;
 import java.util.*;
 
+/**
+ * Numbers the methods of an interface, in an order that both ends of a
+ * connection agree on.  Immutable once built, so lookups need no locking.
+ */
 class TypeEnumerator {
 
     private final Method[] methods;
 
+    private final Map<Method, Integer> indexes;
+
     private final String type;
 
     private final int length;
@@ -43,9 +50,20 @@ class TypeEnumerator {
     private static Method[] sortedMethodList(Set<Method> set) {
         List<Method> list = Generic.list(set);
         Collections.sort(list, new MethodComparator());
+        for (Method method : list) {
+            accessible(method);
+        }
         return list.toArray(new Method[list.size()]);
     }
 
+    private static void accessible(Method method) {
+        try {
+            AccessibleHelper.openSesame(method);
+        } catch (SecurityException ignore) {
+            // Invocation will do the access checks, then
+        }
+    }
+
     private static Collection<Method> methodsOf(Class<?> type) {
         return Arrays.asList(type.getMethods());
     }
@@ -54,6 +72,15 @@ class TypeEnumerator {
         this.type = type.getName();
         this.methods = sortedMethodList(methodSet(type));
         this.length = methods.length;
+        this.indexes = indexes(methods);
+    }
+
+    private static Map<Method, Integer> indexes(Method[] methods) {
+        Map<Method, Integer> indexes = Generic.map();
+        for (int i = 0; i < methods.length; i++) {
+            indexes.put(methods[i], i);
+        }
+        return indexes;
     }
 
     private static Set<Method> methodSet(Class<?> type) {
@@ -64,12 +91,11 @@ class TypeEnumerator {
     }
 
     public int indexOf(Method method) {
-        for (int i = 0; i < length; i++) {
-            if (methods[i].equals(method)) {
-                return i;
-            }
+        Integer index = indexes.get(method);
+        if (index == null) {
+            throw new IllegalArgumentException("Method not enumerated: " + method);
         }
-        throw new IllegalArgumentException("Method not enumerated: " + method);
+        return index;
     }
 
     public Method method(int index) {
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vanadis.common.io.Location;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Proxies;
+import vanadis.services.remoting.AsyncClient;
+import vanadis.services.remoting.TargetHandle;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+public class AsyncTest extends Assert {
+
+    public interface Adder {
+
+        int add(int x, int y);
+
+        void fail();
+    }
+
+    public static class AdderImpl implements Adder {
+
+        @Override
+        public int add(int x, int y) {
+            return x + y;
+        }
+
+        @Override
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private static class GatedHandler extends AbstractHandler {
+
+        private final List<Integer> frames = Generic.synchList();
+
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        GatedHandler(String key, Executor executor) {
+            super(null, new TargetHandle<Adder>(new Location(1),
+                                                new MapTargetReference<Adder>(key, Adder.class)),
+                  Batching.NONE, executor);
+        }
+
+        @Override
+        protected MethodCallResult invoke(MethodCall methodCall) {
+            await();
+            frames.add(1);
+            return (MethodCallResult) exchange(methodCall);
+        }
+
+        @Override
+        protected List<MethodCallResult> invoke(MethodCallBatch batch) {
+            await();
+            frames.add(batch.size());
+            return ((MethodCallBatchResult) exchange(batch)).getResults();
+        }
+
+        private static Object exchange(Object frame) {
+            ClassLoader classLoader = AsyncTest.class.getClassLoader();
+            return Codecs.COMPACT.decode(Dispatch.invoke(Codecs.COMPACT, Codecs.COMPACT.encode(frame), classLoader),
+                                         classLoader);
+        }
+
+        private void await() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void manyInFlight()
+            throws Exception {
+        GatedHandler handler = handler("manyInFlight");
+        AsyncClient<Adder> async = async(handler);
+        List<Future<Integer>> futures = Generic.list();
+        for (int i = 0; i < 200; i++) {
+            futures.add(async.future(async.call().add(i, 1)));
+        }
+        assertFalse(futures.get(0).isDone());
+        handler.gate.countDown();
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i + 1, futures.get(i).get(10, TimeUnit.SECONDS).intValue());
+        }
+        int sent = 0;
+        for (Integer frame : handler.frames) {
+            sent += frame;
+        }
+        assertEquals(200, sent);
+        assertTrue(handler.frames.toString(), handler.frames.size() < 200);
+    }
+
+    @Test
+    public void exception()
+            throws Exception {
+        GatedHandler handler = handler("exception");
+        handler.gate.countDown();
+        AsyncClient<Adder> async = async(handler);
+        async.call().fail();
+        try {
+            async.future().get(10, TimeUnit.SECONDS);
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void cancelPending()
+            throws Exception {
+        GatedHandler handler = handler("cancelPending");
+        AsyncClient<Adder> async = async(handler);
+        Future<Integer> first = async.future(async.call().add(1, 1));
+        Future<Integer> second = async.future(async.call().add(2, 2));
+        assertTrue(second.cancel(false));
+        assertTrue(second.isCancelled());
+        handler.gate.countDown();
+        assertEquals(2, first.get(10, TimeUnit.SECONDS).intValue());
+        try {
+            second.get();
+            fail("Expected cancellation");
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void timeout()
+            throws Exception {
+        GatedHandler handler = handler("timeout");
+        AsyncClient<Adder> async = async(handler).withTimeout(TimeSpan.millis(50));
+        Future<Integer> future = async.future(async.call().add(1, 1));
+        try {
+            future.get();
+            fail("Expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(future.isCancelled());
+        handler.gate.countDown();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noCall() {
+        async(handler("noCall")).future();
+    }
+
+    private GatedHandler handler(String key) {
+        Accessor.getSingleton().registerAccessPoint(Generic.map(key, new AdderImpl()));
+        return new GatedHandler(key, executor);
+    }
+
+    private static AsyncClient<Adder> async(GatedHandler handler) {
+        Adder client = Proxies.genericProxy(AsyncTest.class.getClassLoader(), Adder.class, handler);
+        return new RemotingImpl(null, null).async(client);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import vanadis.common.io.Location;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Proxies;
+import vanadis.core.reflection.ContextClassLoaderObjectInputStream;
+import vanadis.services.remoting.TargetHandle;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchingTest extends Assert {
+
+    public interface Counter {
+
+        void add(int value);
+
+        int total();
+    }
+
+    public static class CounterImpl implements Counter {
+
+        private final List<Integer> values = Generic.list();
+
+        @Override
+        public void add(int value) {
+            values.add(value);
+        }
+
+        @Override
+        public int total() {
+            int total = 0;
+            for (Integer value : values) {
+                total += value;
+            }
+            return total;
+        }
+    }
+
+    private static class FrameCountingHandler extends AbstractHandler {
+
+        private final List<Integer> frames = Generic.list();
+
+        FrameCountingHandler(String key, Batching batching) {
+            super(null, new TargetHandle<Counter>(new Location(1),
+                                                  new MapTargetReference<Counter>(key, Counter.class)),
+                  batching);
+        }
+
+        @Override
+        protected MethodCallResult invoke(MethodCall methodCall) {
+            frames.add(1);
+            return roundTrip(methodCall).invoke();
+        }
+
+        @Override
+        protected List<MethodCallResult> invoke(MethodCallBatch batch) {
+            frames.add(batch.size());
+            return roundTrip(batch).invoke().getResults();
+        }
+    }
+
+    @Test
+    public void sendQueuedWithCall() {
+        CounterImpl target = register("sendQueuedWithCall");
+        FrameCountingHandler handler = new FrameCountingHandler("sendQueuedWithCall", new Batching(10, null, null));
+        Counter counter = proxy(handler);
+        counter.add(1);
+        counter.add(2);
+        assertEquals(0, target.total());
+        assertTrue(handler.frames.isEmpty());
+        assertEquals(3, counter.total());
+        assertEquals(Arrays.asList(3), handler.frames);
+    }
+
+    @Test
+    public void sendWhenFull() {
+        CounterImpl target = register("sendWhenFull");
+        FrameCountingHandler handler = new FrameCountingHandler("sendWhenFull", new Batching(2, null, null));
+        Counter counter = proxy(handler);
+        counter.add(1);
+        counter.add(2);
+        counter.add(3);
+        assertEquals(3, target.total());
+        assertEquals(Arrays.asList(2), handler.frames);
+        handler.flush();
+        assertEquals(6, target.total());
+        assertEquals(Arrays.asList(2, 1), handler.frames);
+    }
+
+    @Test
+    public void noBatching() {
+        CounterImpl target = register("noBatching");
+        FrameCountingHandler handler = new FrameCountingHandler("noBatching", Batching.NONE);
+        Counter counter = proxy(handler);
+        counter.add(1);
+        counter.add(2);
+        assertEquals(3, target.total());
+        assertEquals(3, counter.total());
+        assertEquals(Arrays.asList(1, 1, 1), handler.frames);
+    }
+
+    private static CounterImpl register(String key) {
+        CounterImpl target = new CounterImpl();
+        Accessor.getSingleton().registerAccessPoint(Generic.map(key, target));
+        return target;
+    }
+
+    private static Counter proxy(FrameCountingHandler handler) {
+        return Proxies.genericProxy(BatchingTest.class.getClassLoader(), Counter.class, handler);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static <T> T roundTrip(T object) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream outputStream = new ObjectOutputStream(bytes);
+            outputStream.writeObject(object);
+            outputStream.close();
+            return (T) new ContextClassLoaderObjectInputStream
+                    (new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to round-trip " + object, e);
+        }
+    }
+}
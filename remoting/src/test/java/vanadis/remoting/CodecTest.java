@@ -0,0 +1,209 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.remoting;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import vanadis.common.io.Location;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Proxies;
+import vanadis.services.remoting.TargetHandle;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class CodecTest extends Assert {
+
+    public interface Echo {
+
+        int add(int x, long y, short z);
+
+        double scale(double value, float factor);
+
+        String concat(String string, char c, byte b);
+
+        byte[] reverse(byte[] bytes);
+
+        Date copy(Date date);
+
+        Object identity(Object object);
+
+        boolean not(boolean value);
+
+        void record(String value);
+
+        String fail(String message);
+    }
+
+    public static class EchoImpl implements Echo {
+
+        private final List<String> recorded = Generic.list();
+
+        @Override
+        public int add(int x, long y, short z) {
+            return (int) (x + y + z);
+        }
+
+        @Override
+        public double scale(double value, float factor) {
+            return value * factor;
+        }
+
+        @Override
+        public String concat(String string, char c, byte b) {
+            return string + c + b;
+        }
+
+        @Override
+        public byte[] reverse(byte[] bytes) {
+            byte[] reversed = new byte[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                reversed[i] = bytes[bytes.length - 1 - i];
+            }
+            return reversed;
+        }
+
+        @Override
+        public Date copy(Date date) {
+            return new Date(date.getTime());
+        }
+
+        @Override
+        public Object identity(Object object) {
+            return object;
+        }
+
+        @Override
+        public boolean not(boolean value) {
+            return !value;
+        }
+
+        @Override
+        public void record(String value) {
+            recorded.add(value);
+        }
+
+        @Override
+        public String fail(String message) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static class CodecHandler extends AbstractHandler {
+
+        private final Codec codec;
+
+        private final List<Integer> frameSizes = Generic.list();
+
+        CodecHandler(String key, Codec codec, Batching batching) {
+            super(null, new TargetHandle<Echo>(new Location(1),
+                                               new MapTargetReference<Echo>(key, Echo.class)),
+                  batching);
+            this.codec = codec;
+        }
+
+        @Override
+        protected MethodCallResult invoke(MethodCall methodCall) {
+            return (MethodCallResult) exchange(methodCall);
+        }
+
+        @Override
+        protected List<MethodCallResult> invoke(MethodCallBatch batch) {
+            return ((MethodCallBatchResult) exchange(batch)).getResults();
+        }
+
+        private Object exchange(Object frame) {
+            ClassLoader classLoader = CodecTest.class.getClassLoader();
+            ByteBuffer request = codec.encode(frame);
+            frameSizes.add(request.remaining());
+            return codec.decode(Dispatch.invoke(codec, request, classLoader), classLoader);
+        }
+    }
+
+    @Test
+    public void compactRoundTrip() {
+        roundTrip(Codecs.COMPACT);
+    }
+
+    @Test
+    public void serializationRoundTrip() {
+        roundTrip(Codecs.SERIALIZATION);
+    }
+
+    @Test
+    public void compactBatch() {
+        EchoImpl target = register("compactBatch");
+        CodecHandler handler = new CodecHandler("compactBatch", Codecs.COMPACT, new Batching(10, null, null));
+        Echo echo = proxy(handler);
+        echo.record("a");
+        echo.record("");
+        assertTrue(target.recorded.isEmpty());
+        assertEquals("b!1", echo.concat("b", '!', (byte) 1));
+        assertEquals(Arrays.asList("a", ""), target.recorded);
+        assertEquals(1, handler.frameSizes.size());
+    }
+
+    @Test
+    public void compactIsSmaller() {
+        register("compactIsSmaller");
+        CodecHandler compact = new CodecHandler("compactIsSmaller", Codecs.COMPACT, Batching.NONE);
+        CodecHandler serialization = new CodecHandler("compactIsSmaller", Codecs.SERIALIZATION, Batching.NONE);
+        proxy(compact).add(1, 2L, (short) 3);
+        proxy(serialization).add(1, 2L, (short) 3);
+        assertTrue(compact.frameSizes + " vs. " + serialization.frameSizes,
+                   compact.frameSizes.get(0) < serialization.frameSizes.get(0));
+    }
+
+    @Test
+    public void lookupByName() {
+        assertSame(Codecs.COMPACT, Codecs.get("compact"));
+        assertSame(Codecs.COMPACT, Codecs.get(Codecs.COMPACT.getName()));
+        assertSame(Codecs.SERIALIZATION, Codecs.get("serialization"));
+        assertNull(Codecs.get("json"));
+        assertSame(Codecs.SERIALIZATION, Codecs.getOrSerialization(null));
+    }
+
+    private static void roundTrip(Codec codec) {
+        String key = "roundTrip-" + codec.getName();
+        register(key);
+        Echo echo = proxy(new CodecHandler(key, codec, Batching.NONE));
+        assertEquals(Integer.MAX_VALUE - 2, echo.add(Integer.MIN_VALUE, 0xFFFFFFFEL, (short) -1));
+        assertEquals(-3.0, echo.scale(1.5, -2.0f));
+        assertEquals("xæ-7", echo.concat("x", 'æ', (byte) -7));
+        assertTrue(Arrays.equals(new byte[]{3, 2, 1}, echo.reverse(new byte[]{1, 2, 3})));
+        assertEquals(new Date(42L), echo.copy(new Date(42L)));
+        assertEquals(Arrays.asList(1, null), echo.identity(Arrays.asList(1, null)));
+        assertFalse(echo.not(true));
+        try {
+            echo.fail("expected");
+            fail("Expected failure");
+        } catch (IllegalStateException e) {
+            assertEquals("expected", e.getMessage());
+        }
+    }
+
+    private static EchoImpl register(String key) {
+        EchoImpl target = new EchoImpl();
+        Accessor.getSingleton().registerAccessPoint(Generic.map(key, target));
+        return target;
+    }
+
+    private static Echo proxy(CodecHandler handler) {
+        return Proxies.genericProxy(CodecTest.class.getClassLoader(), Echo.class, handler);
+    }
+}
@@ -21,6 +21,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Map;
 import java.util.SortedMap;
 
@@ -35,6 +37,26 @@ public class TypeEnumerationTest extends Assert {
         assertEquals(method, Accessor.methodNo(SortedMap.class, index));
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownMethod() throws NoSuchMethodException {
+        Accessor.indexOf(SortedMap.class, Object.class.getMethod("toString"));
+    }
+
+    @Test
+    public void enumerateOnce() {
+        assertSame(Accessor.enumerate(SortedMap.class), Accessor.enumerate(SortedMap.class));
+    }
+
+    @Test
+    public void enumeratePerClassLoader() throws Exception {
+        URL classes = TestTarget.class.getProtectionDomain().getCodeSource().getLocation();
+        Class<?> otherTestTarget = new URLClassLoader(new URL[]{classes}, null).loadClass(TestTarget.class.getName());
+        assertNotSame(TestTarget.class, otherTestTarget);
+        assertNotSame(Accessor.enumerate(TestTarget.class), Accessor.enumerate(otherTestTarget));
+        Method otherHello = otherTestTarget.getMethod("hello", String.class, boolean.class);
+        assertEquals(otherHello, Accessor.methodNo(otherTestTarget, Accessor.indexOf(otherTestTarget, otherHello)));
+    }
+
     @Before
     public void setUp() throws NoSuchMethodException {
         method = Map.class.getMethod("isEmpty");
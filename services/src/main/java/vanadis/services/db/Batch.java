@@ -0,0 +1,58 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.services.db;
+
+/**
+ * Parameter sets queued for one prepared statement, and executed in batches.
+ * Obtained from {@link Connections#batch(java.sql.Connection, String, int)}.
+ */
+public interface Batch {
+
+    /**
+     * Queue a parameter set.  When the batch size is reached, the queued
+     * sets are executed.
+     *
+     * @param parameters Parameters, in statement order
+     * @return this
+     * @throws DbException If the batch could not be executed
+     */
+    Batch add(Object... parameters);
+
+    /**
+     * Execute the queued parameter sets.
+     *
+     * @return Number of parameter sets executed
+     * @throws DbException If the batch could not be executed
+     */
+    int flush();
+
+    /**
+     * @return Number of parameter sets queued, but not executed
+     */
+    int getPending();
+
+    /**
+     * @return Number of parameter sets executed so far
+     */
+    long getExecuted();
+
+    /**
+     * Execute the queued parameter sets, and release the statement.
+     *
+     * @throws DbException If the batch could not be executed
+     */
+    void close();
+}
@@ -17,6 +17,7 @@
 package vanadis.services.db;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 
 public interface Connections {
 
@@ -25,4 +26,27 @@ public interface Connections {
     Connection get(String user, String passwd);
 
     void drop(Connection connection);
+
+    /**
+     * Prepare a statement on a connection from {@link #get()}.  Statements are
+     * cached with the connection, or closed when it is {@link #drop(Connection) dropped},
+     * and should not be closed by the caller.
+     *
+     * @param connection Connection
+     * @param sql SQL
+     * @return Statement, with parameters and batch cleared
+     * @throws DbException If the statement could not be prepared
+     */
+    PreparedStatement prepare(Connection connection, String sql);
+
+    /**
+     * Queue parameter sets for a statement, executing them in batches.
+     *
+     * @param connection Connection
+     * @param sql SQL
+     * @param batchSize Number of parameter sets per batch
+     * @return Batch, which should be {@link Batch#close() closed} when done
+     * @throws DbException If the statement could not be prepared
+     */
+    Batch batch(Connection connection, String sql, int batchSize);
 }
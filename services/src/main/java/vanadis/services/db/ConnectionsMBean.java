@@ -23,4 +23,16 @@ public interface ConnectionsMBean {
     String update(String sql);
 
     String command(String sql);
-}
\ No newline at end of file
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    long getBorrowCount();
+
+    long getWaitCount();
+
+    long getAverageBorrowMicros();
+
+    long getMaxBorrowMicros();
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.services.db;
+
+import vanadis.common.time.TimeSpan;
+import vanadis.core.lang.ToString;
+
+/**
+ * Settings for {@link PooledConnections}.  Each user gets a pool of its own,
+ * and the settings apply to each of them.
+ */
+public final class PoolSettings {
+
+    private static final int DEFAULT_MAX_ACTIVE = 10;
+
+    private static final TimeSpan DEFAULT_BORROW_TIMEOUT = TimeSpan.HALF_MINUTE;
+
+    private static final TimeSpan DEFAULT_IDLE_TIMEOUT = TimeSpan.minutes(5);
+
+    private static final TimeSpan DEFAULT_MAX_LIFETIME = TimeSpan.HALF_HOUR;
+
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    public static final PoolSettings DEFAULT = new PoolSettings(0, null, null, null, null);
+
+    private final int maxActive;
+
+    private final TimeSpan borrowTimeout;
+
+    private final TimeSpan idleTimeout;
+
+    private final TimeSpan maxLifetime;
+
+    private final String validationQuery;
+
+    private final int statementCacheSize;
+
+    /**
+     * @param maxActive Max number of connections handed out at the same time, per user
+     * @param borrowTimeout How long to wait for a connection when all are handed out
+     * @param idleTimeout Idle connections are closed after this long
+     * @param maxLifetime Connections are closed after this long, regardless of use
+     * @param validationQuery Query used to check an idle connection before it is
+     *                        handed out again, or null to just check that it is open
+     */
+    public PoolSettings(int maxActive, TimeSpan borrowTimeout, TimeSpan idleTimeout, TimeSpan maxLifetime,
+                        String validationQuery) {
+        this(maxActive, borrowTimeout, idleTimeout, maxLifetime, validationQuery, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxActive Max number of connections handed out at the same time, per user
+     * @param borrowTimeout How long to wait for a connection when all are handed out
+     * @param idleTimeout Idle connections are closed after this long
+     * @param maxLifetime Connections are closed after this long, regardless of use
+     * @param validationQuery Query used to check an idle connection before it is
+     *                        handed out again, or null to just check that it is open
+     * @param statementCacheSize Max number of prepared statements kept per connection,
+     *                           0 to not keep any
+     */
+    public PoolSettings(int maxActive, TimeSpan borrowTimeout, TimeSpan idleTimeout, TimeSpan maxLifetime,
+                        String validationQuery, int statementCacheSize) {
+        this.maxActive = maxActive < 1 ? DEFAULT_MAX_ACTIVE : maxActive;
+        this.borrowTimeout = borrowTimeout == null ? DEFAULT_BORROW_TIMEOUT : borrowTimeout;
+        this.idleTimeout = idleTimeout == null ? DEFAULT_IDLE_TIMEOUT : idleTimeout;
+        this.maxLifetime = maxLifetime == null ? DEFAULT_MAX_LIFETIME : maxLifetime;
+        this.validationQuery = validationQuery == null || validationQuery.trim().length() == 0
+                ? null
+                : validationQuery;
+        this.statementCacheSize = statementCacheSize < 0 ? 0 : statementCacheSize;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public TimeSpan getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public TimeSpan getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public TimeSpan getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this,
+                           "maxActive", maxActive,
+                           "borrowTimeout", borrowTimeout,
+                           "idleTimeout", idleTimeout,
+                           "maxLifetime", maxLifetime,
+                           "validationQuery", validationQuery,
+                           "statementCacheSize", statementCacheSize);
+    }
+}
@@ -0,0 +1,567 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.services.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vanadis.common.time.TimeSpan;
+import vanadis.core.collections.Generic;
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <P>{@link Connections} that keep connections open between uses.  Subclasses
+ * only need to know how to {@link #open(String, String) open} a connection.</P>
+ *
+ * <P>Each user gets a pool of its own, bounded by
+ * {@link PoolSettings#getMaxActive() max active} connections.  When all are handed out,
+ * {@link #get(String, String)} waits up to the
+ * {@link PoolSettings#getBorrowTimeout() borrow timeout} for one to be
+ * {@link #drop(Connection) dropped}.  Idle connections are validated before
+ * they are handed out again.  A background evictor closes them when they have
+ * been idle too long or have outlived their max lifetime, until the pool is
+ * {@link #close() closed}.</P>
+ *
+ * <P>Statements {@link #prepare(Connection, String) prepared} on a pooled connection
+ * are kept with it, up to the {@link PoolSettings#getStatementCacheSize() cache size},
+ * least recently used statements going first.  With no cache, they are closed
+ * when the connection is dropped.</P>
+ */
+public abstract class PooledConnections implements Connections {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledConnections.class);
+
+    private static final long MIN_EVICTION_INTERVAL_MS = 1000L;
+
+    private final String user;
+
+    private final String passwd;
+
+    private final PoolSettings settings;
+
+    private final long idleTimeoutMs;
+
+    private final long maxLifetimeMs;
+
+    private final ConcurrentMap<String, UserPool> pools = Generic.concurrentHashMap();
+
+    private final ConcurrentMap<Connection, Pooled> borrowed = Generic.concurrentHashMap();
+
+    private final AtomicLong borrows = new AtomicLong();
+
+    private final AtomicLong waits = new AtomicLong();
+
+    private final AtomicLong borrowNanos = new AtomicLong();
+
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    private final AtomicLong opened = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong statementHits = new AtomicLong();
+
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    private final ScheduledExecutorService evictor;
+
+    private volatile boolean closed;
+
+    protected PooledConnections(String user, String passwd, PoolSettings settings) {
+        this.user = user;
+        this.passwd = passwd;
+        this.settings = settings == null ? PoolSettings.DEFAULT : settings;
+        this.idleTimeoutMs = ms(this.settings.getIdleTimeout());
+        this.maxLifetimeMs = ms(this.settings.getMaxLifetime());
+        this.evictor = evictor(Math.min(idleTimeoutMs, maxLifetimeMs));
+    }
+
+    /**
+     * Open a new physical connection.
+     *
+     * @param user User
+     * @param passwd Password
+     * @return New connection
+     * @throws DbException If the connection could not be opened
+     */
+    protected abstract Connection open(String user, String passwd);
+
+    @Override
+    public Connection get() {
+        return get(user, passwd);
+    }
+
+    @Override
+    public Connection get(String user, String passwd) {
+        if (closed) {
+            throw new DbException(this + " is closed");
+        }
+        long start = System.nanoTime();
+        Pooled pooled = pool(user, passwd).borrow();
+        borrowed.put(pooled.connection, pooled);
+        borrowed(System.nanoTime() - start);
+        return pooled.connection;
+    }
+
+    /**
+     * Return a connection to its pool.  Connections not handed out by this
+     * instance are closed.
+     *
+     * @param connection Connection
+     */
+    @Override
+    public void drop(Connection connection) {
+        Not.nil(connection, "connection");
+        Pooled pooled = borrowed.remove(connection);
+        if (pooled == null) {
+            close(connection);
+        } else {
+            pooled.pool.release(pooled);
+        }
+    }
+
+    @Override
+    public PreparedStatement prepare(Connection connection, String sql) {
+        Not.nil(connection, "connection");
+        Not.nil(sql, "sql");
+        Pooled pooled = borrowed.get(connection);
+        if (pooled == null) {
+            throw new DbException(this + " did not hand out " + connection + ", cannot prepare " + sql);
+        }
+        StatementCache statements = pooled.statements;
+        try {
+            if (statements == null) {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                pooled.uncached.add(statement);
+                return statement;
+            }
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+                statementMisses.incrementAndGet();
+            } else {
+                statement.clearParameters();
+                statement.clearBatch();
+                statementHits.incrementAndGet();
+            }
+            return statement;
+        } catch (SQLException e) {
+            throw new DbException(this + " failed to prepare " + sql, e);
+        }
+    }
+
+    @Override
+    public Batch batch(Connection connection, String sql, int batchSize) {
+        PreparedStatement statement = prepare(connection, sql);
+        return new StatementBatch(statement, batchSize, borrowed.get(connection).statements == null);
+    }
+
+    /**
+     * Close connections that have been idle too long, or have outlived their
+     * max lifetime.
+     *
+     * @return Number of connections closed
+     */
+    public int evictIdle() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (UserPool pool : pools.values()) {
+            evicted += pool.evict(now);
+        }
+        return evicted;
+    }
+
+    /**
+     * Close all idle connections.  Connections handed out are closed when
+     * they are dropped.
+     */
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        for (UserPool pool : pools.values()) {
+            pool.drain();
+        }
+        log.info(this + " closed");
+    }
+
+    public PoolSettings getSettings() {
+        return settings;
+    }
+
+    public int getActiveConnections() {
+        int active = 0;
+        for (UserPool pool : pools.values()) {
+            active += pool.active.get();
+        }
+        return active;
+    }
+
+    public int getIdleConnections() {
+        int idle = 0;
+        for (UserPool pool : pools.values()) {
+            idle += pool.idleCount.get();
+        }
+        return idle;
+    }
+
+    public long getBorrowCount() {
+        return borrows.get();
+    }
+
+    /**
+     * @return Number of borrows that had to wait for a connection to be dropped
+     */
+    public long getWaitCount() {
+        return waits.get();
+    }
+
+    public long getAverageBorrowMicros() {
+        long count = borrows.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(borrowNanos.get() / count);
+    }
+
+    public long getMaxBorrowMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxBorrowNanos.get());
+    }
+
+    public long getOpenedConnections() {
+        return opened.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getStatementHits() {
+        return statementHits.get();
+    }
+
+    public long getStatementMisses() {
+        return statementMisses.get();
+    }
+
+    private UserPool pool(String user, String passwd) {
+        String key = (user == null ? "" : user) + '\u0000' + (passwd == null ? "" : passwd);
+        UserPool pool = pools.get(key);
+        if (pool == null) {
+            UserPool newPool = new UserPool(user, passwd);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    private void borrowed(long nanos) {
+        borrows.incrementAndGet();
+        borrowNanos.addAndGet(nanos);
+        long max = maxBorrowNanos.get();
+        while (nanos > max && !maxBorrowNanos.compareAndSet(max, nanos)) {
+            max = maxBorrowNanos.get();
+        }
+    }
+
+    /**
+     * @param expiryMs Shortest time a connection may be kept
+     * @return Evictor running at half the expiry, or null if connections never expire
+     */
+    private ScheduledExecutorService evictor(long expiryMs) {
+        if (expiryMs == Long.MAX_VALUE) {
+            return null;
+        }
+        long intervalMs = Math.max(MIN_EVICTION_INTERVAL_MS, expiryMs / 2);
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PooledConnections-Evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evictIdle();
+                } catch (RuntimeException e) {
+                    log.warn(PooledConnections.this + " failed to evict idle connections", e);
+                }
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        return evictor;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            String validationQuery = settings.getValidationQuery();
+            if (validationQuery != null) {
+                Statement statement = connection.createStatement();
+                try {
+                    statement.execute(validationQuery);
+                } finally {
+                    statement.close();
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            log.debug(this + " found invalid connection " + connection, e);
+            return false;
+        }
+    }
+
+    private boolean reset(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            log.debug(this + " failed to reset " + connection, e);
+            return false;
+        }
+    }
+
+    private void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (Exception e) {
+            log.warn(this + " failed to close " + connection, e);
+        }
+    }
+
+    private static void close(Statement statement) {
+        try {
+            statement.close();
+        } catch (Exception e) {
+            log.warn("Failed to close " + statement, e);
+        }
+    }
+
+    private static long ms(TimeSpan timeSpan) {
+        return timeSpan.isForever() ? Long.MAX_VALUE : timeSpan.msTime();
+    }
+
+    private final class UserPool {
+
+        private final String user;
+
+        private final String passwd;
+
+        private final Semaphore permits = new Semaphore(settings.getMaxActive());
+
+        private final Queue<Pooled> idle = new ConcurrentLinkedQueue<Pooled>();
+
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private UserPool(String user, String passwd) {
+            this.user = user;
+            this.passwd = passwd;
+        }
+
+        private Pooled borrow() {
+            acquire();
+            boolean borrowed = false;
+            try {
+                Pooled pooled = reuse();
+                if (pooled == null) {
+                    pooled = new Pooled(this, open(user, passwd));
+                    opened.incrementAndGet();
+                }
+                active.incrementAndGet();
+                borrowed = true;
+                return pooled;
+            } finally {
+                if (!borrowed) {
+                    permits.release();
+                }
+            }
+        }
+
+        private void acquire() {
+            if (permits.tryAcquire()) {
+                return;
+            }
+            waits.incrementAndGet();
+            TimeSpan timeout = settings.getBorrowTimeout();
+            try {
+                if (timeout.isForever()) {
+                    permits.acquire();
+                } else if (!permits.tryAcquire(timeout.msTime(), TimeUnit.MILLISECONDS)) {
+                    throw new DbException(PooledConnections.this + " timed out after " + timeout +
+                            " waiting for a connection for " + user);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException(PooledConnections.this + " was interrupted waiting for a connection", e);
+            }
+        }
+
+        private Pooled reuse() {
+            for (Pooled pooled = idle.poll(); pooled != null; pooled = idle.poll()) {
+                idleCount.decrementAndGet();
+                if (pooled.isExpired(System.currentTimeMillis()) || !isValid(pooled.connection)) {
+                    evict(pooled);
+                } else {
+                    return pooled;
+                }
+            }
+            return null;
+        }
+
+        private void release(Pooled pooled) {
+            active.decrementAndGet();
+            pooled.closeUncached();
+            try {
+                if (closed || pooled.isOutlived(System.currentTimeMillis()) || !reset(pooled.connection)) {
+                    close(pooled.connection);
+                } else {
+                    pooled.lastUsed = System.currentTimeMillis();
+                    idle.offer(pooled);
+                    idleCount.incrementAndGet();
+                    if (closed) {
+                        drain();
+                    }
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        private int evict(long now) {
+            int evicted = 0;
+            for (Pooled pooled : idle) {
+                if (pooled.isExpired(now) && idle.remove(pooled)) {
+                    idleCount.decrementAndGet();
+                    evict(pooled);
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        private void evict(Pooled pooled) {
+            evictions.incrementAndGet();
+            close(pooled.connection);
+        }
+
+        private void drain() {
+            for (Pooled pooled = idle.poll(); pooled != null; pooled = idle.poll()) {
+                idleCount.decrementAndGet();
+                close(pooled.connection);
+            }
+        }
+    }
+
+    private final class Pooled {
+
+        private final UserPool pool;
+
+        private final Connection connection;
+
+        private final long created = System.currentTimeMillis();
+
+        private volatile long lastUsed = created;
+
+        private final StatementCache statements;
+
+        private final List<Statement> uncached = Generic.list();
+
+        private Pooled(UserPool pool, Connection connection) {
+            this.pool = pool;
+            this.connection = Not.nil(connection, "connection");
+            int cacheSize = settings.getStatementCacheSize();
+            this.statements = cacheSize > 0 ? new StatementCache(cacheSize) : null;
+        }
+
+        private void closeUncached() {
+            for (Statement statement : uncached) {
+                close(statement);
+            }
+            uncached.clear();
+        }
+
+        private boolean isOutlived(long now) {
+            return now - created > maxLifetimeMs;
+        }
+
+        private boolean isExpired(long now) {
+            return now - lastUsed > idleTimeoutMs || isOutlived(now);
+        }
+    }
+
+    private static final class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+
+        private static final long serialVersionUID = -3489015683398546377L;
+
+        private final int size;
+
+        private StatementCache(int size) {
+            super(16, 0.75f, true);
+            this.size = size;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > size) {
+                close(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this,
+                           "user", user,
+                           "active", getActiveConnections(),
+                           "idle", getIdleConnections(),
+                           "borrows", borrows,
+                           "waits", waits);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.services.db;
+
+import vanadis.core.lang.Not;
+import vanadis.core.lang.ToString;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+final class StatementBatch implements Batch {
+
+    private final PreparedStatement statement;
+
+    private final int size;
+
+    private final boolean closeStatement;
+
+    private int pending;
+
+    private long executed;
+
+    StatementBatch(PreparedStatement statement, int size, boolean closeStatement) {
+        this.statement = Not.nil(statement, "statement");
+        this.size = size < 1 ? 1 : size;
+        this.closeStatement = closeStatement;
+    }
+
+    @Override
+    public Batch add(Object... parameters) {
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            statement.addBatch();
+        } catch (SQLException e) {
+            throw new DbException(this + " failed to add parameters", e);
+        }
+        if (++pending >= size) {
+            flush();
+        }
+        return this;
+    }
+
+    @Override
+    public int flush() {
+        if (pending == 0) {
+            return 0;
+        }
+        int flushed = pending;
+        try {
+            statement.executeBatch();
+        } catch (SQLException e) {
+            clearBatch();
+            throw new DbException(this + " failed to execute", e);
+        } finally {
+            pending = 0;
+        }
+        executed += flushed;
+        return flushed;
+    }
+
+    private void clearBatch() {
+        try {
+            statement.clearBatch();
+        } catch (SQLException ignore) {
+            // The statement is gone, and its batch with it
+        }
+    }
+
+    @Override
+    public int getPending() {
+        return pending;
+    }
+
+    @Override
+    public long getExecuted() {
+        return executed;
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (closeStatement) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    throw new DbException(this + " failed to close statement", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.of(this, "size", size, "pending", pending, "executed", executed);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2009 Kjetil Valstadsve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vanadis.services.remoting;
+
+import vanadis.common.time.TimeSpan;
+
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous view of a remote client.  Calls on the {@link #call() call proxy}
+ * return at once, with a null, false or zero return value.  The result of
+ * the call is picked up as a future, on the same thread:
+ *
+ * <pre>
+ * Future&lt;String&gt; greeting = async.future(async.call().hello("world"));
+ * </pre>
+ *
+ * Calls on the same client are sent in the order they were made, and calls
+ * made while others are in flight go out together.  A call can be cancelled
+ * until it is sent.
+ *
+ * @param <T> Remote interface
+ */
+public interface AsyncClient<T> {
+
+    /**
+     * @return Proxy for the remote target, which sends calls without waiting
+     */
+    T call();
+
+    /**
+     * @param returned Value returned by the last call on the {@link #call() call proxy}
+     * @return Future result of the last call made on the proxy, by this thread
+     * @throws IllegalStateException If this thread has no call to pick up
+     */
+    <R> Future<R> future(R returned);
+
+    /**
+     * For void methods.
+     *
+     * @return Future completion of the last call made on the proxy, by this thread
+     * @throws IllegalStateException If this thread has no call to pick up
+     */
+    Future<?> future();
+
+    /**
+     * @param timeout Time allowed for each call, from the call is made until it returns
+     * @return An async client whose futures time out
+     */
+    AsyncClient<T> withTimeout(TimeSpan timeout);
+}
@@ -32,6 +32,12 @@ public interface Remoting extends Closeable {
 
     <T> T connect(ClassLoader classLoader, TargetHandle<T> targetHandle, boolean newSession);
 
+    /**
+     * @param client A client returned by one of the connect methods
+     * @return Asynchronous view of the client
+     */
+    <T> AsyncClient<T> async(T client);
+
     Remoting addLocator(Object locator);
 
     boolean isEndPoint();